@@ -4,6 +4,9 @@ import com.cut.cardona.service.infra.storage.ImageStorageService;
 import com.cut.cardona.service.infra.storage.StorageConfig;
 import com.cut.cardona.service.perros.PerroService;
 import com.cut.cardona.service.imagenes.ImagenService;
+import com.cut.cardona.service.imagenes.SubidaAsincronaService;
+import com.cut.cardona.service.imagenes.SubidaLoteService;
+import com.cut.cardona.service.imagenes.SubidaPorPartesService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -11,13 +14,17 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 import com.cut.cardona.modelo.dto.common.RestResponse;
 import com.cut.cardona.modelo.perros.ImagenPerro;
 import com.cut.cardona.security.CustomUserDetails;
@@ -34,6 +41,9 @@ public class ImagenController {
     private final ImageStorageService imageStorageService; // solo para resolver URL post-subida
     private final PerroService perroService;
     private final ImagenService imagenService; // nueva capa con la lógica extraída
+    private final SubidaAsincronaService subidaAsincronaService;
+    private final SubidaLoteService subidaLoteService;
+    private final SubidaPorPartesService subidaPorPartesService;
 
     // ====== SUBIDA DE IMÁGENES (requiere perroId) ======
     @Operation(summary = "Subir imagen de perro (requiere perroId)", description = "Sube y asocia una imagen a un perro existente, validando límites y permisos")
@@ -66,6 +76,112 @@ public class ImagenController {
         }
     }
 
+    @Operation(summary = "Asociar una subida por partes como imagen de perro", description = "Usa una subida completa de /api/subidas con las mismas validaciones que la subida directa")
+    @ApiResponse(responseCode = "200", description = "Imagen subida y asociada")
+    @ApiResponse(responseCode = "404", description = "Subida inexistente, expirada o de otro usuario")
+    @ApiResponse(responseCode = "409", description = "La subida no está completa o ya se está usando")
+    @PostMapping("/perritos/{perroId}/subidas/{subidaId}")
+    public ResponseEntity<?> asociarSubidaPorPartes(
+            @PathVariable("perroId") String perroId,
+            @PathVariable("subidaId") String subidaId,
+            @RequestParam(value = "descripcion", required = false) String descripcion,
+            @RequestParam(value = "principal", required = false, defaultValue = "false") Boolean principal) {
+        try {
+            Optional<ImagenPerro> asociada = subidaPorPartesService.usar(subidaId, f -> perroService.agregarImagen(perroId, f, descripcion, principal));
+            if (asociada.isEmpty()) return ResponseEntity.status(HttpStatus.NOT_FOUND).body(RestResponse.error("Subida no encontrada"));
+            ImagenPerro img = asociada.get();
+            Map<String, Object> data = new HashMap<>();
+            data.put("id", img.getId());
+            data.put("descripcion", img.getDescripcion());
+            data.put("principal", img.getPrincipal());
+            data.put("perroId", perroId);
+            data.put("url", img.getUrl());
+            return ResponseEntity.ok(RestResponse.success("Imagen subida", data));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(400).body(RestResponse.error(ex.getMessage()));
+        } catch (com.cut.cardona.errores.UnprocessableEntityException ex) {
+            return ResponseEntity.status(422).body(RestResponse.error(ex.getMessage()));
+        } catch (com.cut.cardona.errores.DomainConflictException ex) {
+            return ResponseEntity.status(409).body(RestResponse.error(ex.getMessage()));
+        } catch (SecurityException ex) {
+            return ResponseEntity.status(403).body(RestResponse.error(ex.getMessage()));
+        } catch (Exception e) {
+            log.error("Error asociando subida por partes {} al perro {}", subidaId, perroId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(RestResponse.error("No se pudo guardar la imagen"));
+        }
+    }
+
+    @Operation(summary = "Subir varias imágenes de perro", description = "Valida permisos y límite una vez, sube los archivos en paralelo y los asocia en una sola transacción (todas o ninguna)")
+    @ApiResponse(responseCode = "200", description = "Imágenes subidas y asociadas")
+    @PostMapping(value = "/perritos/{perroId}/lote", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadImagenesPerroLote(
+            @PathVariable("perroId") String perroId,
+            @RequestPart("files") List<MultipartFile> files,
+            @Parameter(description = "Descripciones por posición") @RequestParam(value = "descripciones", required = false) List<String> descripciones,
+            @Parameter(description = "Índice (desde 0) del archivo que será la imagen principal") @RequestParam(value = "principal", required = false) Integer principal) {
+        try {
+            List<Map<String, Object>> data = new ArrayList<>();
+            for (ImagenPerro img : subidaLoteService.subir(perroId, files, descripciones, principal)) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("id", img.getId());
+                item.put("descripcion", img.getDescripcion());
+                item.put("principal", img.getPrincipal());
+                item.put("perroId", perroId);
+                item.put("url", img.getUrl());
+                data.add(item);
+            }
+            return ResponseEntity.ok(RestResponse.success("Imágenes subidas", data));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(400).body(RestResponse.error(ex.getMessage()));
+        } catch (com.cut.cardona.errores.UnprocessableEntityException ex) {
+            return ResponseEntity.status(422).body(RestResponse.error(ex.getMessage()));
+        } catch (SecurityException ex) {
+            return ResponseEntity.status(403).body(RestResponse.error(ex.getMessage()));
+        } catch (Exception e) {
+            log.error("Error subiendo lote de imágenes de perro", e);
+            String raw = e.getMessage() != null ? e.getMessage() : "Error interno al guardar las imágenes";
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(RestResponse.error("No se pudieron guardar las imágenes: " + raw));
+        }
+    }
+
+    @Operation(summary = "Subir imagen de perro en segundo plano", description = "Valida y encola la imagen; el procesamiento (redimensionado, compresión, envío al almacenamiento) ocurre en un pool acotado. Consultar el estado en /api/imagenes/subidas/{uploadId}")
+    @ApiResponse(responseCode = "202", description = "Subida aceptada y en cola")
+    @ApiResponse(responseCode = "503", description = "Cola de subidas llena; reintentar")
+    @PostMapping(value = "/perritos/{perroId}/async", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadImagenPerroAsync(
+            @PathVariable("perroId") String perroId,
+            @RequestPart("file") MultipartFile file,
+            @RequestParam(value = "descripcion", required = false) String descripcion,
+            @RequestParam(value = "principal", required = false, defaultValue = "false") Boolean principal) {
+        try {
+            var estado = subidaAsincronaService.encolar(perroId, file, descripcion, principal);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.LOCATION, "/api/imagenes/subidas/" + estado.uploadId())
+                    .body(RestResponse.success("Subida en cola", estado));
+        } catch (RejectedExecutionException ex) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").body(RestResponse.error(ex.getMessage()));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(400).body(RestResponse.error(ex.getMessage()));
+        } catch (com.cut.cardona.errores.UnprocessableEntityException ex) {
+            return ResponseEntity.status(422).body(RestResponse.error(ex.getMessage()));
+        } catch (SecurityException ex) {
+            return ResponseEntity.status(403).body(RestResponse.error(ex.getMessage()));
+        } catch (Exception e) {
+            log.error("Error encolando imagen de perro", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(RestResponse.error("No se pudo aceptar la imagen"));
+        }
+    }
+
+    @Operation(summary = "Estado de una subida en segundo plano", description = "EN_COLA, PROCESANDO, COMPLETADA (con imagenId y url) o FALLIDA (con error)")
+    @ApiResponse(responseCode = "200", description = "Estado actual")
+    @ApiResponse(responseCode = "404", description = "Subida inexistente, expirada o de otro usuario")
+    @GetMapping("/subidas/{uploadId}")
+    public ResponseEntity<RestResponse<SubidaAsincronaService.EstadoSubida>> estadoSubida(@PathVariable String uploadId) {
+        return subidaAsincronaService.estado(uploadId)
+                .map(e -> ResponseEntity.ok(RestResponse.success("Estado de subida", e)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(RestResponse.error("Subida no encontrada", null)));
+    }
+
     @Operation(summary = "[Deprecado] Subir imagen de perro sin id", description = "No permitido: se requiere perroId")
     @PostMapping(value = "/perritos", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<?> uploadImagenPerroDeprecado() {
@@ -73,21 +189,42 @@ public class ImagenController {
     }
 
     // ====== IMÁGENES DE PERROS (GET / HEAD) ======
-    @Operation(summary = "Obtener imagen de perro", description = "Devuelve la imagen de perro por id; local lee de disco, cloud proxy a CDN")
+    @Operation(summary = "Obtener imagen de perro", description = "Devuelve la imagen de perro por id; local se transmite desde disco (soporta Range, ETag y 304), cloud proxy a CDN")
     @ApiResponse(responseCode = "200", description = "Imagen devuelta")
+    @ApiResponse(responseCode = "206", description = "Rango parcial de la imagen")
+    @ApiResponse(responseCode = "304", description = "No modificada (If-None-Match / If-Modified-Since)")
+    @ApiResponse(responseCode = "400", description = "Parámetros de variante inválidos (w fuera de rango o fmt no soportado)")
     @ApiResponse(responseCode = "404", description = "Imagen no encontrada")
+    @ApiResponse(responseCode = "503", description = "Proxy al CDN saturado; reintentar")
     @GetMapping("/perritos/{id}")
-    public ResponseEntity<byte[]> getImagenPerro(@PathVariable String id) {
-        log.debug("[Imagenes] GET perritos id={}", id);
-        var r = imagenService.obtenerContenidoImagenPerro(id);
+    public ResponseEntity<Resource> getImagenPerro(
+            @PathVariable String id,
+            @Parameter(description = "Ancho deseado en px; se sirve la variante pre-calculada más cercana (160/480/1024)") @RequestParam(value = "w", required = false) Integer w,
+            @Parameter(description = "Formato de la variante: jpg o webp") @RequestParam(value = "fmt", required = false) String fmt) {
+        log.debug("[Imagenes] GET perritos id={} w={} fmt={}", id, w, fmt);
+        var r = (w == null && fmt == null)
+                ? imagenService.obtenerContenidoImagenPerro(id)
+                : imagenService.obtenerVarianteImagenPerro(id, w, fmt);
         if (r.status() == HttpStatus.OK) {
-            return ResponseEntity.ok()
+            // Con cuerpo Resource, Spring responde 206 ante Range y 304 si coinciden ETag/Last-Modified;
+            // la longitud la calcula el conversor (por rango cuando aplica), por eso no se fija aquí.
+            ResponseEntity.BodyBuilder bb = ResponseEntity.ok()
                     .header(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable")
-                    .contentType(MediaType.parseMediaType(r.mediaType()))
-                    .contentLength(r.length())
-                    .body(r.body());
+                    .contentType(MediaType.parseMediaType(r.mediaType()));
+            if (r.etag() != null) bb.eTag(r.etag());
+            if (r.lastModified() > 0) bb.lastModified(r.lastModified());
+            if (r.body() instanceof InputStreamResource) {
+                // El proxy del CDN es un stream de una sola lectura: Spring no aplica Range a un InputStreamResource,
+                // así que se responde 200 completo y la longitud viene del upstream. El conversor copia el cuerpo
+                // por bloques y lo cierra al terminar (libera conexión y permiso del proxy).
+                bb.header(HttpHeaders.ACCEPT_RANGES, "none");
+                if (r.length() >= 0) bb.contentLength(r.length());
+            }
+            return bb.body(r.body());
         }
         if (r.status() == HttpStatus.NOT_FOUND) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        if (r.status() == HttpStatus.BAD_REQUEST) return ResponseEntity.badRequest().build();
+        if (r.status() == HttpStatus.SERVICE_UNAVAILABLE) return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
         return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
     }
 
@@ -102,9 +239,12 @@ public class ImagenController {
                     .header(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable")
                     .contentType(MediaType.parseMediaType(r.mediaType()));
             if (r.length() >= 0) bb.contentLength(r.length());
+            if (r.etag() != null) bb.eTag(r.etag());
+            if (r.lastModified() > 0) bb.lastModified(r.lastModified());
             return bb.build();
         }
         if (r.status() == HttpStatus.NOT_FOUND) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        if (r.status() == HttpStatus.SERVICE_UNAVAILABLE) return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
         return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
     }
 
@@ -0,0 +1,93 @@
+package com.cut.cardona.api.controller;
+
+import com.cut.cardona.modelo.dto.common.RestResponse;
+import com.cut.cardona.service.imagenes.SubidaPorPartesService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/**
+ * Protocolo de subida reanudable por partes (inspirado en tus):
+ * POST crea la subida con Upload-Length, PATCH envía cada parte con Upload-Offset y HEAD informa
+ * cuántos bytes hay para reanudar. La subida completa se usa después desde el endpoint de destino
+ * (imagen de perro o solicitud de adopción) con su id.
+ */
+@RestController
+@RequestMapping("/api/subidas")
+@RequiredArgsConstructor
+@Tag(name = "Subidas por partes", description = "Subidas reanudables de imágenes y documentos")
+public class SubidaPartesController {
+
+    static final String UPLOAD_OFFSET = "Upload-Offset";
+    static final String UPLOAD_LENGTH = "Upload-Length";
+    static final String CONTENT_TYPE_PARTE = "application/offset+octet-stream";
+
+    private final SubidaPorPartesService subidaPorPartesService;
+
+    @Operation(summary = "Crear subida por partes", description = "Declara el tamaño total (Upload-Length) y el tipo del archivo; devuelve el id y la URL para enviar las partes")
+    @ApiResponse(responseCode = "201", description = "Subida creada")
+    @PostMapping
+    public ResponseEntity<RestResponse<SubidaPorPartesService.EstadoSubidaPartes>> crear(
+            @RequestHeader(UPLOAD_LENGTH) long longitud,
+            @Parameter(description = "Nombre original del archivo") @RequestParam(value = "nombre", required = false) String nombre,
+            @Parameter(description = "Tipo MIME del archivo (image/jpeg, image/png, image/webp, image/gif)") @RequestParam("tipo") String tipo) throws IOException {
+        var estado = subidaPorPartesService.crear(longitud, nombre, tipo);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(HttpHeaders.LOCATION, "/api/subidas/" + estado.id())
+                .header(UPLOAD_OFFSET, "0")
+                .header(UPLOAD_LENGTH, String.valueOf(estado.longitud()))
+                .body(RestResponse.success("Subida creada", estado));
+    }
+
+    @Operation(summary = "Progreso de la subida", description = "Upload-Offset indica desde qué byte continuar")
+    @ApiResponse(responseCode = "200", description = "Progreso en cabeceras")
+    @ApiResponse(responseCode = "404", description = "Subida inexistente, expirada o de otro usuario")
+    @RequestMapping(value = "/{id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> progreso(@PathVariable String id) {
+        return subidaPorPartesService.estado(id)
+                .map(e -> ResponseEntity.ok()
+                        .cacheControl(CacheControl.noStore())
+                        .header(UPLOAD_OFFSET, String.valueOf(e.recibidos()))
+                        .header(UPLOAD_LENGTH, String.valueOf(e.longitud()))
+                        .<Void>build())
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+    @Operation(summary = "Estado de la subida", description = "RECIBIENDO, COMPLETA o EN_USO, con bytes recibidos y expiración")
+    @GetMapping("/{id}")
+    public ResponseEntity<RestResponse<SubidaPorPartesService.EstadoSubidaPartes>> estado(@PathVariable String id) {
+        return subidaPorPartesService.estado(id)
+                .map(e -> ResponseEntity.ok(RestResponse.success("Estado de subida", e)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(RestResponse.error("Subida no encontrada", null)));
+    }
+
+    @Operation(summary = "Enviar una parte", description = "Cuerpo application/offset+octet-stream; Upload-Offset debe coincidir con lo recibido (409 si no)")
+    @ApiResponse(responseCode = "204", description = "Parte guardada; Upload-Offset con el nuevo total")
+    @ApiResponse(responseCode = "409", description = "Desplazamiento incorrecto, parte concurrente o subida ya completa")
+    @PatchMapping(value = "/{id}", consumes = CONTENT_TYPE_PARTE)
+    public ResponseEntity<Void> anexar(@PathVariable String id, @RequestHeader(UPLOAD_OFFSET) long offset, HttpServletRequest request) throws IOException {
+        return subidaPorPartesService.anexar(id, offset, request.getInputStream())
+                .map(e -> ResponseEntity.noContent()
+                        .header(UPLOAD_OFFSET, String.valueOf(e.recibidos()))
+                        .<Void>build())
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+    @Operation(summary = "Cancelar subida", description = "Elimina la subida y lo recibido")
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> cancelar(@PathVariable String id) {
+        return subidaPorPartesService.cancelar(id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+}
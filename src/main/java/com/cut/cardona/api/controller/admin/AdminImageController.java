@@ -1,10 +1,13 @@
 package com.cut.cardona.api.controller.admin;
 
-import com.cut.cardona.service.infra.storage.ImageStorageService;
-import com.cut.cardona.modelo.perros.RepositorioImagenPerro;
+import com.cut.cardona.modelo.dto.common.RestResponse;
+import com.cut.cardona.service.auth.LimpiezaTokens;
+import com.cut.cardona.service.imagenes.CacheImagenesPerro;
+import com.cut.cardona.service.imagenes.RecolectorImagenesHuerfanas;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -14,20 +17,46 @@ import org.springframework.web.bind.annotation.RestController;
 @RequiredArgsConstructor
 public class AdminImageController {
 
-    private final RepositorioImagenPerro repositorioImagenPerro;
-    private final ImageStorageService imageStorageService;
+    private final RecolectorImagenesHuerfanas recolectorImagenesHuerfanas;
+    private final CacheImagenesPerro cacheImagenesPerro;
+    private final LimpiezaTokens limpiezaTokens;
 
     /**
-     * Endpoint para limpiar imágenes huérfanas en Cloudinary.
+     * Lanza una ejecución inmediata del recolector de imágenes huérfanas (en segundo plano).
      * Solo accesible por administradores.
      */
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping("/cleanup-orphans")
     public ResponseEntity<String> cleanupOrphanImages() {
-        int eliminadas = imageStorageService.cleanupOrphanImages(repositorioImagenPerro);
-        if (eliminadas < 0) {
-            return ResponseEntity.internalServerError().body("Error al limpiar imágenes huérfanas en Cloudinary");
-        }
-        return ResponseEntity.ok("Imágenes huérfanas eliminadas: " + eliminadas);
+        recolectorImagenesHuerfanas.solicitarEjecucion();
+        return ResponseEntity.accepted().body("Recolección de imágenes huérfanas programada");
+    }
+
+    /**
+     * Métricas del recolector de imágenes huérfanas (revisadas, eliminadas, progreso del barrido).
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/imagenes/huerfanas")
+    public ResponseEntity<RestResponse<RecolectorImagenesHuerfanas.Estadisticas>> estadisticasHuerfanas() {
+        return ResponseEntity.ok(RestResponse.success("Estadísticas del recolector de imágenes huérfanas", recolectorImagenesHuerfanas.estadisticas()));
+    }
+
+    /**
+     * Métricas de la caché de imágenes de perros (aciertos, fallos, expulsiones, ocupación)
+     * para dimensionar app.imagenes.cache.max-bytes.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/imagenes/cache")
+    public ResponseEntity<RestResponse<CacheImagenesPerro.Estadisticas>> estadisticasCacheImagenes() {
+        return ResponseEntity.ok(RestResponse.success("Estadísticas de caché de imágenes", cacheImagenesPerro.estadisticas()));
+    }
+
+    /**
+     * Métricas de la purga de tokens de verificación y reset (filas purgadas, duración de la última ejecución).
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/tokens/limpieza")
+    public ResponseEntity<RestResponse<LimpiezaTokens.Estadisticas>> estadisticasLimpiezaTokens() {
+        return ResponseEntity.ok(RestResponse.success("Estadísticas de limpieza de tokens", limpiezaTokens.estadisticas()));
     }
 }
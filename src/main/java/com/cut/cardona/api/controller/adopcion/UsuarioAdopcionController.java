@@ -2,6 +2,7 @@ package com.cut.cardona.api.controller.adopcion;
 
 import com.cut.cardona.modelo.dto.adopcion.DtoSolicitudAdopcion;
 import com.cut.cardona.service.adopcion.UsuarioAdopcionService;
+import com.cut.cardona.service.imagenes.SubidaPorPartesService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
@@ -19,6 +20,7 @@ import java.util.List;
 public class UsuarioAdopcionController {
 
     private final UsuarioAdopcionService service;
+    private final SubidaPorPartesService subidaPorPartesService;
 
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<DtoSolicitudAdopcion> crear(
@@ -29,6 +31,18 @@ public class UsuarioAdopcionController {
         return ResponseEntity.ok(service.crearSolicitud(perroId, mensaje, tipoDocumento, file));
     }
 
+    // El documento llega como subida por partes completa (/api/subidas) en lugar de multipart
+    @PostMapping("/desde-subida")
+    public ResponseEntity<DtoSolicitudAdopcion> crearDesdeSubida(
+            @RequestParam("perroId") String perroId,
+            @RequestParam(value = "mensaje", required = false) String mensaje,
+            @RequestParam("subidaId") String subidaId,
+            @RequestParam(value = "tipoDocumento", required = false) String tipoDocumento) throws Exception {
+        return subidaPorPartesService.usar(subidaId, f -> service.crearSolicitud(perroId, mensaje, tipoDocumento, f))
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
     @GetMapping("/mis")
     public ResponseEntity<List<DtoSolicitudAdopcion>> mis() {
         return ResponseEntity.ok(service.misSolicitudes());
@@ -3,12 +3,15 @@ package com.cut.cardona.api.controller.auth;
 import com.cut.cardona.service.auth.AuthenticationService;
 import com.cut.cardona.modelo.dto.auth.AuthenticationRequest;
 import com.cut.cardona.modelo.dto.auth.AuthenticationResponse;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 @Slf4j
 @RestController
 @RequestMapping("/api")
@@ -17,16 +20,19 @@ public class AuthenticationController {
 
     private final AuthenticationService authenticationService;
 
+    // Respuesta asíncrona: el hilo de Tomcat queda libre mientras se verifica la contraseña
     @PostMapping("/login")
-    public ResponseEntity<AuthenticationResponse> login(
-            @Valid @RequestBody AuthenticationRequest request) {
+    public CompletableFuture<ResponseEntity<AuthenticationResponse>> login(
+            @Valid @RequestBody AuthenticationRequest request,
+            HttpServletRequest httpRequest) {
 
         log.info("Attempting authentication for user: {}", request.userName());
 
-        AuthenticationResponse response = authenticationService.authenticate(request);
-
-        log.info("Authentication successful for user: {}", request.userName());
-        return ResponseEntity.ok(response);
+        return authenticationService.authenticate(request, httpRequest.getRemoteAddr())
+                .thenApply(response -> {
+                    log.info("Authentication successful for user: {}", request.userName());
+                    return ResponseEntity.ok(response);
+                });
     }
 
     @PostMapping("/refresh")
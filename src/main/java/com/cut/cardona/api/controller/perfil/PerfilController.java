@@ -45,7 +45,10 @@ public class PerfilController {
                     .body(RestResponse.error("No autenticado", (DtoUsuarioResumen) null));
         }
         var usuario = userDetails.getUsuario();
-        var dto = perfilService.toResumen(usuario);
+        // Un principal construido desde los claims del JWT no trae email: cargar el usuario
+        var dto = userDetails.isParcial()
+                ? perfilService.obtenerResumenPorId(usuario.getId()).orElse(null)
+                : perfilService.toResumen(usuario);
         log.debug("Resumen solicitado para usuario {}", usuario.getUsername());
         return ResponseEntity.ok(RestResponse.success("Resumen de usuario", dto));
     }
@@ -1,5 +1,6 @@
 package com.cut.cardona.api.controller.perros;
 
+import com.cut.cardona.service.perros.CatalogoPerrosCache;
 import com.cut.cardona.service.perros.PerroService;
 import com.cut.cardona.modelo.dto.common.RestResponse;
 import com.cut.cardona.modelo.dto.perros.ActualizarPerroRequest;
@@ -8,6 +9,7 @@ import com.cut.cardona.modelo.dto.perros.DtoPerro;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
@@ -17,7 +19,9 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api")
@@ -43,6 +47,46 @@ public class PerroController {
         return ResponseEntity.ok(RestResponse.success("Catálogo cargado", data));
     }
 
+    /**
+     * Variante por cursor del catálogo (scroll infinito). Sin cursor devuelve la primera página;
+     * metadata.nextCursor se envía en la siguiente llamada y es null al llegar al final.
+     */
+    @GetMapping("/perros/catalogo/scroll")
+    public ResponseEntity<RestResponse<List<DtoPerro>>> catalogoScroll(
+            @Pattern(regexp = "Macho|Hembra", message = "Sexo debe ser 'Macho' o 'Hembra'")
+            @RequestParam(value = "sexo", required = false) String sexo,
+            @Pattern(regexp = "Pequeño|Mediano|Grande", message = "Tamaño debe ser 'Pequeño','Mediano' o 'Grande'")
+            @RequestParam(value = "tamano", required = false) String tamano,
+            @Size(max = 255, message = "La ubicación no debe superar 255 caracteres")
+            @RequestParam(value = "ubicacion", required = false) String ubicacion,
+            @Size(max = 200, message = "cursor inválido")
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @Min(value = 1, message = "size debe ser >= 1") @Max(value = 100, message = "size no debe superar 100")
+            @RequestParam(value = "size", required = false) Integer size) {
+        CatalogoPerrosCache.PaginaCursor pagina = perroService.catalogoPublicoCursor(sexo, tamano, ubicacion, cursor, size);
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("nextCursor", pagina.nextCursor());
+        metadata.put("size", pagina.items().size());
+        return ResponseEntity.ok(RestResponse.withMetadata("Catálogo cargado", pagina.items(), metadata));
+    }
+
+    /**
+     * Búsqueda de texto sobre el catálogo público: nombre, raza, descripción y ubicación.
+     * Resultados ordenados por relevancia; ignora acentos y admite prefijos (ej. "peq", "labra*").
+     */
+    @GetMapping("/perros/buscar")
+    public ResponseEntity<RestResponse<List<DtoPerro>>> buscar(
+            @NotBlank(message = "q es requerido")
+            @Size(max = 100, message = "q no debe superar 100 caracteres")
+            @RequestParam(value = "q") String q,
+            @Min(value = 0, message = "page debe ser >= 0")
+            @RequestParam(value = "page", required = false) Integer page,
+            @Min(value = 1, message = "size debe ser >= 1") @Max(value = 100, message = "size no debe superar 100")
+            @RequestParam(value = "size", required = false) Integer size) {
+        List<DtoPerro> data = perroService.buscarEnCatalogo(q, page, size);
+        return ResponseEntity.ok(RestResponse.success("Resultados de búsqueda", data));
+    }
+
     @GetMapping("/perros/mis")
     public ResponseEntity<RestResponse<List<DtoPerro>>> misPerros() {
         List<DtoPerro> data = perroService.perrosDelUsuarioActual();
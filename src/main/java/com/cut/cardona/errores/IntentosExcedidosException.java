@@ -0,0 +1,16 @@
+package com.cut.cardona.errores;
+
+/** Demasiados intentos fallidos: el cliente debe esperar {@code segundosEspera} antes de reintentar (429). */
+public class IntentosExcedidosException extends RuntimeException {
+
+    private final long segundosEspera;
+
+    public IntentosExcedidosException(String message, long segundosEspera) {
+        super(message);
+        this.segundosEspera = segundosEspera;
+    }
+
+    public long getSegundosEspera() {
+        return segundosEspera;
+    }
+}
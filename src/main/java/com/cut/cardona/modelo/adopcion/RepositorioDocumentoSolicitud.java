@@ -1,6 +1,7 @@
 package com.cut.cardona.modelo.adopcion;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -17,4 +18,14 @@ public interface RepositorioDocumentoSolicitud extends JpaRepository<DocumentoSo
 
     @Query("SELECT COUNT(d) FROM DocumentoSolicitud d WHERE d.solicitud.id = :solicitudId AND LOWER(d.tipoDocumento) = LOWER(:tipo)")
     long existeTipoEnSolicitud(@Param("solicitudId") String solicitudId, @Param("tipo") String tipo);
+
+    // Documentos de solicitudes hechas por el usuario o sobre sus perros (borrado masivo de usuario)
+    @Query("SELECT d.id FROM DocumentoSolicitud d WHERE d.solicitud.solicitante.id = :usuarioId " +
+           "OR d.solicitud.perro.usuario.id = :usuarioId")
+    List<String> findIdsDeUsuario(@Param("usuarioId") String usuarioId);
+
+    @Modifying
+    @Query("DELETE FROM DocumentoSolicitud d WHERE d.solicitud.id IN (SELECT s.id FROM SolicitudAdopcion s " +
+           "WHERE s.solicitante.id = :usuarioId OR s.perro.id IN (SELECT p.id FROM Perro p WHERE p.usuario.id = :usuarioId))")
+    int deleteDeUsuario(@Param("usuarioId") String usuarioId);
 }
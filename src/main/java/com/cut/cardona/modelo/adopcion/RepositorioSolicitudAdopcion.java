@@ -2,6 +2,7 @@ package com.cut.cardona.modelo.adopcion;
 
 import com.cut.cardona.modelo.adopcion.enums.SolicitudEstado;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -28,4 +29,10 @@ public interface RepositorioSolicitudAdopcion extends JpaRepository<SolicitudAdo
     List<SolicitudAdopcion> buscarFiltrado(@Param("estado") SolicitudEstado estado,
                                            @Param("perroId") String perroId,
                                            @Param("solicitanteId") String solicitanteId);
+
+    // Solicitudes hechas por el usuario o sobre sus perros (borrado masivo de usuario)
+    @Modifying
+    @Query("DELETE FROM SolicitudAdopcion s WHERE s.solicitante.id = :usuarioId " +
+           "OR s.perro.id IN (SELECT p.id FROM Perro p WHERE p.usuario.id = :usuarioId)")
+    int deleteDeUsuario(@Param("usuarioId") String usuarioId);
 }
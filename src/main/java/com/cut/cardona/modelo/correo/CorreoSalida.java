@@ -0,0 +1,74 @@
+package com.cut.cardona.modelo.correo;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.sql.Timestamp;
+import java.util.Objects;
+import java.util.UUID;
+
+@Entity
+@Table(name = "correos_salida")
+@Getter
+@Setter
+@NoArgsConstructor
+public class CorreoSalida {
+
+    @Id
+    @Column(name = "id", columnDefinition = "CHAR(36)")
+    private String id;
+
+    @Column(nullable = false)
+    private String destinatario;
+
+    @Column(nullable = false)
+    private String asunto;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String cuerpo;
+
+    private String tipo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private EstadoCorreo estado;
+
+    @Column(nullable = false)
+    private int intentos;
+
+    @Column(name = "proximo_intento", nullable = false)
+    private Timestamp proximoIntento;
+
+    @Column(name = "ultimo_error", length = 500)
+    private String ultimoError;
+
+    @Column(name = "creado_en", nullable = false)
+    private Timestamp creadoEn;
+
+    @Column(name = "enviado_en")
+    private Timestamp enviadoEn;
+
+    @PrePersist
+    private void prePersist() {
+        if (this.id == null || this.id.isBlank()) this.id = UUID.randomUUID().toString();
+        Timestamp ahora = new Timestamp(System.currentTimeMillis());
+        if (this.creadoEn == null) this.creadoEn = ahora;
+        if (this.proximoIntento == null) this.proximoIntento = ahora;
+        if (this.estado == null) this.estado = EstadoCorreo.PENDIENTE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CorreoSalida that = (CorreoSalida) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
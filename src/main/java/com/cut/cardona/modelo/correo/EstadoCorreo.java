@@ -0,0 +1,7 @@
+package com.cut.cardona.modelo.correo;
+
+public enum EstadoCorreo {
+    PENDIENTE,
+    ENVIADO,
+    FALLIDO
+}
@@ -0,0 +1,29 @@
+package com.cut.cardona.modelo.correo;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Repository
+public interface RepositorioCorreoSalida extends JpaRepository<CorreoSalida, String> {
+
+    /**
+     * Siguiente lote listo para enviar, bloqueado para esta transacción. lock.timeout=-2 se traduce en
+     * SKIP LOCKED: otra instancia que reclame a la vez toma filas distintas en lugar de esperar.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT c FROM CorreoSalida c WHERE c.estado = :estado AND c.proximoIntento <= :ahora ORDER BY c.proximoIntento")
+    List<CorreoSalida> findListosParaEnviar(@Param("estado") EstadoCorreo estado, @Param("ahora") Timestamp ahora, Pageable pageable);
+
+    long countByEstado(EstadoCorreo estado);
+}
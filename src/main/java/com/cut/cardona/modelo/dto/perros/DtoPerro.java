@@ -1,5 +1,6 @@
 package com.cut.cardona.modelo.dto.perros;
 
+import com.cut.cardona.modelo.perros.ImagenPerro;
 import com.cut.cardona.modelo.perros.Perro;
 
 import java.util.List;
@@ -22,6 +23,14 @@ public record DtoPerro(
         List<String> imagenIds
 ) {
     public DtoPerro(Perro p) {
+        this(p, p.getImagenes());
+    }
+
+    /**
+     * Construye el DTO con una lista de imágenes ya resuelta (por ejemplo, cargada en lote),
+     * sin recorrer la colección LAZY del perro.
+     */
+    public DtoPerro(Perro p, List<ImagenPerro> imagenes) {
         this(
                 p.getId(),
                 p.getNombre(),
@@ -34,11 +43,11 @@ public record DtoPerro(
                 p.getEstadoAdopcion() != null ? p.getEstadoAdopcion().getLabel() : null,
                 p.getEstadoRevision() != null ? p.getEstadoRevision().getLabel() : null,
                 p.getUsuario() != null ? p.getUsuario().getId() : null,
-                p.getImagenes() == null ? null : p.getImagenes().stream()
+                imagenes == null ? null : imagenes.stream()
                         .filter(i -> Boolean.TRUE.equals(i.getPrincipal()))
                         .map(i -> i.getId())
                         .findFirst().orElse(null),
-                p.getImagenes() == null ? List.of() : p.getImagenes().stream()
+                imagenes == null ? List.of() : imagenes.stream()
                         .map(i -> i.getId())
                         .filter(Objects::nonNull)
                         .collect(Collectors.toList())
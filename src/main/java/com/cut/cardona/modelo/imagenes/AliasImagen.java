@@ -0,0 +1,28 @@
+package com.cut.cardona.modelo.imagenes;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.Instant;
+
+/** Id de una imagen subida y el blob deduplicado que guarda su contenido. */
+@Entity
+@Table(name = "alias_imagenes")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AliasImagen {
+    @Id
+    @Column(name = "id", columnDefinition = "CHAR(36)")
+    private String id;
+
+    @Column(name = "hash", columnDefinition = "CHAR(64)", nullable = false)
+    private String hash;
+
+    @Column(name = "blob_id", columnDefinition = "CHAR(36)", nullable = false)
+    private String blobId;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,28 @@
+package com.cut.cardona.modelo.imagenes;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.Instant;
+
+/** Objeto del storage identificado por el SHA-256 de su contenido; referencias = imágenes que lo usan. */
+@Entity
+@Table(name = "blobs_imagenes")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BlobImagen {
+    @Id
+    @Column(name = "hash", columnDefinition = "CHAR(64)")
+    private String hash;
+
+    @Column(name = "blob_id", columnDefinition = "CHAR(36)", nullable = false)
+    private String blobId;
+
+    @Column(name = "referencias", nullable = false)
+    private int referencias;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,26 @@
+package com.cut.cardona.modelo.imagenes;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+
+@Repository
+public interface RepositorioAliasImagen extends JpaRepository<AliasImagen, String> {
+
+    @Modifying
+    @Query(value = "INSERT INTO alias_imagenes (id, hash, blob_id, created_at) VALUES (:id, :hash, :blobId, :ahora)", nativeQuery = true)
+    int insertar(@Param("id") String id, @Param("hash") String hash, @Param("blobId") String blobId, @Param("ahora") Instant ahora);
+
+    @Query("SELECT a.blobId FROM AliasImagen a WHERE a.id = :id")
+    Optional<String> findBlobId(@Param("id") String id);
+
+    @Modifying
+    @Query("DELETE FROM AliasImagen a WHERE a.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<String> ids);
+}
@@ -0,0 +1,39 @@
+package com.cut.cardona.modelo.imagenes;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface RepositorioBlobImagen extends JpaRepository<BlobImagen, String> {
+
+    // Devuelve 0 si otra subida registró el mismo contenido antes (la fila ya existe)
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO blobs_imagenes (hash, blob_id, referencias, created_at) VALUES (:hash, :blobId, 1, :ahora)", nativeQuery = true)
+    int insertarSiNoExiste(@Param("hash") String hash, @Param("blobId") String blobId, @Param("ahora") Instant ahora);
+
+    // 0 si el blob ya no existe (se acaba de borrar su última referencia)
+    @Modifying
+    @Query("UPDATE BlobImagen b SET b.referencias = b.referencias + 1 WHERE b.hash = :hash")
+    int incrementar(@Param("hash") String hash);
+
+    @Modifying
+    @Query("UPDATE BlobImagen b SET b.referencias = b.referencias - :n WHERE b.hash = :hash")
+    int decrementar(@Param("hash") String hash, @Param("n") int n);
+
+    @Query("SELECT b.blobId FROM BlobImagen b WHERE b.hash IN :hashes AND b.referencias <= 0")
+    List<String> findBlobIdsSinReferencias(@Param("hashes") Collection<String> hashes);
+
+    @Modifying
+    @Query("DELETE FROM BlobImagen b WHERE b.hash IN :hashes AND b.referencias <= 0")
+    int deleteSinReferencias(@Param("hashes") Collection<String> hashes);
+
+    @Query("SELECT b.blobId FROM BlobImagen b WHERE b.blobId IN :ids")
+    List<String> findBlobIdsExistentes(@Param("ids") Collection<String> ids);
+}
@@ -1,10 +1,12 @@
 package com.cut.cardona.modelo.imagenes;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -23,4 +25,12 @@ public interface RepositorioImagenPerfil extends JpaRepository<ImagenPerfil, Str
     Optional<ImagenPerfil> findByIdWithUsuario(@Param("id") String id);
 
     void deleteByPerfilUsuarioId(String perfilUsuarioId);
+
+    // Borrado masivo de usuario: nombres de archivo para el storage y DELETE de sus imágenes de perfil
+    @Query("SELECT i.nombreArchivo FROM ImagenPerfil i WHERE i.perfilUsuario.usuario.id = :usuarioId")
+    List<String> findNombresArchivoByUsuarioId(@Param("usuarioId") String usuarioId);
+
+    @Modifying
+    @Query("DELETE FROM ImagenPerfil i WHERE i.perfilUsuarioId IN (SELECT p.id FROM PerfilUsuario p WHERE p.usuario.id = :usuarioId)")
+    int deleteByUsuarioId(@Param("usuarioId") String usuarioId);
 }
@@ -1,17 +1,56 @@
 package com.cut.cardona.modelo.imagenes;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface RepositorioStagingSubida extends JpaRepository<StagingSubida, String> {
     // Imágenes huérfanas: no asociadas y con antigüedad mayor a X horas
-    @Query("SELECT s FROM StagingSubida s WHERE s.asociado = false AND s.createdAt < :umbral")
-    List<StagingSubida> findOrphans(@Param("umbral") Instant umbral);
-}
+    @Query("SELECT s.uuid FROM StagingSubida s WHERE s.asociado = false AND s.tipo = :tipo AND s.createdAt < :umbral ORDER BY s.createdAt")
+    List<String> findOrphans(@Param("tipo") String tipo, @Param("umbral") Instant umbral, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE StagingSubida s SET s.asociado = true WHERE s.uuid = :uuid")
+    int marcarAsociada(@Param("uuid") String uuid);
+
+    @Modifying
+    @Query("UPDATE StagingSubida s SET s.asociado = true WHERE s.uuid IN :uuids")
+    int marcarAsociadas(@Param("uuids") Collection<String> uuids);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM StagingSubida s WHERE s.uuid IN :uuids")
+    int deleteByUuidIn(@Param("uuids") Collection<String> uuids);
+
+    // Subidas por partes: progreso y cambios de estado condicionados al estado actual
+    @Query("SELECT COUNT(s) FROM StagingSubida s WHERE s.tipo = :tipo AND s.usuario = :usuario AND s.estado IS NOT NULL")
+    long countActivasDeUsuario(@Param("tipo") String tipo, @Param("usuario") String usuario);
 
+    @Modifying
+    @Transactional
+    @Query("UPDATE StagingSubida s SET s.recibidos = :recibidos, s.estado = :estado, s.actualizadoEn = :ahora WHERE s.uuid = :uuid")
+    int actualizarProgreso(@Param("uuid") String uuid, @Param("recibidos") long recibidos, @Param("estado") String estado, @Param("ahora") Instant ahora);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE StagingSubida s SET s.estado = :nuevo, s.actualizadoEn = :ahora WHERE s.uuid = :uuid AND s.estado = :actual")
+    int cambiarEstado(@Param("uuid") String uuid, @Param("actual") String actual, @Param("nuevo") String nuevo, @Param("ahora") Instant ahora);
+
+    @Query("SELECT s.uuid FROM StagingSubida s WHERE s.tipo = :tipo AND s.estado IS NOT NULL AND s.actualizadoEn < :umbral")
+    List<String> findSesionesExpiradas(@Param("tipo") String tipo, @Param("umbral") Instant umbral, Pageable pageable);
+
+    // Las asociadas ya no hacen falta una vez pasado el periodo de gracia
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM StagingSubida s WHERE s.asociado = true AND s.createdAt < :umbral")
+    int deleteAsociadasAntesDe(@Param("umbral") Instant umbral);
+}
@@ -20,12 +20,34 @@ public class StagingSubida {
     private Instant createdAt;
 
     @Column(name = "tipo", length = 20, nullable = false)
-    private String tipo; // 'dog' o 'profile'
+    private String tipo; // 'dog', 'profile' o 'partes' (sesión de subida por partes)
 
     @Column(name = "asociado", nullable = false)
     private boolean asociado;
 
     @Column(name = "info", length = 255)
     private String info;
+
+    // Solo sesiones de subida por partes
+    @Column(name = "estado", length = 20)
+    private String estado;
+
+    @Column(name = "longitud")
+    private Long longitud;
+
+    @Column(name = "recibidos")
+    private Long recibidos;
+
+    @Column(name = "usuario", length = 255)
+    private String usuario;
+
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    @Column(name = "nombre_archivo", length = 255)
+    private String nombreArchivo;
+
+    @Column(name = "actualizado_en")
+    private Instant actualizadoEn;
 }
 
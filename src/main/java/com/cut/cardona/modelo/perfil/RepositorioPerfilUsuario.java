@@ -1,6 +1,7 @@
 package com.cut.cardona.modelo.perfil;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -21,4 +22,8 @@ public interface RepositorioPerfilUsuario extends JpaRepository<PerfilUsuario, S
     Optional<PerfilUsuario> findByUsuarioIdWithImagenes(@Param("usuarioId") String usuarioId);
 
     boolean existsByTelefono(String telefono);
+
+    @Modifying
+    @Query("DELETE FROM PerfilUsuario p WHERE p.usuario.id = :usuarioId")
+    int deleteByUsuarioId(@Param("usuarioId") String usuarioId);
 }
@@ -6,13 +6,34 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface RepositorioImagenPerro extends JpaRepository<ImagenPerro, String> {
+public interface RepositorioImagenPerro extends JpaRepository<ImagenPerro, String>, RepositorioImagenPerroInsercion {
     List<ImagenPerro> findByPerro_Id(String perroId);
 
+    long countByPerro_Id(String perroId);
+
+    boolean existsByPerro_IdAndPrincipalTrue(String perroId);
+
+    // Carga en lote las imágenes de varios perros (una sola consulta)
+    @Query("SELECT i FROM ImagenPerro i WHERE i.perro.id IN :perroIds")
+    List<ImagenPerro> findByPerroIdIn(@Param("perroIds") Collection<String> perroIds);
+
     @Modifying
     @Query("update ImagenPerro i set i.principal=false where i.perro.id=:perroId and i.principal=true")
     int clearPrincipal(@Param("perroId") String perroId);
+
+    // Recolector de huérfanas: cuáles de los ids listados en el storage siguen referenciados
+    @Query("SELECT i.id FROM ImagenPerro i WHERE i.id IN :ids")
+    List<String> findIdsExistentes(@Param("ids") Collection<String> ids);
+
+    // Borrado masivo de usuario: ids para el storage y DELETE de todas las imágenes de sus perros
+    @Query("SELECT i.id FROM ImagenPerro i WHERE i.perro.usuario.id = :usuarioId")
+    List<String> findIdsByUsuarioId(@Param("usuarioId") String usuarioId);
+
+    @Modifying
+    @Query("DELETE FROM ImagenPerro i WHERE i.perro.id IN (SELECT p.id FROM Perro p WHERE p.usuario.id = :usuarioId)")
+    int deleteByUsuarioId(@Param("usuarioId") String usuarioId);
 }
@@ -0,0 +1,13 @@
+package com.cut.cardona.modelo.perros;
+
+import java.util.Collection;
+
+/**
+ * Alta de imágenes recién subidas. Su id lo asigna el storage, así que save() haría merge (un SELECT por fila)
+ * y los INSERT no irían en lote; aquí se persisten directamente. Solo para filas nuevas: un id ya existente
+ * falla por clave duplicada en lugar de sobrescribir.
+ */
+public interface RepositorioImagenPerroInsercion {
+
+    void insertar(Collection<ImagenPerro> imagenes);
+}
@@ -0,0 +1,19 @@
+package com.cut.cardona.modelo.perros;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+
+class RepositorioImagenPerroInsercionImpl implements RepositorioImagenPerroInsercion {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    @Transactional
+    public void insertar(Collection<ImagenPerro> imagenes) {
+        imagenes.forEach(em::persist);
+    }
+}
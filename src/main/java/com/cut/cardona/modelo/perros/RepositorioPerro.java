@@ -2,37 +2,57 @@ package com.cut.cardona.modelo.perros;
 
 import com.cut.cardona.modelo.perros.enums.PerroEstadoAdopcion;
 import com.cut.cardona.modelo.perros.enums.PerroEstadoRevision;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface RepositorioPerro extends JpaRepository<Perro, String> {
 
-    @Query("SELECT p FROM Perro p WHERE p.estadoRevision = com.cut.cardona.modelo.perros.enums.PerroEstadoRevision.APROBADO AND p.estadoAdopcion = com.cut.cardona.modelo.perros.enums.PerroEstadoAdopcion.DISPONIBLE")
-    List<Perro> findCatalogoPublico();
+    // Los listados que construyen DtoPerro cargan las imágenes en la misma consulta (evita N+1).
+    // Excepción: findCatalogoPublico, cuyas imágenes carga en lote CatalogoPerrosCache.
 
-    @Query(value = "SELECT p FROM Perro p WHERE p.estadoRevision = com.cut.cardona.modelo.perros.enums.PerroEstadoRevision.APROBADO AND p.estadoAdopcion = com.cut.cardona.modelo.perros.enums.PerroEstadoAdopcion.DISPONIBLE AND (:sexo IS NULL OR p.sexo = :sexo) AND (:tamano IS NULL OR p.tamano = :tamano) AND (:ubicacion IS NULL OR p.ubicacion LIKE CONCAT('%', :ubicacion, '%')) ORDER BY p.fechaPublicacion DESC",
-           countQuery = "SELECT COUNT(p) FROM Perro p WHERE p.estadoRevision = com.cut.cardona.modelo.perros.enums.PerroEstadoRevision.APROBADO AND p.estadoAdopcion = com.cut.cardona.modelo.perros.enums.PerroEstadoAdopcion.DISPONIBLE AND (:sexo IS NULL OR p.sexo = :sexo) AND (:tamano IS NULL OR p.tamano = :tamano) AND (:ubicacion IS NULL OR p.ubicacion LIKE CONCAT('%', :ubicacion, '%'))")
-    Page<Perro> findCatalogoPublicoFiltrado(@Param("sexo") String sexo,
-                                            @Param("tamano") String tamano,
-                                            @Param("ubicacion") String ubicacion,
-                                            Pageable pageable);
+    // Ordenado como idx_perro_catalogo_keyset (V8) para que el índice resuelva filtro y orden
+    @Query("SELECT p FROM Perro p WHERE p.estadoRevision = com.cut.cardona.modelo.perros.enums.PerroEstadoRevision.APROBADO AND p.estadoAdopcion = com.cut.cardona.modelo.perros.enums.PerroEstadoAdopcion.DISPONIBLE ORDER BY p.fechaPublicacion DESC, p.id DESC")
+    List<Perro> findCatalogoPublico();
 
+    @EntityGraph(attributePaths = "imagenes")
     @Query("SELECT p FROM Perro p WHERE p.usuario.id = :usuarioId")
     List<Perro> findByUsuarioId(@Param("usuarioId") String usuarioId);
 
+    @EntityGraph(attributePaths = "imagenes")
     @Query("SELECT p FROM Perro p WHERE p.estadoRevision = com.cut.cardona.modelo.perros.enums.PerroEstadoRevision.PENDIENTE")
     List<Perro> findPendientesRevision();
 
+    @EntityGraph(attributePaths = "imagenes")
+    @Query("SELECT p FROM Perro p")
+    List<Perro> findAllConImagenes();
+
     @Query("SELECT p FROM Perro p WHERE p.estadoAdopcion = :estado")
     List<Perro> findByEstadoAdopcion(@Param("estado") PerroEstadoAdopcion estado);
 
     // Nuevo: búsqueda por estado de revisión (derivable pero lo declaramos explícito por consistencia)
+    @EntityGraph(attributePaths = "imagenes")
     List<Perro> findByEstadoRevision(PerroEstadoRevision estado);
+
+    // Bloquea la fila hasta el fin de la transacción: las asociaciones de imágenes del mismo perro cuentan
+    // contra el límite una tras otra
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Perro p WHERE p.id = :id")
+    Optional<Perro> findByIdParaActualizar(@Param("id") String id);
+
+    @Query("SELECT p.id FROM Perro p WHERE p.usuario.id = :usuarioId")
+    List<String> findIdsByUsuarioId(@Param("usuarioId") String usuarioId);
+
+    @Modifying
+    @Query("DELETE FROM Perro p WHERE p.usuario.id = :usuarioId")
+    int deleteByUsuarioId(@Param("usuarioId") String usuarioId);
 }
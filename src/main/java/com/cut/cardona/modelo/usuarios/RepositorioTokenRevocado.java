@@ -0,0 +1,22 @@
+package com.cut.cardona.modelo.usuarios;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Repository
+public interface RepositorioTokenRevocado extends JpaRepository<TokenRevocado, String> {
+
+    List<TokenRevocado> findByRevocadoEnGreaterThanEqualAndExpiraEnAfter(Timestamp desde, Timestamp ahora);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM TokenRevocado t WHERE t.expiraEn <= :ahora")
+    int deleteExpirados(@Param("ahora") Timestamp ahora);
+}
@@ -1,6 +1,7 @@
 package com.cut.cardona.modelo.usuarios;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -20,7 +21,8 @@ public interface RepositorioUsuario extends JpaRepository<Usuario, String> {
 
     Optional<Usuario> findByEmail(String email);  // ✅ Cambiado a Optional<Usuario> para consistencia
 
-
-
-
+    // DELETE directo, sin cargar la entidad (las FKs de revisado_por pasan a NULL en la base)
+    @Modifying
+    @Query("DELETE FROM Usuario u WHERE u.id = :id")
+    int eliminarPorId(@Param("id") String id);
 }
@@ -1,12 +1,38 @@
 package com.cut.cardona.modelo.usuarios;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RepositorioVerificationToken extends JpaRepository<VerificationToken, String> {
     Optional<VerificationToken> findByToken(String token);
     long deleteByUsuario_IdAndCanalAndUsadoEnIsNull(String usuarioId, VerificationChannel canal);
+
+    // Borrado masivo por usuario (usa el índice por usuario_id)
+    @Modifying
+    @Query("DELETE FROM VerificationToken t WHERE t.usuario.id = :usuarioId")
+    int deleteByUsuarioId(@Param("usuarioId") String usuarioId);
+
+    // Purga por lotes: ids caducados sin usar o usados antes del límite de retención (índices por expira_en /
+    // usado_en) y borrado por id. Un token usado se conserva durante la retención aunque ya haya caducado
+    @Query("SELECT t.id FROM VerificationToken t WHERE t.expiraEn < :ahora AND t.usadoEn IS NULL")
+    List<String> findIdsExpirados(@Param("ahora") Timestamp ahora, Pageable pageable);
+
+    @Query("SELECT t.id FROM VerificationToken t WHERE t.usadoEn < :limite")
+    List<String> findIdsUsados(@Param("limite") Timestamp limite, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM VerificationToken t WHERE t.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<String> ids);
 }
@@ -0,0 +1,48 @@
+package com.cut.cardona.modelo.usuarios;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.sql.Timestamp;
+import java.util.Objects;
+
+@Entity
+@Table(name = "tokens_revocados")
+@Getter
+@Setter
+@NoArgsConstructor
+public class TokenRevocado {
+
+    @Id
+    @Column(name = "jti", columnDefinition = "CHAR(36)")
+    private String jti;
+
+    @Column(name = "usuario_id", columnDefinition = "CHAR(36)")
+    private String usuarioId;
+
+    @Column(name = "expira_en", nullable = false)
+    private Timestamp expiraEn;
+
+    @Column(name = "revocado_en", nullable = false)
+    private Timestamp revocadoEn;
+
+    @PrePersist
+    private void prePersist() {
+        if (this.revocadoEn == null) this.revocadoEn = new Timestamp(System.currentTimeMillis());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TokenRevocado that = (TokenRevocado) o;
+        return Objects.equals(jti, that.jti);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(jti);
+    }
+}
@@ -0,0 +1,21 @@
+package com.cut.cardona.security;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Almacenamiento persistente y compartido de tokens revocados.
+ * RevocacionTokens mantiene la copia en memoria; este almacén la hace sobrevivir a reinicios y la reparte entre nodos.
+ */
+public interface AlmacenRevocaciones {
+
+    record Revocacion(String jti, Instant expira) {}
+
+    void guardar(String jti, String usuarioId, Instant expira);
+
+    /** Revocaciones registradas desde el instante indicado que aún no han caducado. */
+    List<Revocacion> revocadasDesde(Instant desde);
+
+    /** Elimina las revocaciones de tokens ya caducados; devuelve cuántas se borraron. */
+    int purgarCaducadas();
+}
@@ -0,0 +1,41 @@
+package com.cut.cardona.security;
+
+import com.cut.cardona.modelo.usuarios.RepositorioTokenRevocado;
+import com.cut.cardona.modelo.usuarios.TokenRevocado;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+/** Almacén de revocaciones sobre la tabla tokens_revocados. */
+@Component
+@RequiredArgsConstructor
+public class AlmacenRevocacionesJpa implements AlmacenRevocaciones {
+
+    private final RepositorioTokenRevocado repositorioTokenRevocado;
+
+    @Override
+    public void guardar(String jti, String usuarioId, Instant expira) {
+        TokenRevocado t = new TokenRevocado();
+        t.setJti(jti);
+        t.setUsuarioId(usuarioId);
+        t.setExpiraEn(Timestamp.from(expira));
+        repositorioTokenRevocado.save(t);
+    }
+
+    @Override
+    public List<Revocacion> revocadasDesde(Instant desde) {
+        return repositorioTokenRevocado
+                .findByRevocadoEnGreaterThanEqualAndExpiraEnAfter(Timestamp.from(desde), Timestamp.from(Instant.now()))
+                .stream()
+                .map(t -> new Revocacion(t.getJti(), t.getExpiraEn().toInstant()))
+                .toList();
+    }
+
+    @Override
+    public int purgarCaducadas() {
+        return repositorioTokenRevocado.deleteExpirados(Timestamp.from(Instant.now()));
+    }
+}
@@ -0,0 +1,78 @@
+package com.cut.cardona.security;
+
+import com.cut.cardona.modelo.usuarios.RepositorioUsuario;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché de principales autenticados por subject del JWT.
+ * Evita consultar la tabla usuarios en cada petición autenticada; las entradas caducan tras un TTL corto
+ * y se invalidan explícitamente con {@link UsuarioModificadoEvent} (después del commit) al cambiar rol,
+ * activación, contraseña o al eliminar el usuario. Los subjects inexistentes no se cachean.
+ */
+@Component
+@Slf4j
+public class CachePrincipales {
+
+    private record Entrada(CustomUserDetails principal, long expiraNanos) {}
+
+    private final RepositorioUsuario repositorioUsuario;
+    private final long ttlNanos;
+    private final int maxEntradas;
+    private final ConcurrentHashMap<String, Entrada> entradas = new ConcurrentHashMap<>();
+
+    public CachePrincipales(
+            RepositorioUsuario repositorioUsuario,
+            @Value("${app.security.principal-cache.ttl-segundos:60}") long ttlSegundos,
+            @Value("${app.security.principal-cache.max-entradas:10000}") int maxEntradas) {
+        this.repositorioUsuario = repositorioUsuario;
+        this.ttlNanos = Duration.ofSeconds(Math.max(0, ttlSegundos)).toNanos();
+        this.maxEntradas = Math.max(0, maxEntradas);
+        log.info("CachePrincipales: ttl={}s maxEntradas={}", ttlSegundos, this.maxEntradas);
+    }
+
+    /** Principal del subject (userName o email): desde la caché si sigue vigente, si no desde la base de datos. */
+    public Optional<CustomUserDetails> obtener(String subject) {
+        if (subject == null) return Optional.empty();
+        long ahora = System.nanoTime();
+        Entrada e = entradas.get(subject);
+        if (e != null && ahora - e.expiraNanos() < 0) return Optional.of(e.principal());
+
+        Optional<CustomUserDetails> principal = repositorioUsuario.findByUserNameOrEmail(subject, subject)
+                .map(CustomUserDetails::new);
+        if (principal.isPresent() && ttlNanos > 0 && hayEspacio(ahora)) {
+            entradas.put(subject, new Entrada(principal.get(), ahora + ttlNanos));
+        } else if (e != null) {
+            entradas.remove(subject, e);
+        }
+        return principal;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUsuarioModificado(UsuarioModificadoEvent event) {
+        if (event == null || event.usuarioId() == null) return;
+        invalidarUsuario(event.usuarioId());
+    }
+
+    /** Quita todas las entradas del usuario (puede estar cacheado por userName y por email). */
+    public void invalidarUsuario(String usuarioId) {
+        entradas.values().removeIf(e -> usuarioId.equals(e.principal().getUsuario().getId()));
+    }
+
+    public void invalidarTodo() {
+        entradas.clear();
+    }
+
+    // Al llegar al límite se descartan las caducadas; si sigue lleno, simplemente no se cachea
+    private boolean hayEspacio(long ahora) {
+        if (entradas.size() < maxEntradas) return true;
+        entradas.values().removeIf(e -> ahora - e.expiraNanos() >= 0);
+        return entradas.size() < maxEntradas;
+    }
+}
@@ -1,5 +1,6 @@
 package com.cut.cardona.security;
 
+import com.cut.cardona.modelo.usuarios.Roles;
 import com.cut.cardona.modelo.usuarios.Usuario;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -10,17 +11,42 @@ public class CustomUserDetails implements UserDetails {
     private final Usuario usuario;
     private final String email;
     private final Collection<? extends GrantedAuthority> authorities;
+    private final boolean parcial;
 
     public CustomUserDetails(Usuario usuario) {
+        this(usuario, false);
+    }
+
+    private CustomUserDetails(Usuario usuario, boolean parcial) {
         this.usuario = usuario;
         this.email = usuario.getEmail();
         this.authorities = usuario.getAuthorities();
+        this.parcial = parcial;
+    }
+
+    /**
+     * Principal construido solo con los claims verificados del JWT (modo sin estado): el Usuario es transitorio
+     * y solo trae id, userName y rol. Quien necesite email u otros datos debe cargar la entidad por id.
+     */
+    public static CustomUserDetails desdeClaims(String id, String userName, Roles rol) {
+        Usuario usuario = new Usuario();
+        usuario.setId(id);
+        usuario.setUserName(userName);
+        usuario.setRol(rol);
+        usuario.setActivo(true);
+        usuario.setEmailVerificado(true);
+        return new CustomUserDetails(usuario, true);
     }
 
     public Usuario getUsuario() {
         return usuario;
     }
 
+    /** true si el principal viene de los claims del token y no de la base de datos. */
+    public boolean isParcial() {
+        return parcial;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
@@ -0,0 +1,53 @@
+package com.cut.cardona.security;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Pool acotado para la verificación de contraseñas (BCrypt), deliberadamente lenta y costosa en CPU.
+ * Una ráfaga de logins ocupa como mucho estos hilos y su cola en lugar de todos los hilos de Tomcat;
+ * con la cola llena se rechaza de inmediato (RejectedExecutionException) y el resto del tráfico sigue atendido.
+ */
+@Component
+@Slf4j
+public class EjecutorAutenticacion {
+
+    private final ThreadPoolExecutor executor;
+
+    public EjecutorAutenticacion(
+            @Value("${app.auth.hash.hilos:0}") int hilos,
+            @Value("${app.auth.hash.cola:64}") int cola) {
+        int n = hilos > 0 ? hilos : Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(Math.max(1, cola)), r -> {
+            Thread t = new Thread(r, "auth-hash-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("EjecutorAutenticacion: hilos={} cola={}", n, Math.max(1, cola));
+    }
+
+    /** Ejecuta la verificación en el pool; lanza RejectedExecutionException si está saturado. */
+    public <T> CompletableFuture<T> ejecutar(Supplier<T> tarea) {
+        try {
+            return CompletableFuture.supplyAsync(tarea, executor);
+        } catch (RejectedExecutionException ex) {
+            throw new RejectedExecutionException("Demasiados inicios de sesión en curso, reintenta en unos segundos");
+        }
+    }
+
+    @PreDestroy
+    void detener() {
+        executor.shutdown();
+    }
+}
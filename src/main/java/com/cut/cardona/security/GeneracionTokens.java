@@ -0,0 +1,49 @@
+package com.cut.cardona.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Generación de tokens por usuario, en memoria.
+ * Cada JWT lleva la generación vigente al emitirse (claim "gen"); cuando cambia el rol, la activación o la
+ * contraseña del usuario ({@link UsuarioModificadoEvent}) la generación sube y los tokens anteriores dejan de
+ * valer en el modo sin estado. Solo se guardan los usuarios modificados desde el arranque, así que un token emitido
+ * antes de arrancar este nodo no puede comprobarse aquí: {@link #emitidoTrasArranque} lo detecta y el filtro
+ * resuelve ese token contra la base de datos en lugar de fiarse de sus claims.
+ */
+@Component
+@Slf4j
+public class GeneracionTokens {
+
+    public static final String CLAIM = "gen";
+
+    private final ConcurrentHashMap<String, Integer> generaciones = new ConcurrentHashMap<>();
+    // iat va en segundos: un token del mismo segundo del arranque se trata como anterior
+    private final Instant arranque = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    public int actual(String usuarioId) {
+        if (usuarioId == null) return 0;
+        return generaciones.getOrDefault(usuarioId, 0);
+    }
+
+    public boolean vigente(String usuarioId, int generacionToken) {
+        return generacionToken >= actual(usuarioId);
+    }
+
+    /** true si el token se emitió con este nodo ya en marcha, es decir, con sus generaciones a la vista. */
+    public boolean emitidoTrasArranque(Instant emitido) {
+        return emitido != null && emitido.isAfter(arranque);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUsuarioModificado(UsuarioModificadoEvent event) {
+        if (event == null || event.usuarioId() == null) return;
+        int nueva = generaciones.merge(event.usuarioId(), 1, Integer::sum);
+        log.debug("Generación de tokens de {} -> {}", event.usuarioId(), nueva);
+    }
+}
@@ -0,0 +1,122 @@
+package com.cut.cardona.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lista de tokens revocados (por jti) con un filtro de Bloom delante.
+ * La consulta habitual, un token no revocado, se resuelve con unos pocos hashes sin tocar el mapa ni la base
+ * de datos; solo los positivos del filtro (revocados o falsos positivos) consultan el mapa. Cada entrada vive
+ * hasta la expiración del token. El {@link AlmacenRevocaciones} persiste las revocaciones y un hilo en segundo
+ * plano trae las de otros nodos, purga las caducadas y reconstruye el filtro, que no admite bajas.
+ */
+@Component
+@Slf4j
+public class RevocacionTokens {
+
+    private static final double FALSOS_POSITIVOS = 0.001;
+
+    private final AlmacenRevocaciones almacen;
+    private final Duration intervaloSync;
+    private final int capacidadInicial;
+    private final ConcurrentHashMap<String, Instant> revocados = new ConcurrentHashMap<>();
+    private volatile FiltroBloom filtro;
+    private volatile Instant ultimaSync;
+    private final ScheduledExecutorService sync = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "revocacion-tokens-sync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public RevocacionTokens(
+            AlmacenRevocaciones almacen,
+            @Value("${app.security.revocacion.sync-segundos:30}") long syncSegundos,
+            @Value("${app.security.revocacion.capacidad:10000}") int capacidad) {
+        this.almacen = almacen;
+        this.intervaloSync = Duration.ofSeconds(Math.max(1, syncSegundos));
+        this.capacidadInicial = Math.max(16, capacidad);
+        this.filtro = new FiltroBloom(capacidadInicial, FALSOS_POSITIVOS);
+    }
+
+    @PostConstruct
+    void iniciar() {
+        cargar(Instant.EPOCH);
+        long s = intervaloSync.toSeconds();
+        sync.scheduleWithFixedDelay(this::sincronizar, s, s, TimeUnit.SECONDS);
+        log.info("RevocacionTokens: {} revocados activos, sync cada {}s", revocados.size(), s);
+    }
+
+    @PreDestroy
+    void detener() {
+        sync.shutdownNow();
+    }
+
+    /** true si el token con ese jti fue revocado y aún no ha expirado. Los tokens sin jti no son revocables. */
+    public boolean revocado(String jti) {
+        if (jti == null || !filtro.puedeContener(jti)) return false;
+        Instant expira = revocados.get(jti);
+        return expira != null && Instant.now().isBefore(expira);
+    }
+
+    /** Revoca el token hasta su expiración: efecto inmediato en este nodo y persistido para el resto. */
+    public void revocar(String jti, String usuarioId, Instant expira) {
+        if (jti == null || expira == null || !Instant.now().isBefore(expira)) return;
+        registrar(jti, expira);
+        almacen.guardar(jti, usuarioId, expira);
+    }
+
+    private void registrar(String jti, Instant expira) {
+        if (revocados.put(jti, expira) == null) {
+            // Mismo monitor que reconstruirFiltro: el alta entra en el filtro actual antes de que una reconstrucción
+            // recorra el mapa, o espera y entra en el nuevo. Las consultas siguen sin bloqueo.
+            synchronized (this) {
+                filtro.agregar(jti);
+                if (revocados.size() > filtro.capacidad()) {
+                    reconstruirFiltro();
+                }
+            }
+        }
+    }
+
+    void sincronizar() {
+        try {
+            // Margen de un intervalo para tolerar desfase de reloj entre nodos; registrar es idempotente
+            cargar(ultimaSync.minus(intervaloSync));
+            Instant ahora = Instant.now();
+            if (revocados.values().removeIf(expira -> !ahora.isBefore(expira))) {
+                reconstruirFiltro();
+            }
+            almacen.purgarCaducadas();
+        } catch (Exception ex) {
+            log.warn("No se pudo sincronizar la lista de tokens revocados: {}", ex.getMessage());
+        }
+    }
+
+    private void cargar(Instant desde) {
+        Instant inicio = Instant.now();
+        try {
+            almacen.revocadasDesde(desde).forEach(r -> registrar(r.jti(), r.expira()));
+            ultimaSync = inicio;
+        } catch (Exception ex) {
+            if (ultimaSync == null) ultimaSync = Instant.EPOCH;
+            log.warn("No se pudieron cargar los tokens revocados: {}", ex.getMessage());
+        }
+    }
+
+    // Filtro nuevo con holgura para lo vigente; se llena antes de publicarlo, así nunca da falsos negativos
+    private synchronized void reconstruirFiltro() {
+        FiltroBloom nuevo = new FiltroBloom(Math.max(capacidadInicial, revocados.size() * 2), FALSOS_POSITIVOS);
+        revocados.keySet().forEach(nuevo::agregar);
+        filtro = nuevo;
+    }
+}
@@ -81,6 +81,9 @@ public class SecurityConfiguration {
         configuration.setAllowedOriginPatterns(allowedOrigins);
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH", "HEAD"));
         configuration.setAllowedHeaders(List.of("*"));
+        // Cabeceras que el frontend lee: subidas por partes (Location / Upload-*) y límites de peticiones
+        configuration.setExposedHeaders(List.of("Location", "Upload-Offset", "Upload-Length", "Retry-After",
+                "RateLimit-Limit", "RateLimit-Remaining", "RateLimit-Reset", "RateLimit-Policy"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
 
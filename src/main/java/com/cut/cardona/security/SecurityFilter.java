@@ -1,29 +1,40 @@
 package com.cut.cardona.security;
 
-import com.cut.cardona.modelo.usuarios.RepositorioUsuario;
-import com.cut.cardona.modelo.usuarios.Usuario;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.cut.cardona.modelo.usuarios.Roles;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Date;
 import java.util.Optional;
 
 @Component
-@RequiredArgsConstructor // ✅ Constructor injection automático
 public class SecurityFilter extends OncePerRequestFilter {
 
     // ✅ Constructor injection - inmutable y testeable
     private final TokenService tokenService;
-    private final RepositorioUsuario repositorioUsuario;
+    private final CachePrincipales cachePrincipales;
+    private final GeneracionTokens generacionTokens;
+    // Modo sin estado: el principal sale de los claims verificados, sin acceder a la base de datos
+    private final boolean sinEstado;
+
+    public SecurityFilter(TokenService tokenService,
+                          CachePrincipales cachePrincipales,
+                          GeneracionTokens generacionTokens,
+                          @Value("${app.security.jwt.stateless:false}") boolean sinEstado) {
+        this.tokenService = tokenService;
+        this.cachePrincipales = cachePrincipales;
+        this.generacionTokens = generacionTokens;
+        this.sinEstado = sinEstado;
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
@@ -32,13 +43,16 @@ public class SecurityFilter extends OncePerRequestFilter {
 
         if (authHeader != null) {
             String token = authHeader.replace("Bearer ", "");
-            String subject = tokenService.getSubject(token);
+            DecodedJWT jwt = tokenService.decodificar(token);
+            String subject = jwt != null ? jwt.getSubject() : null;
 
             if (subject != null){
-                // ✅ Usar el código corregido que estaba comentado
-                Optional<Usuario> usuario = repositorioUsuario.findByUserNameOrEmail(subject, subject);
-                if (usuario.isPresent()){
-                    CustomUserDetails userDetails = new CustomUserDetails(usuario.get());
+                // Sin estado: claims + generación en memoria; si no, principal cacheado por subject
+                Optional<CustomUserDetails> principal = sinEstado
+                        ? principalDesdeClaims(jwt)
+                        : cachePrincipales.obtener(subject);
+                if (principal.isPresent()){
+                    CustomUserDetails userDetails = principal.get();
                     var authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                     SecurityContextHolder.getContext().setAuthentication(authentication);
                 }
@@ -49,4 +63,26 @@ public class SecurityFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
 
     }
+
+    /**
+     * Principal a partir de los claims id/roles. Un token de una generación anterior (rol cambiado, usuario
+     * desactivado o contraseña reseteada) no autentica. Los tokens sin claims de usuario y los emitidos antes de
+     * arrancar este nodo (sus generaciones previas se perdieron) usan la caché.
+     */
+    private Optional<CustomUserDetails> principalDesdeClaims(DecodedJWT jwt) {
+        String id = jwt.getClaim("id").asString();
+        String rol = jwt.getClaim("roles").asString();
+        if (id == null || rol == null) return cachePrincipales.obtener(jwt.getSubject());
+        Date emitido = jwt.getIssuedAt();
+        if (!generacionTokens.emitidoTrasArranque(emitido != null ? emitido.toInstant() : null)) {
+            return cachePrincipales.obtener(jwt.getSubject());
+        }
+        Integer generacion = jwt.getClaim(GeneracionTokens.CLAIM).asInt();
+        if (!generacionTokens.vigente(id, generacion != null ? generacion : 0)) return Optional.empty();
+        try {
+            return Optional.of(CustomUserDetails.desdeClaims(id, jwt.getSubject(), Roles.valueOf(rol)));
+        } catch (IllegalArgumentException ex) {
+            return Optional.empty();
+        }
+    }
 }
@@ -13,24 +13,63 @@ import org.springframework.stereotype.Service;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-
+import java.util.Date;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Emisión y verificación de JWT.
+ * Algorithm y JWTVerifier son inmutables y seguros entre hilos: se construyen una vez al arrancar.
+ * Los tokens verificados recientemente se guardan en una caché concurrente acotada (jti -> token y claims) hasta
+ * su expiración, de modo que las peticiones repetidas con el mismo token no vuelven a comprobar la firma ni
+ * compiten por un lock.
+ */
 @Service
 public class TokenService {
 
-    @Value("${app.security.jwt.secret:changeit}")
-    private String apiSecret;
+    private final String issuer;
+    private final Algorithm algorithm;
+    private final JWTVerifier verifier;
+    private final GeneracionTokens generacionTokens;
+    private final RevocacionTokens revocacionTokens;
 
-    @Value("${app.security.jwt.issuer:perritoscutapp}")
-    private String issuer;
+    // Clave jti; un acierto exige además que el token guardado sea idéntico al recibido
+    private final ConcurrentHashMap<String, Verificado> verificados = new ConcurrentHashMap<>();
+    private final int maxVerificados;
+
+    private record Verificado(String token, DecodedJWT jwt, long expiraMs) {
+        boolean expirado(long ahora) {
+            return ahora >= expiraMs;
+        }
+    }
+
+    public TokenService(
+            GeneracionTokens generacionTokens,
+            RevocacionTokens revocacionTokens,
+            @Value("${app.security.jwt.secret:changeit}") String apiSecret,
+            @Value("${app.security.jwt.issuer:perritoscutapp}") String issuer,
+            @Value("${app.security.jwt.cache-verificados:1024}") int maxVerificados) {
+        this.generacionTokens = generacionTokens;
+        this.revocacionTokens = revocacionTokens;
+        this.issuer = issuer;
+        this.algorithm = Algorithm.HMAC256(apiSecret);
+        this.verifier = JWT.require(algorithm)
+                .withIssuer(issuer)
+                .build();
+        this.maxVerificados = Math.max(0, maxVerificados);
+    }
 
     public String generarToken(Usuario usuario) {
         try {
-            Algorithm algorithm = Algorithm.HMAC256(apiSecret);
             return JWT.create()
                     .withIssuer(issuer)
+                    .withJWTId(UUID.randomUUID().toString())
+                    .withIssuedAt(new Date())
                     .withSubject(usuario.getUsername())
                     .withClaim("roles", usuario.getRol().toString())
                     .withClaim("id", String.valueOf(usuario.getId()))
+                    .withClaim(GeneracionTokens.CLAIM, generacionTokens.actual(usuario.getId()))
                     .withExpiresAt(generarFechaDeExpiacion())
                     .sign(algorithm);
         } catch (JWTCreationException exception) {
@@ -39,16 +78,62 @@ public class TokenService {
 
     }
 
+    /** Subject de un token válido y no revocado, o null en cualquier otro caso (mismo criterio que decodificar). */
     public String getSubject(String token) {
+        DecodedJWT jwt = decodificar(token);
+        return jwt != null ? jwt.getSubject() : null;
+    }
+
+    /**
+     * Verifica firma, emisor y expiración sin lanzar excepciones: devuelve el token decodificado o null si no es
+     * válido o está revocado. Es el camino del filtro, donde un token malo o caducado es habitual y no debe
+     * costar una traza.
+     */
+    public DecodedJWT decodificar(String token) {
+        if (token == null || token.isBlank()) return null;
+        DecodedJWT jwt;
         try {
-            Algorithm algorithm = Algorithm.HMAC256(apiSecret);
-            JWTVerifier verifier  = JWT.require(algorithm)
-                    .withIssuer(issuer)
-                    .build();
-            DecodedJWT decodedJWT = verifier.verify(token);
-            return decodedJWT.getSubject();
+            jwt = buscarVerificado(token);
+            if (jwt == null) {
+                jwt = verifier.verify(token);
+                guardarVerificado(token, jwt);
+            }
         } catch (JWTVerificationException exception) {
-            throw  new RuntimeException("token invalido");
+            return null;
+        }
+        return revocacionTokens.revocado(jwt.getId()) ? null : jwt;
+    }
+
+    // Decodificar sin verificar solo sirve para obtener el jti; el acierto se confirma comparando el token entero
+    private DecodedJWT buscarVerificado(String token) {
+        if (maxVerificados == 0) return null;
+        String jti = JWT.decode(token).getId();
+        if (jti == null) return null;
+        Verificado v = verificados.get(jti);
+        if (v == null || !v.token().equals(token)) return null;
+        if (v.expirado(System.currentTimeMillis())) {
+            verificados.remove(jti, v);
+            return null;
+        }
+        return v.jwt();
+    }
+
+    private void guardarVerificado(String token, DecodedJWT jwt) {
+        if (maxVerificados == 0 || jwt.getId() == null) return;
+        Instant expira = jwt.getExpiresAtAsInstant();
+        long expiraMs = expira != null ? expira.toEpochMilli() : Long.MAX_VALUE;
+        if (verificados.size() >= maxVerificados) hacerSitio();
+        verificados.put(jwt.getId(), new Verificado(token, jwt, expiraMs));
+    }
+
+    // Primero los expirados; si no basta, una entrada cualquiera. El límite es aproximado bajo concurrencia
+    private void hacerSitio() {
+        long ahora = System.currentTimeMillis();
+        verificados.values().removeIf(v -> v.expirado(ahora));
+        Iterator<String> it = verificados.keySet().iterator();
+        while (verificados.size() >= maxVerificados && it.hasNext()) {
+            it.next();
+            it.remove();
         }
     }
 
@@ -62,12 +147,14 @@ public class TokenService {
 
     public String generarRefreshToken(Usuario usuario) {
         try {
-            Algorithm algorithm = Algorithm.HMAC256(apiSecret);
             return JWT.create()
                     .withIssuer(issuer)
+                    .withJWTId(UUID.randomUUID().toString())
+                    .withIssuedAt(new Date())
                     .withSubject(usuario.getUsername())
                     .withClaim("roles", usuario.getRol().toString())
                     .withClaim("id", String.valueOf(usuario.getId()))
+                    .withClaim(GeneracionTokens.CLAIM, generacionTokens.actual(usuario.getId()))
                     .withExpiresAt(generarFechaDeExpiacionRefreshToken())
                     .sign(algorithm);
         } catch (JWTCreationException exception) {
@@ -90,8 +177,14 @@ public class TokenService {
         return fechaExpiracion.toInstant(zonaHoraria.getRules().getOffset(fechaExpiracion)).toEpochMilli();
     }
 
+    /** Revoca el token (logout o token comprometido) hasta su expiración; los tokens inválidos se ignoran. */
     public void revokeToken(String token) {
-        // TODO: Implementar blacklist de tokens revocados
+        if (token == null) return;
+        String limpio = token.startsWith("Bearer ") ? token.substring(7) : token;
+        DecodedJWT jwt = decodificar(limpio);
+        if (jwt == null) return;
+        revocacionTokens.revocar(jwt.getId(), jwt.getClaim("id").asString(), jwt.getExpiresAtAsInstant());
+        if (jwt.getId() != null) verificados.remove(jwt.getId());
     }
 
     // Método alias para compatibilidad
@@ -0,0 +1,8 @@
+package com.cut.cardona.security;
+
+/**
+ * Evento publicado cuando cambia algo de un usuario que afecta a su autenticación
+ * (rol, activación, contraseña, verificación de email, datos del perfil o eliminación).
+ */
+public record UsuarioModificadoEvent(String usuarioId) {
+}
@@ -0,0 +1,18 @@
+package com.cut.cardona.security.ratelimit;
+
+/**
+ * Estado de los límites por clave. La implementación local vive en memoria de cada instancia; una implementación
+ * compartida (p.ej. sobre Redis con la misma lógica GCRA en un script atómico) da límites coherentes entre réplicas.
+ */
+public interface AlmacenLimites {
+
+    /**
+     * @param permitido         si la petición entra en el límite (y se consumió un token)
+     * @param restantes         peticiones que aún caben de inmediato
+     * @param resetSegundos     segundos hasta que el cupo esté completo de nuevo
+     * @param reintentarSegundos con la petición rechazada, segundos hasta que vuelva a haber cupo
+     */
+    record Resultado(boolean permitido, long restantes, long resetSegundos, long reintentarSegundos) {}
+
+    Resultado consumir(String clave, long capacidad, long periodoSegundos);
+}
@@ -0,0 +1,77 @@
+package com.cut.cardona.security.ratelimit;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Límites en memoria con GCRA (equivalente a un token bucket): el estado de cada clave es un único instante,
+ * el TAT (theoretical arrival time), que se actualiza con CAS sin bloqueos.
+ * Una clave cuyo TAT ya pasó tiene el cupo completo, así que es indistinguible de una nueva: un hilo en segundo
+ * plano las elimina y el mapa solo contiene las claves con actividad dentro de su periodo.
+ */
+@Component
+@Slf4j
+public class AlmacenLimitesLocal implements AlmacenLimites {
+
+    private final ConcurrentHashMap<String, AtomicLong> tats = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService limpieza = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ratelimit-limpieza");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public AlmacenLimitesLocal(@Value("${app.ratelimit.limpieza-segundos:60}") long limpiezaSegundos) {
+        long s = Math.max(1, limpiezaSegundos);
+        limpieza.scheduleWithFixedDelay(this::expulsarInactivas, s, s, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void detener() {
+        limpieza.shutdownNow();
+    }
+
+    @Override
+    public Resultado consumir(String clave, long capacidad, long periodoSegundos) {
+        long periodo = TimeUnit.SECONDS.toMicros(periodoSegundos);
+        long intervalo = Math.max(1, periodo / capacidad);
+        AtomicLong tat = tats.computeIfAbsent(clave, k -> new AtomicLong());
+        while (true) {
+            long ahora = ahoraMicros();
+            long actual = tat.get();
+            long nuevo = Math.max(actual, ahora) + intervalo;
+            if (nuevo - ahora > periodo) {
+                return new Resultado(false, 0, segundos(actual - ahora), Math.max(1, segundos(nuevo - periodo - ahora)));
+            }
+            if (tat.compareAndSet(actual, nuevo)) {
+                return new Resultado(true, (periodo - (nuevo - ahora)) / intervalo, segundos(nuevo - ahora), 0);
+            }
+        }
+    }
+
+    int claves() {
+        return tats.size();
+    }
+
+    private void expulsarInactivas() {
+        long ahora = ahoraMicros();
+        int antes = tats.size();
+        tats.values().removeIf(t -> t.get() <= ahora);
+        log.debug("Rate limit: {} claves inactivas expulsadas, {} activas", antes - tats.size(), tats.size());
+    }
+
+    private static long ahoraMicros() {
+        return TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    }
+
+    private static long segundos(long micros) {
+        return micros <= 0 ? 0 : (micros + 999_999) / 1_000_000;
+    }
+}
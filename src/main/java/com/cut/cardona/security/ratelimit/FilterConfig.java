@@ -7,12 +7,13 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class FilterConfig {
 
+    // Registra el bean (no una instancia nueva): así el filtro se aplica una sola vez y con su configuración
     @Bean
-    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration() {
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter rateLimitFilter) {
         FilterRegistrationBean<RateLimitFilter> registrationBean = new FilterRegistrationBean<>();
-        registrationBean.setFilter(new RateLimitFilter());
+        registrationBean.setFilter(rateLimitFilter);
         registrationBean.addUrlPatterns("/*"); // Aplicar el filtro a todas las rutas
-        registrationBean.setOrder(1); // Orden del filtro (prioridad)
+        registrationBean.setOrder(1); // Después de Spring Security (-100): el usuario ya está autenticado
         return registrationBean;
     }
 }
@@ -0,0 +1,42 @@
+package com.cut.cardona.security.ratelimit;
+
+import org.springframework.util.AntPathMatcher;
+
+import java.util.List;
+
+/**
+ * Política de límite para un grupo de rutas: {@code capacidad} peticiones por {@code periodoSegundos},
+ * con ráfagas de hasta la capacidad completa. Se define como "capacidad/segundos" (p.ej. "10/60").
+ * porUsuario=true agrupa por usuario autenticado (o IP si es anónimo); false siempre por IP.
+ */
+record PoliticaLimite(String nombre, String metodo, List<String> patrones, boolean porUsuario,
+                      long capacidad, long periodoSegundos) {
+
+    private static final AntPathMatcher MATCHER = new AntPathMatcher();
+
+    static PoliticaLimite de(String nombre, String metodo, List<String> patrones, boolean porUsuario, String definicion) {
+        String[] partes = definicion.trim().split("/");
+        if (partes.length != 2) {
+            throw new IllegalArgumentException("Política de rate limit '" + nombre + "' inválida (capacidad/segundos): " + definicion);
+        }
+        long capacidad = Long.parseLong(partes[0].trim());
+        long segundos = Long.parseLong(partes[1].trim());
+        if (capacidad <= 0 || segundos <= 0) {
+            throw new IllegalArgumentException("Política de rate limit '" + nombre + "' inválida: " + definicion);
+        }
+        return new PoliticaLimite(nombre, metodo, patrones, porUsuario, capacidad, segundos);
+    }
+
+    boolean aplica(String metodoPeticion, String ruta) {
+        if (metodo != null && !metodo.equalsIgnoreCase(metodoPeticion)) return false;
+        for (String p : patrones) {
+            if (MATCHER.match(p, ruta)) return true;
+        }
+        return false;
+    }
+
+    /** Valor de la cabecera RateLimit-Policy, p.ej. "10;w=60". */
+    String cabecera() {
+        return capacidad + ";w=" + periodoSegundos;
+    }
+}
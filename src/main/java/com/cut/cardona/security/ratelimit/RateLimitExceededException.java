@@ -1,8 +0,0 @@
-package com.cut.cardona.security.ratelimit;
-
-public class RateLimitExceededException extends RuntimeException {
-    public RateLimitExceededException(String message) {
-        super(message);
-    }
-}
-
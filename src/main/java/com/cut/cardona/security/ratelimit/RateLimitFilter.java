@@ -4,61 +4,101 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.time.Instant;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.List;
 
+/**
+ * Limita peticiones por ruta con las políticas configuradas en app.ratelimit.*; la primera política que
+ * coincide con método y ruta es la que se aplica. Las rutas sensibles (login, recuperación, registro) se
+ * limitan por IP; subidas y el resto, por usuario autenticado o por IP si es anónimo.
+ * Responde con cabeceras RateLimit-Limit/Remaining/Reset/Policy y, al superar el límite, 429 con Retry-After.
+ * Se registra en FilterConfig después de Spring Security, para conocer al usuario autenticado.
+ */
 @Component
+@Slf4j
 public class RateLimitFilter extends OncePerRequestFilter {
 
-    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
+    private static final String CUERPO_429 = "{\"success\":false,\"mensaje\":\"Demasiadas solicitudes, intenta de nuevo más tarde\"}";
 
-    private final int MAX_REQUESTS = 50000000; // Máximo número de solicitudes permitidas
-    private final long TIME_WINDOW = 60 * 1000; // Ventana de tiempo en milisegundos (1 minuto)
+    private final AlmacenLimites almacen;
+    private final boolean habilitado;
+    private final List<PoliticaLimite> politicas;
 
-    private final ConcurrentHashMap<String, RequestInfo> requestMap = new ConcurrentHashMap<>();
+    public RateLimitFilter(
+            AlmacenLimites almacen,
+            @Value("${app.ratelimit.enabled:true}") boolean habilitado,
+            @Value("${app.ratelimit.login:10/60}") String login,
+            @Value("${app.ratelimit.recuperacion:5/300}") String recuperacion,
+            @Value("${app.ratelimit.registro:10/600}") String registro,
+            @Value("${app.ratelimit.subidas:30/60}") String subidas,
+            @Value("${app.ratelimit.general:600/60}") String general) {
+        this.almacen = almacen;
+        this.habilitado = habilitado;
+        this.politicas = List.of(
+                PoliticaLimite.de("login", "POST", List.of("/api/login"), false, login),
+                PoliticaLimite.de("recuperacion", "POST", List.of("/api/forgot", "/api/reset", "/api/verify/**"), false, recuperacion),
+                PoliticaLimite.de("registro", "POST", List.of("/api/registro", "/api/registro-completo"), false, registro),
+                // Solo la creación de subidas por partes: las partes (PATCH) de una misma subida caen en la general
+                PoliticaLimite.de("subidas", "POST", List.of("/api/imagenes/**", "/api/usuarios/me/foto", "/api/perfil/imagen",
+                        "/api/usuario/adopciones/solicitudes", "/api/usuario/adopciones/solicitudes/desde-subida",
+                        "/api/subidas"), true, subidas),
+                PoliticaLimite.de("general", null, List.of("/**"), true, general));
+        log.info("RateLimitFilter: habilitado={} login={} recuperacion={} registro={} subidas={} general={}",
+                habilitado, login, recuperacion, registro, subidas, general);
+    }
 
     @Override
-    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws IOException, ServletException {
-        String clientIp = request.getRemoteAddr();
-        long currentTime = Instant.now().toEpochMilli();
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Los preflight CORS no cuentan
+        return !habilitado || "OPTIONS".equalsIgnoreCase(request.getMethod());
+    }
 
-        requestMap.compute(clientIp, (ip, info) -> {
-            if (info == null || currentTime - info.startTime > TIME_WINDOW) {
-                return new RequestInfo(currentTime, new AtomicInteger(1));
-            } else {
-                info.requestCount.incrementAndGet();
-                return info;
-            }
-        });
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws IOException, ServletException {
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        PoliticaLimite politica = politicas.stream()
+                .filter(p -> p.aplica(request.getMethod(), ruta))
+                .findFirst()
+                .orElse(null);
+        if (politica == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
 
-        RequestInfo info = requestMap.get(clientIp);
-        if (info.requestCount.get() > MAX_REQUESTS) {
+        AlmacenLimites.Resultado r = almacen.consumir(clave(politica, request), politica.capacidad(), politica.periodoSegundos());
+        response.setHeader("RateLimit-Policy", politica.cabecera());
+        response.setHeader("RateLimit-Limit", String.valueOf(politica.capacidad()));
+        response.setHeader("RateLimit-Remaining", String.valueOf(r.restantes()));
+        response.setHeader("RateLimit-Reset", String.valueOf(r.resetSegundos()));
+        if (!r.permitido()) {
+            log.debug("Rate limit '{}' superado por {}", politica.nombre(), request.getRemoteAddr());
             response.setStatus(429);
-            if (info.requestCount.get() > MAX_REQUESTS) {
-                throw new RateLimitExceededException("Rate limit exceeded. Try again later.");
-            }
-
-            response.getWriter().write("Rate limit exceeded. Try again later.");
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(r.reintentarSegundos()));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            response.getWriter().write(CUERPO_429);
             return;
         }
-
         filterChain.doFilter(request, response);
     }
 
-    private static class RequestInfo {
-        long startTime;
-        AtomicInteger requestCount;
-
-        RequestInfo(long startTime, AtomicInteger requestCount) {
-            this.startTime = startTime;
-            this.requestCount = requestCount;
+    private static String clave(PoliticaLimite politica, HttpServletRequest request) {
+        if (politica.porUsuario()) {
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            if (auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)) {
+                return politica.nombre() + ":u:" + auth.getName();
+            }
         }
+        return politica.nombre() + ":ip:" + request.getRemoteAddr();
     }
-}
\ No newline at end of file
+}
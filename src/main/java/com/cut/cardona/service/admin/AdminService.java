@@ -2,22 +2,16 @@ package com.cut.cardona.service.admin;
 
 import com.cut.cardona.modelo.dto.perfil.DtoPerfilCompleto;
 import com.cut.cardona.modelo.dto.perros.DtoPerro;
-import com.cut.cardona.modelo.imagenes.ImagenPerfil;
-import com.cut.cardona.modelo.imagenes.RepositorioImagenPerfil;
-import com.cut.cardona.modelo.perfil.PerfilUsuario;
-import com.cut.cardona.modelo.perfil.RepositorioPerfilUsuario;
-import com.cut.cardona.modelo.perros.Perro;
 import com.cut.cardona.modelo.perros.RepositorioPerro;
 import com.cut.cardona.modelo.usuarios.*;
-import com.cut.cardona.modelo.adopcion.RepositorioSolicitudAdopcion;
-import com.cut.cardona.service.infra.storage.ImageStorageService;
+import com.cut.cardona.security.UsuarioModificadoEvent;
 import com.cut.cardona.service.perfil.PerfilService;
 import com.cut.cardona.service.perros.PerroService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
@@ -30,14 +24,10 @@ public class AdminService {
 
     private final RepositorioUsuario repositorioUsuario;
     private final RepositorioPerro repositorioPerro;
-    private final RepositorioSolicitudAdopcion repositorioSolicitudAdopcion;
-    private final RepositorioPerfilUsuario repositorioPerfilUsuario;
-    private final RepositorioImagenPerfil repositorioImagenPerfil;
-    private final RepositorioVerificationToken repositorioVerificationToken;
-    private final RepositorioResetToken repositorioResetToken;
     private final PerfilService perfilService;
     private final PerroService perroService;
-    private final ImageStorageService imageStorageService;
+    private final EliminacionUsuario eliminacionUsuario;
+    private final ApplicationEventPublisher eventPublisher;
 
     // --- Usuarios ---
 
@@ -70,6 +60,7 @@ public class AdminService {
         }
         u.setRol(rol);
         repositorioUsuario.save(u);
+        eventPublisher.publishEvent(new UsuarioModificadoEvent(usuarioId));
         return perfilService.obtenerPerfilCompleto(usuarioId).orElseGet(() -> DtoPerfilCompleto.minimal(u));
     }
 
@@ -87,86 +78,19 @@ public class AdminService {
         }
         u.setActivo(true);
         repositorioUsuario.save(u);
+        eventPublisher.publishEvent(new UsuarioModificadoEvent(id));
         return perfilService.obtenerPerfilCompleto(id).orElseGet(() -> DtoPerfilCompleto.minimal(u));
     }
 
+    // Borrado físico por conjuntos (ver EliminacionUsuario); el storage se limpia por lotes tras el commit
     public void eliminarUsuarioFisico(String usuarioId) {
-        Usuario usuario = repositorioUsuario.findById(usuarioId)
-                .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
-
-        // 1) Eliminar solicitudes del usuario como solicitante
-        var solicitudesByUser = repositorioSolicitudAdopcion.findBySolicitanteId(usuarioId);
-        if (!solicitudesByUser.isEmpty()) {
-            repositorioSolicitudAdopcion.deleteAll(solicitudesByUser);
-        }
-
-        // 2) Perros del usuario: eliminar solicitudes por perro y luego el perro (usa servicio para borrar imágenes)
-        var perros = repositorioPerro.findByUsuarioId(usuarioId);
-        for (Perro p : perros) {
-            var solicitudesDelPerro = repositorioSolicitudAdopcion.findByPerroId(p.getId());
-            if (!solicitudesDelPerro.isEmpty()) {
-                repositorioSolicitudAdopcion.deleteAll(solicitudesDelPerro);
-            }
-            // Intentar borrado estándar (respeta reglas); si falla por estado, forzar borrado
-            try {
-                perroService.eliminarPerro(p.getId());
-            } catch (Exception ex) {
-                // Forzar borrado: limpiar imágenes en storage y borrar entidad
-                var imagenes = new ArrayList<>(p.getImagenes());
-                if (!imagenes.isEmpty()) {
-                    imagenes.forEach(img -> {
-                        try { imageStorageService.deleteDogImage(img.getId()); } catch (Exception ignored) {}
-                    });
-                }
-                repositorioPerro.delete(p);
-            }
-        }
-
-        // 3) Imagen y perfil del usuario (cargar perfil con imágenes)
-        repositorioPerfilUsuario.findByUsuarioIdWithImagenes(usuarioId).ifPresent(perfil -> {
-            limpiarImagenesPerfil(perfil);
-            repositorioPerfilUsuario.delete(perfil);
-        });
-
-        // 4) Tokens (verificación y reset)
-        var tokensVerif = repositorioVerificationToken.findAll().stream()
-                .filter(t -> t.getUsuario() != null && usuarioId.equals(t.getUsuario().getId()))
-                .toList();
-        if (!tokensVerif.isEmpty()) {
-            repositorioVerificationToken.deleteAll(tokensVerif);
-        }
-        var resetTokens = repositorioResetToken.findAll().stream()
-                .filter(t -> t.getUsuario() != null && usuarioId.equals(t.getUsuario().getId()))
-                .toList();
-        if (!resetTokens.isEmpty()) {
-            repositorioResetToken.deleteAll(resetTokens);
-        }
-
-        // 5) Finalmente, eliminar usuario
-        repositorioUsuario.delete(usuario);
-    }
-
-    private void limpiarImagenesPerfil(PerfilUsuario perfil) {
-        // Borrado best-effort de imágenes de perfil en storage
-        List<ImagenPerfil> imgs = perfil.getImagenesPerfil();
-        if (imgs != null) {
-            for (ImagenPerfil img : imgs) {
-                String nombreArchivo = img.getNombreArchivo();
-                if (nombreArchivo != null && !nombreArchivo.isBlank()) {
-                    String publicId;
-                    int dot = nombreArchivo.lastIndexOf('.');
-                    if (dot > 0) publicId = nombreArchivo.substring(0, dot); else publicId = nombreArchivo;
-                    try { imageStorageService.deleteProfileImage(publicId); } catch (Exception ignored) {}
-                }
-            }
-        }
-        repositorioImagenPerfil.deleteByPerfilUsuarioId(perfil.getId());
+        eliminacionUsuario.eliminar(usuarioId);
     }
 
     // --- Perros ---
     @Transactional(readOnly = true)
     public List<DtoPerro> listarPerros() {
-        return repositorioPerro.findAll().stream().map(DtoPerro::new).toList();
+        return repositorioPerro.findAllConImagenes().stream().map(DtoPerro::new).toList();
     }
 
     @Transactional(readOnly = true)
@@ -0,0 +1,93 @@
+package com.cut.cardona.service.admin;
+
+import com.cut.cardona.modelo.adopcion.RepositorioDocumentoSolicitud;
+import com.cut.cardona.modelo.adopcion.RepositorioSolicitudAdopcion;
+import com.cut.cardona.modelo.imagenes.RepositorioImagenPerfil;
+import com.cut.cardona.modelo.perfil.RepositorioPerfilUsuario;
+import com.cut.cardona.modelo.perros.RepositorioImagenPerro;
+import com.cut.cardona.modelo.perros.RepositorioPerro;
+import com.cut.cardona.modelo.usuarios.RepositorioResetToken;
+import com.cut.cardona.modelo.usuarios.RepositorioUsuario;
+import com.cut.cardona.modelo.usuarios.RepositorioVerificationToken;
+import com.cut.cardona.security.UsuarioModificadoEvent;
+import com.cut.cardona.service.imagenes.DespachadorBorrados;
+import com.cut.cardona.service.infra.storage.TipoImagen;
+import com.cut.cardona.service.perros.PerroCatalogoEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Borrado físico de un usuario con todo lo que cuelga de él mediante unos pocos DELETE por conjunto
+ * (documentos, solicitudes, imágenes y perros, perfil, tokens y usuario) en una sola transacción,
+ * sin cargar entidades. Los ids de storage se recogen antes de borrar y se eliminan tras el commit
+ * con DespachadorBorrados (un lote por tipo); si la transacción se revierte no se toca el storage.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EliminacionUsuario {
+
+    public record Resultado(int perros, int imagenesPerro, int imagenesPerfil, int documentos, int solicitudes) {}
+
+    private final RepositorioUsuario repositorioUsuario;
+    private final RepositorioPerro repositorioPerro;
+    private final RepositorioImagenPerro repositorioImagenPerro;
+    private final RepositorioSolicitudAdopcion repositorioSolicitudAdopcion;
+    private final RepositorioDocumentoSolicitud repositorioDocumentoSolicitud;
+    private final RepositorioPerfilUsuario repositorioPerfilUsuario;
+    private final RepositorioImagenPerfil repositorioImagenPerfil;
+    private final RepositorioVerificationToken repositorioVerificationToken;
+    private final RepositorioResetToken repositorioResetToken;
+    private final DespachadorBorrados despachadorBorrados;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Transactional
+    public Resultado eliminar(String usuarioId) {
+        if (!repositorioUsuario.existsById(usuarioId)) {
+            throw new IllegalArgumentException("Usuario no encontrado");
+        }
+        long t0 = System.nanoTime();
+
+        // 1) Ids para el storage y para los eventos, antes de borrar las filas
+        List<String> perroIds = repositorioPerro.findIdsByUsuarioId(usuarioId);
+        List<String> imagenPerroIds = repositorioImagenPerro.findIdsByUsuarioId(usuarioId);
+        List<String> documentoIds = repositorioDocumentoSolicitud.findIdsDeUsuario(usuarioId);
+        List<String> imagenPerfilIds = repositorioImagenPerfil.findNombresArchivoByUsuarioId(usuarioId).stream()
+                .filter(n -> n != null && !n.isBlank())
+                .map(EliminacionUsuario::sinExtension)
+                .toList();
+
+        // 2) DELETE por conjunto, de hijos a padres
+        repositorioDocumentoSolicitud.deleteDeUsuario(usuarioId);
+        int solicitudes = repositorioSolicitudAdopcion.deleteDeUsuario(usuarioId);
+        repositorioImagenPerro.deleteByUsuarioId(usuarioId);
+        int perros = repositorioPerro.deleteByUsuarioId(usuarioId);
+        repositorioImagenPerfil.deleteByUsuarioId(usuarioId);
+        repositorioPerfilUsuario.deleteByUsuarioId(usuarioId);
+        repositorioVerificationToken.deleteByUsuarioId(usuarioId);
+        repositorioResetToken.deleteByUsuarioId(usuarioId);
+        repositorioUsuario.eliminarPorId(usuarioId);
+
+        // Un solo evento para todos sus perros: el catálogo los relee en una pasada
+        if (!perroIds.isEmpty()) eventPublisher.publishEvent(new PerroCatalogoEvent(perroIds));
+        eventPublisher.publishEvent(new UsuarioModificadoEvent(usuarioId));
+
+        despachadorBorrados.programar(TipoImagen.PERRO, imagenPerroIds);
+        despachadorBorrados.programar(TipoImagen.PERFIL, imagenPerfilIds);
+        despachadorBorrados.programar(TipoImagen.DOCUMENTO, documentoIds);
+
+        Resultado r = new Resultado(perros, imagenPerroIds.size(), imagenPerfilIds.size(), documentoIds.size(), solicitudes);
+        log.info("[ADMIN] Usuario {} eliminado en {} ms: {}", usuarioId, (System.nanoTime() - t0) / 1_000_000, r);
+        return r;
+    }
+
+    private static String sinExtension(String nombreArchivo) {
+        int dot = nombreArchivo.lastIndexOf('.');
+        return dot > 0 ? nombreArchivo.substring(0, dot) : nombreArchivo;
+    }
+}
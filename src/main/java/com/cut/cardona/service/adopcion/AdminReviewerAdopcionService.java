@@ -14,7 +14,9 @@ import com.cut.cardona.modelo.perros.enums.PerroEstadoAdopcion;
 import com.cut.cardona.modelo.perros.enums.PerroEstadoRevision;
 import com.cut.cardona.modelo.usuarios.RepositorioUsuario;
 import com.cut.cardona.modelo.usuarios.Usuario;
+import com.cut.cardona.service.perros.PerroCatalogoEvent;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
@@ -31,6 +33,7 @@ public class AdminReviewerAdopcionService {
     private final RepositorioDocumentoSolicitud repoDocumento;
     private final RepositorioPerro repoPerro;
     private final RepositorioUsuario repoUsuario;
+    private final ApplicationEventPublisher eventPublisher;
 
     private Usuario currentUser() {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
@@ -88,6 +91,7 @@ public class AdminReviewerAdopcionService {
             // Marcar perro como adoptado
             perro.setEstadoAdopcion(PerroEstadoAdopcion.ADOPTADO);
             repoPerro.save(perro);
+            eventPublisher.publishEvent(new PerroCatalogoEvent(perro.getId()));
             // Rechazar las demás solicitudes pendientes/en revisión para el mismo perro
             repoSolicitud.findByPerroId(perro.getId()).forEach(sol -> {
                 if (!sol.getId().equals(s.getId()) && sol.getEstado() != SolicitudEstado.RECHAZADA && sol.getEstado() != SolicitudEstado.CANCELADA && sol.getEstado() != SolicitudEstado.ACEPTADA) {
@@ -127,6 +131,7 @@ public class AdminReviewerAdopcionService {
             }
             perro.setEstadoAdopcion(PerroEstadoAdopcion.DISPONIBLE);
             repoPerro.save(perro);
+            eventPublisher.publishEvent(new PerroCatalogoEvent(perro.getId()));
         }
         return DtoSolicitudAdopcion.from(s);
     }
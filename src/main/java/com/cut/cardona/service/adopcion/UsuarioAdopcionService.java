@@ -13,7 +13,9 @@ import com.cut.cardona.modelo.perros.enums.PerroEstadoAdopcion;
 import com.cut.cardona.modelo.perros.enums.PerroEstadoRevision;
 import com.cut.cardona.modelo.usuarios.RepositorioUsuario;
 import com.cut.cardona.modelo.usuarios.Usuario;
+import com.cut.cardona.service.imagenes.DespachadorBorrados;
 import com.cut.cardona.service.infra.storage.ImageStorageService;
+import com.cut.cardona.service.infra.storage.TipoImagen;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -36,6 +38,7 @@ public class UsuarioAdopcionService {
     private final RepositorioPerro repoPerro;
     private final RepositorioUsuario repoUsuario;
     private final ImageStorageService imageStorageService;
+    private final DespachadorBorrados despachadorBorrados;
 
     private Usuario currentUser() {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
@@ -69,30 +72,26 @@ public class UsuarioAdopcionService {
             @Override
             public void afterCompletion(int status) {
                 if (status == TransactionSynchronization.STATUS_ROLLED_BACK) {
-                    try { imageStorageService.deleteDocumentImage(upload.getId()); } catch (Exception ignored) {}
+                    despachadorBorrados.enviar(TipoImagen.DOCUMENTO, List.of(upload.getId()));
                 }
             }
         });
-        try {
-            String tipoDoc = (tipoDocumento == null || tipoDocumento.isBlank()) ? "Documento" : tipoDocumento.trim();
-            DocumentoSolicitud d = DocumentoSolicitud.builder()
-                    .id(upload.getId())
-                    .solicitud(s)
-                    .tipoDocumento(tipoDoc)
-                    .urlDocumento(upload.getUrl())
-                    .nombreArchivo(upload.getFilename())
-                    .tipoMime(upload.getContentType())
-                    .tamanoBytes(upload.getSize())
-                    .fechaSubida(new Timestamp(System.currentTimeMillis()))
-                    .build();
-            repoDocumento.save(d);
-            // Añadir a la colección en memoria para que el DTO detalle lo incluya sin recarga
-            s.getDocumentos().add(d);
-            return DtoSolicitudAdopcion.fromWithDocumentos(s);
-        } catch (RuntimeException ex) {
-            try { imageStorageService.deleteDocumentImage(upload.getId()); } catch (Exception ignored) {}
-            throw ex;
-        }
+        String tipoDoc = (tipoDocumento == null || tipoDocumento.isBlank()) ? "Documento" : tipoDocumento.trim();
+        DocumentoSolicitud d = DocumentoSolicitud.builder()
+                .id(upload.getId())
+                .solicitud(s)
+                .tipoDocumento(tipoDoc)
+                .urlDocumento(upload.getUrl())
+                .nombreArchivo(upload.getFilename())
+                .tipoMime(upload.getContentType())
+                .tamanoBytes(upload.getSize())
+                .fechaSubida(new Timestamp(System.currentTimeMillis()))
+                .build();
+        // Si algo falla a partir de aquí la transacción se revierte y la sincronización borra el archivo
+        repoDocumento.save(d);
+        // Añadir a la colección en memoria para que el DTO detalle lo incluya sin recarga
+        s.getDocumentos().add(d);
+        return DtoSolicitudAdopcion.fromWithDocumentos(s);
     }
 
     // -------------------- CONSULTAS DEL USUARIO --------------------
@@ -132,9 +131,7 @@ public class UsuarioAdopcionService {
         }
         List<String> docIds = s.getDocumentos().stream().map(DocumentoSolicitud::getId).collect(Collectors.toList());
         repoSolicitud.delete(s);
-        for (String id : docIds) {
-            try { imageStorageService.deleteDocumentImage(id); } catch (Exception ignored) {}
-        }
+        despachadorBorrados.programar(TipoImagen.DOCUMENTO, docIds);
     }
 
     // -------------------- MODIFICACIONES DEL USUARIO --------------------
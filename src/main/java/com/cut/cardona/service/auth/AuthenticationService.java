@@ -6,7 +6,9 @@ import com.cut.cardona.modelo.dto.usuarios.DtoUsuario;
 import com.cut.cardona.modelo.usuarios.Usuario;
 import com.cut.cardona.modelo.usuarios.RepositorioUsuario;
 import com.cut.cardona.security.CustomUserDetails;
+import com.cut.cardona.security.EjecutorAutenticacion;
 import com.cut.cardona.security.TokenService;
+import com.cut.cardona.errores.IntentosExcedidosException;
 import com.cut.cardona.errores.ValidacionDeIntegridad;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,11 +18,12 @@ import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Timestamp;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @Service
@@ -31,44 +34,75 @@ public class AuthenticationService {
     private final TokenService tokenService;
     private final RepositorioUsuario repositorioUsuario;
     private final PerfilService perfilService;
-
-    @Transactional
-    public AuthenticationResponse authenticate(AuthenticationRequest request) {
+    private final IntentosLogin intentosLogin;
+    private final EjecutorAutenticacion ejecutorAutenticacion;
+
+    /**
+     * Login con espera progresiva: un usuario/IP con demasiados fallos recientes (o intentos en vuelo) se rechaza
+     * antes de verificar la contraseña. El intento se reserva en IntentosLogin antes de encolarlo y se cierra en
+     * todos los desenlaces. La verificación BCrypt corre en el pool acotado de EjecutorAutenticacion, no en el hilo
+     * de la petición; si el pool está saturado se lanza RejectedExecutionException (503).
+     */
+    public CompletableFuture<AuthenticationResponse> authenticate(AuthenticationRequest request, String ip) {
+        long espera = intentosLogin.reservar(request.userName(), ip);
+        if (espera > 0) {
+            log.warn("Authentication throttled for user: {} ip: {} ({}s)", request.userName(), ip, espera);
+            throw new IntentosExcedidosException("Demasiados intentos fallidos. Intenta de nuevo en " + espera + " segundos.", espera);
+        }
+        Authentication authToken = new UsernamePasswordAuthenticationToken(
+                request.userName(),
+                request.password()
+        );
+        CompletableFuture<Authentication> verificacion;
         try {
-            Authentication authToken = new UsernamePasswordAuthenticationToken(
-                    request.userName(),
-                    request.password()
-            );
-
-            Authentication authentication = authenticationManager.authenticate(authToken);
-            CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
-            Usuario usuario = userDetails.getUsuario();
+            verificacion = ejecutorAutenticacion.ejecutar(() -> authenticationManager.authenticate(authToken));
+        } catch (RuntimeException ex) {
+            intentosLogin.liberar(request.userName(), ip);
+            throw ex;
+        }
+        return verificacion
+                .handle((authentication, ex) -> {
+                    if (ex != null) {
+                        throw traducirFallo(request, ip, ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+                    }
+                    intentosLogin.registrarExito(request.userName(), ip);
+                    return respuestaLogin((CustomUserDetails) authentication.getPrincipal());
+                });
+    }
 
-            String jwtToken = tokenService.generarToken(usuario);
-            String refreshToken = tokenService.generarRefreshToken(usuario);
+    private RuntimeException traducirFallo(AuthenticationRequest request, String ip, Throwable ex) {
+        if (!(ex instanceof BadCredentialsException)) intentosLogin.liberar(request.userName(), ip);
+        if (ex instanceof DisabledException) {
+            log.warn("Authentication blocked (disabled/unverified) for user: {}", request.userName());
+            return new ValidacionDeIntegridad(" Verifica tu correo para iniciar sesión");
+        }
+        if (ex instanceof BadCredentialsException) {
+            intentosLogin.registrarFallo(request.userName(), ip);
+            log.warn("Failed authentication attempt for user: {}", request.userName());
+            return new ValidacionDeIntegridad(" Las credenciales proporcionadas son incorrectas. Verifica tu usuario y contraseña.");
+        }
+        return ex instanceof RuntimeException re ? re : new CompletionException(ex);
+    }
 
-            updateLastAccess(usuario);
+    private AuthenticationResponse respuestaLogin(CustomUserDetails userDetails) {
+        Usuario usuario = userDetails.getUsuario();
 
-            DtoUsuario userDto = perfilService.toDto(usuario);
+        String jwtToken = tokenService.generarToken(usuario);
+        String refreshToken = tokenService.generarRefreshToken(usuario);
 
-            // ✅ Usar constructor que incluye mensaje de éxito
-            return new AuthenticationResponse(
-                    jwtToken,
-                    refreshToken,
-                    userDto,
-                    tokenService.getExpirationTime(),
-                    true,
-                    "¡Bienvenido " + usuario.getUsername() + "! Has iniciado sesión exitosamente."
-            );
+        updateLastAccess(usuario);
 
+        DtoUsuario userDto = perfilService.toDto(usuario);
 
-        } catch (DisabledException e) {
-            log.warn("Authentication blocked (disabled/unverified) for user: {}", request.userName());
-            throw new ValidacionDeIntegridad(" Verifica tu correo para iniciar sesión");
-        } catch (BadCredentialsException e) {
-            log.warn("Failed authentication attempt for user: {}", request.userName());
-            throw new ValidacionDeIntegridad(" Las credenciales proporcionadas son incorrectas. Verifica tu usuario y contraseña.");
-        }
+        // ✅ Usar constructor que incluye mensaje de éxito
+        return new AuthenticationResponse(
+                jwtToken,
+                refreshToken,
+                userDto,
+                tokenService.getExpirationTime(),
+                true,
+                "¡Bienvenido " + usuario.getUsername() + "! Has iniciado sesión exitosamente."
+        );
     }
 
     public AuthenticationResponse refreshToken(String refreshToken) {
@@ -78,16 +112,9 @@ public class AuthenticationService {
                 throw new ValidacionDeIntegridad("Refresh token requerido");
             }
 
-            // Extraer el username del token - PUEDE FALLAR SI TOKEN ES INVÁLIDO
-            String username;
-            try {
-                username = tokenService.getSubject(refreshToken);
-                if (username == null || username.trim().isEmpty()) {
-                    throw new ValidacionDeIntegridad("Token inválido o expirado");
-                }
-            } catch (RuntimeException e) {
-                // Token malformado o expirado
-                log.warn("Invalid refresh token format: {}", e.getMessage());
+            // Extraer el username del token: null si está malformado, caducado o revocado
+            String username = tokenService.getSubject(refreshToken);
+            if (username == null || username.trim().isEmpty()) {
                 throw new ValidacionDeIntegridad("Refresh token inválido o expirado");
             }
 
@@ -0,0 +1,156 @@
+package com.cut.cardona.service.auth;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Intentos de login fallidos por usuario y por IP, con espera exponencial.
+ * A partir del umbral, cada fallo duplica la espera (1s, 2s, 4s...) hasta el bloqueo máximo; el contador se
+ * olvida tras una ventana sin fallos. El umbral por IP es más alto porque detrás de una IP puede haber muchos
+ * usuarios (NAT). Un login correcto limpia el contador del usuario, no el de la IP.
+ * Cada intento se reserva antes de verificar la contraseña ({@link #reservar}); la reserva cuenta como intento en
+ * vuelo, así una ráfaga simultánea no pasa entera el control antes de que se registre el primer fallo.
+ */
+@Component
+@Slf4j
+public class IntentosLogin {
+
+    private record Estado(int fallos, int enVuelo, long bloqueadoHasta, long ultimoFallo) {}
+
+    private static final Estado VACIO = new Estado(0, 0, 0, 0);
+    // Rechazo por intentos en vuelo: se resuelven en lo que tarda un BCrypt, basta con reintentar enseguida
+    private static final long ESPERA_EN_VUELO_MS = 1000;
+
+    private final int umbralUsuario;
+    private final int umbralIp;
+    private final long esperaBaseMs;
+    private final long bloqueoMaxMs;
+    private final long ventanaMs;
+    private final ConcurrentHashMap<String, Estado> estados = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService limpieza = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "intentos-login-limpieza");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public IntentosLogin(
+            @Value("${app.auth.intentos.umbral-usuario:5}") int umbralUsuario,
+            @Value("${app.auth.intentos.umbral-ip:20}") int umbralIp,
+            @Value("${app.auth.intentos.espera-base-ms:1000}") long esperaBaseMs,
+            @Value("${app.auth.intentos.bloqueo-max-segundos:900}") long bloqueoMaxSegundos,
+            @Value("${app.auth.intentos.ventana-segundos:900}") long ventanaSegundos) {
+        this.umbralUsuario = Math.max(1, umbralUsuario);
+        this.umbralIp = Math.max(1, umbralIp);
+        this.esperaBaseMs = Math.max(1, esperaBaseMs);
+        this.bloqueoMaxMs = TimeUnit.SECONDS.toMillis(Math.max(1, bloqueoMaxSegundos));
+        this.ventanaMs = TimeUnit.SECONDS.toMillis(Math.max(1, ventanaSegundos));
+        limpieza.scheduleWithFixedDelay(this::purgar, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    void detener() {
+        limpieza.shutdownNow();
+    }
+
+    /**
+     * Reserva un intento de usuario e IP; 0 si se reservó o los segundos que faltan para poder intentar.
+     * Por debajo del umbral caben a la vez tantos intentos como fallos faltan para llegar a él; a partir de ahí,
+     * uno solo cada vez. Toda reserva se cierra con {@link #registrarFallo}, {@link #registrarExito} o {@link #liberar}.
+     */
+    public long reservar(String usuario, String ip) {
+        long ahora = System.currentTimeMillis();
+        String u = claveUsuario(usuario);
+        long espera = reservar(u, umbralUsuario, ahora);
+        if (espera == 0) {
+            espera = reservar(claveIp(ip), umbralIp, ahora);
+            if (espera > 0) soltar(u);
+        }
+        return (espera + 999) / 1000;
+    }
+
+    public void registrarFallo(String usuario, String ip) {
+        long ahora = System.currentTimeMillis();
+        int fallosUsuario = fallo(claveUsuario(usuario), umbralUsuario, ahora);
+        int fallosIp = fallo(claveIp(ip), umbralIp, ahora);
+        if (fallosUsuario >= umbralUsuario || fallosIp >= umbralIp) {
+            log.warn("[LOGIN] Espera por intentos fallidos usuario={} ({}) ip={} ({})", usuario, fallosUsuario, ip, fallosIp);
+        }
+    }
+
+    public void registrarExito(String usuario, String ip) {
+        estados.computeIfPresent(claveUsuario(usuario), (k, e) -> e.enVuelo() > 1 ? new Estado(0, e.enVuelo() - 1, 0, 0) : null);
+        soltar(claveIp(ip));
+    }
+
+    /** Cierra la reserva sin contar fallo: el intento no llegó a verificar la contraseña o falló por otro motivo. */
+    public void liberar(String usuario, String ip) {
+        soltar(claveUsuario(usuario));
+        soltar(claveIp(ip));
+    }
+
+    // Milisegundos de espera; 0 si se reservó
+    private long reservar(String clave, int umbral, long ahora) {
+        long[] espera = {0};
+        estados.compute(clave, (k, previo) -> {
+            Estado e = vigente(previo, ahora);
+            if (e.bloqueadoHasta() > ahora) {
+                espera[0] = e.bloqueadoHasta() - ahora;
+                return previo;
+            }
+            if (e.enVuelo() > 0 && e.fallos() + e.enVuelo() >= umbral) {
+                espera[0] = ESPERA_EN_VUELO_MS;
+                return previo;
+            }
+            return new Estado(e.fallos(), e.enVuelo() + 1, e.bloqueadoHasta(), e.ultimoFallo());
+        });
+        return espera[0];
+    }
+
+    private void soltar(String clave) {
+        estados.computeIfPresent(clave, (k, e) -> {
+            int enVuelo = Math.max(0, e.enVuelo() - 1);
+            return enVuelo == 0 && e.fallos() == 0 ? null : new Estado(e.fallos(), enVuelo, e.bloqueadoHasta(), e.ultimoFallo());
+        });
+    }
+
+    private int fallo(String clave, int umbral, long ahora) {
+        Estado e = estados.compute(clave, (k, previo) -> {
+            Estado v = vigente(previo, ahora);
+            int fallos = v.fallos() + 1;
+            long bloqueadoHasta = 0;
+            if (fallos >= umbral) {
+                int exponente = Math.min(fallos - umbral, 30);
+                bloqueadoHasta = ahora + Math.min(bloqueoMaxMs, esperaBaseMs << exponente);
+            }
+            return new Estado(fallos, Math.max(0, v.enVuelo() - 1), bloqueadoHasta, ahora);
+        });
+        return e.fallos();
+    }
+
+    // Fuera de la ventana los fallos se olvidan; los intentos en vuelo siguen contando
+    private Estado vigente(Estado e, long ahora) {
+        if (e == null) return VACIO;
+        return ahora - e.ultimoFallo() <= ventanaMs ? e : new Estado(0, e.enVuelo(), 0, e.ultimoFallo());
+    }
+
+    private void purgar() {
+        long ahora = System.currentTimeMillis();
+        estados.values().removeIf(e -> e.enVuelo() == 0 && ahora - e.ultimoFallo() > ventanaMs && e.bloqueadoHasta() <= ahora);
+    }
+
+    private static String claveUsuario(String usuario) {
+        return "u:" + (usuario == null ? "" : usuario.trim().toLowerCase(Locale.ROOT));
+    }
+
+    private static String claveIp(String ip) {
+        return "ip:" + ip;
+    }
+}
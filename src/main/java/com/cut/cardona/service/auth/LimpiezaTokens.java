@@ -0,0 +1,121 @@
+package com.cut.cardona.service.auth;
+
+import com.cut.cardona.modelo.usuarios.RepositorioResetToken;
+import com.cut.cardona.modelo.usuarios.RepositorioVerificationToken;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Purga periódica de tokens de verificación y de reset caducados o ya usados.
+ * Borra por lotes acotados (selección de ids por índice + DELETE por id, cada lote en su propia transacción)
+ * para no mantener bloqueos largos ni cargar las entidades. Los tokens usados se conservan un tiempo
+ * (retención) por si hace falta revisar un reset o una verificación reciente.
+ */
+@Component
+@Slf4j
+public class LimpiezaTokens {
+
+    public record Ejecucion(Instant inicio, long verificacion, long reset, long duracionMs) {}
+
+    public record Estadisticas(long ejecuciones, long filasPurgadas, long verificacionPurgados, long resetPurgados,
+                               long errores, Ejecucion ultima, long intervaloMinutos, int lote) {}
+
+    private final RepositorioVerificationToken repositorioVerificationToken;
+    private final RepositorioResetToken repositorioResetToken;
+    private final int lote;
+    private final long intervaloMinutos;
+    private final Duration retencionUsados;
+    private final ScheduledExecutorService ejecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "limpieza-tokens");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final LongAdder ejecuciones = new LongAdder();
+    private final LongAdder verificacionPurgados = new LongAdder();
+    private final LongAdder resetPurgados = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+    private final AtomicReference<Ejecucion> ultima = new AtomicReference<>();
+
+    public LimpiezaTokens(
+            RepositorioVerificationToken repositorioVerificationToken,
+            RepositorioResetToken repositorioResetToken,
+            @Value("${app.tokens.limpieza.intervalo-minutos:60}") long intervaloMinutos,
+            @Value("${app.tokens.limpieza.lote:500}") int lote,
+            @Value("${app.tokens.limpieza.retencion-usados-horas:24}") long retencionUsadosHoras) {
+        this.repositorioVerificationToken = repositorioVerificationToken;
+        this.repositorioResetToken = repositorioResetToken;
+        this.lote = Math.max(1, lote);
+        this.intervaloMinutos = intervaloMinutos;
+        this.retencionUsados = Duration.ofHours(Math.max(0, retencionUsadosHoras));
+        if (intervaloMinutos > 0) {
+            ejecutor.scheduleWithFixedDelay(this::ejecutar, 1, intervaloMinutos, TimeUnit.MINUTES);
+        }
+        log.info("LimpiezaTokens: intervalo={}min lote={} retencionUsados={}h", intervaloMinutos, this.lote, retencionUsadosHoras);
+    }
+
+    @PreDestroy
+    void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    public Estadisticas estadisticas() {
+        long v = verificacionPurgados.sum();
+        long r = resetPurgados.sum();
+        return new Estadisticas(ejecuciones.sum(), v + r, v, r, errores.sum(), ultima.get(), intervaloMinutos, lote);
+    }
+
+    void ejecutar() {
+        long t0 = System.nanoTime();
+        Instant inicio = Instant.now();
+        try {
+            Timestamp ahora = Timestamp.from(inicio);
+            Timestamp limiteUsados = Timestamp.from(inicio.minus(retencionUsados));
+            long verif = purgar(p -> repositorioVerificationToken.findIdsExpirados(ahora, p), repositorioVerificationToken::deleteByIdIn)
+                    + purgar(p -> repositorioVerificationToken.findIdsUsados(limiteUsados, p), repositorioVerificationToken::deleteByIdIn);
+            long reset = purgar(p -> repositorioResetToken.findIdsExpirados(ahora, p), repositorioResetToken::deleteByIdIn)
+                    + purgar(p -> repositorioResetToken.findIdsUsados(limiteUsados, p), repositorioResetToken::deleteByIdIn);
+            verificacionPurgados.add(verif);
+            resetPurgados.add(reset);
+            long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+            ultima.set(new Ejecucion(inicio, verif, reset, ms));
+            if (verif + reset > 0) {
+                log.info("[TOKENS] Purgados verificacion={} reset={} en {} ms", verif, reset, ms);
+            }
+        } catch (Exception e) {
+            errores.increment();
+            log.warn("[TOKENS] Error purgando tokens caducados: {}", e.getMessage());
+        } finally {
+            ejecuciones.increment();
+        }
+    }
+
+    // Siempre la primera página: lo ya borrado deja de cumplir el filtro
+    private long purgar(Function<Pageable, List<String>> seleccionar, ToIntFunction<List<String>> borrar) {
+        Pageable pagina = PageRequest.of(0, lote);
+        long total = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<String> ids = seleccionar.apply(pagina);
+            if (ids.isEmpty()) break;
+            total += borrar.applyAsInt(ids);
+            if (ids.size() < lote) break;
+        }
+        return total;
+    }
+}
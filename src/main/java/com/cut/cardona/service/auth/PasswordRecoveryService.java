@@ -6,8 +6,10 @@ import com.cut.cardona.modelo.usuarios.RepositorioResetToken;
 import com.cut.cardona.modelo.usuarios.RepositorioUsuario;
 import com.cut.cardona.modelo.usuarios.ResetToken;
 import com.cut.cardona.modelo.usuarios.Usuario;
+import com.cut.cardona.security.UsuarioModificadoEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -27,6 +29,7 @@ public class PasswordRecoveryService {
     private final RepositorioResetToken repositorioResetToken;
     private final PasswordEncoder passwordEncoder;
     private final MailService mailService;
+    private final ApplicationEventPublisher eventPublisher;
 
     private static final Duration RESET_TTL = Duration.ofHours(1);
 
@@ -68,6 +71,7 @@ public class PasswordRecoveryService {
         rt.setUsadoEn(new Timestamp(System.currentTimeMillis()));
         repositorioUsuario.save(usuario);
         repositorioResetToken.save(rt);
+        eventPublisher.publishEvent(new UsuarioModificadoEvent(usuario.getId()));
     }
 }
 
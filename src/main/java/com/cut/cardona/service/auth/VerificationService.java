@@ -3,8 +3,10 @@ package com.cut.cardona.service.auth;
 import com.cut.cardona.errores.ValidacionDeIntegridad;
 import com.cut.cardona.service.infra.MailService;
 import com.cut.cardona.modelo.usuarios.*;
+import com.cut.cardona.security.UsuarioModificadoEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,6 +24,7 @@ public class VerificationService {
     private final RepositorioUsuario repositorioUsuario;
     private final RepositorioVerificationToken repositorioVerificationToken;
     private final MailService mailService;
+    private final ApplicationEventPublisher eventPublisher;
 
     private static final Duration EMAIL_TOKEN_TTL = Duration.ofHours(1);
 
@@ -69,6 +72,7 @@ public class VerificationService {
         vt.setUsadoEn(new Timestamp(System.currentTimeMillis()));
         repositorioUsuario.save(usuario);
         repositorioVerificationToken.save(vt);
+        eventPublisher.publishEvent(new UsuarioModificadoEvent(usuario.getId()));
     }
 
     @Transactional
@@ -0,0 +1,211 @@
+package com.cut.cardona.service.imagenes;
+
+import com.cut.cardona.service.infra.storage.VariantesImagen;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caché acotada por bytes para las imágenes de perros más vistas (portada del catálogo).
+ * Evita leer de disco o ir al CDN en cada vista; al superar el límite expulsa por LRU.
+ * Con app.imagenes.cache.off-heap=true el contenido vive en ByteBuffers directos y no cuenta para el heap.
+ * Los ids de imagen son inmutables, así que solo hace falta invalidar cuando la imagen se elimina.
+ */
+@Component
+@Slf4j
+public class CacheImagenesPerro {
+
+    public record Entrada(ByteBuffer datos, String mediaType, String etag, long lastModified) {
+        public long longitud() { return datos.capacity(); }
+        public Resource recurso() { return new RecursoBuffer(datos); }
+    }
+
+    public record Estadisticas(boolean habilitada, boolean offHeap, long aciertos, long fallos, long expulsiones,
+                               long invalidaciones, int entradas, long bytes, long maxBytes, long maxBytesEntrada) {}
+
+    private final long maxBytes;
+    private final long maxBytesEntrada;
+    private final boolean offHeap;
+
+    // LinkedHashMap en orden de acceso: el primero al iterar es el menos usado recientemente.
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>(128, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private long bytes;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder expulsiones = new LongAdder();
+    private final LongAdder invalidaciones = new LongAdder();
+
+    public CacheImagenesPerro(
+            @Value("${app.imagenes.cache.max-bytes:67108864}") long maxBytes,
+            @Value("${app.imagenes.cache.max-bytes-entrada:2097152}") long maxBytesEntrada,
+            @Value("${app.imagenes.cache.off-heap:false}") boolean offHeap) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.maxBytesEntrada = Math.min(Math.min(maxBytesEntrada, this.maxBytes), Integer.MAX_VALUE);
+        this.offHeap = offHeap;
+        log.info("CacheImagenesPerro: maxBytes={} maxBytesEntrada={} offHeap={}", this.maxBytes, this.maxBytesEntrada, offHeap);
+    }
+
+    public boolean habilitada() {
+        return maxBytes > 0;
+    }
+
+    /** Indica si una imagen de esa longitud cabe en la caché; las más grandes se sirven sin cachear. */
+    public boolean admite(long longitud) {
+        return habilitada() && longitud > 0 && longitud <= maxBytesEntrada;
+    }
+
+    public Entrada obtener(String id) {
+        if (!habilitada() || id == null) return null;
+        Entrada e;
+        lock.lock();
+        try {
+            e = entradas.get(id);
+        } finally {
+            lock.unlock();
+        }
+        if (e != null) aciertos.increment(); else fallos.increment();
+        return e;
+    }
+
+    /** Reserva el buffer (heap o directo según configuración) que el llamador llena antes de guardar(). */
+    public ByteBuffer reservar(int longitud) {
+        return offHeap ? ByteBuffer.allocateDirect(longitud) : ByteBuffer.allocate(longitud);
+    }
+
+    /** Guarda un buffer completamente lleno; devuelve la entrada lista para servir. */
+    public Entrada guardar(String id, ByteBuffer datos, String mediaType, String etag, long lastModified) {
+        Entrada nueva = new Entrada(datos.clear().asReadOnlyBuffer(), mediaType, etag, lastModified);
+        long len = nueva.longitud();
+        if (!admite(len)) return nueva;
+        lock.lock();
+        try {
+            Entrada previa = entradas.put(id, nueva);
+            if (previa != null) bytes -= previa.longitud();
+            bytes += len;
+            Iterator<Map.Entry<String, Entrada>> it = entradas.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Entrada> mayor = it.next();
+                if (mayor.getKey().equals(id)) continue;
+                bytes -= mayor.getValue().longitud();
+                it.remove();
+                expulsiones.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return nueva;
+    }
+
+    /** Invalida la imagen y todas sus variantes responsivas. */
+    public void invalidar(String id) {
+        if (!habilitada() || id == null) return;
+        lock.lock();
+        try {
+            quitar(id);
+            for (int ancho : VariantesImagen.ANCHOS) {
+                for (String formato : VariantesImagen.FORMATOS) {
+                    quitar(VariantesImagen.nombreArchivo(id, ancho, formato));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void quitar(String clave) {
+        Entrada previa = entradas.remove(clave);
+        if (previa != null) {
+            bytes -= previa.longitud();
+            invalidaciones.increment();
+        }
+    }
+
+    public Estadisticas estadisticas() {
+        int n;
+        long b;
+        lock.lock();
+        try {
+            n = entradas.size();
+            b = bytes;
+        } finally {
+            lock.unlock();
+        }
+        return new Estadisticas(habilitada(), offHeap, aciertos.sum(), fallos.sum(), expulsiones.sum(),
+                invalidaciones.sum(), n, b, maxBytes, maxBytesEntrada);
+    }
+
+    /** Resource de solo lectura sobre el buffer cacheado; cada lectura usa su propia vista (duplicate). */
+    private static final class RecursoBuffer extends AbstractResource {
+        private final ByteBuffer datos;
+
+        RecursoBuffer(ByteBuffer datos) {
+            this.datos = datos;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new BufferInputStream(datos.duplicate());
+        }
+
+        @Override
+        public long contentLength() {
+            return datos.capacity();
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Imagen cacheada [" + datos.capacity() + " bytes]";
+        }
+    }
+
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        BufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buf.hasRemaining()) return -1;
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int k = (int) Math.max(0, Math.min(n, buf.remaining()));
+            buf.position(buf.position() + k);
+            return k;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+    }
+}
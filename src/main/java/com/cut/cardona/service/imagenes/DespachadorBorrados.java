@@ -0,0 +1,126 @@
+package com.cut.cardona.service.imagenes;
+
+import com.cut.cardona.service.infra.storage.BorradoIncompletoException;
+import com.cut.cardona.service.infra.storage.ImageStorageService;
+import com.cut.cardona.service.infra.storage.TipoImagen;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Borrados en el storage fuera del hilo de la petición.
+ * {@link #programar} acumula los ids de la transacción en curso y, tras el commit, envía un único
+ * deleteMany por tipo a un pool propio; si la transacción se revierte no se borra nada.
+ * Los fallos se reintentan con espera exponencial solo para los ids pendientes; agotados los intentos
+ * quedan en el log (las imágenes de perros las recoge después el recolector de huérfanas).
+ */
+@Component
+@Slf4j
+public class DespachadorBorrados {
+
+    private final ImageStorageService imageStorageService;
+    private final CacheImagenesPerro cacheImagenesPerro;
+    private final int maxIntentos;
+    private final long esperaBaseMs;
+    private final ScheduledThreadPoolExecutor ejecutor;
+
+    public DespachadorBorrados(
+            ImageStorageService imageStorageService,
+            CacheImagenesPerro cacheImagenesPerro,
+            @Value("${app.storage.borrado.hilos:2}") int hilos,
+            @Value("${app.storage.borrado.max-intentos:5}") int maxIntentos,
+            @Value("${app.storage.borrado.espera-base-ms:2000}") long esperaBaseMs) {
+        this.imageStorageService = imageStorageService;
+        this.cacheImagenesPerro = cacheImagenesPerro;
+        this.maxIntentos = Math.max(1, maxIntentos);
+        this.esperaBaseMs = Math.max(1, esperaBaseMs);
+        AtomicInteger n = new AtomicInteger();
+        this.ejecutor = new ScheduledThreadPoolExecutor(Math.max(1, hilos), r -> {
+            Thread t = new Thread(r, "borrado-storage-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("DespachadorBorrados: hilos={} maxIntentos={} esperaBase={}ms", Math.max(1, hilos), this.maxIntentos, this.esperaBaseMs);
+    }
+
+    @PreDestroy
+    void detener() throws InterruptedException {
+        // Los reintentos diferidos se descartan; lo que ya está en cola se deja terminar
+        ejecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        ejecutor.shutdown();
+        if (!ejecutor.awaitTermination(10, TimeUnit.SECONDS)) ejecutor.shutdownNow();
+    }
+
+    /** Borra tras el commit de la transacción actual (o enseguida si no hay transacción). */
+    public void programar(TipoImagen tipo, Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enviar(tipo, ids);
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Map<TipoImagen, Set<String>> pendientes = (Map<TipoImagen, Set<String>>) TransactionSynchronizationManager.getResource(this);
+        if (pendientes == null) {
+            Map<TipoImagen, Set<String>> nuevos = new EnumMap<>(TipoImagen.class);
+            TransactionSynchronizationManager.bindResource(this, nuevos);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    nuevos.forEach(DespachadorBorrados.this::enviar);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(DespachadorBorrados.this);
+                }
+            });
+            pendientes = nuevos;
+        }
+        pendientes.computeIfAbsent(tipo, t -> new LinkedHashSet<>()).addAll(ids);
+    }
+
+    /** Borra ya, sin esperar a ninguna transacción: subidas que no llegaron a asociarse. */
+    public void enviar(TipoImagen tipo, Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) return;
+        List<String> lista = List.copyOf(ids);
+        // La fila ya no existe: que la caché deje de servirla aunque el archivo tarde en borrarse
+        if (tipo == TipoImagen.PERRO) lista.forEach(cacheImagenesPerro::invalidar);
+        ejecutor.execute(() -> intentar(tipo, lista, 1));
+    }
+
+    private void intentar(TipoImagen tipo, List<String> ids, int intento) {
+        List<String> pendientes;
+        try {
+            imageStorageService.deleteMany(tipo, ids);
+            pendientes = List.of();
+        } catch (BorradoIncompletoException e) {
+            pendientes = e.getPendientes();
+            log.warn("[STORAGE] Borrado {} incompleto (intento {}): {}", tipo, intento, e.getMessage());
+        } catch (Exception e) {
+            pendientes = ids;
+            log.warn("[STORAGE] Borrado {} de {} ids fallido (intento {}): {}", tipo, ids.size(), intento, e.getMessage());
+        }
+        if (tipo == TipoImagen.PERRO) ids.forEach(cacheImagenesPerro::invalidar);
+        if (pendientes.isEmpty()) return;
+        if (intento >= maxIntentos) {
+            log.error("[STORAGE] Se abandonan {} borrados {} tras {} intentos: {}", pendientes.size(), tipo, intento, pendientes);
+            return;
+        }
+        List<String> reintento = pendientes;
+        long espera = esperaBaseMs << Math.min(intento - 1, 16);
+        ejecutor.schedule(() -> intentar(tipo, reintento, intento + 1), espera, TimeUnit.MILLISECONDS);
+    }
+}
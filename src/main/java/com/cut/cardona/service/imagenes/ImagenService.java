@@ -6,23 +6,35 @@ import com.cut.cardona.modelo.perros.ImagenPerro;
 import com.cut.cardona.modelo.perros.RepositorioImagenPerro;
 import com.cut.cardona.security.CustomUserDetails;
 import com.cut.cardona.service.infra.storage.ImageStorageService;
+import com.cut.cardona.service.infra.storage.TipoImagen;
+import com.cut.cardona.service.infra.storage.VariantesImagen;
+import com.cut.cardona.service.perros.PerroCatalogoEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * ImagenService encapsula la lógica de negocio y acceso a almacenamiento
@@ -36,9 +48,15 @@ public class ImagenService {
     private final ImageStorageService imageStorageService;
     private final RepositorioImagenPerfil repositorioImagenPerfil;
     private final RepositorioImagenPerro repositorioImagenPerro;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ProxyImagenesCdn proxyImagenesCdn;
+    private final CacheImagenesPerro cacheImagenesPerro;
+    private final DespachadorBorrados despachadorBorrados;
 
-    @Value("${app.storage.perros-dir:uploads/perritos/}")
-    private String perrosDir;
+    private static final int MAX_ANCHO_VARIANTE = 4096;
+
+    // Generaciones diferidas de variantes en curso, por nombre de archivo
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> variantesEnCurso = new ConcurrentHashMap<>();
 
     private static final Map<String, String> MIME_TYPES = Map.of(
             "jpg", "image/jpeg",
@@ -51,37 +69,133 @@ public class ImagenService {
     // ================== LÓGICA IMÁGEN PERRO (GET) ==================
 
     public ImagenPerroContenidoResult obtenerContenidoImagenPerro(String id) {
+        var cacheada = cacheImagenesPerro.obtener(id);
+        if (cacheada != null) return desdeCache(cacheada);
+        if (!imageStorageService.isCloudProvider()) {
+            LocalFile lf = findLocalDogFile(id);
+            if (lf == null) return ImagenPerroContenidoResult.notFound();
+            return servirArchivoLocal(id, lf.path(), lf.contentType());
+        }
+        return servirDesdeCdn(id, imageStorageService.resolveDogImagePublicUrl(id));
+    }
+
+    /**
+     * Variante responsiva (?w=&fmt=) de la imagen: se ajusta al ancho pre-calculado más cercano.
+     * En local, si la imagen es anterior a las variantes, se genera en la primera petición y queda en disco.
+     */
+    public ImagenPerroContenidoResult obtenerVarianteImagenPerro(String id, Integer ancho, String fmt) {
+        String formato = VariantesImagen.normalizarFormato(fmt);
+        if (formato == null || (ancho != null && (ancho <= 0 || ancho > MAX_ANCHO_VARIANTE))) return ImagenPerroContenidoResult.badRequest();
+        if (!esUUID(id)) return ImagenPerroContenidoResult.notFound();
+        int w = VariantesImagen.anchoMasCercano(ancho != null ? ancho : MAX_ANCHO_VARIANTE);
+        if (!imageStorageService.isCloudProvider()) formato = VariantesImagen.formatoLocal(formato);
+        String clave = VariantesImagen.nombreArchivo(id, w, formato);
+        var cacheada = cacheImagenesPerro.obtener(clave);
+        if (cacheada != null) return desdeCache(cacheada);
         if (!imageStorageService.isCloudProvider()) {
             LocalFile lf = findLocalDogFile(id);
             if (lf == null) return ImagenPerroContenidoResult.notFound();
             try {
-                byte[] body = Files.readAllBytes(lf.path());
-                return ImagenPerroContenidoResult.ok(body, lf.contentType(), body.length);
+                // En disco la variante va con el id del blob: las imágenes deduplicadas comparten sus variantes
+                String nombre = VariantesImagen.nombreArchivo(imageStorageService.resolveDogImageStorageId(id), w, formato);
+                Path variante = varianteLocal(lf.path(), nombre, w, formato);
+                return servirArchivoLocal(clave, variante, VariantesImagen.contentType(formato));
             } catch (IOException e) {
-                log.warn("Error leyendo imagen local {}: {}", id, e.toString());
-                return ImagenPerroContenidoResult.notFound();
+                log.warn("No se pudo generar variante {}: {}; se sirve el original", clave, e.getMessage());
+                return servirArchivoLocal(id, lf.path(), lf.contentType());
             }
         }
-        String url = imageStorageService.resolveDogImagePublicUrl(id);
+        return servirDesdeCdn(clave, imageStorageService.resolveDogImageVariantUrl(id, w, formato));
+    }
+
+    private ImagenPerroContenidoResult servirArchivoLocal(String clave, Path path, String contentType) {
         try {
-            ProxyResult pr = fetchBinary(url, true);
-            if (pr == null || pr.body == null || pr.body.length == 0) return ImagenPerroContenidoResult.notFound();
-            String mt = pr.mediaType != null ? pr.mediaType : MediaType.IMAGE_JPEG_VALUE;
-            long len = pr.length >= 0 ? pr.length : pr.body.length;
-            return ImagenPerroContenidoResult.ok(pr.body, mt, len);
+            // No se carga el archivo en memoria: el recurso se copia por bloques al escribir la respuesta
+            // (y Spring resuelve Range / 304 a partir del recurso y las cabeceras de validación).
+            BasicFileAttributes atributos = Files.readAttributes(path, BasicFileAttributes.class);
+            long len = atributos.size();
+            long modificado = atributos.lastModifiedTime().toMillis();
+            String etag = etagLocal(clave, len, modificado);
+            if (cacheImagenesPerro.admite(len)) {
+                ByteBuffer datos = cacheImagenesPerro.reservar((int) len);
+                try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                    if (llenar(ch, datos)) {
+                        return desdeCache(cacheImagenesPerro.guardar(clave, datos, contentType, etag, modificado));
+                    }
+                }
+            }
+            return ImagenPerroContenidoResult.ok(new FileSystemResource(path), contentType, len, etag, modificado);
+        } catch (IOException e) {
+            log.warn("Error leyendo imagen local {}: {}", clave, e.toString());
+            return ImagenPerroContenidoResult.notFound();
+        }
+    }
+
+    private ImagenPerroContenidoResult servirDesdeCdn(String clave, String url) {
+        try {
+            // El cuerpo del CDN se reenvía tal cual llega; el stream se cierra al terminar de escribir la respuesta.
+            var pr = proxyImagenesCdn.get(url);
+            if (pr == null) return ImagenPerroContenidoResult.notFound();
+            if (pr.length() == 0) {
+                pr.body().close();
+                return ImagenPerroContenidoResult.notFound();
+            }
+            String mt = pr.mediaType() != null ? pr.mediaType() : MediaType.IMAGE_JPEG_VALUE;
+            if (cacheImagenesPerro.admite(pr.length())) {
+                ByteBuffer datos = cacheImagenesPerro.reservar((int) pr.length());
+                try (InputStream in = pr.body()) {
+                    if (!llenar(Channels.newChannel(in), datos)) return ImagenPerroContenidoResult.badGateway();
+                }
+                return desdeCache(cacheImagenesPerro.guardar(clave, datos, mt, null, -1));
+            }
+            return ImagenPerroContenidoResult.ok(new InputStreamResource(pr.body()), mt, pr.length(), null, -1);
+        } catch (RejectedExecutionException ex) {
+            log.warn("Proxy GET {} rechazado: {}", clave, ex.getMessage());
+            return ImagenPerroContenidoResult.unavailable();
         } catch (Exception ex) {
-            log.warn("Fallo proxy GET {}: {}", id, ex.toString());
+            log.warn("Fallo proxy GET {}: {}", clave, ex.toString());
             return ImagenPerroContenidoResult.badGateway();
         }
     }
 
+    /** Devuelve la variante en disco o la genera; peticiones simultáneas de la misma variante esperan a una sola generación. */
+    private Path varianteLocal(Path original, String nombre, int ancho, String formato) throws IOException {
+        Path destino = original.resolveSibling(nombre);
+        if (Files.exists(destino)) return destino;
+        CompletableFuture<Path> propia = new CompletableFuture<>();
+        CompletableFuture<Path> enCurso = variantesEnCurso.putIfAbsent(nombre, propia);
+        if (enCurso != null) {
+            try {
+                return enCurso.join();
+            } catch (CompletionException e) {
+                throw new IOException(e.getCause() != null ? e.getCause().getMessage() : e.getMessage(), e);
+            }
+        }
+        try {
+            if (!Files.exists(destino)) VariantesImagen.generar(original, destino, ancho, formato);
+            propia.complete(destino);
+            return destino;
+        } catch (IOException | RuntimeException e) {
+            propia.completeExceptionally(e);
+            throw e;
+        } finally {
+            variantesEnCurso.remove(nombre, propia);
+        }
+    }
+
     public ImagenPerroHeadResult obtenerHeadImagenPerro(String id) {
+        var cacheada = cacheImagenesPerro.obtener(id);
+        if (cacheada != null) {
+            return ImagenPerroHeadResult.ok(cacheada.mediaType(), cacheada.longitud(), cacheada.etag(), cacheada.lastModified());
+        }
         if (!imageStorageService.isCloudProvider()) {
             LocalFile lf = findLocalDogFile(id);
             if (lf == null) return ImagenPerroHeadResult.notFound();
             try {
-                long len = Files.size(lf.path());
-                return ImagenPerroHeadResult.ok(lf.contentType(), len);
+                BasicFileAttributes atributos = Files.readAttributes(lf.path(), BasicFileAttributes.class);
+                long len = atributos.size();
+                long modificado = atributos.lastModifiedTime().toMillis();
+                return ImagenPerroHeadResult.ok(lf.contentType(), len, etagLocal(id, len, modificado), modificado);
             } catch (IOException e) {
                 log.warn("Error HEAD local {}: {}", id, e.toString());
                 return ImagenPerroHeadResult.notFound();
@@ -89,10 +203,13 @@ public class ImagenService {
         }
         String url = imageStorageService.resolveDogImagePublicUrl(id);
         try {
-            ProxyResult pr = fetchBinary(url, false);
+            var pr = proxyImagenesCdn.head(url);
             if (pr == null) return ImagenPerroHeadResult.notFound();
-            String mt = pr.mediaType != null ? pr.mediaType : MediaType.IMAGE_JPEG_VALUE;
-            return ImagenPerroHeadResult.ok(mt, pr.length);
+            String mt = pr.mediaType() != null ? pr.mediaType() : MediaType.IMAGE_JPEG_VALUE;
+            return ImagenPerroHeadResult.ok(mt, pr.length(), null, -1);
+        } catch (RejectedExecutionException ex) {
+            log.warn("Proxy HEAD {} rechazado: {}", id, ex.getMessage());
+            return ImagenPerroHeadResult.unavailable();
         } catch (Exception ex) {
             log.warn("Fallo proxy HEAD {}: {}", id, ex.toString());
             return ImagenPerroHeadResult.badGateway();
@@ -124,17 +241,12 @@ public class ImagenService {
             boolean esDueno = img.getPerro() != null && img.getPerro().getUsuario() != null && Objects.equals(img.getPerro().getUsuario().getId(), user.getUsuario().getId());
             boolean esPriv = user.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN") || a.getAuthority().equals("ROLE_REVIEWER"));
             if (!esDueno && !esPriv) return EliminacionImagenPerroResult.of(HttpStatus.FORBIDDEN, "No autorizado");
-            try { repositorioImagenPerro.delete(img); } catch (Exception e) { log.warn("No se pudo borrar entidad {}: {}", id, e.getMessage()); }
-        }
-        try {
-            if (imageStorageService.isCloudProvider()) {
-                imageStorageService.deleteDogImage(id);
-            } else {
-                deleteLocalDogFiles(id);
-            }
-        } catch (Exception e) {
-            log.warn("Error eliminando archivo imagen {}: {}", id, e.getMessage());
+            try {
+                repositorioImagenPerro.delete(img);
+                if (img.getPerro() != null) eventPublisher.publishEvent(new PerroCatalogoEvent(img.getPerro().getId()));
+            } catch (Exception e) { log.warn("No se pudo borrar entidad {}: {}", id, e.getMessage()); }
         }
+        despachadorBorrados.programar(TipoImagen.PERRO, List.of(id));
         return EliminacionImagenPerroResult.of(HttpStatus.OK, "Imagen eliminada (o ya inexistente)");
     }
 
@@ -158,80 +270,47 @@ public class ImagenService {
     }
 
     private record LocalFile(Path path, String contentType) {}
-    private record ProxyResult(byte[] body, String mediaType, long length) {}
 
-    private LocalFile findLocalDogFile(String id) {
-        Path base = Paths.get(perrosDir);
-        String[] exts = {"jpg", "jpeg", "png", "gif", "webp"};
-        try {
-            for (String ext : exts) {
-                Path p = base.resolve(id + "." + ext);
-                if (Files.exists(p)) {
-                    String ct = MIME_TYPES.getOrDefault(ext, MediaType.IMAGE_JPEG_VALUE);
-                    return new LocalFile(p, ct);
-                }
-            }
-            if (Files.exists(base) && Files.isDirectory(base)) {
-                try (var stream = Files.list(base)) {
-                    Optional<Path> found = stream.filter(Files::isRegularFile).filter(p -> {
-                        String fn = p.getFileName().toString();
-                        return fn.startsWith(id + ".") || fn.equals(id);
-                    }).findFirst();
-                    if (found.isPresent()) {
-                        Path p = found.get();
-                        String fn = p.getFileName().toString();
-                        int dot = fn.lastIndexOf('.');
-                        String ext = dot > 0 ? fn.substring(dot + 1).toLowerCase() : "jpg";
-                        String ct = MIME_TYPES.getOrDefault(ext, MediaType.IMAGE_JPEG_VALUE);
-                        return new LocalFile(p, ct);
-                    }
-                }
-            }
-        } catch (Exception ex) {
-            log.debug("findLocalDogFile fallo id={}: {}", id, ex.getMessage());
+    private ImagenPerroContenidoResult desdeCache(CacheImagenesPerro.Entrada e) {
+        return ImagenPerroContenidoResult.ok(e.recurso(), e.mediaType(), e.longitud(), e.etag(), e.lastModified());
+    }
+
+    /** Lee hasta llenar el buffer; false si el origen termina antes (archivo truncado o respuesta incompleta). */
+    private static boolean llenar(ReadableByteChannel ch, ByteBuffer destino) throws IOException {
+        while (destino.hasRemaining()) {
+            if (ch.read(destino) < 0) return false;
         }
-        return null;
+        return true;
     }
 
-    private ProxyResult fetchBinary(String url, boolean includeBody) throws IOException, InterruptedException {
-        HttpClient client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build();
-        HttpRequest.Builder rb = HttpRequest.newBuilder().uri(URI.create(url)).header("User-Agent", "perritoscutapp/1.0");
-        if (includeBody) rb.GET(); else rb.method("HEAD", HttpRequest.BodyPublishers.noBody());
-        HttpResponse<byte[]> resp = client.send(rb.build(), HttpResponse.BodyHandlers.ofByteArray());
-        if (resp.statusCode() >= 400) return null;
-        String ct = resp.headers().firstValue("content-type").map(v -> v.split(";",2)[0]).orElse(null);
-        long len = -1;
-        try { var clOpt = resp.headers().firstValue("content-length"); if (clOpt.isPresent()) len = Long.parseLong(clOpt.get()); } catch (Exception ignored) {}
-        byte[] body = includeBody ? resp.body() : new byte[0];
-        return new ProxyResult(body, ct, len);
+    /** ETag fuerte derivado de id + tamaño + fecha de modificación: cambia si el archivo se reemplaza. */
+    private String etagLocal(String id, long len, long modificado) {
+        return "\"" + id + "-" + Long.toHexString(len) + "-" + Long.toHexString(modificado) + "\"";
     }
 
-    private void deleteLocalDogFiles(String id) {
-        try {
-            Path base = Paths.get(perrosDir);
-            String[] exts = {"jpg", "jpeg", "png", "gif", "webp"};
-            for (String ext : exts) {
-                Path p = base.resolve(id + "." + ext);
-                if (Files.exists(p)) {
-                    try { Files.delete(p); } catch (Exception ex) { log.warn("No se pudo borrar archivo {}: {}", p, ex.getMessage()); }
-                }
-            }
-        } catch (Exception ex) {
-            log.debug("deleteLocalDogFiles fallo id={}: {}", id, ex.getMessage());
-        }
+    // El storage local indexa id -> archivo: una consulta en memoria, sin probar extensiones ni listar el directorio
+    private LocalFile findLocalDogFile(String id) {
+        Path p = imageStorageService.resolveLocalDogImagePath(id);
+        if (p == null) return null;
+        String fn = p.getFileName().toString();
+        String ext = fn.substring(fn.lastIndexOf('.') + 1).toLowerCase();
+        return new LocalFile(p, MIME_TYPES.getOrDefault(ext, MediaType.IMAGE_JPEG_VALUE));
     }
 
     // ================== RESULT RECORDS ==================
 
-    public record ImagenPerroContenidoResult(HttpStatus status, byte[] body, String mediaType, long length) {
-        public static ImagenPerroContenidoResult ok(byte[] b, String mt, long len) { return new ImagenPerroContenidoResult(HttpStatus.OK, b, mt, len); }
-        public static ImagenPerroContenidoResult notFound() { return new ImagenPerroContenidoResult(HttpStatus.NOT_FOUND, null, null, -1); }
-        public static ImagenPerroContenidoResult badGateway() { return new ImagenPerroContenidoResult(HttpStatus.BAD_GATEWAY, null, null, -1); }
+    public record ImagenPerroContenidoResult(HttpStatus status, Resource body, String mediaType, long length, String etag, long lastModified) {
+        public static ImagenPerroContenidoResult ok(Resource b, String mt, long len, String etag, long lastModified) { return new ImagenPerroContenidoResult(HttpStatus.OK, b, mt, len, etag, lastModified); }
+        public static ImagenPerroContenidoResult notFound() { return new ImagenPerroContenidoResult(HttpStatus.NOT_FOUND, null, null, -1, null, -1); }
+        public static ImagenPerroContenidoResult badGateway() { return new ImagenPerroContenidoResult(HttpStatus.BAD_GATEWAY, null, null, -1, null, -1); }
+        public static ImagenPerroContenidoResult badRequest() { return new ImagenPerroContenidoResult(HttpStatus.BAD_REQUEST, null, null, -1, null, -1); }
+        public static ImagenPerroContenidoResult unavailable() { return new ImagenPerroContenidoResult(HttpStatus.SERVICE_UNAVAILABLE, null, null, -1, null, -1); }
     }
-    public record ImagenPerroHeadResult(HttpStatus status, String mediaType, long length) {
-        public static ImagenPerroHeadResult ok(String mt, long len) { return new ImagenPerroHeadResult(HttpStatus.OK, mt, len); }
-        public static ImagenPerroHeadResult notFound() { return new ImagenPerroHeadResult(HttpStatus.NOT_FOUND, null, -1); }
-        public static ImagenPerroHeadResult badGateway() { return new ImagenPerroHeadResult(HttpStatus.BAD_GATEWAY, null, -1); }
+    public record ImagenPerroHeadResult(HttpStatus status, String mediaType, long length, String etag, long lastModified) {
+        public static ImagenPerroHeadResult ok(String mt, long len, String etag, long lastModified) { return new ImagenPerroHeadResult(HttpStatus.OK, mt, len, etag, lastModified); }
+        public static ImagenPerroHeadResult notFound() { return new ImagenPerroHeadResult(HttpStatus.NOT_FOUND, null, -1, null, -1); }
+        public static ImagenPerroHeadResult badGateway() { return new ImagenPerroHeadResult(HttpStatus.BAD_GATEWAY, null, -1, null, -1); }
+        public static ImagenPerroHeadResult unavailable() { return new ImagenPerroHeadResult(HttpStatus.SERVICE_UNAVAILABLE, null, -1, null, -1); }
     }
     public record PerfilImagenResult(HttpStatus status, String redirectUrl) { public static PerfilImagenResult of(HttpStatus st, String url){ return new PerfilImagenResult(st, url);} }
     public record EliminacionImagenPerroResult(HttpStatus status, String mensaje) { public static EliminacionImagenPerroResult of(HttpStatus st, String m){ return new EliminacionImagenPerroResult(st,m);} }
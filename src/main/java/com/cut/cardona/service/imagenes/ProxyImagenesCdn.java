@@ -0,0 +1,172 @@
+package com.cut.cardona.service.imagenes;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cliente compartido para traer imágenes del CDN y reenviarlas sin almacenarlas completas en memoria.
+ * Un único HttpClient (HTTP/2, keep-alive) reutiliza conexiones y sesiones TLS entre peticiones GET y HEAD;
+ * un semáforo acota las transferencias simultáneas para que un pico de tráfico no agote hilos ni conexiones.
+ * El timeout de la petición solo cubre la espera de las cabeceras: cada cuerpo tiene además un plazo total
+ * tras el que se cierra desde otro hilo, así un CDN que se detiene a mitad no retiene el permiso ni el hilo.
+ */
+@Component
+@Slf4j
+public class ProxyImagenesCdn {
+
+    private static final String USER_AGENT = "perritoscutapp/1.0";
+
+    private final HttpClient client;
+    private final Duration readTimeout;
+    private final Semaphore permisos;
+    private final long esperaPermisoMs;
+    private final long plazoCuerpoMs;
+    private final ScheduledExecutorService vigilante = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "proxy-imagenes-plazo");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ProxyImagenesCdn(
+            @Value("${app.imagenes.proxy.connect-timeout-ms:3000}") long connectTimeoutMs,
+            @Value("${app.imagenes.proxy.read-timeout-ms:10000}") long readTimeoutMs,
+            @Value("${app.imagenes.proxy.max-concurrentes:64}") int maxConcurrentes,
+            @Value("${app.imagenes.proxy.espera-permiso-ms:2000}") long esperaPermisoMs,
+            @Value("${app.imagenes.proxy.plazo-cuerpo-ms:30000}") long plazoCuerpoMs) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        this.readTimeout = Duration.ofMillis(readTimeoutMs);
+        this.permisos = new Semaphore(Math.max(1, maxConcurrentes), true);
+        this.esperaPermisoMs = esperaPermisoMs;
+        this.plazoCuerpoMs = Math.max(1, plazoCuerpoMs);
+        log.info("ProxyImagenesCdn: connectTimeout={}ms readTimeout={}ms plazoCuerpo={}ms maxConcurrentes={}",
+                connectTimeoutMs, readTimeoutMs, this.plazoCuerpoMs, maxConcurrentes);
+    }
+
+    @PreDestroy
+    void detener() {
+        vigilante.shutdownNow();
+    }
+
+    /**
+     * Respuesta del upstream; en GET el cuerpo queda abierto y debe cerrarse para liberar conexión y permiso.
+     * Si no se ha cerrado al vencer el plazo del cuerpo se cierra solo y las lecturas pendientes fallan con IOException.
+     */
+    public record Respuesta(InputStream body, String mediaType, long length) {}
+
+    /**
+     * GET en streaming. Devuelve null si el upstream responde con error (>= 400).
+     * Lanza RejectedExecutionException si no hay permiso libre dentro del tiempo de espera.
+     */
+    public Respuesta get(String url) throws IOException, InterruptedException {
+        adquirir();
+        boolean entregado = false;
+        try {
+            HttpResponse<InputStream> resp = client.send(peticion(url).GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+            if (resp.statusCode() >= 400) {
+                resp.body().close();
+                return null;
+            }
+            CuerpoConPermiso cuerpo = new CuerpoConPermiso(resp.body(), permisos);
+            cuerpo.vigilar(vigilante, plazoCuerpoMs, url);
+            Respuesta r = new Respuesta(cuerpo, mediaType(resp), longitud(resp));
+            entregado = true;
+            return r;
+        } finally {
+            if (!entregado) permisos.release();
+        }
+    }
+
+    /** HEAD sobre las mismas conexiones del GET. Devuelve null si el upstream responde con error (>= 400). */
+    public Respuesta head(String url) throws IOException, InterruptedException {
+        adquirir();
+        try {
+            HttpResponse<Void> resp = client.send(peticion(url).method("HEAD", HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.discarding());
+            if (resp.statusCode() >= 400) return null;
+            return new Respuesta(null, mediaType(resp), longitud(resp));
+        } finally {
+            permisos.release();
+        }
+    }
+
+    private void adquirir() throws InterruptedException {
+        if (!permisos.tryAcquire(esperaPermisoMs, TimeUnit.MILLISECONDS)) {
+            throw new RejectedExecutionException("Proxy de imágenes saturado");
+        }
+    }
+
+    private HttpRequest.Builder peticion(String url) {
+        return HttpRequest.newBuilder().uri(URI.create(url)).timeout(readTimeout).header("User-Agent", USER_AGENT);
+    }
+
+    private static String mediaType(HttpResponse<?> resp) {
+        return resp.headers().firstValue("content-type").map(v -> v.split(";", 2)[0]).orElse(null);
+    }
+
+    private static long longitud(HttpResponse<?> resp) {
+        return resp.headers().firstValueAsLong("content-length").orElse(-1);
+    }
+
+    /**
+     * Devuelve el permiso una única vez, al cerrar el cuerpo (completo, abortado, con error o por plazo vencido).
+     * Cerrar el stream del HttpClient desde otro hilo desbloquea una lectura en curso, que termina con IOException.
+     */
+    private static final class CuerpoConPermiso extends FilterInputStream {
+        private final Semaphore permisos;
+        private final AtomicBoolean liberado = new AtomicBoolean();
+        private volatile ScheduledFuture<?> plazo;
+
+        CuerpoConPermiso(InputStream in, Semaphore permisos) {
+            super(in);
+            this.permisos = permisos;
+        }
+
+        void vigilar(ScheduledExecutorService vigilante, long plazoMs, String url) {
+            try {
+                plazo = vigilante.schedule(() -> {
+                    if (liberado.get()) return;
+                    log.warn("Proxy GET {}: cuerpo sin terminar tras {} ms, se aborta", url, plazoMs);
+                    try {
+                        close();
+                    } catch (IOException e) {
+                        log.debug("Cierre del cuerpo abortado {}: {}", url, e.getMessage());
+                    }
+                }, plazoMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // En el apagado no se vigila: el cuerpo se cierra igualmente al terminar la respuesta
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            ScheduledFuture<?> p = plazo;
+            if (p != null) p.cancel(false);
+            try {
+                super.close();
+            } finally {
+                if (liberado.compareAndSet(false, true)) permisos.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.cut.cardona.service.imagenes;
+
+import com.cut.cardona.modelo.imagenes.RepositorioStagingSubida;
+import com.cut.cardona.modelo.perros.RepositorioImagenPerro;
+import com.cut.cardona.service.infra.storage.BorradoIncompletoException;
+import com.cut.cardona.service.infra.storage.ImageStorageService;
+import com.cut.cardona.service.infra.storage.PaginaAlmacenamiento;
+import com.cut.cardona.service.infra.storage.TipoImagen;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recolector incremental de imágenes de perros huérfanas (en el storage pero sin fila en imagenes_perros).
+ * Cada ejecución:
+ * 1) Revisa las subidas de staging sin asociar más antiguas que el periodo de gracia (vía rápida, por índice).
+ * 2) Continúa el barrido del storage desde el cursor de la ejecución anterior, unas cuantas páginas por vez;
+ *    cada página se compara por id con la base (un IN por página) y las huérfanas se borran en lote.
+ * Nada más reciente que el periodo de gracia se toca: una subida en curso aún no tiene su fila.
+ * La memoria depende del tamaño de página, no del número de objetos.
+ */
+@Component
+@Slf4j
+public class RecolectorImagenesHuerfanas {
+
+    public record Ejecucion(Instant inicio, int revisadas, int eliminadas, int stagingEliminadas, long duracionMs) {}
+
+    public record Estadisticas(long ejecuciones, long revisadas, long eliminadas, long stagingEliminadas,
+                               long pasadasCompletas, long errores, boolean barridoEnCurso, Ejecucion ultima,
+                               long intervaloMinutos, long graciaHoras, int lote, int paginasPorEjecucion) {}
+
+    private final ImageStorageService imageStorageService;
+    private final RepositorioImagenPerro repositorioImagenPerro;
+    private final RepositorioStagingSubida repositorioStagingSubida;
+    private final CacheImagenesPerro cacheImagenesPerro;
+    private final long intervaloMinutos;
+    private final Duration gracia;
+    private final int lote;
+    private final int paginasPorEjecucion;
+    private final ScheduledExecutorService ejecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "imagenes-huerfanas");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Solo lo toca el hilo del recolector; volatile para leerlo en las estadísticas
+    private volatile String cursor;
+    private volatile boolean barridoEnCurso;
+
+    private final LongAdder ejecuciones = new LongAdder();
+    private final LongAdder revisadas = new LongAdder();
+    private final LongAdder eliminadas = new LongAdder();
+    private final LongAdder stagingEliminadas = new LongAdder();
+    private final LongAdder pasadasCompletas = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+    private final AtomicReference<Ejecucion> ultima = new AtomicReference<>();
+
+    public RecolectorImagenesHuerfanas(
+            ImageStorageService imageStorageService,
+            RepositorioImagenPerro repositorioImagenPerro,
+            RepositorioStagingSubida repositorioStagingSubida,
+            CacheImagenesPerro cacheImagenesPerro,
+            @Value("${app.imagenes.gc.intervalo-minutos:60}") long intervaloMinutos,
+            @Value("${app.imagenes.gc.gracia-horas:24}") long graciaHoras,
+            @Value("${app.imagenes.gc.lote:100}") int lote,
+            @Value("${app.imagenes.gc.paginas-por-ejecucion:50}") int paginasPorEjecucion) {
+        this.imageStorageService = imageStorageService;
+        this.repositorioImagenPerro = repositorioImagenPerro;
+        this.repositorioStagingSubida = repositorioStagingSubida;
+        this.cacheImagenesPerro = cacheImagenesPerro;
+        this.intervaloMinutos = intervaloMinutos;
+        this.gracia = Duration.ofHours(Math.max(1, graciaHoras));
+        this.lote = Math.min(Math.max(1, lote), 500);
+        this.paginasPorEjecucion = Math.max(1, paginasPorEjecucion);
+        if (intervaloMinutos > 0) {
+            ejecutor.scheduleWithFixedDelay(this::ejecutar, 5, intervaloMinutos, TimeUnit.MINUTES);
+        }
+        log.info("RecolectorImagenesHuerfanas: intervalo={}min gracia={}h lote={} paginas={}",
+                intervaloMinutos, this.gracia.toHours(), this.lote, this.paginasPorEjecucion);
+    }
+
+    @PreDestroy
+    void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    /** Encola una ejecución inmediata en el hilo del recolector (nunca dos a la vez). */
+    public void solicitarEjecucion() {
+        ejecutor.execute(this::ejecutar);
+    }
+
+    public Estadisticas estadisticas() {
+        return new Estadisticas(ejecuciones.sum(), revisadas.sum(), eliminadas.sum(), stagingEliminadas.sum(),
+                pasadasCompletas.sum(), errores.sum(), barridoEnCurso, ultima.get(),
+                intervaloMinutos, gracia.toHours(), lote, paginasPorEjecucion);
+    }
+
+    void ejecutar() {
+        long t0 = System.nanoTime();
+        Instant inicio = Instant.now();
+        Instant umbral = inicio.minus(gracia);
+        int[] contadores = new int[3]; // revisadas, eliminadas, staging
+        try {
+            limpiarStaging(umbral, contadores);
+            barrer(umbral, contadores);
+        } catch (Exception e) {
+            errores.increment();
+            log.warn("[GC imagenes] Ejecución interrumpida (se reanuda desde el cursor): {}", e.getMessage());
+        } finally {
+            ejecuciones.increment();
+            revisadas.add(contadores[0]);
+            eliminadas.add(contadores[1]);
+            stagingEliminadas.add(contadores[2]);
+            long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+            ultima.set(new Ejecucion(inicio, contadores[0], contadores[1], contadores[2], ms));
+            if (contadores[1] > 0) {
+                log.info("[GC imagenes] Revisadas={} eliminadas={} staging={} en {} ms", contadores[0], contadores[1], contadores[2], ms);
+            }
+        }
+    }
+
+    // Subidas anotadas que nunca llegaron a asociarse; siempre la primera página porque se borran al procesarlas
+    private void limpiarStaging(Instant umbral, int[] contadores) {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<String> ids = repositorioStagingSubida.findOrphans(StagingSubidas.TIPO_PERRO, umbral, PageRequest.of(0, lote));
+            if (ids.isEmpty()) break;
+            contadores[1] += eliminarHuerfanas(ids);
+            contadores[2] += repositorioStagingSubida.deleteByUuidIn(ids);
+            if (ids.size() < lote) break;
+        }
+        contadores[2] += repositorioStagingSubida.deleteAsociadasAntesDe(umbral);
+    }
+
+    private void barrer(Instant umbral, int[] contadores) {
+        barridoEnCurso = true;
+        for (int i = 0; i < paginasPorEjecucion && !Thread.currentThread().isInterrupted(); i++) {
+            PaginaAlmacenamiento pagina = imageStorageService.listDogImages(cursor, lote);
+            // Variantes y original comparten id: se deduplican dentro de la página
+            Set<String> candidatos = new LinkedHashSet<>();
+            for (PaginaAlmacenamiento.Objeto o : pagina.objetos()) {
+                if (o.creado().isBefore(umbral)) candidatos.add(o.id());
+            }
+            contadores[0] += pagina.objetos().size();
+            if (!candidatos.isEmpty()) contadores[1] += eliminarHuerfanas(candidatos);
+            cursor = pagina.siguienteCursor();
+            if (cursor == null) {
+                pasadasCompletas.increment();
+                barridoEnCurso = false;
+                log.info("[GC imagenes] Barrido completo del storage terminado");
+                return;
+            }
+        }
+    }
+
+    private int eliminarHuerfanas(Iterable<String> ids) {
+        List<String> lista = new ArrayList<>();
+        ids.forEach(lista::add);
+        Set<String> existentes = new HashSet<>(repositorioImagenPerro.findIdsExistentes(lista));
+        lista.removeIf(existentes::contains);
+        if (lista.isEmpty()) return 0;
+        // Solo cuentan los objetos que el storage borró de verdad (no los que no existían o siguen en uso)
+        List<String> eliminados;
+        try {
+            eliminados = imageStorageService.deleteMany(TipoImagen.PERRO, lista);
+        } catch (BorradoIncompletoException e) {
+            // Las pendientes siguen huérfanas: se reintentan en el próximo barrido
+            eliminados = e.getEliminados();
+            log.warn("[GC imagenes] {}", e.getMessage());
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        lista.forEach(cacheImagenesPerro::invalidar);
+        return eliminados.size();
+    }
+}
@@ -0,0 +1,52 @@
+package com.cut.cardona.service.imagenes;
+
+import com.cut.cardona.modelo.imagenes.RepositorioStagingSubida;
+import com.cut.cardona.modelo.imagenes.StagingSubida;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Anota las subidas al storage hasta que una fila las referencia. El registro va en su propia transacción
+ * para que sobreviva aunque falle la que asocia la imagen: justo ese caso es el que deja huérfanas.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StagingSubidas {
+
+    public static final String TIPO_PERRO = "dog";
+
+    private final RepositorioStagingSubida repositorioStagingSubida;
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void registrar(String id, String tipo) {
+        try {
+            repositorioStagingSubida.save(StagingSubida.builder()
+                    .uuid(id)
+                    .createdAt(Instant.now())
+                    .tipo(tipo)
+                    .asociado(false)
+                    .build());
+        } catch (Exception ex) {
+            // Sin registro la imagen solo se recupera en el barrido completo del storage
+            log.warn("No se pudo registrar la subida {} en staging: {}", id, ex.getMessage());
+        }
+    }
+
+    /** Se llama dentro de la transacción que guarda la fila que referencia la imagen. */
+    @Transactional
+    public void marcarAsociada(String id) {
+        repositorioStagingSubida.marcarAsociada(id);
+    }
+
+    @Transactional
+    public void marcarAsociadas(Collection<String> ids) {
+        if (!ids.isEmpty()) repositorioStagingSubida.marcarAsociadas(ids);
+    }
+}
@@ -0,0 +1,189 @@
+package com.cut.cardona.service.imagenes;
+
+import com.cut.cardona.modelo.perros.ImagenPerro;
+import com.cut.cardona.service.infra.storage.ArchivoSpool;
+import com.cut.cardona.service.infra.storage.ImageStorageService;
+import com.cut.cardona.service.infra.storage.TipoImagen;
+import com.cut.cardona.service.perros.PerroService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * Subida de imágenes de perro en segundo plano.
+ * La petición solo valida permisos/límites, vuelca el archivo al spool en disco y devuelve un id de subida;
+ * un pool acotado de trabajadores hace el redimensionado/compresión y el envío al proveedor, y el cliente
+ * consulta el estado con ese id. Con la cola llena la subida se rechaza (RejectedExecutionException)
+ * antes de escribir nada, en lugar de acumular hilos o archivos.
+ */
+@Service
+@Slf4j
+public class SubidaAsincronaService {
+
+    public enum Estado { EN_COLA, PROCESANDO, COMPLETADA, FALLIDA }
+
+    public record EstadoSubida(String uploadId, String perroId, Estado estado, String imagenId, String url,
+                               String error, Instant creada, Instant actualizada) {
+        boolean terminada() {
+            return estado == Estado.COMPLETADA || estado == Estado.FALLIDA;
+        }
+
+        EstadoSubida con(Estado nuevo, String imagenId, String url, String error) {
+            return new EstadoSubida(uploadId, perroId, nuevo, imagenId, url, error, creada, Instant.now());
+        }
+    }
+
+    private record Seguimiento(String usuario, EstadoSubida estado) {}
+
+    private final PerroService perroService;
+    private final ImageStorageService imageStorageService;
+    private final StagingSubidas stagingSubidas;
+    private final DespachadorBorrados despachadorBorrados;
+    private final Path spoolDir;
+    private final Duration retencion;
+    private final ThreadPoolExecutor executor;
+    // Cupos = trabajadores + cola: se reserva antes de escribir al spool y se libera al terminar el procesamiento
+    private final Semaphore cupos;
+    private final ConcurrentHashMap<String, Seguimiento> subidas = new ConcurrentHashMap<>();
+
+    public SubidaAsincronaService(
+            PerroService perroService,
+            ImageStorageService imageStorageService,
+            StagingSubidas stagingSubidas,
+            DespachadorBorrados despachadorBorrados,
+            @Value("${app.uploads.async.workers:2}") int workers,
+            @Value("${app.uploads.async.capacidad:16}") int capacidad,
+            @Value("${app.uploads.async.spool-dir:uploads/spool/}") String spoolDir,
+            @Value("${app.uploads.async.retencion-min:30}") long retencionMin) {
+        this.perroService = perroService;
+        this.imageStorageService = imageStorageService;
+        this.stagingSubidas = stagingSubidas;
+        this.despachadorBorrados = despachadorBorrados;
+        this.spoolDir = Paths.get(spoolDir);
+        this.retencion = Duration.ofMinutes(retencionMin);
+        int hilos = Math.max(1, workers);
+        int cola = Math.max(1, capacidad);
+        AtomicInteger n = new AtomicInteger();
+        // El límite lo pone el semáforo. Un trabajador devuelve su cupo antes de volver a la cola, así que la cola
+        // admite hilos + cola tareas: el executor nunca rechaza una subida que el semáforo aceptó
+        this.executor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(hilos + cola), r -> {
+            Thread t = new Thread(r, "subidas-imagenes-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.cupos = new Semaphore(hilos + cola);
+        log.info("SubidaAsincronaService: workers={} capacidad={} spool='{}'", hilos, cola, this.spoolDir);
+    }
+
+    @PostConstruct
+    void limpiarSpool() {
+        // El estado de las subidas vive en memoria: lo que quedó en el spool de una ejecución anterior no se puede retomar
+        if (!Files.isDirectory(spoolDir)) return;
+        try (var stream = Files.list(spoolDir)) {
+            stream.filter(p -> p.getFileName().toString().endsWith(".upload")).forEach(p -> {
+                try { Files.deleteIfExists(p); } catch (IOException e) { log.debug("No se pudo borrar spool {}: {}", p, e.getMessage()); }
+            });
+        } catch (IOException e) {
+            log.warn("No se pudo limpiar el spool de subidas: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void detener() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) executor.shutdownNow();
+    }
+
+    /** Valida, vuelca al spool y encola el procesamiento; devuelve el estado inicial (EN_COLA). */
+    public EstadoSubida encolar(String perroId, MultipartFile file, String descripcion, Boolean principal) throws IOException {
+        perroService.validarNuevaImagen(perroId, file);
+        if (!cupos.tryAcquire()) {
+            throw new RejectedExecutionException("Cola de subidas llena, reintenta en unos segundos");
+        }
+        String uploadId = UUID.randomUUID().toString();
+        Path spool = spoolDir.resolve(uploadId + ".upload");
+        try {
+            Files.createDirectories(spoolDir);
+            file.transferTo(spool);
+            ArchivoSpool archivo = new ArchivoSpool(spool, file.getOriginalFilename(), file.getContentType(), file.getSize());
+            String usuario = SecurityContextHolder.getContext().getAuthentication().getName();
+            Instant ahora = Instant.now();
+            EstadoSubida inicial = new EstadoSubida(uploadId, perroId, Estado.EN_COLA, null, null, null, ahora, ahora);
+            purgarTerminadas();
+            subidas.put(uploadId, new Seguimiento(usuario, inicial));
+            executor.execute(() -> procesar(uploadId, perroId, archivo, descripcion, principal));
+            return inicial;
+        } catch (IOException | RuntimeException e) {
+            subidas.remove(uploadId);
+            Files.deleteIfExists(spool);
+            cupos.release();
+            throw e;
+        }
+    }
+
+    /** Estado de una subida; solo visible para quien la hizo o para ADMIN/REVIEWER. */
+    public Optional<EstadoSubida> estado(String uploadId) {
+        Seguimiento s = subidas.get(uploadId);
+        if (s == null) return Optional.empty();
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null) return Optional.empty();
+        boolean esPrivilegiado = auth.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN") || a.getAuthority().equals("ROLE_REVIEWER"));
+        if (!esPrivilegiado && !s.usuario().equals(auth.getName())) return Optional.empty();
+        return Optional.of(s.estado());
+    }
+
+    private void procesar(String uploadId, String perroId, ArchivoSpool archivo, String descripcion, Boolean principal) {
+        actualizar(uploadId, e -> e.con(Estado.PROCESANDO, null, null, null));
+        String almacenadaId = null;
+        try {
+            almacenadaId = imageStorageService.uploadDogImage(archivo).getId();
+            stagingSubidas.registrar(almacenadaId, StagingSubidas.TIPO_PERRO);
+            ImagenPerro img = perroService.asociarImagenSubida(perroId, almacenadaId, descripcion, principal);
+            actualizar(uploadId, e -> e.con(Estado.COMPLETADA, img.getId(), img.getUrl(), null));
+        } catch (Exception ex) {
+            if (almacenadaId != null) {
+                despachadorBorrados.enviar(TipoImagen.PERRO, List.of(almacenadaId));
+            }
+            String mensaje = ex.getMessage() != null ? ex.getMessage() : "Error al procesar la imagen";
+            log.warn("Subida {} del perro {} fallida: {}", uploadId, perroId, mensaje);
+            actualizar(uploadId, e -> e.con(Estado.FALLIDA, null, null, mensaje));
+        } finally {
+            try { Files.deleteIfExists(archivo.path()); } catch (IOException e) { log.debug("No se pudo borrar spool {}: {}", archivo.path(), e.getMessage()); }
+            cupos.release();
+        }
+    }
+
+    private void actualizar(String uploadId, UnaryOperator<EstadoSubida> cambio) {
+        subidas.computeIfPresent(uploadId, (k, s) -> new Seguimiento(s.usuario(), cambio.apply(s.estado())));
+    }
+
+    // Los estados terminados se conservan un tiempo para que el cliente los consulte y después se descartan
+    private void purgarTerminadas() {
+        Instant limite = Instant.now().minus(retencion);
+        subidas.values().removeIf(s -> s.estado().terminada() && s.estado().actualizada().isBefore(limite));
+    }
+}
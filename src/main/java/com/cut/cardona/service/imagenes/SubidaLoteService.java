@@ -0,0 +1,111 @@
+package com.cut.cardona.service.imagenes;
+
+import com.cut.cardona.errores.UnprocessableEntityException;
+import com.cut.cardona.modelo.perros.ImagenPerro;
+import com.cut.cardona.service.infra.storage.ImageStorageService;
+import com.cut.cardona.service.infra.storage.TipoImagen;
+import com.cut.cardona.service.perros.PerroService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Subida de varias imágenes de un perro en una sola petición.
+ * Permisos y límite se validan una vez; los archivos se preprocesan y suben en paralelo en un pool acotado
+ * (con la cola llena sube el propio hilo de la petición, así la memoria en vuelo no crece con la carga)
+ * y las filas se insertan juntas en una transacción. Si algo falla no se asocia ninguna y se borra lo subido.
+ */
+@Service
+@Slf4j
+public class SubidaLoteService {
+
+    private final PerroService perroService;
+    private final ImageStorageService imageStorageService;
+    private final StagingSubidas stagingSubidas;
+    private final DespachadorBorrados despachadorBorrados;
+    private final ThreadPoolExecutor executor;
+
+    public SubidaLoteService(
+            PerroService perroService,
+            ImageStorageService imageStorageService,
+            StagingSubidas stagingSubidas,
+            DespachadorBorrados despachadorBorrados,
+            @Value("${app.uploads.lote.hilos:4}") int hilos,
+            @Value("${app.uploads.lote.capacidad:16}") int capacidad) {
+        this.perroService = perroService;
+        this.imageStorageService = imageStorageService;
+        this.stagingSubidas = stagingSubidas;
+        this.despachadorBorrados = despachadorBorrados;
+        int n = Math.max(1, hilos);
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(Math.max(1, capacidad)), r -> {
+            Thread t = new Thread(r, "subidas-lote-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        log.info("SubidaLoteService: hilos={} capacidad={}", n, Math.max(1, capacidad));
+    }
+
+    @PreDestroy
+    void detener() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) executor.shutdownNow();
+    }
+
+    /**
+     * @param descripciones opcional, por posición
+     * @param principal     índice del archivo que pasa a ser la principal; null conserva la actual
+     *                      (o usa el primero si el perro no tiene)
+     */
+    public List<ImagenPerro> subir(String perroId, List<MultipartFile> files, List<String> descripciones, Integer principal) {
+        perroService.validarNuevasImagenes(perroId, files);
+        if (principal != null && (principal < 0 || principal >= files.size())) {
+            throw new UnprocessableEntityException("Índice de imagen principal fuera de rango");
+        }
+
+        List<CompletableFuture<String>> subidas = files.stream()
+                .map(f -> CompletableFuture.supplyAsync(() -> subirUna(f), executor))
+                .toList();
+        List<String> ids = new ArrayList<>(files.size());
+        Throwable error = null;
+        for (CompletableFuture<String> subida : subidas) {
+            try {
+                ids.add(subida.join());
+            } catch (CompletionException ex) {
+                if (error == null) error = ex.getCause() != null ? ex.getCause() : ex;
+            }
+        }
+        if (error != null) {
+            despachadorBorrados.enviar(TipoImagen.PERRO, ids);
+            throw new UnprocessableEntityException(error.getMessage() != null ? error.getMessage() : "Error al subir imagen");
+        }
+
+        try {
+            return perroService.asociarImagenesSubidas(perroId, ids, descripciones, principal);
+        } catch (RuntimeException ex) {
+            despachadorBorrados.enviar(TipoImagen.PERRO, ids);
+            throw ex;
+        }
+    }
+
+    private String subirUna(MultipartFile file) {
+        try {
+            String id = imageStorageService.uploadDogImage(file).getId();
+            stagingSubidas.registrar(id, StagingSubidas.TIPO_PERRO);
+            return id;
+        } catch (Exception ex) {
+            throw new CompletionException(ex);
+        }
+    }
+}
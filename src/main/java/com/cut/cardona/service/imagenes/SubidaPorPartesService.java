@@ -0,0 +1,302 @@
+package com.cut.cardona.service.imagenes;
+
+import com.cut.cardona.errores.DomainConflictException;
+import com.cut.cardona.errores.UnprocessableEntityException;
+import com.cut.cardona.modelo.imagenes.RepositorioStagingSubida;
+import com.cut.cardona.modelo.imagenes.StagingSubida;
+import com.cut.cardona.service.infra.storage.ArchivoSpool;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subidas reanudables por partes (al estilo tus): el cliente declara la longitud, envía el contenido en partes
+ * con su desplazamiento y, si la conexión se corta, consulta cuántos bytes llegaron y continúa desde ahí.
+ * Cada parte se escribe directamente del cuerpo de la petición al archivo de spool (NIO, sin buffers del tamaño
+ * del archivo) y el progreso se guarda en staging_subidas. Una subida completa se entrega como
+ * {@link ArchivoSpool} al servicio que la necesite (imagen de perro, documento de adopción) y luego se elimina.
+ * Las sesiones sin actividad durante el periodo de expiración se purgan junto con su archivo.
+ */
+@Service
+@Slf4j
+public class SubidaPorPartesService {
+
+    public static final String TIPO = "partes";
+
+    public enum Estado { RECIBIENDO, COMPLETA, EN_USO }
+
+    public record EstadoSubidaPartes(String id, long longitud, long recibidos, Estado estado, Instant expira) {}
+
+    /** Lo que se hace con el archivo completo; si lanza excepción la subida sigue disponible para reintentar. */
+    @FunctionalInterface
+    public interface UsoArchivo<T> {
+        T aplicar(MultipartFile archivo) throws Exception;
+    }
+
+    private static final Set<String> TIPOS_PERMITIDOS = Set.of("image/jpeg", "image/png", "image/webp", "image/gif");
+
+    private final RepositorioStagingSubida repositorioStagingSubida;
+    private final Path dir;
+    private final long maxBytes;
+    private final Duration expiracion;
+    private final int maxActivas;
+    // Una sola operación a la vez por subida (parte, uso, cancelación o purga): dos escrituras concurrentes
+    // corromperían el desplazamiento y un borrado a mitad de una parte dejaría su progreso apuntando a la nada
+    private final Set<String> enCurso = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService ejecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "subidas-partes-limpieza");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public SubidaPorPartesService(
+            RepositorioStagingSubida repositorioStagingSubida,
+            @Value("${app.uploads.partes.dir:uploads/partes/}") String dir,
+            @Value("${app.uploads.partes.max-bytes:15728640}") long maxBytes,
+            @Value("${app.uploads.partes.expiracion-horas:24}") long expiracionHoras,
+            @Value("${app.uploads.partes.max-activas:5}") int maxActivas,
+            @Value("${app.uploads.partes.limpieza-minutos:30}") long limpiezaMinutos) {
+        this.repositorioStagingSubida = repositorioStagingSubida;
+        this.dir = Paths.get(dir);
+        this.maxBytes = maxBytes;
+        this.expiracion = Duration.ofHours(Math.max(1, expiracionHoras));
+        this.maxActivas = Math.max(1, maxActivas);
+        if (limpiezaMinutos > 0) {
+            ejecutor.scheduleWithFixedDelay(this::purgarExpiradas, limpiezaMinutos, limpiezaMinutos, TimeUnit.MINUTES);
+        }
+        log.info("SubidaPorPartesService: dir='{}' maxBytes={} expiracion={}h maxActivas={}", this.dir, maxBytes, this.expiracion.toHours(), this.maxActivas);
+    }
+
+    @PreDestroy
+    void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    public EstadoSubidaPartes crear(long longitud, String nombreArchivo, String contentType) throws IOException {
+        if (longitud <= 0) {
+            throw new IllegalArgumentException("Upload-Length inválido");
+        }
+        if (longitud > maxBytes) {
+            throw new UnprocessableEntityException("El archivo supera el tamaño máximo de " + (maxBytes / (1024 * 1024)) + "MB");
+        }
+        String ct = contentType == null ? null : contentType.toLowerCase(Locale.ROOT);
+        if (ct == null || !TIPOS_PERMITIDOS.contains(ct)) {
+            throw new UnprocessableEntityException("Tipo de archivo no soportado");
+        }
+        String usuario = usuarioActual();
+        if (repositorioStagingSubida.countActivasDeUsuario(TIPO, usuario) >= maxActivas) {
+            throw new UnprocessableEntityException("Demasiadas subidas en curso; termina o cancela alguna");
+        }
+        String id = UUID.randomUUID().toString();
+        Files.createDirectories(dir);
+        Files.createFile(spool(id));
+        Instant ahora = Instant.now();
+        try {
+            StagingSubida s = repositorioStagingSubida.save(StagingSubida.builder()
+                    .uuid(id)
+                    .createdAt(ahora)
+                    .tipo(TIPO)
+                    .asociado(false)
+                    .estado(Estado.RECIBIENDO.name())
+                    .longitud(longitud)
+                    .recibidos(0L)
+                    .usuario(usuario)
+                    .contentType(ct)
+                    .nombreArchivo(nombreArchivo)
+                    .actualizadoEn(ahora)
+                    .build());
+            return aDto(s);
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(spool(id));
+            throw e;
+        }
+    }
+
+    /** Estado de una subida propia; vacío si no existe, expiró o es de otro usuario. */
+    public Optional<EstadoSubidaPartes> estado(String id) {
+        return propia(id).map(this::aDto);
+    }
+
+    /**
+     * Añade una parte en {@code offset}, que debe coincidir con lo ya recibido.
+     * Si la conexión se corta a mitad se conserva y registra lo que llegó; el cliente reanuda desde ahí.
+     */
+    public Optional<EstadoSubidaPartes> anexar(String id, long offset, InputStream cuerpo) throws IOException {
+        tomar(id);
+        try {
+            Optional<StagingSubida> encontrada = propia(id);
+            if (encontrada.isEmpty()) return Optional.empty();
+            StagingSubida s = encontrada.get();
+            if (!Estado.RECIBIENDO.name().equals(s.getEstado())) {
+                throw new DomainConflictException("La subida ya está completa");
+            }
+            long recibidos = s.getRecibidos();
+            if (offset != recibidos) {
+                throw new DomainConflictException("Upload-Offset no coincide: se esperaba " + recibidos);
+            }
+            long restante = s.getLongitud() - offset;
+            long escritos = 0;
+            IOException cortada = null;
+            try (FileChannel ch = FileChannel.open(spool(id), StandardOpenOption.WRITE);
+                 ReadableByteChannel in = Channels.newChannel(cuerpo)) {
+                // Descarta bytes de una parte anterior que se escribieron pero no llegaron a registrarse
+                ch.truncate(offset);
+                try {
+                    while (escritos < restante) {
+                        long n = ch.transferFrom(in, offset + escritos, restante - escritos);
+                        if (n <= 0) break;
+                        escritos += n;
+                    }
+                    if (escritos == restante && cuerpo.read() != -1) {
+                        ch.truncate(offset);
+                        throw new IllegalArgumentException("La parte excede la longitud declarada de la subida");
+                    }
+                } catch (IOException e) {
+                    cortada = e;
+                }
+                ch.force(false);
+            }
+            recibidos = offset + escritos;
+            Estado nuevo = recibidos == s.getLongitud() ? Estado.COMPLETA : Estado.RECIBIENDO;
+            Instant ahora = Instant.now();
+            repositorioStagingSubida.actualizarProgreso(id, recibidos, nuevo.name(), ahora);
+            if (cortada != null) throw cortada;
+            return Optional.of(new EstadoSubidaPartes(id, s.getLongitud(), recibidos, nuevo, ahora.plus(expiracion)));
+        } finally {
+            enCurso.remove(id);
+        }
+    }
+
+    /**
+     * Entrega la subida completa a {@code uso} y, si termina bien, elimina la sesión y su archivo.
+     * Vacío si la subida no existe o no es del usuario.
+     */
+    public <T> Optional<T> usar(String id, UsoArchivo<T> uso) throws Exception {
+        tomar(id);
+        try {
+            Optional<StagingSubida> encontrada = propia(id);
+            if (encontrada.isEmpty()) return Optional.empty();
+            StagingSubida s = encontrada.get();
+            // La guarda en la base cubre también a otros nodos: solo uno pasa de COMPLETA a EN_USO
+            if (repositorioStagingSubida.cambiarEstado(id, Estado.COMPLETA.name(), Estado.EN_USO.name(), Instant.now()) == 0) {
+                throw new DomainConflictException("La subida no está completa o ya se está usando");
+            }
+            ArchivoSpool archivo = new ArchivoSpool(spool(id), s.getNombreArchivo(), s.getContentType(), s.getLongitud());
+            T resultado;
+            try {
+                resultado = uso.aplicar(archivo);
+            } catch (Exception e) {
+                repositorioStagingSubida.cambiarEstado(id, Estado.EN_USO.name(), Estado.COMPLETA.name(), Instant.now());
+                throw e;
+            }
+            eliminar(id);
+            return Optional.of(resultado);
+        } finally {
+            enCurso.remove(id);
+        }
+    }
+
+    /** Falso si no existe o no es del usuario; conflicto si una parte o su uso están en curso. */
+    public boolean cancelar(String id) {
+        tomar(id);
+        try {
+            Optional<StagingSubida> encontrada = propia(id);
+            if (encontrada.isEmpty()) return false;
+            if (Estado.EN_USO.name().equals(encontrada.get().getEstado())) {
+                throw new DomainConflictException("La subida se está usando");
+            }
+            eliminar(id);
+            return true;
+        } finally {
+            enCurso.remove(id);
+        }
+    }
+
+    void purgarExpiradas() {
+        try {
+            Instant umbral = Instant.now().minus(expiracion);
+            int total = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                List<String> ids = repositorioStagingSubida.findSesionesExpiradas(TIPO, umbral, PageRequest.of(0, 100));
+                if (ids.isEmpty()) break;
+                // Las que tienen una operación en curso se saltan: esa operación renueva su actividad al terminar
+                List<String> tomadas = ids.stream().filter(enCurso::add).toList();
+                try {
+                    tomadas.forEach(this::borrarSpool);
+                    if (!tomadas.isEmpty()) total += repositorioStagingSubida.deleteByUuidIn(tomadas);
+                } finally {
+                    tomadas.forEach(enCurso::remove);
+                }
+                // Las saltadas vuelven en la misma consulta; se deja el resto para la próxima purga
+                if (ids.size() < 100 || tomadas.size() < ids.size()) break;
+            }
+            if (total > 0) log.info("[SUBIDAS] Purgadas {} subidas por partes expiradas", total);
+        } catch (Exception e) {
+            log.warn("[SUBIDAS] Error purgando subidas por partes: {}", e.getMessage());
+        }
+    }
+
+    private void tomar(String id) {
+        if (!enCurso.add(id)) {
+            throw new DomainConflictException("Otra operación sobre esta subida está en curso");
+        }
+    }
+
+    private Optional<StagingSubida> propia(String id) {
+        String usuario = usuarioActual();
+        return repositorioStagingSubida.findById(id)
+                .filter(s -> TIPO.equals(s.getTipo()) && s.getEstado() != null && usuario.equals(s.getUsuario()));
+    }
+
+    private void eliminar(String id) {
+        repositorioStagingSubida.deleteByUuidIn(List.of(id));
+        borrarSpool(id);
+    }
+
+    private void borrarSpool(String id) {
+        try {
+            Files.deleteIfExists(spool(id));
+        } catch (IOException e) {
+            log.debug("No se pudo borrar spool {}: {}", id, e.getMessage());
+        }
+    }
+
+    // Los ids llegan de filas creadas aquí (UUID), nunca directamente del cliente
+    private Path spool(String id) {
+        return dir.resolve(id + ".part");
+    }
+
+    private EstadoSubidaPartes aDto(StagingSubida s) {
+        return new EstadoSubidaPartes(s.getUuid(), s.getLongitud(), s.getRecibidos(), Estado.valueOf(s.getEstado()),
+                s.getActualizadoEn().plus(expiracion));
+    }
+
+    private static String usuarioActual() {
+        return SecurityContextHolder.getContext().getAuthentication().getName();
+    }
+}
@@ -0,0 +1,108 @@
+package com.cut.cardona.service.infra;
+
+import com.cut.cardona.modelo.correo.CorreoSalida;
+import com.cut.cardona.modelo.correo.EstadoCorreo;
+import com.cut.cardona.modelo.correo.RepositorioCorreoSalida;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bandeja de salida (outbox) de correos sobre la tabla correos_salida.
+ * encolar() participa en la transacción del llamador: el correo existe si y solo si el token que lo origina
+ * se confirmó. El envío lo hace DespachadorCorreos fuera de cualquier transacción de petición.
+ */
+@Service
+@Slf4j
+public class BandejaSalidaCorreos {
+
+    private final RepositorioCorreoSalida repositorioCorreoSalida;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxIntentos;
+    private final Duration esperaBase;
+    private final Duration reserva;
+
+    public BandejaSalidaCorreos(
+            RepositorioCorreoSalida repositorioCorreoSalida,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${app.mail.outbox.max-intentos:6}") int maxIntentos,
+            @Value("${app.mail.outbox.espera-base-segundos:30}") long esperaBaseSegundos,
+            @Value("${app.mail.outbox.reserva-segundos:300}") long reservaSegundos) {
+        this.repositorioCorreoSalida = repositorioCorreoSalida;
+        this.eventPublisher = eventPublisher;
+        this.maxIntentos = Math.max(1, maxIntentos);
+        this.esperaBase = Duration.ofSeconds(Math.max(1, esperaBaseSegundos));
+        this.reserva = Duration.ofSeconds(Math.max(1, reservaSegundos));
+    }
+
+    @Transactional
+    public void encolar(String destinatario, String asunto, String cuerpo, String tipo) {
+        CorreoSalida c = new CorreoSalida();
+        c.setDestinatario(destinatario);
+        c.setAsunto(asunto);
+        c.setCuerpo(cuerpo);
+        c.setTipo(tipo);
+        repositorioCorreoSalida.save(c);
+        eventPublisher.publishEvent(new CorreoEncoladoEvent(c.getId()));
+    }
+
+    /**
+     * Reclama hasta {@code maximo} correos listos y los reserva (proximo_intento = ahora + reserva) antes de
+     * soltar el bloqueo: si el proceso cae a mitad del envío, vuelven a estar disponibles al vencer la reserva.
+     */
+    @Transactional
+    public List<CorreoSalida> reclamarLote(int maximo) {
+        Instant ahora = Instant.now();
+        List<CorreoSalida> lote = repositorioCorreoSalida.findListosParaEnviar(
+                EstadoCorreo.PENDIENTE, Timestamp.from(ahora), PageRequest.of(0, maximo));
+        Timestamp reservadoHasta = Timestamp.from(ahora.plus(reserva));
+        for (CorreoSalida c : lote) {
+            c.setIntentos(c.getIntentos() + 1);
+            c.setProximoIntento(reservadoHasta);
+        }
+        return lote;
+    }
+
+    /** Marca los enviados y reprograma los fallidos con espera exponencial; al agotar intentos pasan a FALLIDO. */
+    @Transactional
+    public void registrarResultado(Collection<String> enviados, Map<String, String> fallidos) {
+        Timestamp ahora = new Timestamp(System.currentTimeMillis());
+        repositorioCorreoSalida.findAllById(enviados).forEach(c -> {
+            c.setEstado(EstadoCorreo.ENVIADO);
+            c.setEnviadoEn(ahora);
+            c.setUltimoError(null);
+        });
+        repositorioCorreoSalida.findAllById(fallidos.keySet()).forEach(c -> {
+            c.setUltimoError(recortar(fallidos.get(c.getId())));
+            if (c.getIntentos() >= maxIntentos) {
+                c.setEstado(EstadoCorreo.FALLIDO);
+                log.error("[MAIL][FALLIDO] {} a {} tras {} intentos: {}", c.getTipo(), c.getDestinatario(), c.getIntentos(), c.getUltimoError());
+            } else {
+                Duration espera = esperaBase.multipliedBy(1L << Math.min(c.getIntentos() - 1, 20));
+                c.setProximoIntento(Timestamp.from(ahora.toInstant().plus(espera)));
+                log.warn("[MAIL][REINTENTO] {} a {} (intento {}), siguiente en {}s: {}", c.getTipo(), c.getDestinatario(),
+                        c.getIntentos(), espera.toSeconds(), c.getUltimoError());
+            }
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public long pendientes() {
+        return repositorioCorreoSalida.countByEstado(EstadoCorreo.PENDIENTE);
+    }
+
+    private static String recortar(String error) {
+        if (error == null) return "Error desconocido";
+        return error.length() > 500 ? error.substring(0, 500) : error;
+    }
+}
@@ -0,0 +1,5 @@
+package com.cut.cardona.service.infra;
+
+/** Evento publicado al dejar un correo en la bandeja de salida; tras el commit despierta al despachador. */
+public record CorreoEncoladoEvent(String correoId) {
+}
@@ -0,0 +1,152 @@
+package com.cut.cardona.service.infra;
+
+import com.cut.cardona.modelo.correo.CorreoSalida;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Envía en segundo plano los correos de la bandeja de salida.
+ * Cada lote se manda con una sola llamada a JavaMailSender.send(...), que abre una conexión SMTP y la reutiliza
+ * para todos los mensajes; los que fallan se reprograman con espera exponencial. Se despierta tras el commit de
+ * cada correo encolado y, además, revisa la bandeja periódicamente para los reintentos.
+ */
+@Component
+@Slf4j
+public class DespachadorCorreos {
+
+    private final BandejaSalidaCorreos bandeja;
+    private final JavaMailSender mailSender;
+    private final boolean mailEnabled;
+    private final String mailFrom;
+    private final int tamanoLote;
+    private final long intervaloMs;
+    private final AtomicBoolean despertarPendiente = new AtomicBoolean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "despachador-correos");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public DespachadorCorreos(
+            BandejaSalidaCorreos bandeja,
+            JavaMailSender mailSender,
+            @Value("${app.mail.enabled:false}") boolean mailEnabled,
+            @Value("${app.mail.from:}") String mailFrom,
+            @Value("${app.mail.outbox.lote:20}") int tamanoLote,
+            @Value("${app.mail.outbox.intervalo-ms:5000}") long intervaloMs) {
+        this.bandeja = bandeja;
+        this.mailSender = mailSender;
+        this.mailEnabled = mailEnabled;
+        this.mailFrom = mailFrom;
+        this.tamanoLote = Math.max(1, tamanoLote);
+        this.intervaloMs = Math.max(100, intervaloMs);
+    }
+
+    @PostConstruct
+    void iniciar() {
+        if (!mailEnabled) return;
+        executor.scheduleWithFixedDelay(this::despachar, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+        log.info("DespachadorCorreos: lote={} intervalo={}ms", tamanoLote, intervaloMs);
+    }
+
+    @PreDestroy
+    void detener() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) executor.shutdownNow();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCorreoEncolado(CorreoEncoladoEvent event) {
+        // Varios correos encolados seguidos se atienden con un único ciclo
+        if (mailEnabled && despertarPendiente.compareAndSet(false, true)) {
+            executor.execute(this::despachar);
+        }
+    }
+
+    void despachar() {
+        despertarPendiente.set(false);
+        try {
+            List<CorreoSalida> lote;
+            do {
+                lote = bandeja.reclamarLote(tamanoLote);
+                if (!lote.isEmpty()) enviar(lote);
+            } while (lote.size() == tamanoLote);
+        } catch (Exception ex) {
+            log.warn("[MAIL] Ciclo de despacho interrumpido: {}", ex.getMessage());
+        }
+    }
+
+    private void enviar(List<CorreoSalida> lote) {
+        // Cada mensaje se arma por separado: una dirección mal formada falla solo su correo, no el lote entero
+        List<CorreoSalida> armados = new ArrayList<>(lote.size());
+        List<MimeMessage> mensajes = new ArrayList<>(lote.size());
+        Map<String, String> fallidos = new HashMap<>();
+        for (CorreoSalida c : lote) {
+            try {
+                mensajes.add(armar(c));
+                armados.add(c);
+            } catch (MessagingException | MailException e) {
+                fallidos.put(c.getId(), "Mensaje inválido: " + e.getMessage());
+            }
+        }
+        if (mensajes.isEmpty()) {
+            bandeja.registrarResultado(List.of(), fallidos);
+            return;
+        }
+
+        Map<Object, Exception> errores = Map.of();
+        String errorGeneral = null;
+        try {
+            mailSender.send(mensajes.toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            errores = e.getFailedMessages();
+            if (errores.isEmpty()) errorGeneral = e.getMessage();
+        } catch (MailException e) {
+            errorGeneral = e.getMessage();
+        }
+
+        List<String> enviados = new ArrayList<>();
+        for (int i = 0; i < armados.size(); i++) {
+            CorreoSalida c = armados.get(i);
+            Exception error = errores.get(mensajes.get(i));
+            if (errorGeneral != null || error != null) {
+                fallidos.put(c.getId(), errorGeneral != null ? errorGeneral : error.getMessage());
+            } else {
+                enviados.add(c.getId());
+                log.info("[MAIL] {} enviado a {}", c.getTipo(), c.getDestinatario());
+            }
+        }
+        bandeja.registrarResultado(enviados, fallidos);
+    }
+
+    private MimeMessage armar(CorreoSalida c) throws MessagingException {
+        MimeMessage mime = mailSender.createMimeMessage();
+        MimeMessageHelper msg = new MimeMessageHelper(mime);
+        msg.setTo(c.getDestinatario());
+        if (mailFrom != null && !mailFrom.isBlank()) {
+            msg.setFrom(mailFrom);
+        }
+        msg.setSubject(c.getAsunto());
+        msg.setText(c.getCuerpo());
+        return mime;
+    }
+}
@@ -3,16 +3,19 @@ package com.cut.cardona.service.infra;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+/**
+ * Compone los correos de la aplicación y los deja en la bandeja de salida, dentro de la transacción del llamador.
+ * El envío SMTP lo hace DespachadorCorreos en segundo plano, así la latencia del servidor de correo no se paga
+ * en la petición ni dentro de la transacción.
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class MailService {
 
-    private final JavaMailSender mailSender;
+    private final BandejaSalidaCorreos bandejaSalidaCorreos;
 
     @Value("${app.mail.enabled:false}")
     private boolean mailEnabled;
@@ -20,9 +23,6 @@ public class MailService {
     @Value("${app.frontend.base-url:http://localhost:5173}")
     private String frontendBaseUrl;
 
-    @Value("${app.mail.from:}")
-    private String mailFrom;
-
     public void sendEmailVerificationLink(String toEmail, String token) {
         String url = buildUrl("/verify-email", token);
         String subject = "Verifica tu correo";
@@ -48,19 +48,8 @@ public class MailService {
             log.info("[MAIL][DEV-OFF] {} para {} -> token: {}", logPrefix, toEmail, token);
             return;
         }
-        try {
-            SimpleMailMessage msg = new SimpleMailMessage();
-            msg.setTo(toEmail);
-            if (mailFrom != null && !mailFrom.isBlank()) {
-                msg.setFrom(mailFrom);
-            }
-            msg.setSubject(subject);
-            msg.setText(body);
-            mailSender.send(msg);
-            log.info("[MAIL] {} enviado a {}", logPrefix, toEmail);
-        } catch (Exception e) {
-            log.error("[MAIL][ERROR] No se pudo enviar {} a {}: {}", logPrefix, toEmail, e.getMessage(), e);
-        }
+        bandejaSalidaCorreos.encolar(toEmail, subject, body, logPrefix);
+        log.info("[MAIL] {} en cola para {}", logPrefix, toEmail);
     }
 
 
@@ -0,0 +1,31 @@
+package com.cut.cardona.service.infra.storage;
+
+import java.util.List;
+
+/**
+ * Un borrado por lotes que solo se completó en parte; {@link #getPendientes()} son los ids que conviene reintentar
+ * y {@link #getEliminados()} los que sí se borraron del storage.
+ */
+public class BorradoIncompletoException extends Exception {
+
+    private final List<String> pendientes;
+    private final List<String> eliminados;
+
+    public BorradoIncompletoException(String message, List<String> pendientes, Throwable cause) {
+        this(message, pendientes, List.of(), cause);
+    }
+
+    public BorradoIncompletoException(String message, List<String> pendientes, List<String> eliminados, Throwable cause) {
+        super(message, cause);
+        this.pendientes = List.copyOf(pendientes);
+        this.eliminados = List.copyOf(eliminados);
+    }
+
+    public List<String> getPendientes() {
+        return pendientes;
+    }
+
+    public List<String> getEliminados() {
+        return eliminados;
+    }
+}
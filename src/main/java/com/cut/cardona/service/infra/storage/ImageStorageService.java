@@ -1,8 +1,11 @@
 package com.cut.cardona.service.infra.storage;
 
-import com.cut.cardona.modelo.perros.RepositorioImagenPerro;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+
 public interface ImageStorageService {
 
     UploadResult uploadDogImage(MultipartFile file) throws Exception;
@@ -16,6 +19,15 @@ public interface ImageStorageService {
 
     String resolveDogImagePublicUrl(String id);
 
+    // URL de una variante responsiva (ancho/formato de VariantesImagen); sin soporte se usa el original
+    default String resolveDogImageVariantUrl(String id, int ancho, String formato) { return resolveDogImagePublicUrl(id); }
+
+    // Id del objeto que guarda los bytes de la imagen (distinto del id de la imagen si su contenido está deduplicado)
+    default String resolveDogImageStorageId(String id) { return id; }
+
+    // Archivo en disco del original (solo almacenamiento local); null si no existe
+    default Path resolveLocalDogImagePath(String id) { return null; }
+
     String resolveProfileImagePublicUrl(String id);
 
     default String resolveDocumentImagePublicUrl(String id) { return null; }
@@ -29,6 +41,26 @@ public interface ImageStorageService {
     // Borrar documento
     default void deleteDocumentImage(String id) { }
 
-    int cleanupOrphanImages(RepositorioImagenPerro repositorioImagenPerro);
+    /**
+     * Borrado por lotes. A diferencia de los delete* individuales (best-effort) lanza excepción si el proveedor falla,
+     * para que el llamador pueda reintentar; {@link BorradoIncompletoException} indica qué ids quedaron pendientes.
+     * Por defecto borra uno a uno; los proveedores con API de borrado múltiple la agrupan.
+     * Devuelve los ids cuyo objeto se borró realmente del storage: los que no existían o que otra imagen sigue
+     * usando no cuentan.
+     */
+    default List<String> deleteMany(TipoImagen tipo, Collection<String> ids) throws Exception {
+        for (String id : ids) {
+            switch (tipo) {
+                case PERRO -> deleteDogImage(id);
+                case PERFIL -> deleteProfileImage(id);
+                case DOCUMENTO -> deleteDocumentImage(id);
+            }
+        }
+        // Los delete* individuales no informan del resultado
+        return List.copyOf(ids);
+    }
+
+    // Listado paginado de imágenes de perros (id + fecha de creación) para el recolector de huérfanas; cursor null = inicio
+    default PaginaAlmacenamiento listDogImages(String cursor, int limite) { return PaginaAlmacenamiento.vacia(); }
 
 }
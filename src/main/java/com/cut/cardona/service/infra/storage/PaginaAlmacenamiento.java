@@ -0,0 +1,17 @@
+package com.cut.cardona.service.infra.storage;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Página de un listado del storage: objetos con su id y fecha de creación, y el cursor para pedir la siguiente
+ * (null cuando el listado terminó).
+ */
+public record PaginaAlmacenamiento(List<Objeto> objetos, String siguienteCursor) {
+
+    public record Objeto(String id, Instant creado) {}
+
+    public static PaginaAlmacenamiento vacia() {
+        return new PaginaAlmacenamiento(List.of(), null);
+    }
+}
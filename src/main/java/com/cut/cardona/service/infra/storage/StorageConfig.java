@@ -1,12 +1,17 @@
 package com.cut.cardona.service.infra.storage;
 
 import com.cloudinary.Cloudinary;
+import com.cut.cardona.modelo.imagenes.RepositorioAliasImagen;
+import com.cut.cardona.modelo.imagenes.RepositorioBlobImagen;
 import com.cut.cardona.service.infra.storage.cloudinary.CloudinaryImageStorageService;
+import com.cut.cardona.service.infra.storage.dedup.DeduplicacionImageStorageService;
 import com.cut.cardona.service.infra.storage.local.LocalImageStorageService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
 @Configuration
@@ -34,8 +39,23 @@ public class StorageConfig {
     @Value("${cloudinary.url:${CLOUDINARY_URL:}}")
     private String cloudinaryUrl;
 
+    @Value("${app.storage.dedup.habilitada:true}")
+    private boolean deduplicar;
+    @Value("${app.storage.dedup.cache:10000}")
+    private int dedupCache;
+
     @Bean
-    public ImageStorageService imageStorageService() {
+    public ImageStorageService imageStorageService(RepositorioBlobImagen repositorioBlobImagen,
+                                                   RepositorioAliasImagen repositorioAliasImagen,
+                                                   PlatformTransactionManager transactionManager) {
+        ImageStorageService proveedor = proveedor();
+        if (!deduplicar) return proveedor;
+        log.info("ImageStorageService: deduplicación de imágenes de perros por SHA-256 activa (cache={})", dedupCache);
+        return new DeduplicacionImageStorageService(proveedor, repositorioBlobImagen, repositorioAliasImagen,
+                new TransactionTemplate(transactionManager), dedupCache);
+    }
+
+    private ImageStorageService proveedor() {
         if ("cloudinary".equalsIgnoreCase(provider)) {
             Cloudinary cloud;
             String raw = cloudinaryUrl;
@@ -0,0 +1,6 @@
+package com.cut.cardona.service.infra.storage;
+
+/** Clase de objeto en el storage; cada una vive en su propia carpeta/directorio. */
+public enum TipoImagen {
+    PERRO, PERFIL, DOCUMENTO
+}
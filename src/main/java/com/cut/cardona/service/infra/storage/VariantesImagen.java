@@ -0,0 +1,177 @@
+package com.cut.cardona.service.infra.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Variantes responsivas de imágenes de perros: anchos fijos en JPEG y WebP.
+ * En almacenamiento local se escriben junto al original como {id}_w{ancho}.{ext}; en Cloudinary se piden
+ * como transformación de la URL y el CDN las genera y conserva en la primera petición.
+ * La JVM no trae escritor WebP: en local WebP se sirve como JPEG salvo que haya un plugin ImageIO registrado.
+ */
+@Slf4j
+public final class VariantesImagen {
+
+    public static final int[] ANCHOS = {160, 480, 1024};
+    public static final String JPG = "jpg";
+    public static final String WEBP = "webp";
+    public static final List<String> FORMATOS = List.of(JPG, WEBP);
+
+    private static final float CALIDAD_JPEG = 0.82f;
+    private static final boolean WEBP_DISPONIBLE = ImageIO.getImageWritersByFormatName(WEBP).hasNext();
+
+    private VariantesImagen() {}
+
+    /** El menor ancho pre-calculado que cubre el pedido; si ninguno lo cubre, el mayor. */
+    public static int anchoMasCercano(int pedido) {
+        for (int a : ANCHOS) {
+            if (a >= pedido) return a;
+        }
+        return ANCHOS[ANCHOS.length - 1];
+    }
+
+    /** Formato normalizado (jpg/webp); null si no está soportado. Sin formato se asume JPEG. */
+    public static String normalizarFormato(String fmt) {
+        if (fmt == null || fmt.isBlank()) return JPG;
+        String f = fmt.trim().toLowerCase();
+        if (f.equals("jpg") || f.equals("jpeg")) return JPG;
+        if (f.equals(WEBP)) return WEBP;
+        return null;
+    }
+
+    /** Formato que realmente se genera en disco: WebP cae a JPEG si no hay escritor disponible. */
+    public static String formatoLocal(String formato) {
+        return WEBP.equals(formato) && !WEBP_DISPONIBLE ? JPG : formato;
+    }
+
+    public static String nombreArchivo(String id, int ancho, String formato) {
+        return id + "_w" + ancho + "." + formato;
+    }
+
+    public static String contentType(String formato) {
+        return WEBP.equals(formato) ? "image/webp" : "image/jpeg";
+    }
+
+    /** Genera en dir todas las variantes locales a partir del original, decodificándolo una sola vez. */
+    public static void generarTodas(Path original, Path dir, String id) throws IOException {
+        BufferedImage src = leer(original, ANCHOS[ANCHOS.length - 1]);
+        if (src == null) {
+            log.debug("Sin variantes para {}: formato no decodificable", original.getFileName());
+            return;
+        }
+        List<String> formatos = FORMATOS.stream().map(VariantesImagen::formatoLocal).distinct().toList();
+        for (int ancho : ANCHOS) {
+            BufferedImage escalada = escalar(src, ancho);
+            for (String f : formatos) {
+                escribir(escalada, dir.resolve(nombreArchivo(id, ancho, f)), f);
+            }
+        }
+    }
+
+    /** Genera una variante concreta; se usa para imágenes anteriores a las variantes (generación diferida). */
+    public static void generar(Path original, Path destino, int ancho, String formato) throws IOException {
+        BufferedImage src = leer(original, ancho);
+        if (src == null) throw new IOException("No se pudo decodificar " + original.getFileName());
+        escribir(escalar(src, ancho), destino, formato);
+    }
+
+    public static void eliminar(Path dir, String id) {
+        for (int ancho : ANCHOS) {
+            for (String f : FORMATOS) {
+                try {
+                    Files.deleteIfExists(dir.resolve(nombreArchivo(id, ancho, f)));
+                } catch (IOException ex) {
+                    log.warn("No se pudo borrar variante {} w={} {}: {}", id, ancho, f, ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodifica con submuestreo cuando el original es mucho más ancho que el objetivo:
+     * evita materializar en memoria la imagen completa (p.ej. 4000px para una miniatura de 160px).
+     */
+    private static BufferedImage leer(Path original, int anchoObjetivo) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int paso = Math.max(1, reader.getWidth(0) / (anchoObjetivo * 2));
+                if (paso > 1) param.setSourceSubsampling(paso, paso, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** Reduce a la mitad mientras se pueda y termina con un paso bilineal: menos aliasing que un único salto. */
+    private static BufferedImage escalar(BufferedImage src, int ancho) {
+        BufferedImage actual = src;
+        int objetivo = Math.min(ancho, src.getWidth());
+        while (actual.getWidth() / 2 >= objetivo) {
+            actual = redimensionar(actual, actual.getWidth() / 2);
+        }
+        return actual.getWidth() == objetivo && actual.getType() == BufferedImage.TYPE_INT_RGB
+                ? actual : redimensionar(actual, objetivo);
+    }
+
+    private static BufferedImage redimensionar(BufferedImage src, int ancho) {
+        int alto = Math.max(1, (int) Math.round(src.getHeight() * (ancho / (double) src.getWidth())));
+        BufferedImage out = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.setColor(Color.WHITE); // fondo para imágenes con transparencia
+        g.fillRect(0, 0, ancho, alto);
+        g.drawImage(src, 0, 0, ancho, alto, null);
+        g.dispose();
+        return out;
+    }
+
+    /** Escribe a un temporal y lo mueve de forma atómica: nunca se sirve una variante a medio escribir. */
+    private static void escribir(BufferedImage img, Path destino, String formato) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formato);
+        if (!writers.hasNext()) throw new IOException("Sin escritor ImageIO para " + formato);
+        Path tmp = destino.resolveSibling(destino.getFileName() + ".tmp-" + UUID.randomUUID());
+        ImageWriter writer = writers.next();
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (JPG.equals(formato) && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(CALIDAD_JPEG);
+            }
+            try (ImageOutputStream ios = ImageIO.createImageOutputStream(tmp.toFile())) {
+                writer.setOutput(ios);
+                writer.write(null, new IIOImage(img, null, null), param);
+            }
+            Files.move(tmp, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            writer.dispose();
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
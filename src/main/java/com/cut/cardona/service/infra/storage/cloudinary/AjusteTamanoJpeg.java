@@ -0,0 +1,139 @@
+package com.cut.cardona.service.infra.storage.cloudinary;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ajusta una imagen a un tamaño JPEG objetivo con una o dos codificaciones completas.
+ * Codifica una muestra reducida (~0.5 MP) para estimar bytes por píxel según la calidad, busca por bisección
+ * la calidad más alta que cabe y solo entonces codifica la imagen completa; si la estimación se quedó corta,
+ * corrige con la razón observada y hace una segunda codificación.
+ * La muestra tiene más detalle por píxel que el original, así que la estimación tiende a ser conservadora.
+ * Reutiliza el ImageWriter, el buffer de salida y las imágenes reducidas entre intentos.
+ */
+final class AjusteTamanoJpeg implements AutoCloseable {
+
+    private static final long PIXELES_MUESTRA = 512L * 1024;
+    private static final float CALIDAD_MAX = 0.85f;
+    private static final float CALIDAD_MIN = 0.5f;
+    private static final double MARGEN = 0.95;
+    private static final int LADO_MINIMO = 800;
+    private static final int PASOS_BISECCION = 6;
+    private static final int CODIFICACIONES_COMPLETAS = 2;
+
+    private final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+    private final ByteArrayOutputStream salida = new ByteArrayOutputStream(1 << 20);
+    private final Map<Float, Double> bytesPorPixelMuestra = new HashMap<>();
+    private int codificacionesCompletas;
+
+    int codificacionesCompletas() {
+        return codificacionesCompletas;
+    }
+
+    /** Devuelve el JPEG que cabe en el objetivo o, si no se alcanza, el más pequeño obtenido. */
+    byte[] ajustar(BufferedImage src, long objetivo) throws IOException {
+        long pixeles = (long) src.getWidth() * src.getHeight();
+        BufferedImage muestra = escalar(src, Math.min(1.0, Math.sqrt((double) PIXELES_MUESTRA / pixeles)));
+        double pixelesMuestra = (double) muestra.getWidth() * muestra.getHeight();
+        double escalaMin = Math.min(1.0, LADO_MINIMO / (double) Math.min(src.getWidth(), src.getHeight()));
+
+        double correccion = 1.0;
+        byte[] mejor = null;
+        BufferedImage escalada = null;
+        double escalaActual = -1;
+        for (int intento = 0; intento < CODIFICACIONES_COMPLETAS; intento++) {
+            double presupuesto = objetivo * MARGEN / correccion;
+            float calidad = calidadMaxima(muestra, pixelesMuestra, pixeles, presupuesto);
+            double escala = 1.0;
+            if (calidad < 0) {
+                // Ni con la calidad mínima cabe a tamaño completo: reducir escala (sin bajar de LADO_MINIMO)
+                calidad = CALIDAD_MIN;
+                double bpp = bytesPorPixel(muestra, pixelesMuestra, calidad);
+                escala = Math.max(escalaMin, Math.min(1.0, Math.sqrt(presupuesto / (bpp * pixeles))));
+            }
+            if (escala != escalaActual) {
+                escalada = escalar(src, escala);
+                escalaActual = escala;
+            }
+            int len = codificar(escalada, calidad);
+            codificacionesCompletas++;
+            if (mejor == null || len < mejor.length) mejor = salida.toByteArray();
+            if (len <= objetivo) return mejor;
+            double previsto = bytesPorPixel(muestra, pixelesMuestra, calidad) * escalada.getWidth() * escalada.getHeight();
+            correccion *= len / previsto;
+        }
+        return mejor;
+    }
+
+    /** Calidad más alta en [CALIDAD_MIN, CALIDAD_MAX] cuyo tamaño previsto cabe en el presupuesto; -1 si ninguna. */
+    private float calidadMaxima(BufferedImage muestra, double pixelesMuestra, long pixeles, double presupuesto) throws IOException {
+        if (bytesPorPixel(muestra, pixelesMuestra, CALIDAD_MAX) * pixeles <= presupuesto) return CALIDAD_MAX;
+        if (bytesPorPixel(muestra, pixelesMuestra, CALIDAD_MIN) * pixeles > presupuesto) return -1;
+        float lo = CALIDAD_MIN;
+        float hi = CALIDAD_MAX;
+        for (int i = 0; i < PASOS_BISECCION; i++) {
+            float mid = redondear((lo + hi) / 2);
+            if (mid == lo || mid == hi) break;
+            if (bytesPorPixel(muestra, pixelesMuestra, mid) * pixeles <= presupuesto) lo = mid; else hi = mid;
+        }
+        return lo;
+    }
+
+    private double bytesPorPixel(BufferedImage muestra, double pixelesMuestra, float calidad) throws IOException {
+        Double bpp = bytesPorPixelMuestra.get(calidad);
+        if (bpp == null) {
+            bpp = codificar(muestra, calidad) / pixelesMuestra;
+            bytesPorPixelMuestra.put(calidad, bpp);
+        }
+        return bpp;
+    }
+
+    private int codificar(BufferedImage img, float calidad) throws IOException {
+        salida.reset();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(calidad);
+        param.setProgressiveMode(ImageWriteParam.MODE_DISABLED);
+        // Caché en memoria: ImageIO.createImageOutputStream puede usar un archivo temporal como caché
+        try (ImageOutputStream ios = new MemoryCacheImageOutputStream(salida)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.reset();
+        }
+        return salida.size();
+    }
+
+    private static float redondear(float calidad) {
+        return Math.round(calidad * 100) / 100f;
+    }
+
+    private static BufferedImage escalar(BufferedImage src, double escala) {
+        if (escala >= 0.999) return src;
+        int w = Math.max(1, (int) Math.round(src.getWidth() * escala));
+        int h = Math.max(1, (int) Math.round(src.getHeight() * escala));
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(src, 0, 0, w, h, null);
+        g.dispose();
+        return out;
+    }
+
+    @Override
+    public void close() {
+        writer.dispose();
+    }
+}
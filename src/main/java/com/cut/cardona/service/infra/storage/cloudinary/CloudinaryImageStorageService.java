@@ -3,10 +3,12 @@ package com.cut.cardona.service.infra.storage.cloudinary;
 import com.cloudinary.Cloudinary;
 import com.cloudinary.Transformation;
 import com.cloudinary.utils.ObjectUtils;
+import com.cut.cardona.service.infra.storage.ArchivoSpool;
+import com.cut.cardona.service.infra.storage.BorradoIncompletoException;
 import com.cut.cardona.service.infra.storage.ImageStorageService;
+import com.cut.cardona.service.infra.storage.PaginaAlmacenamiento;
+import com.cut.cardona.service.infra.storage.TipoImagen;
 import com.cut.cardona.service.infra.storage.UploadResult;
-import com.cut.cardona.modelo.perros.RepositorioImagenPerro;
-import com.cut.cardona.modelo.perros.ImagenPerro;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.StringUtils;
@@ -14,19 +16,19 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
-import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -38,6 +40,8 @@ public class CloudinaryImageStorageService implements ImageStorageService {
     // Objetivo para subir a Cloudinary (plan 10MB); dejamos margen a 9MB
     private static final long TARGET_UPLOAD_BYTES = 9L * 1024 * 1024; // 9MB
     private static final Set<String> ALLOWED = Set.of("image/jpeg", "image/png", "image/webp", "image/gif");
+    // Máximo de public_id por llamada a delete_resources
+    private static final int MAX_BORRADO_LOTE = 100;
 
     private final Cloudinary cloudinary;
     private final String perrosFolder;
@@ -48,7 +52,7 @@ public class CloudinaryImageStorageService implements ImageStorageService {
     public UploadResult uploadDogImage(MultipartFile file) throws Exception {
         validate(file, MAX_DOG_SIZE);
         String id = UUID.randomUUID().toString();
-        byte[] payload = prepareForUpload(file, TARGET_UPLOAD_BYTES);
+        Object payload = prepareForUpload(file, TARGET_UPLOAD_BYTES);
         Map<?, ?> res = cloudinary.uploader().upload(payload, ObjectUtils.asMap(
                 "public_id", id,
                 "folder", perrosFolder,
@@ -66,7 +70,7 @@ public class CloudinaryImageStorageService implements ImageStorageService {
                 .filename(filename)
                 .url(secureUrl)
                 .contentType(file.getContentType())
-                .size((long) payload.length)
+                .size(tamano(payload))
                 .build();
     }
 
@@ -74,7 +78,7 @@ public class CloudinaryImageStorageService implements ImageStorageService {
     public UploadResult uploadProfileImage(MultipartFile file) throws Exception {
         validate(file, MAX_PROFILE_SIZE);
         String id = UUID.randomUUID().toString();
-        byte[] payload = prepareForUpload(file, TARGET_UPLOAD_BYTES);
+        Object payload = prepareForUpload(file, TARGET_UPLOAD_BYTES);
         Map<?, ?> res = cloudinary.uploader().upload(payload, ObjectUtils.asMap(
                 "public_id", id,
                 "folder", perfilesFolder,
@@ -92,7 +96,7 @@ public class CloudinaryImageStorageService implements ImageStorageService {
                 .filename(filename)
                 .url(secureUrl)
                 .contentType(file.getContentType())
-                .size((long) payload.length)
+                .size(tamano(payload))
                 .build();
     }
 
@@ -101,7 +105,7 @@ public class CloudinaryImageStorageService implements ImageStorageService {
         // Reutiliza validaciones (mismos tipos y tamaño que dog/profile)
         validate(file, MAX_DOG_SIZE);
         String id = UUID.randomUUID().toString();
-        byte[] payload = prepareForUpload(file, TARGET_UPLOAD_BYTES);
+        Object payload = prepareForUpload(file, TARGET_UPLOAD_BYTES);
         Map<?, ?> res = cloudinary.uploader().upload(payload, ObjectUtils.asMap(
                 "public_id", id,
                 "folder", documentosFolder,
@@ -118,7 +122,7 @@ public class CloudinaryImageStorageService implements ImageStorageService {
                 .filename(filename)
                 .url(secureUrl)
                 .contentType(file.getContentType())
-                .size((long) payload.length)
+                .size(tamano(payload))
                 .build();
     }
 
@@ -129,95 +133,54 @@ public class CloudinaryImageStorageService implements ImageStorageService {
         if (ct == null || !ALLOWED.contains(ct.toLowerCase())) throw new IllegalArgumentException("Tipo de archivo no soportado");
     }
 
-    private byte[] prepareForUpload(MultipartFile file, long targetBytes) throws Exception {
+    /**
+     * Contenido a enviar: File si el archivo ya está en disco (el SDK lo transmite sin cargarlo entero) o byte[].
+     * Solo se decodifica la imagen si hay que recomprimirla, y se lee en streaming desde el origen.
+     */
+    private Object prepareForUpload(MultipartFile file, long targetBytes) throws Exception {
         long size = file.getSize();
         String ct = safeLower(file.getContentType());
         if (size <= targetBytes) {
-            return file.getBytes();
+            return contenidoOriginal(file);
         }
         // GIF animado no se reencapsula fácilmente sin perder animación; forzamos cambio o rechazo
         if ("image/gif".equals(ct)) {
             throw new IllegalArgumentException("GIF demasiado grande (>9MB). Usa JPG/PNG o reduce el tamaño.");
         }
         // Reescalar/recomprimir a JPEG hasta aproximar target
-        byte[] original = file.getBytes();
-        try (InputStream in = new ByteArrayInputStream(original)) {
-            BufferedImage src = ImageIO.read(in);
-            if (src == null) {
-                // Si no podemos leer, devolver original (puede fallar en Cloudinary si >10MB)
-                return original;
-            }
-            // Si tiene alpha, pintar sobre fondo blanco
-            if (src.getColorModel().hasAlpha()) {
-                BufferedImage rgb = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_RGB);
-                Graphics2D g2 = rgb.createGraphics();
-                g2.setComposite(AlphaComposite.SrcOver);
-                g2.setColor(Color.WHITE);
-                g2.fillRect(0, 0, rgb.getWidth(), rgb.getHeight());
-                g2.drawImage(src, 0, 0, null);
-                g2.dispose();
-                src = rgb;
-            }
-            double scale = 1.0;
-            float quality = 0.85f;
-            int iterations = 0;
-            byte[] best = null;
-            while (iterations < 12) {
-                iterations++;
-                BufferedImage scaled = scaleImage(src, scale);
-                byte[] jpg = writeJpeg(scaled, quality);
-                if (best == null || jpg.length < best.length) best = jpg;
-                if (jpg.length <= targetBytes) {
-                    log.debug("Preprocesado OK: {} bytes (q={} scale={})", jpg.length, quality, scale);
-                    return jpg;
-                }
-                // Reducir calidad hasta 0.5, luego empezar a reducir escala
-                if (quality > 0.5f) {
-                    quality -= 0.1f;
-                } else {
-                    scale *= 0.85; // 15% menos cada paso
-                    // Evitar reducir demasiado
-                    if (scaled.getWidth() < 800 || scaled.getHeight() < 800) {
-                        // Nos quedamos con lo mejor logrado
-                        break;
-                    }
-                }
-            }
-            log.debug("Preprocesado límite alcanzado. Mejor tamaño: {} bytes", best != null ? best.length : -1);
-            return best != null ? best : original;
+        BufferedImage src;
+        try (InputStream in = file.getInputStream()) {
+            src = ImageIO.read(in);
+        }
+        if (src == null) {
+            // Si no podemos leer, devolver original (puede fallar en Cloudinary si >10MB)
+            return contenidoOriginal(file);
+        }
+        // Si tiene alpha, pintar sobre fondo blanco
+        if (src.getColorModel().hasAlpha()) {
+            BufferedImage rgb = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2 = rgb.createGraphics();
+            g2.setComposite(AlphaComposite.SrcOver);
+            g2.setColor(Color.WHITE);
+            g2.fillRect(0, 0, rgb.getWidth(), rgb.getHeight());
+            g2.drawImage(src, 0, 0, null);
+            g2.dispose();
+            src = rgb;
+        }
+        // Estimación con una muestra reducida: 1-2 codificaciones completas en lugar de hasta 12
+        try (AjusteTamanoJpeg ajuste = new AjusteTamanoJpeg()) {
+            byte[] jpg = ajuste.ajustar(src, targetBytes);
+            log.debug("Preprocesado: {} bytes con {} codificaciones completas", jpg.length, ajuste.codificacionesCompletas());
+            return jpg;
         }
     }
 
-    private static BufferedImage scaleImage(BufferedImage src, double scale) {
-        if (scale >= 0.999) return src;
-        int w = Math.max(1, (int) Math.round(src.getWidth() * scale));
-        int h = Math.max(1, (int) Math.round(src.getHeight() * scale));
-        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g = out.createGraphics();
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g.drawImage(src, 0, 0, w, h, null);
-        g.dispose();
-        return out;
+    private static Object contenidoOriginal(MultipartFile file) throws IOException {
+        return file instanceof ArchivoSpool spool ? spool.path().toFile() : file.getBytes();
     }
 
-    private static byte[] writeJpeg(BufferedImage img, float quality) throws Exception {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(1024 * 1024);
-        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
-        ImageWriteParam param = writer.getDefaultWriteParam();
-        if (param.canWriteCompressed()) {
-            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-            param.setCompressionQuality(Math.max(0.1f, Math.min(quality, 1.0f)));
-            param.setProgressiveMode(ImageWriteParam.MODE_DISABLED);
-        }
-        try (ImageOutputStream ios = ImageIO.createImageOutputStream(baos)) {
-            writer.setOutput(ios);
-            writer.write(null, new IIOImage(img, null, null), param);
-        } finally {
-            writer.dispose();
-        }
-        return baos.toByteArray();
+    private static long tamano(Object payload) {
+        return payload instanceof File f ? f.length() : ((byte[]) payload).length;
     }
 
     private static String safeLower(String s) {
@@ -238,6 +201,20 @@ public class CloudinaryImageStorageService implements ImageStorageService {
                 .generate(publicId);
     }
 
+    @Override
+    public String resolveDogImageVariantUrl(String id, int ancho, String formato) {
+        // Cloudinary genera la derivada en la primera petición y la conserva para las siguientes
+        String publicId = perrosFolder + "/" + id;
+        return cloudinary.url()
+                .secure(true)
+                .transformation(new Transformation()
+                        .width(ancho)
+                        .crop("limit")
+                        .quality("auto")
+                        .fetchFormat(formato))
+                .generate(publicId);
+    }
+
     @Override
     public String resolveProfileImagePublicUrl(String id) {
         String publicId = perfilesFolder + "/" + id;
@@ -287,68 +264,69 @@ public class CloudinaryImageStorageService implements ImageStorageService {
         }
     }
 
-    /**
-     * Lista todos los public_id de imágenes en la carpeta de perros en Cloudinary.
-     */
-    public Set<String> listDogImageIds() {
-        Set<String> ids = new java.util.HashSet<>();
-        try {
-            Map<String, Object> params = ObjectUtils.asMap(
-                "expression", "folder:" + perrosFolder,
-                "max_results", 500
-            );
-            Map res = cloudinary.search().expression("folder:" + perrosFolder).maxResults(500).execute();
-            if (res != null && res.containsKey("resources")) {
-                var resources = (java.util.List<Map<String, Object>>) res.get("resources");
-                for (Map<String, Object> r : resources) {
-                    String publicId = (String) r.get("public_id");
-                    // Extraer solo el UUID (última parte del public_id)
-                    if (publicId != null && publicId.startsWith(perrosFolder + "/")) {
-                        String uuid = publicId.substring((perrosFolder + "/").length());
-                        ids.add(uuid);
-                    }
+    // delete_resources admite hasta 100 public_id: una llamada por bloque en lugar de un destroy por imagen.
+    // Los ids que no existen vuelven como "not_found": no quedan pendientes, pero tampoco se cuentan como borrados.
+    @Override
+    public List<String> deleteMany(TipoImagen tipo, Collection<String> ids) throws Exception {
+        String folder = switch (tipo) {
+            case PERRO -> perrosFolder;
+            case PERFIL -> perfilesFolder;
+            case DOCUMENTO -> documentosFolder;
+        };
+        List<String> lista = List.copyOf(ids);
+        List<String> pendientes = new ArrayList<>();
+        List<String> eliminados = new ArrayList<>();
+        Exception ultimoError = null;
+        for (int i = 0; i < lista.size(); i += MAX_BORRADO_LOTE) {
+            List<String> bloque = lista.subList(i, Math.min(i + MAX_BORRADO_LOTE, lista.size()));
+            List<String> publicIds = bloque.stream().map(id -> folder + "/" + id).toList();
+            try {
+                Map<?, ?> res = cloudinary.api().deleteResources(publicIds, ObjectUtils.asMap("resource_type", "image"));
+                // "deleted": public_id -> "deleted" | "not_found"
+                Map<?, ?> estados = res.get("deleted") instanceof Map<?, ?> m ? m : Map.of();
+                for (String id : bloque) {
+                    if ("deleted".equals(estados.get(folder + "/" + id))) eliminados.add(id);
                 }
+            } catch (Exception ex) {
+                pendientes.addAll(bloque);
+                ultimoError = ex;
             }
-        } catch (Exception ex) {
-            log.warn("Error al listar imágenes en Cloudinary: {}", ex.getMessage());
         }
-        return ids;
+        if (!pendientes.isEmpty()) {
+            throw new BorradoIncompletoException("Cloudinary no eliminó " + pendientes.size() + " de " + lista.size()
+                    + " recursos en " + folder + ": " + ultimoError.getMessage(), pendientes, eliminados, ultimoError);
+        }
+        return eliminados;
     }
 
     /**
-     * Limpia imágenes huérfanas en Cloudinary (no asociadas en la BD).
-     * @param repoImagenPerro Repositorio de imágenes de perros
-     * @return cantidad de imágenes eliminadas
+     * Página del listado de la carpeta de perros (Admin API resources con prefijo y next_cursor).
+     * Devuelve solo el UUID de cada public_id y su created_at.
      */
-    public int cleanupOrphanImages(RepositorioImagenPerro repoImagenPerro) {
+    @Override
+    public PaginaAlmacenamiento listDogImages(String cursor, int limite) {
+        String prefijo = perrosFolder + "/";
+        Map<String, Object> opciones = new HashMap<>(ObjectUtils.asMap(
+                "type", "upload",
+                "resource_type", "image",
+                "prefix", prefijo,
+                "max_results", Math.min(Math.max(1, limite), 500)
+        ));
+        if (cursor != null) opciones.put("next_cursor", cursor);
         try {
-            // 1. Obtener todas las URLs de la BD
-            var imagenesBD = repoImagenPerro.findAll();
-            var urlsBD = imagenesBD.stream()
-                    .map(ImagenPerro::getUrl)
-                    .filter(u -> u != null && !u.isBlank())
-                    .collect(Collectors.toSet());
-
-            // 2. Listar imágenes en Cloudinary (solo del folder de perros)
-            var search = cloudinary.search()
-                    .expression("folder:" + perrosFolder)
-                    .maxResults(500);
-            var result = search.execute();
-            var resources = (java.util.List<java.util.Map<String, Object>>) result.get("resources");
-            int eliminadas = 0;
-            for (var res : resources) {
-                String url = (String) res.get("secure_url");
-                String publicId = (String) res.get("public_id");
-                if (!urlsBD.contains(url)) {
-                    // Eliminar imagen huérfana
-                    cloudinary.uploader().destroy(publicId, ObjectUtils.asMap("resource_type", "image"));
-                    eliminadas++;
+            Map<?, ?> res = cloudinary.api().resources(opciones);
+            List<PaginaAlmacenamiento.Objeto> objetos = new ArrayList<>();
+            if (res.get("resources") instanceof List<?> recursos) {
+                for (Object o : recursos) {
+                    if (!(o instanceof Map<?, ?> r) || !(r.get("public_id") instanceof String publicId)) continue;
+                    if (!publicId.startsWith(prefijo)) continue;
+                    Instant creado = r.get("created_at") instanceof String c ? Instant.parse(c) : Instant.EPOCH;
+                    objetos.add(new PaginaAlmacenamiento.Objeto(publicId.substring(prefijo.length()), creado));
                 }
             }
-            return eliminadas;
-        } catch (Exception e) {
-            log.error("Error limpiando imágenes huérfanas en Cloudinary", e);
-            return -1;
+            return new PaginaAlmacenamiento(objetos, (String) res.get("next_cursor"));
+        } catch (Exception ex) {
+            throw new IllegalStateException("No se pudo listar imágenes en Cloudinary: " + ex.getMessage(), ex);
         }
     }
 }
@@ -0,0 +1,257 @@
+package com.cut.cardona.service.infra.storage.dedup;
+
+import com.cut.cardona.modelo.imagenes.AliasImagen;
+import com.cut.cardona.modelo.imagenes.RepositorioAliasImagen;
+import com.cut.cardona.modelo.imagenes.RepositorioBlobImagen;
+import com.cut.cardona.service.infra.storage.BorradoIncompletoException;
+import com.cut.cardona.service.infra.storage.ImageStorageService;
+import com.cut.cardona.service.infra.storage.PaginaAlmacenamiento;
+import com.cut.cardona.service.infra.storage.TipoImagen;
+import com.cut.cardona.service.infra.storage.UploadResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Deduplicación por contenido de las imágenes de perros sobre cualquier proveedor.
+ * Al subir se calcula el SHA-256 antes de llamar al proveedor; si ese contenido ya está en el storage no se vuelve a
+ * subir: se suma una referencia al blob y la imagen recibe un id nuevo (alias) que apunta a él. Cada imagen conserva
+ * así su propio id (la fila de imagenes_perros lo necesita) y las URLs y lecturas se resuelven al blob.
+ * Al borrar se quita el alias y se resta la referencia; el objeto del storage solo se borra cuando nadie lo usa.
+ * Las filas de blobs se bloquean al cambiar el contador, así una subida nunca se apoya en un blob que se está borrando.
+ * Perfiles y documentos pasan directamente al proveedor.
+ */
+@Slf4j
+public class DeduplicacionImageStorageService implements ImageStorageService {
+
+    private final ImageStorageService delegado;
+    private final RepositorioBlobImagen repositorioBlobImagen;
+    private final RepositorioAliasImagen repositorioAliasImagen;
+    private final TransactionTemplate tx;
+    // id de imagen -> id del blob; un alias no cambia de blob, así que basta con olvidarlo al borrarlo
+    private final Map<String, String> blobPorId;
+
+    public DeduplicacionImageStorageService(ImageStorageService delegado,
+                                            RepositorioBlobImagen repositorioBlobImagen,
+                                            RepositorioAliasImagen repositorioAliasImagen,
+                                            TransactionTemplate tx,
+                                            int maxCache) {
+        this.delegado = delegado;
+        this.repositorioBlobImagen = repositorioBlobImagen;
+        this.repositorioAliasImagen = repositorioAliasImagen;
+        this.tx = tx;
+        int max = Math.max(1, maxCache);
+        this.blobPorId = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > max;
+            }
+        };
+    }
+
+    @Override
+    public UploadResult uploadDogImage(MultipartFile file) throws Exception {
+        String hash = sha256(file);
+        UploadResult duplicada = tx.execute(st -> enlazarExistente(hash, file));
+        if (duplicada != null) {
+            log.info("Imagen de perro deduplicada: id={} -> blob={}", duplicada.getId(), resolveDogImageStorageId(duplicada.getId()));
+            return duplicada;
+        }
+        UploadResult subida = delegado.uploadDogImage(file);
+        String id = subida.getId();
+        Boolean registrada = tx.execute(st -> {
+            if (repositorioBlobImagen.insertarSiNoExiste(hash, id, Instant.now()) == 0) return false;
+            repositorioAliasImagen.insertar(id, hash, id, Instant.now());
+            return true;
+        });
+        // Si otra subida del mismo contenido ganó la carrera esta se queda como objeto propio, sin deduplicar
+        if (!Boolean.TRUE.equals(registrada)) log.debug("Contenido {} registrado en paralelo; {} queda sin deduplicar", hash, id);
+        recordar(id, id);
+        return subida;
+    }
+
+    private UploadResult enlazarExistente(String hash, MultipartFile file) {
+        var blob = repositorioBlobImagen.findById(hash);
+        if (blob.isEmpty() || repositorioBlobImagen.incrementar(hash) == 0) return null;
+        String blobId = blob.get().getBlobId();
+        String id = UUID.randomUUID().toString();
+        repositorioAliasImagen.insertar(id, hash, blobId, Instant.now());
+        recordar(id, blobId);
+        return UploadResult.builder()
+                .id(id)
+                .filename(id + extension(file.getOriginalFilename()))
+                .url(resolveDogImagePublicUrl(id))
+                .contentType(file.getContentType())
+                .size(file.getSize())
+                .build();
+    }
+
+    @Override
+    public UploadResult uploadProfileImage(MultipartFile file) throws Exception {
+        return delegado.uploadProfileImage(file);
+    }
+
+    @Override
+    public UploadResult uploadDocumentImage(MultipartFile file) throws Exception {
+        return delegado.uploadDocumentImage(file);
+    }
+
+    @Override
+    public boolean isCloudProvider() {
+        return delegado.isCloudProvider();
+    }
+
+    // En local la URL pasa por /api/imagenes con el id de la imagen y el archivo se busca con resolveLocalDogImagePath
+    @Override
+    public String resolveDogImagePublicUrl(String id) {
+        return delegado.resolveDogImagePublicUrl(delegado.isCloudProvider() ? resolveDogImageStorageId(id) : id);
+    }
+
+    @Override
+    public String resolveDogImageVariantUrl(String id, int ancho, String formato) {
+        return delegado.resolveDogImageVariantUrl(delegado.isCloudProvider() ? resolveDogImageStorageId(id) : id, ancho, formato);
+    }
+
+    @Override
+    public String resolveDogImageStorageId(String id) {
+        if (id == null) return null;
+        synchronized (blobPorId) {
+            String cacheado = blobPorId.get(id);
+            if (cacheado != null) return cacheado;
+        }
+        // Sin alias: imagen anterior a la deduplicación o subida que perdió la carrera; su objeto es su propio id
+        String blobId = repositorioAliasImagen.findBlobId(id).orElse(id);
+        recordar(id, blobId);
+        return blobId;
+    }
+
+    @Override
+    public Path resolveLocalDogImagePath(String id) {
+        return delegado.resolveLocalDogImagePath(resolveDogImageStorageId(id));
+    }
+
+    @Override
+    public String resolveProfileImagePublicUrl(String id) {
+        return delegado.resolveProfileImagePublicUrl(id);
+    }
+
+    @Override
+    public String resolveDocumentImagePublicUrl(String id) {
+        return delegado.resolveDocumentImagePublicUrl(id);
+    }
+
+    @Override
+    public void deleteDogImage(String id) {
+        try {
+            deleteMany(TipoImagen.PERRO, List.of(id));
+        } catch (Exception e) {
+            log.warn("No se pudo borrar imagen de perro {}: {}", id, e.getMessage());
+        }
+    }
+
+    @Override
+    public void deleteProfileImage(String id) {
+        delegado.deleteProfileImage(id);
+    }
+
+    @Override
+    public void deleteDocumentImage(String id) {
+        delegado.deleteDocumentImage(id);
+    }
+
+    /**
+     * Para perros: quita los alias y resta sus referencias en una transacción y borra del proveedor solo los blobs que
+     * quedan sin uso, más los ids sin alias que no son blobs vivos (imágenes anteriores a la deduplicación).
+     * Los pendientes de {@link BorradoIncompletoException} son ids del storage; al reintentarlos ya no tienen alias
+     * ni fila de blob y pasan directos al proveedor. Se devuelven los ids de los objetos que el proveedor borró:
+     * un alias cuyo blob sigue en uso no aparece.
+     */
+    @Override
+    public List<String> deleteMany(TipoImagen tipo, Collection<String> ids) throws Exception {
+        if (tipo != TipoImagen.PERRO) return delegado.deleteMany(tipo, ids);
+        if (ids.isEmpty()) return List.of();
+        List<String> enStorage = tx.execute(st -> liberar(ids));
+        synchronized (blobPorId) {
+            ids.forEach(blobPorId::remove);
+        }
+        if (enStorage == null || enStorage.isEmpty()) return List.of();
+        try {
+            return delegado.deleteMany(TipoImagen.PERRO, enStorage);
+        } catch (BorradoIncompletoException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BorradoIncompletoException(e.getMessage(), enStorage, e);
+        }
+    }
+
+    private List<String> liberar(Collection<String> ids) {
+        List<AliasImagen> alias = repositorioAliasImagen.findAllById(ids);
+        Set<String> sinAlias = new LinkedHashSet<>(ids);
+        Map<String, Integer> porHash = new LinkedHashMap<>();
+        for (AliasImagen a : alias) {
+            sinAlias.remove(a.getId());
+            porHash.merge(a.getHash(), 1, Integer::sum);
+        }
+        // Un blob que aún tiene imágenes no se borra aunque su propio id ya no tenga fila
+        if (!sinAlias.isEmpty()) repositorioBlobImagen.findBlobIdsExistentes(sinAlias).forEach(sinAlias::remove);
+        List<String> enStorage = new ArrayList<>(sinAlias);
+        if (!alias.isEmpty()) {
+            repositorioAliasImagen.deleteByIdIn(alias.stream().map(AliasImagen::getId).toList());
+            porHash.forEach(repositorioBlobImagen::decrementar);
+            enStorage.addAll(repositorioBlobImagen.findBlobIdsSinReferencias(porHash.keySet()));
+            repositorioBlobImagen.deleteSinReferencias(porHash.keySet());
+        }
+        return enStorage;
+    }
+
+    @Override
+    public PaginaAlmacenamiento listDogImages(String cursor, int limite) {
+        return delegado.listDogImages(cursor, limite);
+    }
+
+    private void recordar(String id, String blobId) {
+        synchronized (blobPorId) {
+            blobPorId.put(id, blobId);
+        }
+    }
+
+    // Lectura propia, aparte de la del proveedor: el hash tiene que estar antes de subir para no subir duplicados,
+    // así que no puede salir de un DigestInputStream sobre esa lectura. El multipart ya está en memoria o en un
+    // temporal local, de modo que la segunda pasada no toca la red.
+    private static String sha256(MultipartFile file) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = file.getInputStream()) {
+            int n;
+            while ((n = in.read(buf)) != -1) md.update(buf, 0, n);
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private static String extension(String nombre) {
+        if (nombre == null) return "";
+        int dot = nombre.lastIndexOf('.');
+        return dot >= 0 ? nombre.substring(dot).toLowerCase() : "";
+    }
+}
@@ -0,0 +1,165 @@
+package com.cut.cardona.service.infra.storage.local;
+
+import com.cut.cardona.service.infra.storage.VariantesImagen;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Directorio local repartido por los primeros caracteres del id ({@code ab/cd/<id>.<ext>}), así ningún directorio
+ * crece con el total de archivos, más un índice en memoria id -> extensión que se reconstruye al arrancar.
+ * Con el índice cada búsqueda es una consulta en memoria y un único acceso al archivo, sin probar extensiones ni
+ * listar directorios. La reconstrucción también migra el esquema plano anterior ({@code <id>.<ext>} en la raíz)
+ * moviendo cada archivo a su subdirectorio; es idempotente, así que basta con arrancar para migrar.
+ * El índice está ordenado por id: el listado paginado del recolector de huérfanas se sirve desde él.
+ */
+@Slf4j
+final class DirectorioFragmentado {
+
+    // Ids que solo conservan variantes (el original se borró a medias): se listan para que el recolector las limpie
+    static final String SIN_ORIGINAL = "";
+
+    private static final String[] EXTENSIONES = {"jpg", "jpeg", "png", "gif", "webp"};
+
+    private final Path base;
+    private final boolean conVariantes;
+    private final ConcurrentSkipListMap<String, String> indice = new ConcurrentSkipListMap<>();
+
+    DirectorioFragmentado(String dir, boolean conVariantes) {
+        this.base = Paths.get(dir);
+        this.conVariantes = conVariantes;
+    }
+
+    /** Recorre el directorio una vez: mueve los archivos planos a su subdirectorio y carga el índice. */
+    void reconstruir() {
+        if (!Files.isDirectory(base)) return;
+        long t0 = System.nanoTime();
+        int migrados = 0;
+        try (Stream<Path> archivos = Files.walk(base, 3)) {
+            for (Path p : (Iterable<Path>) archivos.filter(Files::isRegularFile)::iterator) {
+                String nombre = p.getFileName().toString();
+                String id = idDe(nombre);
+                if (id == null) continue;
+                Path destino = carpeta(id).resolve(nombre);
+                if (!p.equals(destino)) {
+                    if (!p.getParent().equals(base)) continue;
+                    if (!mover(p, destino)) continue;
+                    migrados++;
+                }
+                anotar(id, nombre);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo indexar " + base + ": " + e.getMessage(), e);
+        }
+        log.info("Directorio {}: {} ids indexados, {} archivos migrados al esquema por subdirectorios en {} ms",
+                base, indice.size(), migrados, (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    /** Ruta donde se guarda un archivo nuevo; crea su subdirectorio. */
+    Path nuevo(String id, String ext) throws IOException {
+        Path carpeta = carpeta(id);
+        Files.createDirectories(carpeta);
+        return carpeta.resolve(id + "." + ext);
+    }
+
+    /** Anota un archivo ya escrito por completo; desde aquí es visible para lecturas y borrados. */
+    void registrar(String id, String ext) {
+        indice.put(id, canonica(ext));
+    }
+
+    /** Archivo original del id; null si no está en el índice. */
+    Path archivo(String id) {
+        String ext = valido(id) ? indice.get(id) : null;
+        if (ext == null || ext.equals(SIN_ORIGINAL)) return null;
+        return carpeta(id).resolve(id + "." + ext);
+    }
+
+    /**
+     * Borra el original (y sus variantes) y lo quita del índice; devuelve false sin tocar el disco si el id no está
+     * indexado.
+     */
+    boolean eliminar(String id) throws IOException {
+        String ext = valido(id) ? indice.get(id) : null;
+        if (ext == null) return false;
+        Path carpeta = carpeta(id);
+        if (!ext.equals(SIN_ORIGINAL)) Files.deleteIfExists(carpeta.resolve(id + "." + ext));
+        if (conVariantes) VariantesImagen.eliminar(carpeta, id);
+        return indice.remove(id, ext);
+    }
+
+    /** Ids indexados posteriores al cursor (null = desde el principio), en orden. */
+    NavigableMap<String, String> desde(String cursor) {
+        return cursor == null ? indice : indice.tailMap(cursor, false);
+    }
+
+    Path base() {
+        return base;
+    }
+
+    private void anotar(String id, String nombre) {
+        String resto = nombre.substring(id.length());
+        if (resto.startsWith(".")) {
+            indice.put(id, canonica(resto.substring(1)));
+        } else {
+            indice.putIfAbsent(id, SIN_ORIGINAL);
+        }
+    }
+
+    private boolean mover(Path origen, Path destino) {
+        // En POSIX un ATOMIC_MOVE reemplaza el destino sin avisar: se comprueba antes para no pisar uno ya migrado
+        if (Files.exists(destino)) {
+            log.warn("No se migra {}: ya existe {}", origen, destino);
+            return false;
+        }
+        try {
+            Files.createDirectories(destino.getParent());
+            Files.move(origen, destino, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            log.warn("No se migra {}: ya existe {}", origen, destino);
+        } catch (IOException e) {
+            log.warn("No se pudo migrar {}: {}", origen, e.getMessage());
+        }
+        return false;
+    }
+
+    private Path carpeta(String id) {
+        return base.resolve(id.substring(0, 2)).resolve(id.substring(2, 4));
+    }
+
+    // Originales {id}.{ext} y variantes {id}_w{ancho}.{ext}; temporales y nombres sin UUID se ignoran
+    private static String idDe(String nombre) {
+        if (nombre.length() < 37 || nombre.contains(".tmp-")) return null;
+        String id = nombre.substring(0, 36);
+        char sig = nombre.charAt(36);
+        if (sig != '.' && sig != '_') return null;
+        return valido(id) ? id : null;
+    }
+
+    private static boolean valido(String id) {
+        if (id == null || id.length() != 36) return false;
+        try {
+            UUID.fromString(id);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Las extensiones conocidas comparten instancia: el índice solo guarda una referencia por id
+    private static String canonica(String ext) {
+        for (String conocida : EXTENSIONES) {
+            if (conocida.equals(ext)) return conocida;
+        }
+        return ext;
+    }
+}
@@ -1,8 +1,11 @@
 package com.cut.cardona.service.infra.storage.local;
 
+import com.cut.cardona.service.infra.storage.BorradoIncompletoException;
 import com.cut.cardona.service.infra.storage.ImageStorageService;
+import com.cut.cardona.service.infra.storage.PaginaAlmacenamiento;
+import com.cut.cardona.service.infra.storage.TipoImagen;
 import com.cut.cardona.service.infra.storage.UploadResult;
-import com.cut.cardona.modelo.perros.RepositorioImagenPerro;
+import com.cut.cardona.service.infra.storage.VariantesImagen;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
@@ -15,11 +18,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
@@ -33,43 +42,42 @@ public class LocalImageStorageService implements ImageStorageService {
     private static final long MAX_DOG_SIZE = 15L * 1024 * 1024; // Cambiado a 15MB
     private static final Set<String> ALLOWED = Set.of("image/jpeg", "image/png", "image/webp", "image/gif");
 
-    private final String perrosDir;
-    private final String perfilesDir;
-    private final String documentosDir;
+    private final DirectorioFragmentado perros;
+    private final DirectorioFragmentado perfiles;
+    private final DirectorioFragmentado documentos;
 
     public LocalImageStorageService(String perrosDir, String perfilesDir) {
         this(perrosDir, perfilesDir, "uploads/documentos/");
     }
     public LocalImageStorageService(String perrosDir, String perfilesDir, String documentosDir) {
-        this.perrosDir = perrosDir;
-        this.perfilesDir = perfilesDir;
-        this.documentosDir = documentosDir;
+        this.perros = new DirectorioFragmentado(perrosDir, true);
+        this.perfiles = new DirectorioFragmentado(perfilesDir, false);
+        this.documentos = new DirectorioFragmentado(documentosDir, false);
+        perros.reconstruir();
+        perfiles.reconstruir();
+        documentos.reconstruir();
     }
 
     @Override
     public UploadResult uploadDogImage(MultipartFile file) throws Exception {
         validate(file, MAX_DOG_SIZE);
-        ensureDir(perrosDir);
-        return saveDogToDir(file, perrosDir);
+        return saveDog(file);
     }
 
     @Override
     public UploadResult uploadProfileImage(MultipartFile file) throws Exception {
         validate(file, MAX_PROFILE_SIZE);
-        ensureDir(perfilesDir);
-        return saveProfileToDir(file, perfilesDir);
+        return saveProfile(file);
     }
 
     @Override
     public UploadResult uploadDocumentImage(MultipartFile file) throws Exception {
         validate(file, MAX_DOG_SIZE);
-        ensureDir(documentosDir);
-        String original = file.getOriginalFilename();
-        String ext = "." + getExtension(original);
+        String ext = getExtension(file.getOriginalFilename()).toLowerCase();
         String id = UUID.randomUUID().toString();
-        String filename = id + ext.toLowerCase();
-        Path destino = Paths.get(documentosDir).resolve(filename).normalize();
-        Files.copy(file.getInputStream(), destino, StandardCopyOption.REPLACE_EXISTING);
+        String filename = id + "." + ext;
+        Files.copy(file.getInputStream(), documentos.nuevo(id, ext), StandardCopyOption.REPLACE_EXISTING);
+        documentos.registrar(id, ext);
         return UploadResult.builder()
                 .id(id)
                 .filename(filename)
@@ -79,14 +87,20 @@ public class LocalImageStorageService implements ImageStorageService {
                 .build();
     }
 
-    private UploadResult saveDogToDir(MultipartFile file, String baseDir) throws IOException {
+    private UploadResult saveDog(MultipartFile file) throws IOException {
         // Conservar proporciones: guardar el archivo tal cual con su extensión original
-        String original = file.getOriginalFilename();
-        String ext = "." + getExtension(original);
+        String ext = getExtension(file.getOriginalFilename()).toLowerCase();
         String id = UUID.randomUUID().toString();
-        String filename = id + ext.toLowerCase();
-        Path destino = Paths.get(baseDir).resolve(filename).normalize();
+        String filename = id + "." + ext;
+        Path destino = perros.nuevo(id, ext);
         Files.copy(file.getInputStream(), destino, StandardCopyOption.REPLACE_EXISTING);
+        // Variantes para el catálogo (miniaturas / tamaños responsivos); si fallan se generan al pedirlas
+        try {
+            VariantesImagen.generarTodas(destino, destino.getParent(), id);
+        } catch (Exception ex) {
+            log.warn("No se pudieron generar variantes de {}: {}", id, ex.getMessage());
+        }
+        perros.registrar(id, ext);
         return UploadResult.builder()
                 .id(id)
                 .filename(filename)
@@ -96,17 +110,16 @@ public class LocalImageStorageService implements ImageStorageService {
                 .build();
     }
 
-    private UploadResult saveProfileToDir(MultipartFile file, String baseDir) throws IOException {
+    private UploadResult saveProfile(MultipartFile file) throws IOException {
         // Procesar imagen: recortar al centro cuadrado y reducir a max 1024x1024
         BufferedImage img = readImageSafely(file.getInputStream());
         if (img == null) {
             // Si no se pudo leer como imagen, guardar el stream original como fallback
-            String original = file.getOriginalFilename();
-            String ext = "." + getExtension(original);
+            String ext = getExtension(file.getOriginalFilename()).toLowerCase();
             String id = UUID.randomUUID().toString();
-            String filename = id + ext.toLowerCase();
-            Path destino = Paths.get(baseDir).resolve(filename).normalize();
-            Files.copy(file.getInputStream(), destino, StandardCopyOption.REPLACE_EXISTING);
+            String filename = id + "." + ext;
+            Files.copy(file.getInputStream(), perfiles.nuevo(id, ext), StandardCopyOption.REPLACE_EXISTING);
+            perfiles.registrar(id, ext);
             return UploadResult.builder()
                     .id(id)
                     .filename(filename)
@@ -124,9 +137,8 @@ public class LocalImageStorageService implements ImageStorageService {
 
         String id = UUID.randomUUID().toString();
         String filename = id + ".jpg";
-        Path destino = Paths.get(baseDir).resolve(filename).normalize();
-        Files.createDirectories(destino.getParent());
-        Files.write(destino, outBytes);
+        Files.write(perfiles.nuevo(id, "jpg"), outBytes);
+        perfiles.registrar(id, "jpg");
 
         return UploadResult.builder()
                 .id(id)
@@ -192,13 +204,6 @@ public class LocalImageStorageService implements ImageStorageService {
         }
     }
 
-    private void ensureDir(String dir) throws IOException {
-        Path path = Paths.get(dir);
-        if (!Files.exists(path)) {
-            Files.createDirectories(path);
-        }
-    }
-
     private void validate(MultipartFile file, long maxSize) {
         if (file == null || file.isEmpty()) throw new IllegalArgumentException("Archivo vacío");
         if (file.getSize() > maxSize) throw new IllegalArgumentException("El archivo excede el tamaño permitido");
@@ -217,47 +222,90 @@ public class LocalImageStorageService implements ImageStorageService {
     @Override
     public String resolveDogImagePublicUrl(String id) { return "/api/imagenes/perritos/" + id; }
 
+    @Override
+    public Path resolveLocalDogImagePath(String id) { return perros.archivo(id); }
+
     @Override
     public String resolveProfileImagePublicUrl(String id) { return "/api/imagenes/perfil/" + id + ".jpg"; }
 
     @Override
     public String resolveDocumentImagePublicUrl(String id) { return "/api/documentos/" + id; }
 
+    @Override
+    public void deleteDogImage(String id) {
+        try {
+            perros.eliminar(id);
+        } catch (Exception e) {
+            log.warn("No se pudo borrar imagen {}: {}", id, e.getMessage());
+        }
+    }
+
     @Override
     public void deleteProfileImage(String id) {
-        // Intentar eliminar archivo de perfil basado en patrones comunes
         try {
-            Path dir = Paths.get(perfilesDir);
-            if (!Files.exists(dir)) return;
-            String[] exts = {"jpg", "jpeg", "png", "gif", "webp"};
-            for (String ext : exts) {
-                Path candidate = dir.resolve(id + "." + ext);
-                if (Files.exists(candidate)) {
-                    try { Files.delete(candidate); } catch (Exception ex) { log.warn("No se pudo borrar archivo {}: {}", candidate, ex.getMessage()); }
-                }
-            }
+            perfiles.eliminar(id);
         } catch (Exception e) {
-            log.debug("deleteProfileImage local ignorado: {}", e.getMessage());
+            log.warn("No se pudo borrar imagen de perfil {}: {}", id, e.getMessage());
         }
     }
 
     @Override
     public void deleteDocumentImage(String id) {
         try {
-            if (!Files.exists(Paths.get(documentosDir))) return;
-            String[] exts = {"jpg","jpeg","png","gif","webp"};
-            for (String ext : exts) {
-                Path p = Paths.get(documentosDir).resolve(id + "." + ext);
-                if (Files.exists(p)) {
-                    try { Files.delete(p); } catch (Exception e) { log.warn("No se pudo borrar documento {}: {}", p, e.getMessage()); }
-                }
-            }
-        } catch (Exception ignored) {}
+            documentos.eliminar(id);
+        } catch (Exception e) {
+            log.warn("No se pudo borrar documento {}: {}", id, e.getMessage());
+        }
     }
 
+    // Los unlink son independientes entre sí: se reparten en paralelo y se reportan los ids borrados y los que fallaron
     @Override
-    public int cleanupOrphanImages(RepositorioImagenPerro repositorioImagenPerro) {
+    public List<String> deleteMany(TipoImagen tipo, Collection<String> ids) throws Exception {
+        DirectorioFragmentado dir = switch (tipo) {
+            case PERRO -> perros;
+            case PERFIL -> perfiles;
+            case DOCUMENTO -> documentos;
+        };
+        Queue<String> pendientes = new ConcurrentLinkedQueue<>();
+        Queue<String> eliminados = new ConcurrentLinkedQueue<>();
+        AtomicReference<IOException> ultimoError = new AtomicReference<>();
+        ids.parallelStream().forEach(id -> {
+            try {
+                if (dir.eliminar(id)) eliminados.add(id);
+            } catch (IOException e) {
+                pendientes.add(id);
+                ultimoError.set(e);
+            }
+        });
+        if (!pendientes.isEmpty()) {
+            throw new BorradoIncompletoException("No se pudieron borrar " + pendientes.size() + " archivos en " + dir.base()
+                    + ": " + ultimoError.get().getMessage(), List.copyOf(pendientes), List.copyOf(eliminados), ultimoError.get());
+        }
+        return List.copyOf(eliminados);
+    }
 
-        return 0;
+    /**
+     * Página de imágenes de perros en orden de id, servida desde el índice (sin recorrer el disco);
+     * el cursor es el último id devuelto. La fecha de creación es la de modificación del original;
+     * los ids que solo conservan variantes se devuelven como antiguos para que el recolector las borre.
+     */
+    @Override
+    public PaginaAlmacenamiento listDogImages(String cursor, int limite) {
+        int max = Math.max(1, limite);
+        List<PaginaAlmacenamiento.Objeto> objetos = new ArrayList<>(max);
+        String ultimo = null;
+        for (String id : perros.desde(cursor).keySet()) {
+            if (objetos.size() >= max) break;
+            ultimo = id;
+            Path original = perros.archivo(id);
+            try {
+                Instant creado = original != null ? Files.getLastModifiedTime(original).toInstant() : Instant.EPOCH;
+                objetos.add(new PaginaAlmacenamiento.Objeto(id, creado));
+            } catch (IOException e) {
+                // borrado entre el índice y la lectura de atributos
+            }
+        }
+        String siguiente = ultimo != null && perros.desde(ultimo).isEmpty() ? null : ultimo;
+        return new PaginaAlmacenamiento(objetos, siguiente);
     }
 }
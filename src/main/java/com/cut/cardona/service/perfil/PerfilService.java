@@ -7,7 +7,9 @@ import com.cut.cardona.modelo.imagenes.RepositorioImagenPerfil;
 import com.cut.cardona.modelo.usuarios.RepositorioUsuario;
 import com.cut.cardona.modelo.usuarios.Usuario;
 import com.cut.cardona.modelo.dto.perfil.DtoActualizarPerfilRequest;
+import com.cut.cardona.security.UsuarioModificadoEvent;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -20,6 +22,7 @@ public class PerfilService {
     private final RepositorioUsuario repositorioUsuario;
     private final RepositorioImagenPerfil repositorioImagenPerfil;
     private final PerfilUsuarioService perfilUsuarioService; // nueva dependencia
+    private final ApplicationEventPublisher eventPublisher;
 
     // Conversión existente usada por AuthenticationService
     public DtoUsuario toDto(Usuario usuario) {
@@ -88,6 +91,7 @@ public class PerfilService {
             u.setToken(null);
             u.setFechaExpiracionToken(null);
             repositorioUsuario.save(u);
+            eventPublisher.publishEvent(new UsuarioModificadoEvent(u.getId()));
             return true;
         }).orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
     }
@@ -1,6 +1,9 @@
 package com.cut.cardona.service.perfil;
 
+import com.cut.cardona.security.UsuarioModificadoEvent;
+import com.cut.cardona.service.imagenes.DespachadorBorrados;
 import com.cut.cardona.service.infra.storage.ImageStorageService;
+import com.cut.cardona.service.infra.storage.TipoImagen;
 import com.cut.cardona.service.infra.storage.UploadResult;
 import com.cut.cardona.modelo.dto.perfil.DtoActualizarPerfilRequest;
 import com.cut.cardona.modelo.dto.perfil.DtoPerfilCompleto;
@@ -13,11 +16,13 @@ import com.cut.cardona.modelo.usuarios.Usuario;
 import com.cut.cardona.modelo.usuarios.Roles;
 import com.cut.cardona.modelo.usuarios.RepositorioUsuario;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -30,6 +35,8 @@ public class PerfilUsuarioService {
     private final RepositorioImagenPerfil repositorioImagenPerfil;
     private final PasswordEncoder passwordEncoder;
     private final ImageStorageService imageStorageService;
+    private final DespachadorBorrados despachadorBorrados;
+    private final ApplicationEventPublisher eventPublisher;
 
     private static final long MAX_FILE_SIZE = 15L * 1024 * 1024; // 15MB
 
@@ -100,7 +107,8 @@ public class PerfilUsuarioService {
     }
 
     /**
-     * Actualiza los campos básicos del perfil (sin imagen)
+     * Actualiza los campos básicos del perfil (sin imagen). Publica {@link UsuarioModificadoEvent} para que
+     * CachePrincipales suelte al usuario tras el commit, sea cual sea el controlador que llegue aquí.
      */
     public DtoPerfilCompleto actualizarPerfilCampos(String usuarioId, DtoActualizarPerfilRequest req) {
         PerfilUsuario perfil = repositorioPerfilUsuario.findByUsuarioId(usuarioId)
@@ -123,6 +131,7 @@ public class PerfilUsuarioService {
             perfil.setFechaNacimiento(req.fechaNacimiento());
         }
         perfil = repositorioPerfilUsuario.save(perfil);
+        eventPublisher.publishEvent(new UsuarioModificadoEvent(usuarioId));
         ImagenPerfil imagen = repositorioImagenPerfil.findActivaByUsuarioId(usuarioId).orElse(null);
         return construirDtoPerfilCompleto(perfil.getUsuario(), perfil, imagen);
     }
@@ -154,9 +163,9 @@ public class PerfilUsuarioService {
 
         ImagenPerfil nuevaImagen = procesarImagenPerfil(archivo, perfil);
 
-        // Borrado best-effort de imagen anterior en storage
+        // Borrado de la imagen anterior en storage tras el commit
         if (oldPublicIdHolder[0] != null) {
-            try { imageStorageService.deleteProfileImage(oldPublicIdHolder[0]); } catch (Exception ignored) {}
+            despachadorBorrados.programar(TipoImagen.PERFIL, List.of(oldPublicIdHolder[0]));
         }
         return nuevaImagen.getUrlPublica();
     }
@@ -0,0 +1,30 @@
+package com.cut.cardona.service.perros;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Cursor opaco para paginación por clave (keyset) del catálogo: (fecha_publicacion, id).
+ * Se serializa como Base64 URL-safe de "epochMillis:id".
+ */
+public record CatalogoCursor(long fechaPublicacionMillis, String id) {
+
+    public String encode() {
+        String raw = fechaPublicacionMillis + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CatalogoCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(':');
+            long millis = Long.parseLong(raw.substring(0, sep));
+            String id = raw.substring(sep + 1);
+            UUID.fromString(id);
+            return new CatalogoCursor(millis, id);
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+}
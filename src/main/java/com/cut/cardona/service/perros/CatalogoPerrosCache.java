@@ -0,0 +1,337 @@
+package com.cut.cardona.service.perros;
+
+import com.cut.cardona.modelo.dto.perros.DtoPerro;
+import com.cut.cardona.modelo.perros.ImagenPerro;
+import com.cut.cardona.modelo.perros.Perro;
+import com.cut.cardona.modelo.perros.RepositorioImagenPerro;
+import com.cut.cardona.modelo.perros.RepositorioPerro;
+import com.cut.cardona.modelo.perros.enums.PerroEstadoAdopcion;
+import com.cut.cardona.modelo.perros.enums.PerroEstadoRevision;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Modelo de lectura en memoria del catálogo público (perros aprobados y disponibles).
+ * Mantiene una instantánea inmutable ya ordenada por fecha de publicación, con la imagen
+ * principal resuelta, de modo que las lecturas del catálogo no ejecutan SQL.
+ * Se actualiza de forma incremental con {@link PerroCatalogoEvent} tras el commit: los eventos se acumulan y un
+ * hilo propio los aplica en lote, colocando cada perro en su sitio por búsqueda binaria sin reordenar la lista.
+ * Una recarga completa periódica recoge los cambios hechos desde otros nodos.
+ */
+@Component
+@Slf4j
+public class CatalogoPerrosCache {
+
+    // Mismo orden que el índice idx_perro_catalogo_keyset: fecha_publicacion DESC, id DESC
+    private static final Comparator<Entrada> ORDEN_CATALOGO = Comparator
+            .comparingLong(Entrada::fechaPublicacionMillis).reversed()
+            .thenComparing(e -> e.dto().id(), Comparator.reverseOrder());
+
+    private final RepositorioPerro repositorioPerro;
+    private final RepositorioImagenPerro repositorioImagenPerro;
+    private final TransactionOperations lecturas;
+    private final long recargaMinutos;
+
+    private volatile List<Entrada> snapshot;
+    private volatile Map<String, Entrada> porId;
+    private volatile IndiceBusquedaPerros indice;
+
+    // Perros cambiados pendientes de aplicar; varios eventos del mismo perro se aplican una sola vez
+    private final Set<String> pendientes = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean aplicacionProgramada = new AtomicBoolean();
+    private final ScheduledExecutorService tareas = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "catalogo-perros");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Autowired
+    public CatalogoPerrosCache(RepositorioPerro repositorioPerro, RepositorioImagenPerro repositorioImagenPerro,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.catalogo.recarga-minutos:10}") long recargaMinutos) {
+        this(repositorioPerro, repositorioImagenPerro, lecturaAislada(transactionManager), recargaMinutos);
+    }
+
+    CatalogoPerrosCache(RepositorioPerro repositorioPerro, RepositorioImagenPerro repositorioImagenPerro,
+                        TransactionOperations lecturas, long recargaMinutos) {
+        this.repositorioPerro = repositorioPerro;
+        this.repositorioImagenPerro = repositorioImagenPerro;
+        this.lecturas = lecturas;
+        this.recargaMinutos = recargaMinutos;
+    }
+
+    /**
+     * Las lecturas de la instantánea van en una transacción nueva de solo lectura. El listener corre tras el commit
+     * con el contexto de persistencia de la transacción que publicó el evento aún ligado al hilo; leer ahí devolvería
+     * las entidades ya cargadas, sin los cambios de los UPDATE masivos (p. ej. clearPrincipal) que no pasan por él.
+     */
+    private static TransactionOperations lecturaAislada(PlatformTransactionManager transactionManager) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        tx.setReadOnly(true);
+        return tx;
+    }
+
+    /**
+     * Elemento del catálogo: DTO listo para servir y campos precalculados para filtrar/ordenar.
+     */
+    public record Entrada(DtoPerro dto, Timestamp fechaPublicacion, String ubicacionNormalizada) {
+        long fechaPublicacionMillis() { return fechaPublicacion == null ? 0L : fechaPublicacion.getTime(); }
+
+        CatalogoCursor cursor() { return new CatalogoCursor(fechaPublicacionMillis(), dto.id()); }
+    }
+
+    /**
+     * Página en modo cursor; nextCursor es null cuando no hay más resultados.
+     */
+    public record PaginaCursor(List<DtoPerro> items, String nextCursor) {}
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlIniciar() {
+        recargar();
+        if (recargaMinutos > 0) {
+            tareas.scheduleWithFixedDelay(this::recargarPorSeguridad, recargaMinutos, recargaMinutos, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    void detener() {
+        tareas.shutdownNow();
+    }
+
+    private void recargarPorSeguridad() {
+        try {
+            recargar();
+        } catch (Exception ex) {
+            log.warn("[Catalogo] Fallo en la recarga periódica: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Reconstruye la instantánea completa (2 consultas: perros e imágenes en lote).
+     */
+    public synchronized void recargar() {
+        List<Entrada> nuevas = lecturas.execute(status -> {
+            List<Perro> perros = repositorioPerro.findCatalogoPublico();
+            Map<String, List<ImagenPerro>> imagenesPorPerro = perros.isEmpty() ? Map.of()
+                    : repositorioImagenPerro.findByPerroIdIn(perros.stream().map(Perro::getId).toList()).stream()
+                            .collect(Collectors.groupingBy(i -> i.getPerro().getId()));
+            List<Entrada> leidas = new ArrayList<>(perros.size());
+            for (Perro p : perros) {
+                leidas.add(toEntrada(p, imagenesPorPerro.getOrDefault(p.getId(), List.of())));
+            }
+            return leidas;
+        });
+        nuevas.sort(ORDEN_CATALOGO);
+        publicar(List.copyOf(nuevas), nuevas.stream().collect(Collectors.toMap(e -> e.dto().id(), e -> e)));
+        log.info("[Catalogo] Instantánea cargada con {} perros", nuevas.size());
+    }
+
+    /**
+     * Anota el cambio y deja su aplicación al hilo del catálogo, fuera de la petición que lo publicó.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPerroCambiado(PerroCatalogoEvent event) {
+        if (event == null || event.perroIds() == null || event.perroIds().isEmpty()) return;
+        event.perroIds().stream().filter(Objects::nonNull).forEach(pendientes::add);
+        if (aplicacionProgramada.compareAndSet(false, true)) {
+            tareas.execute(this::aplicarPendientes);
+        }
+    }
+
+    /**
+     * Aplica en lote los cambios pendientes: vuelve a leer esos perros (2 consultas) y los inserta, reemplaza
+     * o retira de la instantánea según su estado actual (copy-on-write).
+     */
+    synchronized void aplicarPendientes() {
+        aplicacionProgramada.set(false);
+        if (pendientes.isEmpty()) return;
+        List<String> ids = new ArrayList<>(pendientes);
+        pendientes.removeAll(ids);
+        if (snapshot == null) {
+            recargar();
+            return;
+        }
+        try {
+            aplicar(leer(ids));
+        } catch (Exception ex) {
+            // Ante cualquier fallo, reconstruir completo para no servir datos inconsistentes
+            log.warn("[Catalogo] Fallo actualización incremental de {} perros: {}; recargando", ids.size(), ex.getMessage());
+            recargar();
+        }
+    }
+
+    // Estado actual de cada perro pedido: su entrada si es público, null si ya no debe estar en el catálogo
+    private Map<String, Entrada> leer(Collection<String> ids) {
+        return lecturas.execute(status -> {
+            Map<String, List<ImagenPerro>> imagenesPorPerro = repositorioImagenPerro.findByPerroIdIn(ids).stream()
+                    .collect(Collectors.groupingBy(i -> i.getPerro().getId()));
+            Map<String, Entrada> cambios = new HashMap<>();
+            ids.forEach(id -> cambios.put(id, null));
+            for (Perro p : repositorioPerro.findAllById(ids)) {
+                if (esPublico(p)) cambios.put(p.getId(), toEntrada(p, imagenesPorPerro.getOrDefault(p.getId(), List.of())));
+            }
+            return cambios;
+        });
+    }
+
+    private void aplicar(Map<String, Entrada> cambios) {
+        List<Entrada> lista = new ArrayList<>(snapshot);
+        Map<String, Entrada> indicePorId = new HashMap<>(porId);
+        cambios.forEach((id, nueva) -> {
+            Entrada vieja = indicePorId.remove(id);
+            if (vieja != null) {
+                // La entrada vieja es la última de las que van antes de su propio cursor o en él
+                int pos = posicionTras(lista, vieja.cursor()) - 1;
+                if (pos < 0 || lista.get(pos) != vieja) throw new IllegalStateException("instantánea desordenada");
+                lista.remove(pos);
+            }
+            if (nueva != null) {
+                lista.add(posicionTras(lista, nueva.cursor()), nueva);
+                indicePorId.put(id, nueva);
+            }
+        });
+        publicar(List.copyOf(lista), indicePorId);
+    }
+
+    // Instala la nueva instantánea, ya ordenada, junto con su índice de búsqueda
+    private void publicar(List<Entrada> ordenadas, Map<String, Entrada> indicePorId) {
+        indice = IndiceBusquedaPerros.construir(ordenadas);
+        porId = Map.copyOf(indicePorId);
+        snapshot = ordenadas;
+    }
+
+    /**
+     * Lectura filtrada y paginada sobre la instantánea actual. No accede a la base de datos
+     * salvo en la primera llamada si la carga inicial aún no se ejecutó.
+     */
+    public List<DtoPerro> buscar(String sexo, String tamano, String ubicacion, int page, int size) {
+        String ubicacionNorm = ubicacion == null || ubicacion.isBlank() ? null : normalizar(ubicacion);
+        long saltar = (long) page * size;
+        List<DtoPerro> out = new ArrayList<>(size);
+        for (Entrada e : entradas()) {
+            if (!coincide(e, sexo, tamano, ubicacionNorm)) continue;
+            if (saltar > 0) { saltar--; continue; }
+            out.add(e.dto());
+            if (out.size() >= size) break;
+        }
+        return out;
+    }
+
+    /**
+     * Paginación por clave: localiza la posición del cursor por búsqueda binaria y recorre
+     * solo lo necesario para llenar la página, sin importar la profundidad.
+     */
+    public PaginaCursor buscarDesde(String sexo, String tamano, String ubicacion, String cursor, int size) {
+        String ubicacionNorm = ubicacion == null || ubicacion.isBlank() ? null : normalizar(ubicacion);
+        List<Entrada> lista = entradas();
+        int desde = cursor == null || cursor.isBlank() ? 0 : posicionTras(lista, CatalogoCursor.decode(cursor));
+        List<DtoPerro> out = new ArrayList<>(size);
+        Entrada ultima = null;
+        boolean hayMas = false;
+        for (int i = desde; i < lista.size(); i++) {
+            Entrada e = lista.get(i);
+            if (!coincide(e, sexo, tamano, ubicacionNorm)) continue;
+            if (out.size() >= size) { hayMas = true; break; }
+            out.add(e.dto());
+            ultima = e;
+        }
+        return new PaginaCursor(out, hayMas ? ultima.cursor().encode() : null);
+    }
+
+    // Primer índice cuyo elemento va estrictamente después del cursor en ORDEN_CATALOGO
+    private static int posicionTras(List<Entrada> lista, CatalogoCursor c) {
+        int lo = 0;
+        int hi = lista.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            Entrada e = lista.get(mid);
+            int cmp = Long.compare(e.fechaPublicacionMillis(), c.fechaPublicacionMillis());
+            if (cmp == 0) cmp = e.dto().id().compareTo(c.id());
+            // cmp >= 0: e va antes del cursor o es el propio cursor (más reciente, o mismo instante con id mayor/igual)
+            if (cmp >= 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static boolean coincide(Entrada e, String sexo, String tamano, String ubicacionNorm) {
+        DtoPerro dto = e.dto();
+        if (sexo != null && !sexo.equals(dto.sexo())) return false;
+        if (tamano != null && !tamano.equals(dto.tamano())) return false;
+        return ubicacionNorm == null || (e.ubicacionNormalizada() != null && e.ubicacionNormalizada().contains(ubicacionNorm));
+    }
+
+    /**
+     * Búsqueda de texto completo (nombre, raza, descripción, ubicación) con ranking,
+     * sin distinguir acentos ni mayúsculas y con coincidencia por prefijo.
+     */
+    public List<DtoPerro> buscarTexto(String consulta, int page, int size) {
+        entradas();
+        List<Entrada> hits = indice.buscar(consulta);
+        int desde = (int) Math.min((long) page * size, hits.size());
+        int hasta = Math.min(desde + size, hits.size());
+        return hits.subList(desde, hasta).stream().map(Entrada::dto).toList();
+    }
+
+    public List<DtoPerro> todos() {
+        return entradas().stream().map(Entrada::dto).toList();
+    }
+
+    public List<Entrada> entradas() {
+        List<Entrada> s = snapshot;
+        if (s == null) {
+            recargar();
+            s = snapshot;
+        }
+        return s;
+    }
+
+    private static boolean esPublico(Perro p) {
+        return p.getEstadoRevision() == PerroEstadoRevision.APROBADO && p.getEstadoAdopcion() == PerroEstadoAdopcion.DISPONIBLE;
+    }
+
+    private static Entrada toEntrada(Perro p, List<ImagenPerro> imagenes) {
+        DtoPerro base = new DtoPerro(p, imagenes);
+        // Copia defensiva para que la instantánea sea realmente inmutable
+        DtoPerro dto = new DtoPerro(base.id(), base.nombre(), base.edad(), base.sexo(), base.tamano(), base.raza(),
+                base.descripcion(), base.ubicacion(), base.estadoAdopcion(), base.estadoRevision(), base.usuarioId(),
+                base.imagenPrincipalId(), List.copyOf(base.imagenIds()));
+        return new Entrada(dto, p.getFechaPublicacion(), p.getUbicacion() == null ? null : normalizar(p.getUbicacion()));
+    }
+
+    /**
+     * Minúsculas y sin acentos, equivalente a la colación utf8mb4_unicode_ci usada por el LIKE en BD.
+     */
+    static String normalizar(String s) {
+        String sinAcentos = Normalizer.normalize(s, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return sinAcentos.toLowerCase(Locale.ROOT).trim();
+    }
+}
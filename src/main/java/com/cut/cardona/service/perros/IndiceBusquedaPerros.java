@@ -0,0 +1,152 @@
+package com.cut.cardona.service.perros;
+
+import com.cut.cardona.modelo.dto.perros.DtoPerro;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido inmutable sobre nombre, raza, descripción y ubicación de los perros del catálogo.
+ * Los términos se normalizan (minúsculas, sin acentos) y se guardan en un diccionario ordenado,
+ * lo que permite consultas por prefijo como rango del diccionario. El ranking es TF-IDF con peso
+ * por campo. El coste de una consulta depende de las listas de postings tocadas, no del total de perros.
+ */
+final class IndiceBusquedaPerros {
+
+    private static final Pattern SEPARADOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Set<String> STOPWORDS = Set.of(
+            "de", "la", "el", "y", "en", "los", "las", "un", "una", "con", "por", "para",
+            "es", "muy", "que", "del", "al", "se", "su", "lo", "a", "o");
+    private static final float PESO_NOMBRE = 3.0f;
+    private static final float PESO_RAZA = 2.0f;
+    private static final float PESO_UBICACION = 1.5f;
+    private static final float PESO_DESCRIPCION = 1.0f;
+    // Coincidencias por prefijo puntúan algo menos que las exactas
+    private static final float FACTOR_PREFIJO = 0.8f;
+
+    private record Postings(int[] docs, float[] pesos) {}
+
+    private final CatalogoPerrosCache.Entrada[] documentos;
+    private final NavigableMap<String, Postings> diccionario;
+
+    private IndiceBusquedaPerros(CatalogoPerrosCache.Entrada[] documentos, NavigableMap<String, Postings> diccionario) {
+        this.documentos = documentos;
+        this.diccionario = diccionario;
+    }
+
+    static IndiceBusquedaPerros construir(List<CatalogoPerrosCache.Entrada> entradas) {
+        CatalogoPerrosCache.Entrada[] docs = entradas.toArray(new CatalogoPerrosCache.Entrada[0]);
+        Map<String, Map<Integer, Float>> acumulado = new HashMap<>();
+        for (int i = 0; i < docs.length; i++) {
+            DtoPerro p = docs[i].dto();
+            indexarCampo(acumulado, i, p.nombre(), PESO_NOMBRE);
+            indexarCampo(acumulado, i, p.raza(), PESO_RAZA);
+            indexarCampo(acumulado, i, p.ubicacion(), PESO_UBICACION);
+            indexarCampo(acumulado, i, p.descripcion(), PESO_DESCRIPCION);
+        }
+        TreeMap<String, Postings> dic = new TreeMap<>();
+        acumulado.forEach((termino, porDoc) -> {
+            int[] ids = porDoc.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            float[] pesos = new float[ids.length];
+            for (int k = 0; k < ids.length; k++) pesos[k] = porDoc.get(ids[k]);
+            dic.put(termino, new Postings(ids, pesos));
+        });
+        return new IndiceBusquedaPerros(docs, dic);
+    }
+
+    private static void indexarCampo(Map<String, Map<Integer, Float>> acumulado, int doc, String texto, float peso) {
+        if (texto == null || texto.isBlank()) return;
+        for (String t : tokenizar(texto)) {
+            acumulado.computeIfAbsent(t, k -> new HashMap<>()).merge(doc, peso, Float::sum);
+        }
+    }
+
+    static List<String> tokenizar(String texto) {
+        List<String> out = terminos(texto);
+        out.removeIf(STOPWORDS::contains);
+        return out;
+    }
+
+    // Términos normalizados sin descartar stopwords: la consulta decide cuáles ignora
+    private static List<String> terminos(String texto) {
+        List<String> out = new ArrayList<>();
+        for (String t : SEPARADOR.split(CatalogoPerrosCache.normalizar(texto))) {
+            if (!t.isEmpty()) out.add(t);
+        }
+        return out;
+    }
+
+    /**
+     * Busca los documentos que contienen todos los términos de la consulta (AND), ordenados por relevancia.
+     * El último término (o cualquiera terminado en '*') se trata como prefijo para búsqueda mientras se escribe.
+     * Las stopwords solo se ignoran como términos completos: un prefijo como "lo" puede ser el inicio de "lobo".
+     * Si un prefijo que es stopword no extiende ningún término del diccionario, se ignora como la palabra que es.
+     */
+    List<CatalogoPerrosCache.Entrada> buscar(String consulta) {
+        if (consulta == null || consulta.isBlank() || documentos.length == 0) return List.of();
+        String[] crudos = consulta.trim().split("\\s+");
+        Map<Integer, Float> puntuacion = null;
+        for (int q = 0; q < crudos.length; q++) {
+            boolean prefijo = crudos[q].endsWith("*") || q == crudos.length - 1;
+            List<String> tokens = terminos(crudos[q]);
+            for (int t = 0; t < tokens.size(); t++) {
+                String termino = tokens.get(t);
+                boolean esPrefijo = prefijo && t == tokens.size() - 1;
+                boolean stopword = STOPWORDS.contains(termino);
+                if (stopword && !esPrefijo) continue;
+                Map<Integer, Float> parcial = puntuarTermino(termino, esPrefijo);
+                if (stopword && parcial.isEmpty()) continue;
+                if (puntuacion == null) {
+                    puntuacion = parcial;
+                } else {
+                    // Intersección (AND) acumulando puntuación
+                    Map<Integer, Float> siguiente = new HashMap<>();
+                    for (Map.Entry<Integer, Float> e : puntuacion.entrySet()) {
+                        Float extra = parcial.get(e.getKey());
+                        if (extra != null) siguiente.put(e.getKey(), e.getValue() + extra);
+                    }
+                    puntuacion = siguiente;
+                }
+                if (puntuacion.isEmpty()) return List.of();
+            }
+        }
+        if (puntuacion == null) return List.of();
+        final Map<Integer, Float> score = puntuacion;
+        List<Integer> hits = new ArrayList<>(score.keySet());
+        // Empates: se respeta el orden del catálogo (más recientes primero)
+        hits.sort(Comparator.<Integer>comparingDouble(d -> -score.get(d)).thenComparingInt(d -> d));
+        List<CatalogoPerrosCache.Entrada> out = new ArrayList<>(hits.size());
+        for (int d : hits) out.add(documentos[d]);
+        return out;
+    }
+
+    private Map<Integer, Float> puntuarTermino(String termino, boolean prefijo) {
+        Map<Integer, Float> parcial = new HashMap<>();
+        if (prefijo) {
+            // Todos los términos del diccionario que empiezan por el prefijo forman un rango contiguo
+            for (Map.Entry<String, Postings> e : diccionario.subMap(termino, true, termino + Character.MAX_VALUE, false).entrySet()) {
+                float factor = e.getKey().equals(termino) ? 1.0f : FACTOR_PREFIJO;
+                acumular(parcial, e.getValue(), factor);
+            }
+        } else {
+            Postings p = diccionario.get(termino);
+            if (p != null) acumular(parcial, p, 1.0f);
+        }
+        return parcial;
+    }
+
+    private void acumular(Map<Integer, Float> parcial, Postings p, float factor) {
+        float idf = (float) Math.log(1.0 + (double) documentos.length / p.docs().length);
+        for (int k = 0; k < p.docs().length; k++) {
+            float tf = 1.0f + (float) Math.log(p.pesos()[k]);
+            parcial.merge(p.docs()[k], idf * tf * factor, Math::max);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.cut.cardona.service.perros;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Evento publicado cuando uno o varios perros cambian de forma que puede afectar al catálogo público
+ * (revisión, estado de adopción, datos, imágenes o eliminación). Los cambios masivos, como borrar un usuario
+ * con todos sus perros, publican un único evento con todos los ids.
+ */
+public record PerroCatalogoEvent(Collection<String> perroIds) {
+
+    public PerroCatalogoEvent(String perroId) {
+        this(perroId == null ? List.of() : List.of(perroId));
+    }
+}
@@ -1,6 +1,7 @@
 package com.cut.cardona.service.perros;
 
 import com.cut.cardona.service.infra.storage.ImageStorageService;
+import com.cut.cardona.service.infra.storage.TipoImagen;
 import com.cut.cardona.modelo.dto.perros.ActualizarPerroRequest;
 import com.cut.cardona.modelo.dto.perros.CrearPerroRequest;
 import com.cut.cardona.modelo.dto.perros.DtoPerro;
@@ -13,20 +14,21 @@ import com.cut.cardona.modelo.perros.enums.PerroEstadoRevision;
 import com.cut.cardona.modelo.usuarios.RepositorioUsuario;
 import com.cut.cardona.modelo.usuarios.Usuario;
 import com.cut.cardona.errores.UnprocessableEntityException;
+import com.cut.cardona.service.imagenes.DespachadorBorrados;
+import com.cut.cardona.service.imagenes.StagingSubidas;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.support.TransactionSynchronization;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.dao.DataIntegrityViolationException;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
@@ -46,20 +48,37 @@ public class PerroService {
     private final RepositorioImagenPerro repositorioImagenPerro;
     private final RepositorioUsuario repositorioUsuario;
     private final ImageStorageService imageStorageService;
+    private final CatalogoPerrosCache catalogoPerrosCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DespachadorBorrados despachadorBorrados;
+    private final StagingSubidas stagingSubidas;
 
-    @Transactional(readOnly = true)
+    // Catálogo servido desde la instantánea en memoria (sin SQL por petición)
     public List<DtoPerro> catalogoPublico() {
-        return repositorioPerro.findCatalogoPublico().stream().map(DtoPerro::new).toList();
+        return catalogoPerrosCache.todos();
     }
 
-    @Transactional(readOnly = true)
     public List<DtoPerro> catalogoPublico(String sexo, String tamano, String ubicacion, Integer page, Integer size) {
         int p = page == null || page < 0 ? 0 : page;
         int s = size == null || size <= 0 || size > 100 ? 20 : size;
-        Pageable pageable = PageRequest.of(p, s);
-        return repositorioPerro.findCatalogoPublicoFiltrado(sexo, tamano, ubicacion, pageable)
-                .map(DtoPerro::new)
-                .getContent();
+        return catalogoPerrosCache.buscar(sexo, tamano, ubicacion, p, s);
+    }
+
+    public List<DtoPerro> buscarEnCatalogo(String q, Integer page, Integer size) {
+        int p = page == null || page < 0 ? 0 : page;
+        int s = size == null || size <= 0 || size > 100 ? 20 : size;
+        return catalogoPerrosCache.buscarTexto(q, p, s);
+    }
+
+    // Modo cursor (keyset) para scroll infinito: coste O(tamaño de página) sin importar la profundidad
+    public CatalogoPerrosCache.PaginaCursor catalogoPublicoCursor(String sexo, String tamano, String ubicacion, String cursor, Integer size) {
+        int s = size == null || size <= 0 || size > 100 ? 20 : size;
+        return catalogoPerrosCache.buscarDesde(sexo, tamano, ubicacion, cursor, s);
+    }
+
+    // Notifica al catálogo en memoria; se aplica tras el commit (o de inmediato si no hay transacción)
+    private void publicarCambioCatalogo(String perroId) {
+        eventPublisher.publishEvent(new PerroCatalogoEvent(perroId));
     }
 
     @Transactional(readOnly = true)
@@ -77,14 +96,12 @@ public class PerroService {
 
     private void validateLimiteImagenes(List<com.cut.cardona.modelo.dto.perros.ImagenPerroRequest> imagenes) {
         if (imagenes.size() > MAX_IMGS) {
-            for (int i = MAX_IMGS; i < imagenes.size(); i++) { // limpieza sobrantes subida previa
-                try {
-                    var extra = imagenes.get(i);
-                    if (extra != null && extra.id() != null) {
-                        imageStorageService.deleteDogImage(extra.id());
-                    }
-                } catch (Exception ignored) {}
-            }
+            // Limpieza de los sobrantes de la subida previa: nunca llegan a asociarse
+            List<String> sobrantes = imagenes.subList(MAX_IMGS, imagenes.size()).stream()
+                    .filter(extra -> extra != null && extra.id() != null)
+                    .map(com.cut.cardona.modelo.dto.perros.ImagenPerroRequest::id)
+                    .toList();
+            despachadorBorrados.enviar(TipoImagen.PERRO, sobrantes);
             throw new UnprocessableEntityException("Solo se permiten hasta " + MAX_IMGS + " imágenes por perro");
         }
         if (imagenes.isEmpty()) {
@@ -200,6 +217,7 @@ public class PerroService {
         perro.setRevisadoPor(moderador);
         perro.setFechaRevision(new Timestamp(System.currentTimeMillis()));
         Perro saved = repositorioPerro.save(perro);
+        publicarCambioCatalogo(perroId);
         return new DtoPerro(saved);
     }
 
@@ -211,7 +229,9 @@ public class PerroService {
         perro.setEstadoRevision(PerroEstadoRevision.RECHAZADO);
         perro.setRevisadoPor(moderador);
         perro.setFechaRevision(new Timestamp(System.currentTimeMillis()));
-        return new DtoPerro(repositorioPerro.save(perro));
+        Perro saved = repositorioPerro.save(perro);
+        publicarCambioCatalogo(perroId);
+        return new DtoPerro(saved);
     }
 
     @PreAuthorize("hasAnyRole('ADMIN','REVIEWER')")
@@ -225,6 +245,7 @@ public class PerroService {
         }
         perro.setEstadoAdopcion(nuevo);
         Perro saved = repositorioPerro.save(perro);
+        publicarCambioCatalogo(perroId);
         return new DtoPerro(saved);
     }
 
@@ -264,6 +285,7 @@ public class PerroService {
         // Si estaba en catálogo y se cambia a no aprobado, poner a No Disponible);
         perro.setEstadoRevision(nuevo);
         Perro saved = repositorioPerro.save(perro);
+        publicarCambioCatalogo(id);
         return new DtoPerro(saved);
     }
 
@@ -345,20 +367,9 @@ public class PerroService {
         }
 
         repositorioPerro.save(perro);
+        publicarCambioCatalogo(perroId);
 
-        if (!plan.toRemove().isEmpty()) {
-            List<String> removidas = List.copyOf(plan.toRemove());
-            if (TransactionSynchronizationManager.isSynchronizationActive()) {
-                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-                    @Override
-                    public void afterCommit() {
-                        removidas.forEach(r -> { try { imageStorageService.deleteDogImage(r); } catch (Exception ignored) {} });
-                    }
-                });
-            } else {
-                removidas.forEach(r -> { try { imageStorageService.deleteDogImage(r); } catch (Exception ignored) {} });
-            }
-        }
+        despachadorBorrados.programar(TipoImagen.PERRO, plan.toRemove());
         return new DtoPerro(perro);
     }
 
@@ -382,23 +393,39 @@ public class PerroService {
                 .map(ImagenPerro::getId)
                 .toList();
         repositorioPerro.delete(perro);
-        if (!imagenIds.isEmpty()) {
-            if (TransactionSynchronizationManager.isSynchronizationActive()) {
-                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-                    @Override
-                    public void afterCommit() {
-                        imagenIds.forEach(id -> { try { imageStorageService.deleteDogImage(id); } catch (Exception ignored) {} });
-                    }
-                });
-            } else {
-                imagenIds.forEach(id -> { try { imageStorageService.deleteDogImage(id); } catch (Exception ignored) {} });
-            }
-        }
+        publicarCambioCatalogo(perroId);
+        despachadorBorrados.programar(TipoImagen.PERRO, imagenIds);
     }
 
     @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'REVIEWER')")
     @Transactional
     public ImagenPerro agregarImagen(String perroId, org.springframework.web.multipart.MultipartFile file, String descripcion, Boolean principal) {
+        validarNuevaImagen(perroId, file);
+        final String uploadId;
+        try {
+            var upload = imageStorageService.uploadDogImage(file);
+            uploadId = upload.getId();
+            stagingSubidas.registrar(uploadId, StagingSubidas.TIPO_PERRO);
+        } catch (Exception ex) {
+            throw new UnprocessableEntityException(ex.getMessage() != null ? ex.getMessage() : "Error al subir imagen");
+        }
+        return asociarImagenSubida(perroId, uploadId, descripcion, principal);
+    }
+
+    /**
+     * Comprueba permisos y límites antes de aceptar una imagen para el perro.
+     * La subida asíncrona lo ejecuta en el hilo de la petición, antes de encolar el procesamiento.
+     */
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'REVIEWER')")
+    @Transactional(readOnly = true)
+    public void validarNuevaImagen(String perroId, org.springframework.web.multipart.MultipartFile file) {
+        validarNuevasImagenes(perroId, Collections.singletonList(file));
+    }
+
+    /** Igual que validarNuevaImagen para varios archivos: una sola carga del perro y un solo conteo. */
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'REVIEWER')")
+    @Transactional(readOnly = true)
+    public void validarNuevasImagenes(String perroId, List<org.springframework.web.multipart.MultipartFile> files) {
         Perro perro = repositorioPerro.findById(perroId)
                 .orElseThrow(() -> new IllegalArgumentException("Perro no encontrado"));
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -408,22 +435,35 @@ public class PerroService {
         if (!esPrivilegiado && (perro.getUsuario() == null || !perro.getUsuario().getUsername().equals(username))) {
             throw new SecurityException("No autorizado para agregar imágenes a este perro");
         }
-        int existentes = repositorioImagenPerro.findByPerro_Id(perroId).size();
-        if (existentes >= MAX_IMGS) {
-            throw new UnprocessableEntityException("Solo se permiten hasta " + MAX_IMGS + " imágenes por perro");
+        if (files.isEmpty()) {
+            throw new UnprocessableEntityException("Debe incluir al menos una imagen");
         }
-        if (file == null || file.isEmpty()) {
-            throw new UnprocessableEntityException("Archivo vacío");
+        long existentes = repositorioImagenPerro.countByPerro_Id(perroId);
+        if (existentes + files.size() > MAX_IMGS) {
+            throw new UnprocessableEntityException("Solo se permiten hasta " + MAX_IMGS + " imágenes por perro");
         }
-        if (file.getSize() > 15L * 1024 * 1024) {
-            throw new UnprocessableEntityException("El archivo supera el tamaño máximo de 15MB");
+        for (var file : files) {
+            if (file == null || file.isEmpty()) {
+                throw new UnprocessableEntityException("Archivo vacío");
+            }
+            if (file.getSize() > 15L * 1024 * 1024) {
+                throw new UnprocessableEntityException("El archivo supera el tamaño máximo de 15MB");
+            }
         }
-        final String uploadId;
-        try {
-            var upload = imageStorageService.uploadDogImage(file);
-            uploadId = upload.getId();
-        } catch (Exception ex) {
-            throw new UnprocessableEntityException(ex.getMessage() != null ? ex.getMessage() : "Error al subir imagen");
+    }
+
+    /**
+     * Asocia al perro una imagen ya almacenada. Sin @PreAuthorize: los permisos se validaron al aceptar la subida
+     * (validarNuevaImagen) y este paso puede ejecutarse fuera del hilo de la petición.
+     */
+    @Transactional
+    public ImagenPerro asociarImagenSubida(String perroId, String uploadId, String descripcion, Boolean principal) {
+        Perro perro = repositorioPerro.findByIdParaActualizar(perroId)
+                .orElseThrow(() -> new IllegalArgumentException("Perro no encontrado"));
+        // Se vuelve a contar con la fila del perro bloqueada: entre la validación y este punto pudieron completarse
+        // otras subidas, y otra asociación en curso no puede contar a la vez
+        if (repositorioImagenPerro.countByPerro_Id(perroId) >= MAX_IMGS) {
+            throw new UnprocessableEntityException("Solo se permiten hasta " + MAX_IMGS + " imágenes por perro");
         }
         boolean principalRequested = Boolean.TRUE.equals(principal);
         if (principalRequested) {
@@ -439,8 +479,50 @@ public class PerroService {
                 .principal(principalRequested)
                 .fechaSubida(new Timestamp(System.currentTimeMillis()))
                 .build();
-        repositorioImagenPerro.save(img);
+        repositorioImagenPerro.insertar(List.of(img));
+        stagingSubidas.marcarAsociada(uploadId);
+        publicarCambioCatalogo(perroId);
         return img;
     }
 
+    /**
+     * Asocia en una sola transacción varias imágenes ya almacenadas: un conteo con el perro bloqueado, un INSERT
+     * por lotes y la principal resuelta junto con las filas (índice {@code principal} o, si el perro aún no tiene,
+     * la primera).
+     * Sin @PreAuthorize por el mismo motivo que asociarImagenSubida: se validó con validarNuevasImagenes.
+     */
+    @Transactional
+    public List<ImagenPerro> asociarImagenesSubidas(String perroId, List<String> uploadIds, List<String> descripciones, Integer principal) {
+        // Con la fila bloqueada dos lotes simultáneos no pueden pasar ambos el conteo y superar MAX_IMGS
+        Perro perro = repositorioPerro.findByIdParaActualizar(perroId)
+                .orElseThrow(() -> new IllegalArgumentException("Perro no encontrado"));
+        if (repositorioImagenPerro.countByPerro_Id(perroId) + uploadIds.size() > MAX_IMGS) {
+            throw new UnprocessableEntityException("Solo se permiten hasta " + MAX_IMGS + " imágenes por perro");
+        }
+        int indicePrincipal;
+        if (principal != null) {
+            // Limpiar principal previa antes de insertar la nueva para evitar conflicto de índice único
+            repositorioImagenPerro.clearPrincipal(perroId);
+            indicePrincipal = principal;
+        } else {
+            indicePrincipal = repositorioImagenPerro.existsByPerro_IdAndPrincipalTrue(perroId) ? -1 : 0;
+        }
+        Timestamp ahora = new Timestamp(System.currentTimeMillis());
+        List<ImagenPerro> nuevas = new ArrayList<>(uploadIds.size());
+        for (int i = 0; i < uploadIds.size(); i++) {
+            String uploadId = uploadIds.get(i);
+            nuevas.add(ImagenPerro.builder()
+                    .id(uploadId)
+                    .perro(perro)
+                    .url(imageStorageService.resolveDogImagePublicUrl(uploadId))
+                    .descripcion(descripciones != null && i < descripciones.size() ? descripciones.get(i) : null)
+                    .principal(i == indicePrincipal)
+                    .fechaSubida(ahora)
+                    .build());
+        }
+        repositorioImagenPerro.insertar(nuevas);
+        stagingSubidas.marcarAsociadas(uploadIds);
+        publicarCambioCatalogo(perroId);
+        return nuevas;
+    }
 }
@@ -0,0 +1,24 @@
+-- V10: Bandeja de salida de correos (outbox)
+-- El correo se inserta en la misma transacción que el token que lo origina; un despachador en segundo plano
+-- lo envía por lotes con reintentos. FALLIDO = agotó los reintentos (dead letter).
+
+CREATE TABLE IF NOT EXISTS correos_salida (
+    id CHAR(36) PRIMARY KEY,
+    destinatario VARCHAR(255) NOT NULL,
+    asunto VARCHAR(255) NOT NULL,
+    cuerpo TEXT NOT NULL,
+    tipo VARCHAR(50) NULL,
+    estado VARCHAR(20) NOT NULL DEFAULT 'PENDIENTE',
+    intentos INT NOT NULL DEFAULT 0,
+    proximo_intento TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    ultimo_error VARCHAR(500) NULL,
+    creado_en TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    enviado_en TIMESTAMP NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+SET @schema := DATABASE();
+
+-- idx_correos_pendientes (lote siguiente: estado + proximo_intento)
+SET @exists := (SELECT COUNT(1) FROM information_schema.statistics WHERE table_schema=@schema AND table_name='correos_salida' AND index_name='idx_correos_pendientes');
+SET @sql := IF(@exists=0, 'CREATE INDEX idx_correos_pendientes ON correos_salida (estado, proximo_intento)', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
@@ -0,0 +1,23 @@
+-- V11: Índices para la purga de tokens de verificación y de reset caducados o usados
+
+SET @schema := DATABASE();
+
+-- idx_verif_expira_en
+SET @exists := (SELECT COUNT(1) FROM information_schema.statistics WHERE table_schema=@schema AND table_name='verification_tokens' AND index_name='idx_verif_expira_en');
+SET @sql := IF(@exists=0, 'CREATE INDEX idx_verif_expira_en ON verification_tokens (expira_en)', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- idx_verif_usado_en
+SET @exists := (SELECT COUNT(1) FROM information_schema.statistics WHERE table_schema=@schema AND table_name='verification_tokens' AND index_name='idx_verif_usado_en');
+SET @sql := IF(@exists=0, 'CREATE INDEX idx_verif_usado_en ON verification_tokens (usado_en)', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- idx_reset_expira_en
+SET @exists := (SELECT COUNT(1) FROM information_schema.statistics WHERE table_schema=@schema AND table_name='tokens_reset' AND index_name='idx_reset_expira_en');
+SET @sql := IF(@exists=0, 'CREATE INDEX idx_reset_expira_en ON tokens_reset (expira_en)', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- idx_reset_usado_en
+SET @exists := (SELECT COUNT(1) FROM information_schema.statistics WHERE table_schema=@schema AND table_name='tokens_reset' AND index_name='idx_reset_usado_en');
+SET @sql := IF(@exists=0, 'CREATE INDEX idx_reset_usado_en ON tokens_reset (usado_en)', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
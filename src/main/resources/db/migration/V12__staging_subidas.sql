@@ -0,0 +1,18 @@
+-- V12: Registro de subidas al storage pendientes de asociar (recolector de imágenes huérfanas)
+-- Cada subida se anota al terminar en el proveedor y se marca asociada al guardar la fila que la referencia;
+-- las que siguen sin asociar pasado el periodo de gracia se borran del storage.
+
+CREATE TABLE IF NOT EXISTS staging_subidas (
+    uuid CHAR(36) PRIMARY KEY,
+    created_at TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6),
+    tipo VARCHAR(20) NOT NULL,
+    asociado BOOLEAN NOT NULL DEFAULT FALSE,
+    info VARCHAR(255) NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+SET @schema := DATABASE();
+
+-- idx_staging_asociado_creado (huérfanas: asociado = false AND created_at < umbral)
+SET @exists := (SELECT COUNT(1) FROM information_schema.statistics WHERE table_schema=@schema AND table_name='staging_subidas' AND index_name='idx_staging_asociado_creado');
+SET @sql := IF(@exists=0, 'CREATE INDEX idx_staging_asociado_creado ON staging_subidas (asociado, created_at)', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
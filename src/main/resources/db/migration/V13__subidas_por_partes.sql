@@ -0,0 +1,66 @@
+-- V13: Subidas por partes (reanudables) sobre staging_subidas
+-- Las sesiones de subida usan tipo = 'partes' y guardan su progreso aquí; las columnas quedan a NULL
+-- en los registros del recolector de huérfanas.
+
+SET @schema := DATABASE();
+
+-- staging_subidas.estado
+SET @exists := (
+  SELECT COUNT(1) FROM information_schema.columns
+  WHERE table_schema=@schema AND table_name='staging_subidas' AND column_name='estado'
+);
+SET @sql := IF(@exists=0, 'ALTER TABLE staging_subidas ADD COLUMN estado VARCHAR(20) NULL', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- staging_subidas.longitud
+SET @exists := (
+  SELECT COUNT(1) FROM information_schema.columns
+  WHERE table_schema=@schema AND table_name='staging_subidas' AND column_name='longitud'
+);
+SET @sql := IF(@exists=0, 'ALTER TABLE staging_subidas ADD COLUMN longitud BIGINT NULL', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- staging_subidas.recibidos
+SET @exists := (
+  SELECT COUNT(1) FROM information_schema.columns
+  WHERE table_schema=@schema AND table_name='staging_subidas' AND column_name='recibidos'
+);
+SET @sql := IF(@exists=0, 'ALTER TABLE staging_subidas ADD COLUMN recibidos BIGINT NULL', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- staging_subidas.usuario
+SET @exists := (
+  SELECT COUNT(1) FROM information_schema.columns
+  WHERE table_schema=@schema AND table_name='staging_subidas' AND column_name='usuario'
+);
+SET @sql := IF(@exists=0, 'ALTER TABLE staging_subidas ADD COLUMN usuario VARCHAR(255) NULL', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- staging_subidas.content_type
+SET @exists := (
+  SELECT COUNT(1) FROM information_schema.columns
+  WHERE table_schema=@schema AND table_name='staging_subidas' AND column_name='content_type'
+);
+SET @sql := IF(@exists=0, 'ALTER TABLE staging_subidas ADD COLUMN content_type VARCHAR(100) NULL', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- staging_subidas.nombre_archivo
+SET @exists := (
+  SELECT COUNT(1) FROM information_schema.columns
+  WHERE table_schema=@schema AND table_name='staging_subidas' AND column_name='nombre_archivo'
+);
+SET @sql := IF(@exists=0, 'ALTER TABLE staging_subidas ADD COLUMN nombre_archivo VARCHAR(255) NULL', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- staging_subidas.actualizado_en
+SET @exists := (
+  SELECT COUNT(1) FROM information_schema.columns
+  WHERE table_schema=@schema AND table_name='staging_subidas' AND column_name='actualizado_en'
+);
+SET @sql := IF(@exists=0, 'ALTER TABLE staging_subidas ADD COLUMN actualizado_en TIMESTAMP(6) NULL', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- idx_staging_estado_actualizado (expiración de sesiones abandonadas)
+SET @exists := (SELECT COUNT(1) FROM information_schema.statistics WHERE table_schema=@schema AND table_name='staging_subidas' AND index_name='idx_staging_estado_actualizado');
+SET @sql := IF(@exists=0, 'CREATE INDEX idx_staging_estado_actualizado ON staging_subidas (estado, actualizado_en)', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
@@ -0,0 +1,26 @@
+-- V14: Deduplicación por contenido de las imágenes de perros
+-- blobs_imagenes: un objeto del storage por SHA-256 del contenido, con el número de imágenes que lo usan.
+-- alias_imagenes: id de cada imagen subida -> blob que contiene sus bytes (el primero comparte id con el blob).
+-- Las imágenes anteriores no tienen fila aquí y siguen resolviéndose por su propio id.
+
+CREATE TABLE IF NOT EXISTS blobs_imagenes (
+    hash CHAR(64) PRIMARY KEY,
+    blob_id CHAR(36) NOT NULL,
+    referencias INT NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6),
+    CONSTRAINT uk_blobs_imagenes_blob UNIQUE (blob_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS alias_imagenes (
+    id CHAR(36) PRIMARY KEY,
+    hash CHAR(64) NOT NULL,
+    blob_id CHAR(36) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+SET @schema := DATABASE();
+
+-- idx_alias_imagenes_hash (alias de un blob)
+SET @exists := (SELECT COUNT(1) FROM information_schema.statistics WHERE table_schema=@schema AND table_name='alias_imagenes' AND index_name='idx_alias_imagenes_hash');
+SET @sql := IF(@exists=0, 'CREATE INDEX idx_alias_imagenes_hash ON alias_imagenes (hash)', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
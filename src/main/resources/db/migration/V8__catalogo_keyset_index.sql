@@ -0,0 +1,9 @@
+-- V8: Índice compuesto para el catálogo ordenado por (fecha_publicacion, id)
+-- Cubre el filtro por estados y el orden DESC usado por la paginación por cursor (keyset)
+
+SET @schema := DATABASE();
+
+-- idx_perro_catalogo_keyset
+SET @exists := (SELECT COUNT(1) FROM information_schema.statistics WHERE table_schema=@schema AND table_name='perros' AND index_name='idx_perro_catalogo_keyset');
+SET @sql := IF(@exists=0, 'CREATE INDEX idx_perro_catalogo_keyset ON perros (estado_revision, estado_adopcion, fecha_publicacion, id)', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
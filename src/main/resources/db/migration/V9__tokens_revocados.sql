@@ -0,0 +1,21 @@
+-- V9: Tokens JWT revocados (logout / tokens comprometidos)
+-- Se consulta al arrancar y periódicamente desde cada nodo; las filas caducadas se purgan por expira_en
+
+CREATE TABLE IF NOT EXISTS tokens_revocados (
+    jti CHAR(36) PRIMARY KEY,
+    usuario_id CHAR(36) NULL,
+    expira_en TIMESTAMP NOT NULL,
+    revocado_en TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+SET @schema := DATABASE();
+
+-- idx_revocados_revocado_en (sincronización incremental entre nodos)
+SET @exists := (SELECT COUNT(1) FROM information_schema.statistics WHERE table_schema=@schema AND table_name='tokens_revocados' AND index_name='idx_revocados_revocado_en');
+SET @sql := IF(@exists=0, 'CREATE INDEX idx_revocados_revocado_en ON tokens_revocados (revocado_en)', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- idx_revocados_expira_en (purga de caducados)
+SET @exists := (SELECT COUNT(1) FROM information_schema.statistics WHERE table_schema=@schema AND table_name='tokens_revocados' AND index_name='idx_revocados_expira_en');
+SET @sql := IF(@exists=0, 'CREATE INDEX idx_revocados_expira_en ON tokens_revocados (expira_en)', 'DO 0');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
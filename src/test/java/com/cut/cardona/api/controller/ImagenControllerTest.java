@@ -0,0 +1,284 @@
+package com.cut.cardona.api.controller;
+
+import com.cut.cardona.modelo.imagenes.RepositorioImagenPerfil;
+import com.cut.cardona.modelo.perros.RepositorioImagenPerro;
+import com.cut.cardona.service.imagenes.CacheImagenesPerro;
+import com.cut.cardona.service.imagenes.DespachadorBorrados;
+import com.cut.cardona.service.imagenes.ImagenService;
+import com.cut.cardona.service.imagenes.ProxyImagenesCdn;
+import com.cut.cardona.service.imagenes.SubidaAsincronaService;
+import com.cut.cardona.service.imagenes.SubidaLoteService;
+import com.cut.cardona.service.imagenes.SubidaPorPartesService;
+import com.cut.cardona.service.infra.storage.ImageStorageService;
+import com.cut.cardona.service.infra.storage.VariantesImagen;
+import com.cut.cardona.service.perros.PerroService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * GET de imágenes de perro con el storage local: el archivo se sirve completo con validadores, un Range devuelve
+ * 206 con el trozo pedido (también desde la caché en memoria) y If-None-Match / If-Modified-Since devuelven 304.
+ * El cuerpo del CDN, de una sola lectura, se reenvía completo aunque se pida un rango. Las variantes (?w=&fmt=)
+ * se generan en disco la primera vez, caen al original si no se pueden generar y en la nube se piden al CDN.
+ * Con la cola de subidas en segundo plano llena la subida responde 503 con Retry-After.
+ */
+class ImagenControllerTest {
+
+    @TempDir
+    Path dir;
+
+    private final ImageStorageService storage = mock(ImageStorageService.class);
+    private final ProxyImagenesCdn proxy = mock(ProxyImagenesCdn.class);
+    private final SubidaAsincronaService subidaAsincronaService = mock(SubidaAsincronaService.class);
+    private final String id = UUID.randomUUID().toString();
+    private byte[] contenido;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        contenido = new byte[1000];
+        for (int i = 0; i < contenido.length; i++) contenido[i] = (byte) i;
+        Path archivo = dir.resolve(id + ".jpg");
+        Files.write(archivo, contenido);
+        when(storage.isCloudProvider()).thenReturn(false);
+        when(storage.resolveLocalDogImagePath(id)).thenReturn(archivo);
+    }
+
+    @Test
+    void completoConValidadores() throws Exception {
+        MockMvc mvc = mvc(sinCache());
+
+        mvc.perform(get("/api/imagenes/perritos/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable"))
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/jpeg"))
+                .andExpect(content().bytes(contenido));
+    }
+
+    @Test
+    void unRangoDevuelveElTrozoPedido() throws Exception {
+        MockMvc mvc = mvc(sinCache());
+
+        mvc.perform(get("/api/imagenes/perritos/{id}", id).header(HttpHeaders.RANGE, "bytes=100-199"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 100-199/1000"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 100))
+                .andExpect(content().bytes(Arrays.copyOfRange(contenido, 100, 200)));
+
+        // Sufijo: los últimos 10 bytes
+        mvc.perform(get("/api/imagenes/perritos/{id}", id).header(HttpHeaders.RANGE, "bytes=-10"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 990-999/1000"))
+                .andExpect(content().bytes(Arrays.copyOfRange(contenido, 990, 1000)));
+    }
+
+    @Test
+    void unRangoTambienSeSirveDesdeLaCache() throws Exception {
+        CacheImagenesPerro cache = new CacheImagenesPerro(1 << 20, 1 << 20, false);
+        MockMvc mvc = mvc(cache);
+        mvc.perform(get("/api/imagenes/perritos/{id}", id)).andExpect(status().isOk());
+        assertThat(cache.obtener(id)).isNotNull();
+
+        mvc.perform(get("/api/imagenes/perritos/{id}", id).header(HttpHeaders.RANGE, "bytes=500-503"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 500-503/1000"))
+                .andExpect(content().bytes(Arrays.copyOfRange(contenido, 500, 504)));
+    }
+
+    @Test
+    void unRangoFueraDelArchivoEs416() throws Exception {
+        mvc(sinCache()).perform(get("/api/imagenes/perritos/{id}", id).header(HttpHeaders.RANGE, "bytes=5000-6000"))
+                .andExpect(status().isRequestedRangeNotSatisfiable());
+    }
+
+    @Test
+    void conElMismoEtagEs304SinCuerpo() throws Exception {
+        MockMvc mvc = mvc(sinCache());
+        String etag = mvc.perform(get("/api/imagenes/perritos/{id}", id)).andReturn()
+                .getResponse().getHeader(HttpHeaders.ETAG);
+
+        MvcResult r = mvc.perform(get("/api/imagenes/perritos/{id}", id).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andReturn();
+        assertThat(r.getResponse().getContentAsByteArray()).isEmpty();
+
+        mvc.perform(get("/api/imagenes/perritos/{id}", id).header(HttpHeaders.IF_NONE_MATCH, "\"otro\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void sinCambiosDesdeLaFechaEs304() throws Exception {
+        MockMvc mvc = mvc(sinCache());
+        String modificado = mvc.perform(get("/api/imagenes/perritos/{id}", id)).andReturn()
+                .getResponse().getHeader(HttpHeaders.LAST_MODIFIED);
+
+        mvc.perform(get("/api/imagenes/perritos/{id}", id).header(HttpHeaders.IF_MODIFIED_SINCE, modificado))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/api/imagenes/perritos/{id}", id)
+                        .header(HttpHeaders.IF_MODIFIED_SINCE, "Thu, 01 Jan 1970 00:00:00 GMT"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void inexistenteEs404() throws Exception {
+        mvc(sinCache()).perform(get("/api/imagenes/perritos/{id}", UUID.randomUUID().toString()))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void laVarianteSeGeneraEnLaPrimeraPeticionYSeReutiliza() throws Exception {
+        Path original = dir.resolve(id + ".jpg");
+        BufferedImage img = new BufferedImage(2000, 1500, BufferedImage.TYPE_INT_RGB);
+        ImageIO.write(img, "jpg", original.toFile());
+        when(storage.resolveDogImageStorageId(id)).thenReturn(id);
+        MockMvc mvc = mvc(sinCache());
+
+        byte[] cuerpo = mvc.perform(get("/api/imagenes/perritos/{id}", id).param("w", "300").param("fmt", "jpg"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/jpeg"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // 300 px se ajusta a la variante de 480, que queda en disco junto al original
+        assertThat(ImageIO.read(new ByteArrayInputStream(cuerpo)).getWidth()).isEqualTo(480);
+        Path variante = dir.resolve(VariantesImagen.nombreArchivo(id, 480, VariantesImagen.JPG));
+        assertThat(variante).exists();
+        FileTime generada = Files.getLastModifiedTime(variante);
+        Thread.sleep(20);
+
+        mvc.perform(get("/api/imagenes/perritos/{id}", id).param("w", "480"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(Files.readAllBytes(variante)));
+        assertThat(Files.getLastModifiedTime(variante)).isEqualTo(generada);
+    }
+
+    @Test
+    void siNoSePuedeGenerarLaVarianteSeSirveElOriginal() throws Exception {
+        // El original de la prueba no es una imagen decodificable
+        when(storage.resolveDogImageStorageId(id)).thenReturn(id);
+
+        mvc(sinCache()).perform(get("/api/imagenes/perritos/{id}", id).param("w", "160"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(contenido));
+    }
+
+    @Test
+    void parametrosDeVarianteInvalidosSon400() throws Exception {
+        MockMvc mvc = mvc(sinCache());
+
+        mvc.perform(get("/api/imagenes/perritos/{id}", id).param("w", "0")).andExpect(status().isBadRequest());
+        mvc.perform(get("/api/imagenes/perritos/{id}", id).param("w", "5000")).andExpect(status().isBadRequest());
+        mvc.perform(get("/api/imagenes/perritos/{id}", id).param("fmt", "gif")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void enLaNubeLaVarianteSePideAlCdn() throws Exception {
+        when(storage.isCloudProvider()).thenReturn(true);
+        when(storage.resolveDogImageVariantUrl(id, 1024, VariantesImagen.WEBP)).thenReturn("https://cdn/w1024/" + id);
+        when(proxy.get("https://cdn/w1024/" + id))
+                .thenReturn(new ProxyImagenesCdn.Respuesta(new ByteArrayInputStream(contenido), "image/webp", contenido.length));
+
+        mvc(sinCache()).perform(get("/api/imagenes/perritos/{id}", id).param("w", "900").param("fmt", "webp"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/webp"))
+                .andExpect(content().bytes(contenido));
+    }
+
+    @Test
+    void elCuerpoDelCdnSeReenviaCompletoAunqueSePidaUnRango() throws Exception {
+        when(storage.isCloudProvider()).thenReturn(true);
+        when(storage.resolveDogImagePublicUrl(id)).thenReturn("https://cdn/" + id);
+        CerrableEnMemoria cuerpo = new CerrableEnMemoria(contenido);
+        when(proxy.get("https://cdn/" + id)).thenReturn(new ProxyImagenesCdn.Respuesta(cuerpo, "image/webp", contenido.length));
+        MockMvc mvc = mvc(sinCache());
+
+        mvc.perform(get("/api/imagenes/perritos/{id}", id).header(HttpHeaders.RANGE, "bytes=0-9"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "none"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, contenido.length))
+                .andExpect(content().bytes(contenido));
+        assertThat(cuerpo.cerrado).as("el cuerpo se cierra para liberar el permiso del proxy").isTrue();
+    }
+
+    @Test
+    void conLaColaDeSubidasLlenaEs503ConRetryAfter() throws Exception {
+        when(subidaAsincronaService.encolar(eq("perro"), any(), any(), any()))
+                .thenThrow(new RejectedExecutionException("Cola de subidas llena, reintenta en unos segundos"));
+
+        mvc(sinCache()).perform(multipart("/api/imagenes/perritos/{perroId}/async", "perro")
+                        .file(new MockMultipartFile("file", "p.jpg", "image/jpeg", contenido)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "5"))
+                .andExpect(jsonPath("$.mensaje").value("Cola de subidas llena, reintenta en unos segundos"));
+    }
+
+    @Test
+    void unaSubidaEncoladaEs202ConLocation() throws Exception {
+        Instant ahora = Instant.now();
+        when(subidaAsincronaService.encolar(eq("perro"), any(), any(), any())).thenReturn(new SubidaAsincronaService.EstadoSubida(
+                "u1", "perro", SubidaAsincronaService.Estado.EN_COLA, null, null, null, ahora, ahora));
+
+        mvc(sinCache()).perform(multipart("/api/imagenes/perritos/{perroId}/async", "perro")
+                        .file(new MockMultipartFile("file", "p.jpg", "image/jpeg", contenido)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.LOCATION, "/api/imagenes/subidas/u1"));
+    }
+
+    private static final class CerrableEnMemoria extends ByteArrayInputStream {
+        volatile boolean cerrado;
+
+        CerrableEnMemoria(byte[] datos) {
+            super(datos);
+        }
+
+        @Override
+        public void close() {
+            cerrado = true;
+        }
+    }
+
+    private static CacheImagenesPerro sinCache() {
+        return new CacheImagenesPerro(0, 0, false);
+    }
+
+    private MockMvc mvc(CacheImagenesPerro cache) {
+        ImagenService imagenService = new ImagenService(storage, mock(RepositorioImagenPerfil.class),
+                mock(RepositorioImagenPerro.class), mock(ApplicationEventPublisher.class), proxy,
+                cache, mock(DespachadorBorrados.class));
+        ImagenController controller = new ImagenController(storage, mock(PerroService.class), imagenService,
+                subidaAsincronaService, mock(SubidaLoteService.class), mock(SubidaPorPartesService.class));
+        return MockMvcBuilders.standaloneSetup(controller).build();
+    }
+}
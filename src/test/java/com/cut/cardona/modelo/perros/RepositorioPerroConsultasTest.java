@@ -0,0 +1,137 @@
+package com.cut.cardona.modelo.perros;
+
+import com.cut.cardona.modelo.dto.perros.DtoPerro;
+import com.cut.cardona.modelo.perros.enums.PerroEstadoAdopcion;
+import com.cut.cardona.modelo.perros.enums.PerroEstadoRevision;
+import com.cut.cardona.modelo.usuarios.Roles;
+import com.cut.cardona.modelo.usuarios.Usuario;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Los listados de perros ejecutan un número fijo de sentencias SQL sin importar cuántos perros e imágenes haya
+ * (sin N+1). Se cuentan las sentencias preparadas con las estadísticas de Hibernate, incluidas las que dispararía
+ * construir los DtoPerro; la carga del catálogo, que lee en su propia transacción, está en
+ * CatalogoPerrosCacheLecturaTest. Las migraciones son de MySQL, así que el esquema sale de las entidades sobre H2.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.datasource.url=jdbc:h2:mem:perros;MODE=MySQL;DATABASE_TO_LOWER=TRUE"
+})
+class RepositorioPerroConsultasTest {
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @Autowired
+    private RepositorioPerro repositorioPerro;
+
+    private Statistics estadisticas;
+    private Usuario usuario;
+
+    @BeforeEach
+    void preparar() {
+        estadisticas = emf.unwrap(SessionFactory.class).getStatistics();
+        usuario = new Usuario();
+        usuario.setUserName("dueno");
+        usuario.setEmail("dueno@example.com");
+        usuario.setPassword("x");
+        usuario.setRol(Roles.ROLE_USER);
+        em.persist(usuario);
+    }
+
+    @ParameterizedTest(name = "{0} perros x {1} imágenes")
+    @CsvSource({"1, 1", "6, 3", "25, 4"})
+    void findByUsuarioIdUsaUnaSentencia(int perros, int imagenes) {
+        sembrar(perros, imagenes);
+        List<DtoPerro> dtos = contar(() -> dtos(repositorioPerro.findByUsuarioId(usuario.getId())), 1);
+        assertThat(dtos).hasSize(perros * 3);
+        assertThat(dtos).allSatisfy(d -> assertThat(d.imagenIds()).hasSize(imagenes));
+    }
+
+    @ParameterizedTest(name = "{0} perros x {1} imágenes")
+    @CsvSource({"1, 1", "6, 3", "25, 4"})
+    void findPendientesRevisionUsaUnaSentencia(int perros, int imagenes) {
+        sembrar(perros, imagenes);
+        List<DtoPerro> dtos = contar(() -> dtos(repositorioPerro.findPendientesRevision()), 1);
+        assertThat(dtos).hasSize(perros);
+    }
+
+    @ParameterizedTest(name = "{0} perros x {1} imágenes")
+    @CsvSource({"1, 1", "6, 3", "25, 4"})
+    void findAllConImagenesUsaUnaSentencia(int perros, int imagenes) {
+        sembrar(perros, imagenes);
+        List<DtoPerro> dtos = contar(() -> dtos(repositorioPerro.findAllConImagenes()), 1);
+        assertThat(dtos).hasSize(perros * 3);
+    }
+
+    @ParameterizedTest(name = "{0} perros x {1} imágenes")
+    @CsvSource({"1, 1", "6, 3", "25, 4"})
+    void findByEstadoRevisionUsaUnaSentencia(int perros, int imagenes) {
+        sembrar(perros, imagenes);
+        List<DtoPerro> dtos = contar(() -> dtos(repositorioPerro.findByEstadoRevision(PerroEstadoRevision.RECHAZADO)), 1);
+        assertThat(dtos).hasSize(perros);
+    }
+
+    // Por cada estado (aprobado y disponible, pendiente, rechazado) crea `perros` perros con `imagenes` imágenes
+    private void sembrar(int perros, int imagenes) {
+        long t = System.currentTimeMillis();
+        int n = 0;
+        for (PerroEstadoRevision estado : List.of(PerroEstadoRevision.APROBADO, PerroEstadoRevision.PENDIENTE,
+                PerroEstadoRevision.RECHAZADO)) {
+            for (int i = 0; i < perros; i++) {
+                Perro perro = Perro.builder()
+                        .id(UUID.randomUUID().toString())
+                        .nombre("Perro " + n)
+                        .ubicacion("Guadalajara")
+                        .fechaPublicacion(new Timestamp(t - n++ * 1000L))
+                        .estadoRevision(estado)
+                        .estadoAdopcion(PerroEstadoAdopcion.DISPONIBLE)
+                        .usuario(usuario)
+                        .build();
+                em.persist(perro);
+                for (int j = 0; j < imagenes; j++) {
+                    em.persist(ImagenPerro.builder()
+                            .id(UUID.randomUUID().toString())
+                            .perro(perro)
+                            .principal(j == 0)
+                            .fechaSubida(new Timestamp(t))
+                            .build());
+                }
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    private <T> T contar(Supplier<T> consulta, long esperadas) {
+        estadisticas.clear();
+        T resultado = consulta.get();
+        assertThat(estadisticas.getPrepareStatementCount()).as("sentencias SQL").isEqualTo(esperadas);
+        return resultado;
+    }
+
+    private static List<DtoPerro> dtos(List<Perro> perros) {
+        return perros.stream().map(DtoPerro::new).toList();
+    }
+}
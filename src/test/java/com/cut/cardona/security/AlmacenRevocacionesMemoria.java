@@ -0,0 +1,39 @@
+package com.cut.cardona.security;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/** Almacén compartido en memoria: varias RevocacionTokens sobre la misma instancia se comportan como nodos. */
+class AlmacenRevocacionesMemoria implements AlmacenRevocaciones {
+
+    private record Fila(String jti, Instant expira, Instant revocadoEn) {}
+
+    private final List<Fila> filas = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void guardar(String jti, String usuarioId, Instant expira) {
+        filas.add(new Fila(jti, expira, Instant.now()));
+    }
+
+    @Override
+    public List<Revocacion> revocadasDesde(Instant desde) {
+        Instant ahora = Instant.now();
+        return filas.stream()
+                .filter(f -> !f.revocadoEn().isBefore(desde) && f.expira().isAfter(ahora))
+                .map(f -> new Revocacion(f.jti(), f.expira()))
+                .toList();
+    }
+
+    @Override
+    public int purgarCaducadas() {
+        Instant ahora = Instant.now();
+        List<Fila> caducadas = filas.stream().filter(f -> !f.expira().isAfter(ahora)).toList();
+        filas.removeAll(caducadas);
+        return caducadas.size();
+    }
+
+    int total() {
+        return filas.size();
+    }
+}
@@ -0,0 +1,139 @@
+package com.cut.cardona.security;
+
+import com.cut.cardona.modelo.usuarios.RepositorioUsuario;
+import com.cut.cardona.modelo.usuarios.Roles;
+import com.cut.cardona.modelo.usuarios.Usuario;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Caché de principales sobre un repositorio simulado: un acierto no consulta la base de datos, el evento de usuario
+ * modificado suelta todas sus entradas (por userName y por email), lo inexistente no se cachea y el límite se
+ * respeta descartando primero lo caducado.
+ */
+class CachePrincipalesTest {
+
+    private final RepositorioUsuario repositorio = mock(RepositorioUsuario.class);
+
+    @Test
+    void unAciertoNoConsultaLaBaseDeDatos() {
+        Usuario ana = usuario("1", "ana");
+        CachePrincipales cache = new CachePrincipales(repositorio, 60, 100);
+
+        assertThat(cache.obtener("ana")).get().extracting(CustomUserDetails::getUsuario).isSameAs(ana);
+        assertThat(cache.obtener("ana")).isPresent();
+
+        verify(repositorio, times(1)).findByUserNameOrEmail("ana", "ana");
+    }
+
+    @Test
+    void elEventoSueltaAlUsuarioPorUserNameYPorEmail() {
+        usuario("1", "ana");
+        usuario("2", "bea");
+        CachePrincipales cache = new CachePrincipales(repositorio, 60, 100);
+        cache.obtener("ana");
+        cache.obtener("ana@example.com");
+        cache.obtener("bea");
+
+        cache.onUsuarioModificado(new UsuarioModificadoEvent("1"));
+        cache.obtener("ana");
+        cache.obtener("ana@example.com");
+        cache.obtener("bea");
+
+        verify(repositorio, times(2)).findByUserNameOrEmail("ana", "ana");
+        verify(repositorio, times(2)).findByUserNameOrEmail("ana@example.com", "ana@example.com");
+        verify(repositorio, times(1)).findByUserNameOrEmail("bea", "bea");
+    }
+
+    @Test
+    void unEventoSinUsuarioNoHaceNada() {
+        usuario("1", "ana");
+        CachePrincipales cache = new CachePrincipales(repositorio, 60, 100);
+        cache.obtener("ana");
+
+        cache.onUsuarioModificado(new UsuarioModificadoEvent(null));
+        cache.onUsuarioModificado(null);
+        cache.obtener("ana");
+
+        verify(repositorio, times(1)).findByUserNameOrEmail("ana", "ana");
+    }
+
+    @Test
+    void loInexistenteNoSeCachea() {
+        when(repositorio.findByUserNameOrEmail(anyString(), anyString())).thenReturn(Optional.empty());
+        CachePrincipales cache = new CachePrincipales(repositorio, 60, 100);
+
+        assertThat(cache.obtener("nadie")).isEmpty();
+        // Se registra después: la siguiente consulta ya lo encuentra
+        usuario("1", "nadie");
+        assertThat(cache.obtener("nadie")).isPresent();
+        assertThat(cache.obtener(null)).isEmpty();
+    }
+
+    @Test
+    void caducaTrasElTtl() throws InterruptedException {
+        usuario("1", "ana");
+        CachePrincipales cache = new CachePrincipales(repositorio, 1, 100);
+        cache.obtener("ana");
+
+        Thread.sleep(1100);
+        cache.obtener("ana");
+
+        verify(repositorio, times(2)).findByUserNameOrEmail("ana", "ana");
+    }
+
+    @Test
+    void conTtlCeroNoSeCachea() {
+        usuario("1", "ana");
+        CachePrincipales cache = new CachePrincipales(repositorio, 0, 100);
+
+        cache.obtener("ana");
+        cache.obtener("ana");
+
+        verify(repositorio, times(2)).findByUserNameOrEmail("ana", "ana");
+    }
+
+    @Test
+    void llenaNoDesplazaHastaQueAlgoCaduca() throws InterruptedException {
+        usuario("1", "ana");
+        usuario("2", "bea");
+        CachePrincipales cache = new CachePrincipales(repositorio, 1, 1);
+        cache.obtener("ana");
+
+        // Sin sitio: bea se sirve pero no desplaza a ana
+        cache.obtener("bea");
+        cache.obtener("bea");
+        cache.obtener("ana");
+        verify(repositorio, times(2)).findByUserNameOrEmail("bea", "bea");
+        verify(repositorio, times(1)).findByUserNameOrEmail("ana", "ana");
+
+        // Caducada ana, bea ocupa su sitio
+        Thread.sleep(1100);
+        cache.obtener("bea");
+        cache.obtener("bea");
+        verify(repositorio, times(3)).findByUserNameOrEmail("bea", "bea");
+    }
+
+    private Usuario usuario(String id, String userName) {
+        Usuario u = new Usuario();
+        u.setId(id);
+        u.setUserName(userName);
+        u.setEmail(userName + "@example.com");
+        u.setPassword("x");
+        u.setRol(Roles.ROLE_USER);
+        u.setActivo(true);
+        u.setEmailVerificado(true);
+        when(repositorio.findByUserNameOrEmail(userName, userName)).thenReturn(Optional.of(u));
+        String email = u.getEmail();
+        when(repositorio.findByUserNameOrEmail(email, email)).thenReturn(Optional.of(u));
+        return u;
+    }
+}
@@ -0,0 +1,77 @@
+package com.cut.cardona.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FiltroBloomTest {
+
+    @Test
+    void sinFalsosNegativosHastaLaCapacidad() {
+        FiltroBloom filtro = new FiltroBloom(10_000, 0.001);
+        List<String> jtis = jtis(10_000);
+        jtis.forEach(filtro::agregar);
+
+        assertThat(jtis).allMatch(filtro::puedeContener);
+    }
+
+    @Test
+    void falsosPositivosCercaDeLaTasaPedida() {
+        FiltroBloom filtro = new FiltroBloom(10_000, 0.001);
+        jtis(10_000).forEach(filtro::agregar);
+
+        long positivos = jtis(100_000).stream().filter(filtro::puedeContener).count();
+
+        // 0.1 % esperado; margen amplio para que la prueba no dependa del azar
+        assertThat(positivos).isLessThan(500);
+    }
+
+    @Test
+    void sinFalsosNegativosPorEncimaDeLaCapacidad() {
+        // Pasada la capacidad suben los falsos positivos, nunca los negativos
+        FiltroBloom filtro = new FiltroBloom(16, 0.001);
+        List<String> jtis = jtis(2_000);
+        jtis.forEach(filtro::agregar);
+
+        assertThat(jtis).allMatch(filtro::puedeContener);
+    }
+
+    @Test
+    void altasConcurrentesVisiblesAlMomento() throws Exception {
+        FiltroBloom filtro = new FiltroBloom(40_000, 0.001);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> tareas = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tareas.add(pool.submit(() -> {
+                    List<String> propios = jtis(10_000);
+                    for (String jti : propios) {
+                        filtro.agregar(jti);
+                        // Las altas de otros hilos en la misma palabra no pueden borrar este bit
+                        if (!filtro.puedeContener(jti)) throw new AssertionError("falso negativo: " + jti);
+                    }
+                    return propios;
+                }));
+            }
+            for (Future<List<String>> tarea : tareas) {
+                assertThat(tarea.get(30, TimeUnit.SECONDS)).allMatch(filtro::puedeContener);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static List<String> jtis(int n) {
+        List<String> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(UUID.randomUUID().toString());
+        return out;
+    }
+}
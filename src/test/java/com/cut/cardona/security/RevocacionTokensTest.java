@@ -0,0 +1,152 @@
+package com.cut.cardona.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Un token revocado y vigente debe darse por revocado siempre: al crecer por encima de la capacidad (el filtro
+ * se reconstruye), tras purgar los caducados y al llegar desde otro nodo por sincronización.
+ */
+class RevocacionTokensTest {
+
+    // Sin sincronización automática durante la prueba: las pasadas se fuerzan con sincronizar()
+    private static final long SYNC_SEGUNDOS = 3600;
+
+    private final AlmacenRevocacionesMemoria almacen = new AlmacenRevocacionesMemoria();
+    private final List<RevocacionTokens> nodos = new ArrayList<>();
+
+    @AfterEach
+    void detener() {
+        nodos.forEach(RevocacionTokens::detener);
+    }
+
+    @Test
+    void sinFalsosNegativosAlReconstruirPorCrecimiento() {
+        RevocacionTokens revocacion = nodo(16);
+        Instant expira = Instant.now().plusSeconds(3600);
+        List<String> jtis = jtis(1_000);
+        for (String jti : jtis) {
+            revocacion.revocar(jti, "u", expira);
+            assertThat(revocacion.revocado(jti)).isTrue();
+        }
+
+        assertThat(jtis).allMatch(revocacion::revocado);
+        assertThat(jtis(1_000)).noneMatch(revocacion::revocado);
+    }
+
+    @Test
+    void sinFalsosNegativosConRevocacionesConcurrentesDuranteLaReconstruccion() throws Exception {
+        Instant expira = Instant.now().plusSeconds(3600);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            // Varias rondas: la carrera con la reconstrucción es estrecha y cada nodo solo reconstruye unas pocas veces
+            for (int ronda = 0; ronda < 20; ronda++) {
+                RevocacionTokens revocacion = nodo(new AlmacenRevocacionesMemoria(), 16);
+                List<Future<List<String>>> tareas = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    tareas.add(pool.submit(() -> {
+                        List<String> propios = jtis(2_000);
+                        propios.forEach(jti -> revocacion.revocar(jti, "u", expira));
+                        return propios;
+                    }));
+                }
+                for (Future<List<String>> tarea : tareas) {
+                    assertThat(tarea.get(30, TimeUnit.SECONDS)).allMatch(revocacion::revocado);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void purgaDeCaducadosConservaLosVigentes() throws InterruptedException {
+        RevocacionTokens revocacion = nodo(16);
+        List<String> cortos = jtis(100);
+        List<String> largos = jtis(100);
+        Instant pronto = Instant.now().plusMillis(300);
+        cortos.forEach(jti -> revocacion.revocar(jti, "u", pronto));
+        largos.forEach(jti -> revocacion.revocar(jti, "u", Instant.now().plusSeconds(3600)));
+
+        Thread.sleep(pronto.toEpochMilli() - System.currentTimeMillis() + 50);
+        revocacion.sincronizar();
+
+        assertThat(largos).allMatch(revocacion::revocado);
+        assertThat(cortos).noneMatch(revocacion::revocado);
+        assertThat(almacen.total()).isEqualTo(largos.size());
+    }
+
+    @Test
+    void revocacionesDeOtroNodoLleganPorSincronizacion() {
+        RevocacionTokens a = nodo(16);
+        RevocacionTokens b = nodo(16);
+        Instant expira = Instant.now().plusSeconds(3600);
+        List<String> antes = jtis(50);
+        antes.forEach(jti -> a.revocar(jti, "u", expira));
+        List<String> despues = jtis(500);
+        despues.forEach(jti -> a.revocar(jti, "u", expira));
+        List<String> propias = jtis(50);
+        propias.forEach(jti -> b.revocar(jti, "u", expira));
+
+        b.sincronizar();
+
+        assertThat(antes).allMatch(b::revocado);
+        assertThat(despues).allMatch(b::revocado);
+        assertThat(propias).allMatch(b::revocado);
+        a.sincronizar();
+        assertThat(propias).allMatch(a::revocado);
+    }
+
+    @Test
+    void arranqueCargaLasRevocacionesVigentes() {
+        Instant expira = Instant.now().plusSeconds(3600);
+        List<String> jtis = jtis(300);
+        RevocacionTokens a = nodo(16);
+        jtis.forEach(jti -> a.revocar(jti, "u", expira));
+
+        RevocacionTokens reiniciado = nodo(16);
+
+        assertThat(jtis).allMatch(reiniciado::revocado);
+    }
+
+    @Test
+    void sinJtiOYaCaducadoNoSeRevoca() {
+        RevocacionTokens revocacion = nodo(16);
+        String jti = UUID.randomUUID().toString();
+
+        revocacion.revocar(null, "u", Instant.now().plusSeconds(60));
+        revocacion.revocar(jti, "u", Instant.now().minusSeconds(1));
+
+        assertThat(revocacion.revocado(null)).isFalse();
+        assertThat(revocacion.revocado(jti)).isFalse();
+        assertThat(almacen.total()).isZero();
+    }
+
+    private RevocacionTokens nodo(int capacidad) {
+        return nodo(almacen, capacidad);
+    }
+
+    private RevocacionTokens nodo(AlmacenRevocaciones almacen, int capacidad) {
+        RevocacionTokens revocacion = new RevocacionTokens(almacen, SYNC_SEGUNDOS, capacidad);
+        revocacion.iniciar();
+        nodos.add(revocacion);
+        return revocacion;
+    }
+
+    private static List<String> jtis(int n) {
+        List<String> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(UUID.randomUUID().toString());
+        return out;
+    }
+}
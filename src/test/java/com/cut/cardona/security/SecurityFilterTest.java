@@ -0,0 +1,169 @@
+package com.cut.cardona.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.cut.cardona.modelo.usuarios.Roles;
+import com.cut.cardona.modelo.usuarios.Usuario;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Filtro JWT en modo sin estado: el principal sale de los claims mientras la generación del token ("gen") sea la
+ * vigente; tras un cambio del usuario sus tokens anteriores dejan de autenticar sin consultar la base de datos,
+ * y los tokens emitidos antes de arrancar el nodo o sin claims de usuario se resuelven con la caché.
+ */
+class SecurityFilterTest {
+
+    private static final String SECRETO = "secreto-de-pruebas";
+    private static final String EMISOR = "perritoscutapp";
+
+    private static GeneracionTokens generacionTokens;
+    private static Instant antesDelArranque;
+
+    private final CachePrincipales cachePrincipales = mock(CachePrincipales.class);
+    private final TokenService tokenService = new TokenService(generacionTokens,
+            new RevocacionTokens(new AlmacenRevocacionesMemoria(), 30, 100), SECRETO, EMISOR, 16);
+
+    @BeforeAll
+    static void arrancar() throws InterruptedException {
+        antesDelArranque = Instant.now().minusSeconds(5);
+        generacionTokens = new GeneracionTokens();
+        // iat va en segundos y el del mismo segundo del arranque cuenta como anterior: se espera al siguiente
+        Thread.sleep(1000 - System.currentTimeMillis() % 1000 + 20);
+    }
+
+    @AfterEach
+    void limpiar() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void unTokenVigenteAutenticaDesdeLosClaims() throws Exception {
+        Usuario ana = usuario("ana", Roles.ROLE_ADMIN);
+
+        Authentication auth = filtrar(filtro(true), tokenService.generarToken(ana));
+
+        assertThat(auth).isNotNull();
+        CustomUserDetails principal = (CustomUserDetails) auth.getPrincipal();
+        assertThat(principal.getUsuario().getId()).isEqualTo(ana.getId());
+        assertThat(principal.getUsername()).isEqualTo("ana");
+        assertThat(auth.getAuthorities()).extracting(Object::toString).contains("ROLE_ADMIN");
+        verify(cachePrincipales, never()).obtener(anyString());
+    }
+
+    @Test
+    void trasModificarElUsuarioSuTokenAnteriorNoAutentica() throws Exception {
+        Usuario ana = usuario("ana", Roles.ROLE_ADMIN);
+        Usuario bea = usuario("bea", Roles.ROLE_USER);
+        String viejo = tokenService.generarToken(ana);
+        String deBea = tokenService.generarToken(bea);
+
+        // Por ejemplo, se le quitó el rol de administrador
+        generacionTokens.onUsuarioModificado(new UsuarioModificadoEvent(ana.getId()));
+
+        assertThat(filtrar(filtro(true), viejo)).isNull();
+        verify(cachePrincipales, never()).obtener(anyString());
+        // Un token emitido después lleva la generación nueva; los de otros usuarios no cambian
+        assertThat(filtrar(filtro(true), tokenService.generarToken(ana))).isNotNull();
+        assertThat(filtrar(filtro(true), deBea)).isNotNull();
+    }
+
+    @Test
+    void unTokenSinGeneracionCuentaComoGeneracionCero() throws Exception {
+        Usuario ana = usuario("ana", Roles.ROLE_USER);
+        String sinGen = firmar(ana, Instant.now());
+
+        assertThat(filtrar(filtro(true), sinGen)).isNotNull();
+
+        generacionTokens.onUsuarioModificado(new UsuarioModificadoEvent(ana.getId()));
+        assertThat(filtrar(filtro(true), sinGen)).isNull();
+    }
+
+    @Test
+    void unTokenAnteriorAlArranqueSeResuelveConLaCache() throws Exception {
+        Usuario ana = usuario("ana", Roles.ROLE_USER);
+        when(cachePrincipales.obtener("ana")).thenReturn(Optional.empty());
+
+        // Su generación pudo cambiar antes de arrancar este nodo: los claims no bastan, y la caché dice que ya no existe
+        assertThat(filtrar(filtro(true), firmar(ana, antesDelArranque))).isNull();
+        verify(cachePrincipales).obtener("ana");
+    }
+
+    @Test
+    void sinClaimsDeUsuarioSeResuelveConLaCache() throws Exception {
+        Usuario ana = usuario("ana", Roles.ROLE_USER);
+        when(cachePrincipales.obtener("ana")).thenReturn(Optional.of(new CustomUserDetails(ana)));
+        String soloSubject = JWT.create().withIssuer(EMISOR).withJWTId(UUID.randomUUID().toString()).withSubject("ana")
+                .withIssuedAt(Instant.now()).withExpiresAt(Instant.now().plusSeconds(60)).sign(Algorithm.HMAC256(SECRETO));
+
+        Authentication auth = filtrar(filtro(true), soloSubject);
+
+        assertThat(auth).isNotNull();
+        assertThat(((CustomUserDetails) auth.getPrincipal()).getUsuario()).isSameAs(ana);
+    }
+
+    @Test
+    void conEstadoSiempreSeUsaLaCache() throws Exception {
+        Usuario ana = usuario("ana", Roles.ROLE_USER);
+        when(cachePrincipales.obtener("ana")).thenReturn(Optional.of(new CustomUserDetails(ana)));
+        String token = tokenService.generarToken(ana);
+        generacionTokens.onUsuarioModificado(new UsuarioModificadoEvent(ana.getId()));
+
+        assertThat(filtrar(filtro(false), token)).isNotNull();
+        verify(cachePrincipales).obtener("ana");
+    }
+
+    @Test
+    void unTokenInvalidoNoAutentica() throws Exception {
+        assertThat(filtrar(filtro(true), "basura")).isNull();
+        verify(cachePrincipales, never()).obtener(anyString());
+    }
+
+    private SecurityFilter filtro(boolean sinEstado) {
+        return new SecurityFilter(tokenService, cachePrincipales, generacionTokens, sinEstado);
+    }
+
+    private static Authentication filtrar(SecurityFilter filtro, String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/perfil");
+        request.addHeader("Authorization", "Bearer " + token);
+        filtro.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    // Token con claims de usuario pero sin "gen", como los emitidos antes de existir la generación
+    private static String firmar(Usuario u, Instant emitido) {
+        return JWT.create().withIssuer(EMISOR).withJWTId(UUID.randomUUID().toString()).withSubject(u.getUsername())
+                .withClaim("roles", u.getRol().toString()).withClaim("id", u.getId())
+                .withIssuedAt(emitido).withExpiresAt(Instant.now().plusSeconds(60)).sign(Algorithm.HMAC256(SECRETO));
+    }
+
+    // Id nuevo en cada prueba: las generaciones son compartidas por toda la clase
+    private static Usuario usuario(String userName, Roles rol) {
+        Usuario u = new Usuario();
+        u.setId(UUID.randomUUID().toString());
+        u.setUserName(userName);
+        u.setEmail(userName + "@example.com");
+        u.setRol(rol);
+        u.setActivo(true);
+        u.setEmailVerificado(true);
+        return u;
+    }
+}
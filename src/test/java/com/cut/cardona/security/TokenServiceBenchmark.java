@@ -0,0 +1,103 @@
+package com.cut.cardona.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.cut.cardona.modelo.usuarios.Roles;
+import com.cut.cardona.modelo.usuarios.Usuario;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verificaciones por segundo del filtro JWT: {@link TokenService#decodificar} con y sin la caché de verificados,
+ * frente a la verificación anterior (Algorithm y JWTVerifier nuevos en cada llamada y excepción ante un token
+ * inválido). Se ejecuta igual que los demás *Benchmark de src/test:
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main TokenServiceBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class TokenServiceBenchmark {
+
+    private static final String SECRETO = "secreto-de-pruebas";
+    private static final String EMISOR = "perritoscutapp";
+
+    private TokenService conCache;
+    private TokenService sinCache;
+    private String valido;
+    private String invalido;
+
+    @Setup
+    public void preparar() {
+        RevocacionTokens revocacion = new RevocacionTokens(new AlmacenRevocacionesMemoria(), 30, 10_000);
+        conCache = new TokenService(new GeneracionTokens(), revocacion, SECRETO, EMISOR, 1024);
+        sinCache = new TokenService(new GeneracionTokens(), revocacion, SECRETO, EMISOR, 0);
+        Usuario usuario = new Usuario();
+        usuario.setId(UUID.randomUUID().toString());
+        usuario.setUserName("ana");
+        usuario.setRol(Roles.ROLE_USER);
+        valido = conCache.generarToken(usuario);
+        invalido = valido.substring(0, valido.length() - 4) + (valido.endsWith("AAAA") ? "BBBB" : "AAAA");
+    }
+
+    @Benchmark
+    public DecodedJWT validoConCache() {
+        return conCache.decodificar(valido);
+    }
+
+    @Benchmark
+    public DecodedJWT validoSinCache() {
+        return sinCache.decodificar(valido);
+    }
+
+    @Benchmark
+    public DecodedJWT invalido() {
+        return conCache.decodificar(invalido);
+    }
+
+    @Benchmark
+    public String validoAnterior() {
+        return verificarAnterior(valido);
+    }
+
+    @Benchmark
+    public String invalidoAnterior() {
+        try {
+            return verificarAnterior(invalido);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Como getSubject antes de la caché: todo se construye por llamada y un token malo cuesta una excepción
+    private static String verificarAnterior(String token) {
+        try {
+            Algorithm algorithm = Algorithm.HMAC256(SECRETO);
+            JWTVerifier verifier = JWT.require(algorithm).withIssuer(EMISOR).build();
+            return verifier.verify(token).getSubject();
+        } catch (JWTVerificationException exception) {
+            throw new RuntimeException("token invalido", exception);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.cut.cardona.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.cut.cardona.modelo.usuarios.Roles;
+import com.cut.cardona.modelo.usuarios.Usuario;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+class TokenServiceTest {
+
+    private static final String SECRETO = "secreto-de-pruebas";
+    private static final String EMISOR = "perritoscutapp";
+
+    private RevocacionTokens revocacionTokens;
+    private TokenService tokenService;
+    private Usuario usuario;
+
+    @BeforeEach
+    void preparar() {
+        revocacionTokens = new RevocacionTokens(new AlmacenRevocacionesMemoria(), 30, 100);
+        tokenService = new TokenService(new GeneracionTokens(), revocacionTokens, SECRETO, EMISOR, 16);
+        usuario = new Usuario();
+        usuario.setId(UUID.randomUUID().toString());
+        usuario.setUserName("ana");
+        usuario.setRol(Roles.ROLE_USER);
+    }
+
+    @Test
+    void tokenValidoSeDecodificaYElSegundoAccesoSaleDeLaCache() {
+        String token = tokenService.generarToken(usuario);
+
+        DecodedJWT primero = tokenService.decodificar(token);
+        DecodedJWT segundo = tokenService.decodificar(token);
+
+        assertThat(primero).isNotNull();
+        assertThat(primero.getSubject()).isEqualTo("ana");
+        assertThat(primero.getClaim("id").asString()).isEqualTo(usuario.getId());
+        assertThat(segundo).isSameAs(primero);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "   ", "basura", "a.b.c"})
+    void tokenMalformadoDevuelveNullSinLanzar(String token) {
+        assertThatCode(() -> assertThat(tokenService.decodificar(token)).isNull()).doesNotThrowAnyException();
+    }
+
+    @Test
+    void nullDevuelveNull() {
+        assertThat(tokenService.decodificar(null)).isNull();
+    }
+
+    @Test
+    void firmaAlteradaEmisorAjenoOCaducadoDevuelvenNull() {
+        String token = tokenService.generarToken(usuario);
+        String firmaAlterada = token.substring(0, token.length() - 4) + (token.endsWith("AAAA") ? "BBBB" : "AAAA");
+        String otroEmisor = JWT.create().withIssuer("otro").withSubject("ana")
+                .withExpiresAt(Instant.now().plusSeconds(60)).sign(Algorithm.HMAC256(SECRETO));
+        String caducado = JWT.create().withIssuer(EMISOR).withSubject("ana")
+                .withExpiresAt(Instant.now().minusSeconds(60)).sign(Algorithm.HMAC256(SECRETO));
+
+        assertThat(tokenService.decodificar(firmaAlterada)).isNull();
+        assertThat(tokenService.decodificar(otroEmisor)).isNull();
+        assertThat(tokenService.decodificar(caducado)).isNull();
+    }
+
+    @Test
+    void revocacionSeAplicaAunqueElTokenEsteEnCache() {
+        String token = tokenService.generarToken(usuario);
+        DecodedJWT jwt = tokenService.decodificar(token);
+        assertThat(jwt).isNotNull();
+
+        // Revocado en otro nodo y recibido por sincronización: no pasa por revokeToken ni toca la caché
+        revocacionTokens.revocar(jwt.getId(), usuario.getId(), jwt.getExpiresAtAsInstant());
+
+        assertThat(tokenService.decodificar(token)).isNull();
+    }
+
+    @Test
+    void revokeTokenInvalidaElTokenYNoAfectaAOtros() {
+        String token = tokenService.generarToken(usuario);
+        String otro = tokenService.generarToken(usuario);
+        tokenService.decodificar(token);
+        tokenService.decodificar(otro);
+
+        tokenService.revokeToken("Bearer " + token);
+
+        assertThat(tokenService.decodificar(token)).isNull();
+        assertThat(tokenService.decodificar(otro)).isNotNull();
+    }
+
+    @Test
+    void expiracionSeAplicaAunqueElTokenEsteEnCache() throws InterruptedException {
+        Instant expira = Instant.now().plusSeconds(2);
+        String token = JWT.create().withIssuer(EMISOR).withJWTId(UUID.randomUUID().toString()).withSubject("ana")
+                .withExpiresAt(expira).sign(Algorithm.HMAC256(SECRETO));
+        assertThat(tokenService.decodificar(token)).isNotNull();
+
+        // exp va en segundos: esperar a que el instante truncado quede atrás
+        Thread.sleep(expira.toEpochMilli() - System.currentTimeMillis() + 1100);
+
+        assertThat(tokenService.decodificar(token)).isNull();
+    }
+
+    @Test
+    void sinCacheTambienVerificaYRevoca() {
+        TokenService sinCache = new TokenService(new GeneracionTokens(), revocacionTokens, SECRETO, EMISOR, 0);
+        String token = sinCache.generarToken(usuario);
+        DecodedJWT jwt = sinCache.decodificar(token);
+        assertThat(jwt).isNotNull();
+        assertThat(sinCache.decodificar(token)).isNotSameAs(jwt);
+
+        revocacionTokens.revocar(jwt.getId(), usuario.getId(), jwt.getExpiresAtAsInstant());
+
+        assertThat(sinCache.decodificar(token)).isNull();
+    }
+
+    @Test
+    void getSubjectDevuelveNullEnLosMismosCasosQueDecodificar() {
+        String token = tokenService.generarToken(usuario);
+        String caducado = JWT.create().withIssuer(EMISOR).withSubject("ana")
+                .withExpiresAt(Instant.now().minusSeconds(60)).sign(Algorithm.HMAC256(SECRETO));
+
+        assertThat(tokenService.getSubject(token)).isEqualTo("ana");
+        assertThatCode(() -> {
+            assertThat(tokenService.getSubject(null)).isNull();
+            assertThat(tokenService.getSubject("basura")).isNull();
+            assertThat(tokenService.getSubject(caducado)).isNull();
+        }).doesNotThrowAnyException();
+
+        tokenService.revokeToken(token);
+        assertThat(tokenService.getSubject(token)).isNull();
+    }
+
+    @Test
+    void unTokenAjenoConElMismoJtiNoSaleDeLaCache() {
+        String token = tokenService.generarToken(usuario);
+        DecodedJWT jwt = tokenService.decodificar(token);
+        // Mismo jti y subject, firmado con otra clave: sin comparar el token entero la caché lo daría por bueno
+        String falso = JWT.create().withIssuer(EMISOR).withJWTId(jwt.getId()).withSubject("admin")
+                .withExpiresAt(Instant.now().plusSeconds(60)).sign(Algorithm.HMAC256("otra-clave"));
+
+        assertThat(tokenService.decodificar(falso)).isNull();
+        assertThat(tokenService.decodificar(token)).isSameAs(jwt);
+    }
+
+    @Test
+    void laCacheNoSuperaSuTamano() {
+        List<String> tokens = new ArrayList<>();
+        List<DecodedJWT> primeros = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String token = tokenService.generarToken(usuario);
+            tokens.add(token);
+            primeros.add(tokenService.decodificar(token));
+        }
+        // Capacidad 16: como mucho 16 de los 40 devuelven todavía la instancia de su primera verificación
+        int enCache = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            DecodedJWT jwt = tokenService.decodificar(tokens.get(i));
+            assertThat(jwt).isNotNull();
+            if (jwt == primeros.get(i)) enCache++;
+        }
+
+        assertThat(enCache).isLessThanOrEqualTo(16);
+    }
+
+    @Test
+    void accesosConcurrentesDevuelvenLosClaimsDeCadaToken() throws Exception {
+        List<Usuario> usuarios = new ArrayList<>();
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Usuario u = new Usuario();
+            u.setId(UUID.randomUUID().toString());
+            u.setUserName("u" + i);
+            u.setRol(Roles.ROLE_USER);
+            usuarios.add(u);
+            tokens.add(tokenService.generarToken(u));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> resultados = new ArrayList<>();
+            for (int h = 0; h < 8; h++) {
+                resultados.add(pool.submit(() -> {
+                    for (int n = 0; n < 500; n++) {
+                        int i = n % tokens.size();
+                        DecodedJWT jwt = tokenService.decodificar(tokens.get(i));
+                        if (jwt == null || !usuarios.get(i).getUsername().equals(jwt.getSubject())) return false;
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> r : resultados) assertThat(r.get(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
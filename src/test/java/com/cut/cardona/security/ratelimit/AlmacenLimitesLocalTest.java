@@ -0,0 +1,121 @@
+package com.cut.cardona.security.ratelimit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AlmacenLimitesLocalTest {
+
+    private AlmacenLimitesLocal almacen = new AlmacenLimitesLocal(3600);
+
+    @AfterEach
+    void detener() {
+        almacen.detener();
+    }
+
+    @Test
+    void permiteLaRafagaCompletaYRechazaLaSiguiente() {
+        for (int i = 0; i < 10; i++) {
+            AlmacenLimites.Resultado r = almacen.consumir("ip:1", 10, 60);
+            assertThat(r.permitido()).isTrue();
+            assertThat(r.restantes()).isEqualTo(9 - i);
+            assertThat(r.reintentarSegundos()).isZero();
+        }
+
+        AlmacenLimites.Resultado rechazo = almacen.consumir("ip:1", 10, 60);
+
+        assertThat(rechazo.permitido()).isFalse();
+        assertThat(rechazo.restantes()).isZero();
+        // Un token nuevo cada 6 s; el cupo completo en 60 s
+        assertThat(rechazo.reintentarSegundos()).isBetween(1L, 6L);
+        assertThat(rechazo.resetSegundos()).isBetween(55L, 60L);
+    }
+
+    @Test
+    void unRechazoNoConsumeCupo() {
+        for (int i = 0; i < 3; i++) almacen.consumir("ip:1", 3, 60);
+        for (int i = 0; i < 50; i++) assertThat(almacen.consumir("ip:1", 3, 60).permitido()).isFalse();
+
+        // Si los rechazos movieran el TAT el reintento crecería sin límite
+        assertThat(almacen.consumir("ip:1", 3, 60).reintentarSegundos()).isLessThanOrEqualTo(20L);
+    }
+
+    @Test
+    void lasClavesSonIndependientes() {
+        for (int i = 0; i < 5; i++) almacen.consumir("ip:1", 5, 60);
+
+        assertThat(almacen.consumir("ip:1", 5, 60).permitido()).isFalse();
+        assertThat(almacen.consumir("ip:2", 5, 60).permitido()).isTrue();
+        assertThat(almacen.consumir("usuario:1", 5, 60).permitido()).isTrue();
+    }
+
+    @Test
+    void recuperaCupoAlRitmoDelPeriodo() throws InterruptedException {
+        // 4 por segundo: un token cada 250 ms
+        for (int i = 0; i < 4; i++) assertThat(almacen.consumir("ip:1", 4, 1).permitido()).isTrue();
+        assertThat(almacen.consumir("ip:1", 4, 1).permitido()).isFalse();
+
+        Thread.sleep(300);
+
+        assertThat(almacen.consumir("ip:1", 4, 1).permitido()).isTrue();
+        assertThat(almacen.consumir("ip:1", 4, 1).permitido()).isFalse();
+    }
+
+    @Test
+    void bajoConcurrenciaNuncaPermiteMasQueLaCapacidad() throws Exception {
+        int hilos = 8;
+        int intentosPorHilo = 200;
+        long capacidad = 300;
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        CountDownLatch salida = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> tareas = new ArrayList<>();
+            for (int h = 0; h < hilos; h++) {
+                tareas.add(pool.submit(() -> {
+                    salida.await();
+                    int permitidas = 0;
+                    for (int i = 0; i < intentosPorHilo; i++) {
+                        if (almacen.consumir("ip:1", capacidad, 3600).permitido()) permitidas++;
+                    }
+                    return permitidas;
+                }));
+            }
+            salida.countDown();
+            int total = 0;
+            for (Future<Integer> tarea : tareas) total += tarea.get(30, TimeUnit.SECONDS);
+
+            // Ni de más (CAS perdido que cuenta doble) ni de menos (cupo que se pierde)
+            assertThat(total).isEqualTo((int) capacidad);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void laLimpiezaSoloExpulsaClavesConCupoCompleto() throws InterruptedException {
+        almacen.detener();
+        almacen = new AlmacenLimitesLocal(1);
+        almacen.consumir("inactiva", 1, 1);
+        for (int i = 0; i < 5; i++) almacen.consumir("activa", 10, 3600);
+        assertThat(almacen.claves()).isEqualTo(2);
+
+        long limite = System.currentTimeMillis() + 5_000;
+        while (almacen.claves() > 1 && System.currentTimeMillis() < limite) Thread.sleep(100);
+
+        assertThat(almacen.claves()).isEqualTo(1);
+        // La clave activa conserva lo consumido: le quedan exactamente 5
+        for (int i = 0; i < 5; i++) assertThat(almacen.consumir("activa", 10, 3600).permitido()).isTrue();
+        assertThat(almacen.consumir("activa", 10, 3600).permitido()).isFalse();
+        // La expulsada vuelve con el cupo completo
+        assertThat(almacen.consumir("inactiva", 1, 1).permitido()).isTrue();
+    }
+}
@@ -0,0 +1,253 @@
+package com.cut.cardona.service.admin;
+
+import com.cut.cardona.modelo.adopcion.DocumentoSolicitud;
+import com.cut.cardona.modelo.adopcion.SolicitudAdopcion;
+import com.cut.cardona.modelo.adopcion.enums.SolicitudEstado;
+import com.cut.cardona.modelo.imagenes.ImagenPerfil;
+import com.cut.cardona.modelo.perfil.PerfilUsuario;
+import com.cut.cardona.modelo.perros.ImagenPerro;
+import com.cut.cardona.modelo.perros.Perro;
+import com.cut.cardona.modelo.perros.enums.PerroEstadoAdopcion;
+import com.cut.cardona.modelo.perros.enums.PerroEstadoRevision;
+import com.cut.cardona.modelo.usuarios.ResetToken;
+import com.cut.cardona.modelo.usuarios.Roles;
+import com.cut.cardona.modelo.usuarios.Usuario;
+import com.cut.cardona.modelo.usuarios.VerificationChannel;
+import com.cut.cardona.modelo.usuarios.VerificationToken;
+import com.cut.cardona.security.UsuarioModificadoEvent;
+import com.cut.cardona.service.imagenes.DespachadorBorrados;
+import com.cut.cardona.service.infra.storage.TipoImagen;
+import com.cut.cardona.service.perros.PerroCatalogoEvent;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+/**
+ * La cadena de DELETE por conjunto de EliminacionUsuario sobre el esquema real de las entidades: borra todo lo del
+ * usuario (también las solicitudes de otros sobre sus perros y las suyas sobre perros ajenos), no toca lo de los
+ * demás, ejecuta las mismas sentencias con 1 perro que con muchos y publica un solo evento de catálogo.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.datasource.url=jdbc:h2:mem:eliminacion;MODE=MySQL;DATABASE_TO_LOWER=TRUE"
+})
+@Import(EliminacionUsuario.class)
+@RecordApplicationEvents
+class EliminacionUsuarioTest {
+
+    // existsById + 4 SELECT de ids + 9 DELETE
+    private static final long SENTENCIAS = 14;
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @Autowired
+    private EliminacionUsuario eliminacionUsuario;
+
+    @Autowired
+    private ApplicationEvents eventos;
+
+    @MockitoBean
+    private DespachadorBorrados despachadorBorrados;
+
+    private Statistics estadisticas;
+    private Usuario victima;
+    private Usuario otro;
+
+    @BeforeEach
+    void preparar() {
+        estadisticas = emf.unwrap(SessionFactory.class).getStatistics();
+        victima = usuario("victima");
+        otro = usuario("otro");
+    }
+
+    @ParameterizedTest(name = "{0} perros")
+    @ValueSource(ints = {1, 8})
+    void borraTodoLoDelUsuarioConSentenciasFijas(int perros) {
+        Datos suyos = sembrar(victima, perros);
+        Datos ajenos = sembrar(otro, 2);
+        // Solicitudes cruzadas: la del otro sobre un perro de la víctima y la de la víctima sobre uno ajeno
+        String docSobreSuyo = solicitud(otro, suyos.perros.get(0));
+        String docSobreAjeno = solicitud(victima, ajenos.perros.get(0));
+        String docAjeno = solicitud(otro, ajenos.perros.get(1));
+        em.flush();
+        em.clear();
+
+        estadisticas.clear();
+        EliminacionUsuario.Resultado r = eliminacionUsuario.eliminar(victima.getId());
+        assertThat(estadisticas.getPrepareStatementCount()).as("sentencias SQL").isEqualTo(SENTENCIAS);
+        em.clear();
+
+        assertThat(r).isEqualTo(new EliminacionUsuario.Resultado(perros, suyos.imagenesPerro.size(), 2, 2, 2));
+        assertThat(em.find(Usuario.class, victima.getId())).isNull();
+        assertThat(contar("SELECT COUNT(p) FROM Perro p WHERE p.usuario.id = :u", victima)).isZero();
+        assertThat(contar("SELECT COUNT(i) FROM ImagenPerro i WHERE i.perro.usuario.id = :u", victima)).isZero();
+        assertThat(contar("SELECT COUNT(p) FROM PerfilUsuario p WHERE p.usuario.id = :u", victima)).isZero();
+        assertThat(contar("SELECT COUNT(i) FROM ImagenPerfil i WHERE i.perfilUsuario.usuario.id = :u", victima)).isZero();
+        assertThat(contar("SELECT COUNT(t) FROM VerificationToken t WHERE t.usuario.id = :u", victima)).isZero();
+        assertThat(contar("SELECT COUNT(t) FROM ResetToken t WHERE t.usuario.id = :u", victima)).isZero();
+        assertThat(em.find(DocumentoSolicitud.class, docSobreSuyo)).isNull();
+        assertThat(em.find(DocumentoSolicitud.class, docSobreAjeno)).isNull();
+
+        // Lo del otro usuario sigue intacto
+        assertThat(em.find(Usuario.class, otro.getId())).isNotNull();
+        assertThat(contar("SELECT COUNT(p) FROM Perro p WHERE p.usuario.id = :u", otro)).isEqualTo(2);
+        assertThat(contar("SELECT COUNT(i) FROM ImagenPerro i WHERE i.perro.usuario.id = :u", otro)).isEqualTo(ajenos.imagenesPerro.size());
+        assertThat(contar("SELECT COUNT(i) FROM ImagenPerfil i WHERE i.perfilUsuario.usuario.id = :u", otro)).isEqualTo(2);
+        assertThat(contar("SELECT COUNT(t) FROM VerificationToken t WHERE t.usuario.id = :u", otro)).isEqualTo(1);
+        assertThat(contar("SELECT COUNT(t) FROM ResetToken t WHERE t.usuario.id = :u", otro)).isEqualTo(1);
+        assertThat(em.find(DocumentoSolicitud.class, docAjeno)).isNotNull();
+
+        verify(despachadorBorrados).programar(eq(TipoImagen.PERRO), argThat(ids -> ids.size() == suyos.imagenesPerro.size()
+                && ids.containsAll(suyos.imagenesPerro)));
+        verify(despachadorBorrados).programar(eq(TipoImagen.PERFIL), argThat(ids -> ids.size() == 2
+                && ids.containsAll(suyos.imagenesPerfil)));
+        verify(despachadorBorrados).programar(eq(TipoImagen.DOCUMENTO), argThat(ids -> ids.size() == 2
+                && ids.containsAll(List.of(docSobreSuyo, docSobreAjeno))));
+    }
+
+    @Test
+    void unSoloEventoDeCatalogoParaTodosSusPerros() {
+        Datos suyos = sembrar(victima, 5);
+        em.flush();
+        em.clear();
+
+        eliminacionUsuario.eliminar(victima.getId());
+
+        assertThat(eventos.stream(PerroCatalogoEvent.class)).singleElement()
+                .satisfies(e -> assertThat(e.perroIds()).containsExactlyInAnyOrderElementsOf(suyos.perros.stream().map(Perro::getId).toList()));
+        assertThat(eventos.stream(UsuarioModificadoEvent.class)).hasSize(1);
+    }
+
+    @Test
+    void sinPerrosNoPublicaEventoDeCatalogo() {
+        em.flush();
+        em.clear();
+
+        eliminacionUsuario.eliminar(victima.getId());
+
+        assertThat(eventos.stream(PerroCatalogoEvent.class)).isEmpty();
+        assertThat(em.find(Usuario.class, victima.getId())).isNull();
+    }
+
+    @Test
+    void usuarioInexistente() {
+        assertThatThrownBy(() -> eliminacionUsuario.eliminar(UUID.randomUUID().toString()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private record Datos(List<Perro> perros, List<String> imagenesPerro, List<String> imagenesPerfil) {}
+
+    // Perfil con 2 imágenes, tokens y `perros` perros con 2 imágenes cada uno
+    private Datos sembrar(Usuario usuario, int perros) {
+        PerfilUsuario perfil = new PerfilUsuario();
+        perfil.setUsuario(usuario);
+        em.persist(perfil);
+        List<String> imagenesPerfil = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            String id = UUID.randomUUID().toString();
+            ImagenPerfil img = new ImagenPerfil();
+            img.setPerfilUsuario(perfil);
+            img.setNombreArchivo(id + ".jpg");
+            img.setRutaArchivo("/perfiles/" + id + ".jpg");
+            em.persist(img);
+            imagenesPerfil.add(id);
+        }
+
+        VerificationToken verificacion = new VerificationToken();
+        verificacion.setUsuario(usuario);
+        verificacion.setCanal(VerificationChannel.EMAIL);
+        verificacion.setExpiraEn(new Timestamp(System.currentTimeMillis() + 60_000));
+        em.persist(verificacion);
+        ResetToken reset = new ResetToken();
+        reset.setUsuario(usuario);
+        reset.setToken(UUID.randomUUID().toString());
+        reset.setExpiraEn(new Timestamp(System.currentTimeMillis() + 60_000));
+        em.persist(reset);
+
+        List<Perro> lista = new ArrayList<>();
+        List<String> imagenesPerro = new ArrayList<>();
+        for (int i = 0; i < perros; i++) {
+            Perro perro = Perro.builder()
+                    .id(UUID.randomUUID().toString())
+                    .nombre("Perro " + i)
+                    .estadoRevision(PerroEstadoRevision.APROBADO)
+                    .estadoAdopcion(PerroEstadoAdopcion.DISPONIBLE)
+                    .usuario(usuario)
+                    .build();
+            em.persist(perro);
+            lista.add(perro);
+            for (int j = 0; j < 2; j++) {
+                ImagenPerro img = ImagenPerro.builder()
+                        .id(UUID.randomUUID().toString())
+                        .perro(perro)
+                        .principal(j == 0)
+                        .build();
+                em.persist(img);
+                imagenesPerro.add(img.getId());
+            }
+        }
+        return new Datos(lista, imagenesPerro, imagenesPerfil);
+    }
+
+    // Solicitud de adopción con un documento; devuelve el id del documento
+    private String solicitud(Usuario solicitante, Perro perro) {
+        SolicitudAdopcion s = SolicitudAdopcion.builder()
+                .id(UUID.randomUUID().toString())
+                .perro(perro)
+                .solicitante(solicitante)
+                .estado(SolicitudEstado.PENDIENTE)
+                .build();
+        em.persist(s);
+        DocumentoSolicitud d = DocumentoSolicitud.builder()
+                .id(UUID.randomUUID().toString())
+                .solicitud(s)
+                .tipoDocumento("Identificacion")
+                .urlDocumento("/documentos/x")
+                .build();
+        em.persist(d);
+        return d.getId();
+    }
+
+    private Usuario usuario(String nombre) {
+        Usuario u = new Usuario();
+        u.setUserName(nombre);
+        u.setEmail(nombre + "@example.com");
+        u.setPassword("x");
+        u.setRol(Roles.ROLE_USER);
+        em.persist(u);
+        return u;
+    }
+
+    private long contar(String jpql, Usuario usuario) {
+        return em.getEntityManager().createQuery(jpql, Long.class).setParameter("u", usuario.getId()).getSingleResult();
+    }
+}
@@ -0,0 +1,101 @@
+package com.cut.cardona.service.auth;
+
+import com.cut.cardona.errores.IntentosExcedidosException;
+import com.cut.cardona.errores.ValidacionDeIntegridad;
+import com.cut.cardona.modelo.dto.auth.AuthenticationRequest;
+import com.cut.cardona.modelo.usuarios.RepositorioUsuario;
+import com.cut.cardona.security.EjecutorAutenticacion;
+import com.cut.cardona.security.TokenService;
+import com.cut.cardona.service.perfil.PerfilService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Con umbral 1 una reserva que no se cierra bloquearía el siguiente intento: cada desenlace del login (credenciales
+ * incorrectas, cuenta sin verificar, error inesperado, pool saturado) deja el contador como corresponde.
+ */
+class AuthenticationServiceTest {
+
+    private final AuthenticationManager authenticationManager = mock(AuthenticationManager.class);
+    private final IntentosLogin intentosLogin = new IntentosLogin(1, 100, 60_000, 900, 900);
+    // Hilos daemon: no hace falta detenerlo
+    private final EjecutorAutenticacion ejecutor = new EjecutorAutenticacion(1, 4);
+    private final AuthenticationRequest request = new AuthenticationRequest("ana", "secreto");
+
+    @AfterEach
+    void detener() {
+        intentosLogin.detener();
+    }
+
+    @Test
+    void unaCuentaSinVerificarNoDejaLaReservaTomada() {
+        when(authenticationManager.authenticate(any())).thenThrow(new DisabledException("sin verificar"));
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(causa(() -> servicio(ejecutor).authenticate(request, "ip").join()))
+                    .isInstanceOf(ValidacionDeIntegridad.class);
+        }
+    }
+
+    @Test
+    void unErrorInesperadoNoDejaLaReservaTomada() {
+        when(authenticationManager.authenticate(any())).thenThrow(new IllegalStateException("bd caída"));
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(causa(() -> servicio(ejecutor).authenticate(request, "ip").join()))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Test
+    void conElPoolSaturadoNoSeReservaNada() {
+        EjecutorAutenticacion saturado = mock(EjecutorAutenticacion.class);
+        when(saturado.ejecutar(any())).thenThrow(new RejectedExecutionException("lleno"));
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> servicio(saturado).authenticate(request, "ip"))
+                    .isInstanceOf(RejectedExecutionException.class);
+        }
+    }
+
+    @Test
+    void unaContrasenaIncorrectaCuentaComoFallo() {
+        when(authenticationManager.authenticate(any())).thenThrow(new BadCredentialsException("no"));
+
+        assertThat(causa(() -> servicio(ejecutor).authenticate(request, "ip").join()))
+                .isInstanceOf(ValidacionDeIntegridad.class);
+        assertThatThrownBy(() -> servicio(ejecutor).authenticate(request, "ip"))
+                .isInstanceOf(IntentosExcedidosException.class);
+    }
+
+    @Test
+    void unRefreshTokenInvalidoEsUnaValidacionNoUnErrorInterno() {
+        // El mock de TokenService devuelve null, igual que getSubject con un token malo, caducado o revocado
+        assertThatThrownBy(() -> servicio(ejecutor).refreshToken("basura"))
+                .isInstanceOf(ValidacionDeIntegridad.class)
+                .hasMessage("Refresh token inválido o expirado");
+    }
+
+    private AuthenticationService servicio(EjecutorAutenticacion ejecutorAutenticacion) {
+        return new AuthenticationService(authenticationManager, mock(TokenService.class), mock(RepositorioUsuario.class),
+                mock(PerfilService.class), intentosLogin, ejecutorAutenticacion);
+    }
+
+    private static Throwable causa(Runnable r) {
+        Throwable t = catchThrowable(r::run);
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+}
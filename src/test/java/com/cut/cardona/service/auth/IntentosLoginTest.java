@@ -0,0 +1,132 @@
+package com.cut.cardona.service.auth;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reserva atómica de intentos de login: una ráfaga simultánea no supera el umbral aunque ningún intento haya
+ * terminado, pasado el umbral solo hay un intento en vuelo a la vez, y cada desenlace cierra su reserva.
+ */
+class IntentosLoginTest {
+
+    private static final long ESPERA_BASE_MS = 100;
+
+    private final List<IntentosLogin> instancias = new ArrayList<>();
+
+    @AfterEach
+    void detener() {
+        instancias.forEach(IntentosLogin::detener);
+    }
+
+    @Test
+    void unaRafagaSimultaneaNoSuperaElUmbral() throws Exception {
+        IntentosLogin intentos = nuevo(5, 100);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch salida = new CountDownLatch(1);
+        try {
+            List<Future<Long>> reservas = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                reservas.add(pool.submit(() -> {
+                    salida.await();
+                    return intentos.reservar("ana", "10.0.0.1");
+                }));
+            }
+            salida.countDown();
+            int reservadas = 0;
+            for (Future<Long> r : reservas) if (r.get(5, TimeUnit.SECONDS) == 0) reservadas++;
+
+            assertThat(reservadas).isEqualTo(5);
+        } finally {
+            pool.shutdownNow();
+        }
+        // Los 5 fallan: el usuario queda en espera
+        for (int i = 0; i < 5; i++) intentos.registrarFallo("ana", "10.0.0.1");
+        assertThat(intentos.reservar("ana", "10.0.0.1")).isPositive();
+    }
+
+    @Test
+    void bajoElUmbralCabenLosFallosQueFaltan() {
+        IntentosLogin intentos = nuevo(3, 100);
+        intentos.reservar("ana", "ip");
+        intentos.registrarFallo("ana", "ip");
+
+        // Falta llegar a 2 fallos del umbral: 2 intentos a la vez
+        assertThat(intentos.reservar("ana", "ip")).isZero();
+        assertThat(intentos.reservar("ana", "ip")).isZero();
+        assertThat(intentos.reservar("ana", "ip")).isEqualTo(1);
+    }
+
+    @Test
+    void pasadoElUmbralUnIntentoCadaVezConEsperaExponencial() throws InterruptedException {
+        IntentosLogin intentos = nuevo(2, 100);
+        for (int i = 0; i < 2; i++) {
+            assertThat(intentos.reservar("ana", "ip")).isZero();
+            intentos.registrarFallo("ana", "ip");
+        }
+        assertThat(intentos.reservar("ana", "ip")).as("en espera").isPositive();
+
+        Thread.sleep(ESPERA_BASE_MS + 50);
+        assertThat(intentos.reservar("ana", "ip")).isZero();
+        assertThat(intentos.reservar("ana", "ip")).as("otro en vuelo").isPositive();
+        intentos.registrarFallo("ana", "ip");
+
+        // Tercer fallo: la espera se duplica
+        Thread.sleep(ESPERA_BASE_MS + 50);
+        assertThat(intentos.reservar("ana", "ip")).isPositive();
+        Thread.sleep(ESPERA_BASE_MS);
+        assertThat(intentos.reservar("ana", "ip")).isZero();
+    }
+
+    @Test
+    void liberarDevuelveLaReservaSinContarFallo() {
+        IntentosLogin intentos = nuevo(1, 100);
+
+        assertThat(intentos.reservar("ana", "ip")).isZero();
+        assertThat(intentos.reservar("ana", "ip")).isPositive();
+        intentos.liberar("ana", "ip");
+
+        assertThat(intentos.reservar("ana", "ip")).isZero();
+    }
+
+    @Test
+    void elExitoLimpiaElUsuarioPeroNoLaIp() {
+        IntentosLogin intentos = nuevo(2, 3);
+        intentos.reservar("ana", "ip");
+        intentos.registrarFallo("ana", "ip");
+        intentos.reservar("bea", "ip");
+        intentos.registrarFallo("bea", "ip");
+
+        intentos.reservar("ana", "ip");
+        intentos.registrarExito("ana", "ip");
+
+        // ana vuelve a empezar; la IP lleva 2 fallos de 3 y solo admite uno más a la vez
+        assertThat(intentos.reservar("ana", "ip")).isZero();
+        assertThat(intentos.reservar("carlos", "ip")).isPositive();
+    }
+
+    @Test
+    void unRechazoPorIpNoConsumeLaReservaDelUsuario() {
+        IntentosLogin intentos = nuevo(1, 1);
+        assertThat(intentos.reservar("bea", "ip")).isZero();
+
+        // La IP está ocupada: ana no entra, y su propia reserva no queda tomada
+        assertThat(intentos.reservar("ana", "ip")).isPositive();
+        assertThat(intentos.reservar("ana", "otra-ip")).isZero();
+    }
+
+    private IntentosLogin nuevo(int umbralUsuario, int umbralIp) {
+        IntentosLogin i = new IntentosLogin(umbralUsuario, umbralIp, ESPERA_BASE_MS, 900, 900);
+        instancias.add(i);
+        return i;
+    }
+}
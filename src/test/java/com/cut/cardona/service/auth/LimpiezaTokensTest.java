@@ -0,0 +1,192 @@
+package com.cut.cardona.service.auth;
+
+import com.cut.cardona.modelo.usuarios.RepositorioResetToken;
+import com.cut.cardona.modelo.usuarios.RepositorioVerificationToken;
+import com.cut.cardona.modelo.usuarios.ResetToken;
+import com.cut.cardona.modelo.usuarios.Roles;
+import com.cut.cardona.modelo.usuarios.Usuario;
+import com.cut.cardona.modelo.usuarios.VerificationChannel;
+import com.cut.cardona.modelo.usuarios.VerificationToken;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Purga de tokens de verificación y de reset contra las tablas reales: borra los caducados sin usar y los usados
+ * fuera de la retención en lotes de como mucho 'lote' ids, conserva los vigentes y los usados dentro de la
+ * retención aunque hayan caducado, y un error cuenta en las estadísticas sin cortar la siguiente ejecución.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:limpiezatokens;MODE=MySQL;DATABASE_TO_LOWER=TRUE"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LimpiezaTokensTest {
+
+    private static final int LOTE = 3;
+
+    @Autowired
+    private RepositorioVerificationToken repositorioVerificationToken;
+
+    @Autowired
+    private RepositorioResetToken repositorioResetToken;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate tx;
+    private Usuario usuario;
+    private final List<LimpiezaTokens> instancias = new ArrayList<>();
+
+    @BeforeEach
+    void preparar() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(st -> {
+            repositorioVerificationToken.deleteAllInBatch();
+            repositorioResetToken.deleteAllInBatch();
+            em.createQuery("DELETE FROM Usuario").executeUpdate();
+            usuario = new Usuario();
+            usuario.setUserName("ana");
+            usuario.setEmail("ana@example.com");
+            usuario.setPassword("x");
+            usuario.setRol(Roles.ROLE_USER);
+            em.persist(usuario);
+        });
+    }
+
+    @AfterEach
+    void detener() {
+        instancias.forEach(LimpiezaTokens::detener);
+    }
+
+    @Test
+    void borraCaducadosYUsadosFueraDeLaRetencion() {
+        Set<String> conservados = new HashSet<>();
+        for (int i = 0; i < 7; i++) verificacion(horas(-1), null);
+        conservados.add(verificacion(horas(1), null));
+        for (int i = 0; i < 2; i++) verificacion(horas(1), horas(-30));
+        conservados.add(verificacion(horas(1), horas(-2)));
+        for (int i = 0; i < 4; i++) reset(horas(-1), null);
+        reset(horas(-40), horas(-30));
+        conservados.add(reset(horas(1), null));
+
+        LimpiezaTokens limpieza = limpieza(repositorioVerificationToken, repositorioResetToken);
+        limpieza.ejecutar();
+
+        Set<String> quedan = new HashSet<>();
+        repositorioVerificationToken.findAll().forEach(t -> quedan.add(t.getId()));
+        repositorioResetToken.findAll().forEach(t -> quedan.add(t.getId()));
+        assertThat(quedan).isEqualTo(conservados);
+        LimpiezaTokens.Estadisticas e = limpieza.estadisticas();
+        assertThat(e.verificacionPurgados()).isEqualTo(9);
+        assertThat(e.resetPurgados()).isEqualTo(5);
+        assertThat(e.ultima().verificacion()).isEqualTo(9);
+        assertThat(e.ejecuciones()).isEqualTo(1);
+        assertThat(e.errores()).isZero();
+    }
+
+    @Test
+    void unTokenUsadoSeConservaDuranteLaRetencionAunqueHayaCaducado() {
+        // Un reset caduca en minutos: si la caducidad bastara, la retención no protegería nunca a un usado
+        String usadoReciente = reset(horas(-1), horas(-2));
+        reset(horas(-1), horas(-25));
+        String verificadoReciente = verificacion(horas(-3), horas(-4));
+
+        limpieza(repositorioVerificationToken, repositorioResetToken).ejecutar();
+
+        assertThat(repositorioResetToken.findAll()).extracting(ResetToken::getId).containsExactly(usadoReciente);
+        assertThat(repositorioVerificationToken.findAll()).extracting(VerificationToken::getId).containsExactly(verificadoReciente);
+    }
+
+    @Test
+    void borraEnLotesDeComoMuchoElTamanoConfigurado() {
+        for (int i = 0; i < 7; i++) verificacion(horas(-1), null);
+        RepositorioVerificationToken espia = mock(RepositorioVerificationToken.class, delegatesTo(repositorioVerificationToken));
+
+        limpieza(espia, repositorioResetToken).ejecutar();
+
+        // 3 + 3 + 1: la tercera página viene incompleta y no hace falta otra consulta
+        verify(espia, times(3)).deleteByIdIn(argThat(ids -> ids.size() <= LOTE));
+        verify(espia, times(3)).findIdsExpirados(any(), any());
+        assertThat(repositorioVerificationToken.count()).isZero();
+    }
+
+    @Test
+    void unErrorCuentaYNoImpideLaSiguienteEjecucion() {
+        verificacion(horas(-1), null);
+        RepositorioVerificationToken fallido = mock(RepositorioVerificationToken.class, delegatesTo(repositorioVerificationToken));
+        doThrow(new IllegalStateException("bd caída")).when(fallido).deleteByIdIn(anyCollection());
+        LimpiezaTokens limpieza = limpieza(fallido, repositorioResetToken);
+
+        limpieza.ejecutar();
+
+        assertThat(limpieza.estadisticas().errores()).isEqualTo(1);
+        assertThat(limpieza.estadisticas().ejecuciones()).isEqualTo(1);
+        assertThat(repositorioVerificationToken.count()).isEqualTo(1);
+
+        LimpiezaTokens sana = limpieza(repositorioVerificationToken, repositorioResetToken);
+        sana.ejecutar();
+        assertThat(repositorioVerificationToken.count()).isZero();
+    }
+
+    // Intervalo 0: sin ejecuciones programadas, solo las que lanza la prueba. Retención de 24 h
+    private LimpiezaTokens limpieza(RepositorioVerificationToken verificacion, RepositorioResetToken reset) {
+        LimpiezaTokens l = new LimpiezaTokens(verificacion, reset, 0, LOTE, 24);
+        instancias.add(l);
+        return l;
+    }
+
+    private String verificacion(Timestamp expira, Timestamp usado) {
+        VerificationToken t = new VerificationToken();
+        t.setUsuario(usuario);
+        t.setCanal(VerificationChannel.EMAIL);
+        t.setToken(UUID.randomUUID().toString());
+        t.setExpiraEn(expira);
+        t.setUsadoEn(usado);
+        return repositorioVerificationToken.save(t).getId();
+    }
+
+    private String reset(Timestamp expira, Timestamp usado) {
+        ResetToken t = new ResetToken();
+        t.setUsuario(usuario);
+        t.setToken(UUID.randomUUID().toString());
+        t.setExpiraEn(expira);
+        t.setUsadoEn(usado);
+        return repositorioResetToken.save(t).getId();
+    }
+
+    private static Timestamp horas(long h) {
+        return Timestamp.from(Instant.now().plus(Duration.ofHours(h)));
+    }
+}
@@ -0,0 +1,147 @@
+package com.cut.cardona.service.imagenes;
+
+import com.cut.cardona.service.infra.storage.VariantesImagen;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Caché de imágenes acotada por bytes: expulsa por LRU (el acceso cuenta como uso), nunca supera el límite,
+ * rechaza lo que excede el máximo por entrada, invalida la imagen junto con sus variantes y sirve cada lectura
+ * desde una vista independiente del buffer.
+ */
+class CacheImagenesPerroTest {
+
+    @Test
+    void expulsaLaMenosUsadaRecientemente() {
+        CacheImagenesPerro cache = new CacheImagenesPerro(300, 100, false);
+        guardar(cache, "a", 100);
+        guardar(cache, "b", 100);
+        guardar(cache, "c", 100);
+        // Leer "a" la convierte en la más reciente: la siguiente expulsión se lleva "b"
+        assertThat(cache.obtener("a")).isNotNull();
+
+        guardar(cache, "d", 100);
+
+        assertThat(cache.obtener("b")).isNull();
+        assertThat(cache.obtener("a")).isNotNull();
+        assertThat(cache.obtener("c")).isNotNull();
+        assertThat(cache.obtener("d")).isNotNull();
+        assertThat(cache.estadisticas().expulsiones()).isEqualTo(1);
+    }
+
+    @Test
+    void nuncaSuperaElLimiteDeBytes() {
+        CacheImagenesPerro cache = new CacheImagenesPerro(1000, 400, false);
+        for (int i = 0; i < 50; i++) {
+            guardar(cache, "img" + i, 50 + (i * 37) % 350);
+            assertThat(cache.estadisticas().bytes()).isLessThanOrEqualTo(1000);
+        }
+        // Una entrada grande desplaza a varias pequeñas
+        guardar(cache, "grande", 400);
+        CacheImagenesPerro.Estadisticas e = cache.estadisticas();
+        assertThat(e.bytes()).isLessThanOrEqualTo(1000);
+        assertThat(cache.obtener("grande")).isNotNull();
+        assertThat(e.entradas()).isPositive();
+    }
+
+    @Test
+    void reemplazarUnaEntradaNoCuentaDosVeces() {
+        CacheImagenesPerro cache = new CacheImagenesPerro(1000, 500, false);
+        guardar(cache, "a", 300);
+        guardar(cache, "a", 200);
+
+        assertThat(cache.estadisticas().bytes()).isEqualTo(200);
+        assertThat(cache.estadisticas().entradas()).isEqualTo(1);
+        assertThat(cache.obtener("a").longitud()).isEqualTo(200);
+    }
+
+    @Test
+    void loQueExcedeElMaximoPorEntradaNoSeGuarda() {
+        CacheImagenesPerro cache = new CacheImagenesPerro(1000, 100, false);
+
+        assertThat(cache.admite(100)).isTrue();
+        assertThat(cache.admite(101)).isFalse();
+        assertThat(cache.admite(0)).isFalse();
+        // Se devuelve la entrada para servirla, pero no ocupa sitio
+        CacheImagenesPerro.Entrada e = guardar(cache, "grande", 150);
+        assertThat(e.longitud()).isEqualTo(150);
+        assertThat(cache.obtener("grande")).isNull();
+        assertThat(cache.estadisticas().bytes()).isZero();
+    }
+
+    @Test
+    void elMaximoPorEntradaNoPasaDelTotal() {
+        CacheImagenesPerro cache = new CacheImagenesPerro(100, 1000, false);
+
+        assertThat(cache.admite(101)).isFalse();
+        assertThat(cache.estadisticas().maxBytesEntrada()).isEqualTo(100);
+    }
+
+    @Test
+    void deshabilitadaNoGuardaNada() {
+        CacheImagenesPerro cache = new CacheImagenesPerro(0, 100, false);
+
+        assertThat(cache.habilitada()).isFalse();
+        assertThat(cache.admite(10)).isFalse();
+        guardar(cache, "a", 10);
+        assertThat(cache.obtener("a")).isNull();
+    }
+
+    @Test
+    void invalidarQuitaLaImagenYSusVariantes() {
+        CacheImagenesPerro cache = new CacheImagenesPerro(10_000, 100, false);
+        String variante = VariantesImagen.nombreArchivo("a", 480, VariantesImagen.WEBP);
+        guardar(cache, "a", 10);
+        guardar(cache, variante, 10);
+        guardar(cache, "b", 10);
+
+        cache.invalidar("a");
+
+        assertThat(cache.obtener("a")).isNull();
+        assertThat(cache.obtener(variante)).isNull();
+        assertThat(cache.obtener("b")).isNotNull();
+        assertThat(cache.estadisticas().bytes()).isEqualTo(10);
+        assertThat(cache.estadisticas().invalidaciones()).isEqualTo(2);
+    }
+
+    @Test
+    void cadaLecturaUsaSuPropiaVista() throws Exception {
+        CacheImagenesPerro cache = new CacheImagenesPerro(1000, 500, true);
+        byte[] datos = guardar(cache, "a", 300).recurso().getInputStream().readAllBytes();
+
+        CacheImagenesPerro.Entrada e = cache.obtener("a");
+        assertThat(e.datos().isDirect()).isTrue();
+        try (InputStream uno = e.recurso().getInputStream(); InputStream dos = e.recurso().getInputStream()) {
+            // Avanzar una lectura no mueve la otra ni el buffer cacheado
+            assertThat(uno.skip(100)).isEqualTo(100);
+            assertThat(uno.readAllBytes()).isEqualTo(Arrays.copyOfRange(datos, 100, 300));
+            assertThat(dos.readAllBytes()).isEqualTo(datos);
+        }
+        assertThat(e.recurso().contentLength()).isEqualTo(300);
+        assertThat(cache.obtener("a").recurso().getInputStream().readAllBytes()).isEqualTo(datos);
+    }
+
+    @Test
+    void cuentaAciertosYFallos() {
+        CacheImagenesPerro cache = new CacheImagenesPerro(1000, 500, false);
+        guardar(cache, "a", 10);
+
+        cache.obtener("a");
+        cache.obtener("a");
+        cache.obtener("b");
+
+        assertThat(cache.estadisticas().aciertos()).isEqualTo(2);
+        assertThat(cache.estadisticas().fallos()).isEqualTo(1);
+    }
+
+    private static CacheImagenesPerro.Entrada guardar(CacheImagenesPerro cache, String id, int longitud) {
+        ByteBuffer buf = cache.reservar(longitud);
+        for (int i = 0; i < longitud; i++) buf.put((byte) (i * 7 + id.hashCode()));
+        return cache.guardar(id, buf, "image/jpeg", "\"" + id + "\"", 0);
+    }
+}
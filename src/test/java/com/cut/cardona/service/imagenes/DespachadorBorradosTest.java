@@ -0,0 +1,158 @@
+package com.cut.cardona.service.imagenes;
+
+import com.cut.cardona.service.infra.storage.AlmacenamientoMemoria;
+import com.cut.cardona.service.infra.storage.TipoImagen;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Despacho de borrados con un storage en memoria y transacciones reales de Spring (sin base de datos): los ids de
+ * una transacción salen en un solo deleteMany por tipo tras el commit, nada sale si se revierte, y los reintentos
+ * llevan solo los ids que el storage dejó pendientes.
+ */
+class DespachadorBorradosTest {
+
+    private static final long ESPERA_BASE_MS = 200;
+
+    private final AlmacenamientoMemoria storage = new AlmacenamientoMemoria();
+    private final CacheImagenesPerro cache = new CacheImagenesPerro(1024, 1024, false);
+    // Un hilo: las tareas se ejecutan en orden y un marcador enviado después indica que las anteriores terminaron
+    private final DespachadorBorrados despachador = new DespachadorBorrados(storage, cache, 1, 3, ESPERA_BASE_MS);
+    private final TransactionTemplate tx = new TransactionTemplate(new TransaccionesMemoria());
+
+    @AfterEach
+    void detener() throws InterruptedException {
+        despachador.detener();
+    }
+
+    @Test
+    void unSoloBorradoPorTipoTrasElCommit() {
+        guardar("a", "b", "c", "x");
+        cache.guardar("a", ByteBuffer.wrap(new byte[]{1}), "image/jpeg", "\"a\"", 0);
+
+        tx.executeWithoutResult(st -> {
+            despachador.programar(TipoImagen.PERRO, List.of("a", "b"));
+            despachador.programar(TipoImagen.PERFIL, List.of("x"));
+            despachador.programar(TipoImagen.PERRO, List.of("b", "c"));
+            assertThat(storage.borrados()).as("nada antes del commit").isEmpty();
+        });
+
+        esperar(() -> storage.borrados().size() == 2);
+        assertThat(storage.borrados()).containsExactlyInAnyOrder(List.of("a", "b", "c"), List.of("x"));
+        assertThat(storage.ids()).isEmpty();
+        assertThat(cache.obtener("a")).isNull();
+    }
+
+    @Test
+    void nadaSeBorraSiLaTransaccionSeRevierte() {
+        guardar("a", "b", "marcador");
+
+        tx.executeWithoutResult(st -> {
+            despachador.programar(TipoImagen.PERRO, List.of("a"));
+            st.setRollbackOnly();
+        });
+        // La transacción siguiente empieza limpia: no arrastra los ids de la revertida
+        tx.executeWithoutResult(st -> despachador.programar(TipoImagen.PERRO, List.of("b")));
+        despachador.enviar(TipoImagen.PERRO, List.of("marcador"));
+
+        esperar(() -> !storage.existe("marcador"));
+        assertThat(storage.borrados()).containsExactly(List.of("b"), List.of("marcador"));
+        assertThat(storage.existe("a")).isTrue();
+    }
+
+    @Test
+    void sinTransaccionSeEnviaEnseguida() {
+        guardar("a");
+
+        despachador.programar(TipoImagen.PERRO, List.of("a"));
+
+        esperar(() -> !storage.existe("a"));
+        assertThat(storage.borrados()).containsExactly(List.of("a"));
+    }
+
+    @Test
+    void soloSeReintentanLosPendientes() {
+        guardar("a", "b", "c");
+        storage.fallarAlBorrar("b");
+
+        despachador.enviar(TipoImagen.PERRO, List.of("a", "b", "c"));
+        esperar(() -> storage.borrados().size() == 1);
+        storage.dejarDeFallar();
+
+        esperar(() -> storage.borrados().size() == 2);
+        assertThat(storage.borrados()).containsExactly(List.of("a", "b", "c"), List.of("b"));
+        assertThat(storage.ids()).isEmpty();
+    }
+
+    @Test
+    void seAbandonaTrasAgotarLosIntentosConEsperaCreciente() {
+        guardar("a", "b");
+        storage.fallarAlBorrar("b");
+        long t0 = System.nanoTime();
+
+        despachador.enviar(TipoImagen.PERRO, List.of("a", "b"));
+
+        // Intento 1, reintento tras 200 ms y otro tras 400 ms más; con 3 intentos no hay cuarto
+        esperar(() -> storage.borrados().size() == 3);
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+        assertThat(ms).isGreaterThanOrEqualTo(3 * ESPERA_BASE_MS);
+        assertThat(storage.borrados()).containsExactly(List.of("a", "b"), List.of("b"), List.of("b"));
+        // Un cuarto intento llegaría a los 800 ms del tercero
+        dormir(4 * ESPERA_BASE_MS + 200);
+        assertThat(storage.borrados()).hasSize(3);
+        assertThat(storage.ids()).containsExactly("b");
+    }
+
+    private void guardar(String... ids) {
+        for (String id : ids) storage.agregar(id, Instant.now());
+    }
+
+    private static void esperar(BooleanSupplier condicion) {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (!condicion.getAsBoolean()) {
+            if (System.currentTimeMillis() > limite) throw new AssertionError("La condición no se cumplió a tiempo");
+            dormir(10);
+        }
+    }
+
+    private static void dormir(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
+        }
+    }
+
+    // Gestor de transacciones sin recurso: solo activa la sincronización, que es lo que usa el despachador
+    private static class TransaccionesMemoria extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.cut.cardona.service.imagenes;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Proxy del CDN contra un servidor HTTP local: un cuerpo que se detiene a mitad se aborta al vencer el plazo y
+ * devuelve su permiso una sola vez, y con el único permiso ocupado la siguiente petición se rechaza.
+ */
+class ProxyImagenesCdnTest {
+
+    private static final int LONGITUD = 1000;
+    private static final long PLAZO_CUERPO_MS = 500;
+
+    private HttpServer servidor;
+    private ExecutorService hilosServidor;
+    private ProxyImagenesCdn proxy;
+    private String base;
+
+    @BeforeEach
+    void arrancar() throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        servidor.createContext("/completa", ex -> responder(ex, LONGITUD, false));
+        servidor.createContext("/atascada", ex -> responder(ex, 100, true));
+        servidor.createContext("/no-existe", ex -> {
+            ex.sendResponseHeaders(404, -1);
+            ex.close();
+        });
+        hilosServidor = Executors.newCachedThreadPool();
+        servidor.setExecutor(hilosServidor);
+        servidor.start();
+        base = "http://127.0.0.1:" + servidor.getAddress().getPort();
+        // Un solo permiso y 50 ms de espera por él: se ve enseguida si quedó tomado
+        proxy = new ProxyImagenesCdn(1000, 2000, 1, 50, PLAZO_CUERPO_MS);
+    }
+
+    @AfterEach
+    void parar() {
+        proxy.detener();
+        servidor.stop(0);
+        hilosServidor.shutdownNow();
+    }
+
+    @Test
+    void unCuerpoCompletoSeLeeYDevuelveElPermiso() throws Exception {
+        ProxyImagenesCdn.Respuesta r = proxy.get(base + "/completa");
+
+        assertThat(r.mediaType()).isEqualTo("image/jpeg");
+        assertThat(r.length()).isEqualTo(LONGITUD);
+        try (InputStream in = r.body()) {
+            assertThat(in.readAllBytes()).hasSize(LONGITUD);
+        }
+        proxy.get(base + "/completa").body().close();
+    }
+
+    @Test
+    void unCuerpoAtascadoSeAbortaAlVencerElPlazo() throws Exception {
+        ProxyImagenesCdn.Respuesta r = proxy.get(base + "/atascada");
+
+        // Sin plazo la lectura esperaría los 10 s del servidor: el límite del test lo convierte en fallo
+        assertThatThrownBy(() -> assertTimeoutPreemptively(Duration.ofMillis(PLAZO_CUERPO_MS + 2000),
+                () -> r.body().readAllBytes())).isInstanceOf(IOException.class);
+
+        // El permiso volvió solo; cerrar otra vez no lo devuelve dos veces
+        r.body().close();
+        ProxyImagenesCdn.Respuesta otra = proxy.get(base + "/completa");
+        assertThatThrownBy(() -> proxy.get(base + "/completa")).isInstanceOf(RejectedExecutionException.class);
+        otra.body().close();
+    }
+
+    @Test
+    void conElPermisoOcupadoSeRechaza() throws Exception {
+        ProxyImagenesCdn.Respuesta abierta = proxy.get(base + "/completa");
+
+        assertThatThrownBy(() -> proxy.get(base + "/completa")).isInstanceOf(RejectedExecutionException.class);
+        assertThatThrownBy(() -> proxy.head(base + "/completa")).isInstanceOf(RejectedExecutionException.class);
+
+        abierta.body().close();
+        assertThat(proxy.head(base + "/completa").mediaType()).isEqualTo("image/jpeg");
+    }
+
+    @Test
+    void unErrorDelUpstreamDevuelveNullYElPermiso() throws Exception {
+        assertThat(proxy.get(base + "/no-existe")).isNull();
+        assertThat(proxy.head(base + "/no-existe")).isNull();
+
+        proxy.get(base + "/completa").body().close();
+    }
+
+    // Anuncia LONGITUD bytes y envía 'enviados'; si se atasca, no termina hasta que el cliente cierra
+    private static void responder(HttpExchange ex, int enviados, boolean atascar) throws IOException {
+        ex.getResponseHeaders().add("Content-Type", "image/jpeg");
+        if ("HEAD".equals(ex.getRequestMethod())) {
+            ex.sendResponseHeaders(200, -1);
+            ex.close();
+            return;
+        }
+        ex.sendResponseHeaders(200, LONGITUD);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(new byte[enviados]);
+            out.flush();
+            if (atascar) Thread.sleep(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // El cliente cerró la conexión
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.cut.cardona.service.imagenes;
+
+import com.cut.cardona.modelo.imagenes.RepositorioStagingSubida;
+import com.cut.cardona.modelo.imagenes.StagingSubida;
+import com.cut.cardona.modelo.perros.ImagenPerro;
+import com.cut.cardona.modelo.perros.Perro;
+import com.cut.cardona.modelo.perros.RepositorioImagenPerro;
+import com.cut.cardona.modelo.perros.RepositorioPerro;
+import com.cut.cardona.modelo.perros.enums.PerroEstadoAdopcion;
+import com.cut.cardona.modelo.perros.enums.PerroEstadoRevision;
+import com.cut.cardona.modelo.usuarios.Roles;
+import com.cut.cardona.modelo.usuarios.Usuario;
+import com.cut.cardona.service.infra.storage.AlmacenamientoMemoria;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Una ejecución del recolector de huérfanas contra staging_subidas e imagenes_perros reales y un storage en memoria
+ * paginado: la vía rápida de staging, el periodo de gracia (lo reciente sobrevive aunque no tenga fila) y la
+ * reanudación del barrido desde el cursor de la ejecución anterior.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:huerfanas;MODE=MySQL;DATABASE_TO_LOWER=TRUE"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RecolectorImagenesHuerfanasTest {
+
+    private static final Duration ANTIGUA = Duration.ofDays(2);
+    private static final Duration RECIENTE = Duration.ofHours(1);
+
+    @Autowired
+    private RepositorioImagenPerro repositorioImagenPerro;
+
+    @Autowired
+    private RepositorioPerro repositorioPerro;
+
+    @Autowired
+    private RepositorioStagingSubida repositorioStagingSubida;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AlmacenamientoMemoria storage = new AlmacenamientoMemoria();
+    private final CacheImagenesPerro cache = new CacheImagenesPerro(0, 0, false);
+    private TransactionTemplate tx;
+    private RecolectorImagenesHuerfanas recolector;
+    private Perro perro;
+
+    @BeforeEach
+    void preparar() {
+        tx = new TransactionTemplate(transactionManager);
+        repositorioStagingSubida.deleteAllInBatch();
+        tx.executeWithoutResult(st -> {
+            repositorioImagenPerro.deleteAllInBatch();
+            repositorioPerro.deleteAllInBatch();
+            em.createQuery("DELETE FROM Usuario").executeUpdate();
+            Usuario usuario = new Usuario();
+            usuario.setUserName("dueno");
+            usuario.setEmail("dueno@example.com");
+            usuario.setPassword("x");
+            usuario.setRol(Roles.ROLE_USER);
+            em.persist(usuario);
+            perro = Perro.builder()
+                    .id(UUID.randomUUID().toString())
+                    .nombre("Perro")
+                    .estadoRevision(PerroEstadoRevision.APROBADO)
+                    .estadoAdopcion(PerroEstadoAdopcion.DISPONIBLE)
+                    .usuario(usuario)
+                    .build();
+            em.persist(perro);
+        });
+        // Intervalo 0: sin ejecuciones programadas. Gracia de 24 h, páginas de 3 y 2 páginas por ejecución
+        recolector = new RecolectorImagenesHuerfanas(storage, repositorioImagenPerro, repositorioStagingSubida, cache,
+                0, 24, 3, 2);
+    }
+
+    @AfterEach
+    void detener() {
+        recolector.detener();
+    }
+
+    @Test
+    void laViaRapidaDeStagingBorraLasSubidasNuncaAsociadas() {
+        // Los objetos son recientes para el barrido: solo la fecha de staging puede hacer que se borren
+        String abandonada = objeto(RECIENTE);
+        String enCurso = objeto(RECIENTE);
+        String asociadaSinMarcar = objeto(RECIENTE);
+        String asociada = objeto(RECIENTE);
+        staging(abandonada, ANTIGUA, false);
+        staging(enCurso, RECIENTE, false);
+        staging(asociadaSinMarcar, ANTIGUA, false);
+        staging(asociada, ANTIGUA, true);
+        fila(asociadaSinMarcar);
+        fila(asociada);
+
+        recolector.ejecutar();
+
+        assertThat(storage.ids()).containsExactlyInAnyOrder(enCurso, asociadaSinMarcar, asociada);
+        // Las antiguas salen de staging (la asociada sin marcar también: ya tiene fila); la reciente se queda
+        assertThat(repositorioStagingSubida.findAll()).extracting(StagingSubida::getUuid).containsExactly(enCurso);
+        RecolectorImagenesHuerfanas.Ejecucion ultima = recolector.estadisticas().ultima();
+        assertThat(ultima.eliminadas()).isEqualTo(1);
+        assertThat(ultima.stagingEliminadas()).isEqualTo(3);
+    }
+
+    @Test
+    void elPeriodoDeGraciaProtegeLoReciente() {
+        String huerfana = objeto(ANTIGUA);
+        String reciente = objeto(RECIENTE);
+        String justoDentro = objeto(Duration.ofHours(23));
+        String conFila = objeto(ANTIGUA);
+        fila(conFila);
+
+        recolector.ejecutar();
+
+        assertThat(storage.ids()).containsExactlyInAnyOrder(reciente, justoDentro, conFila);
+        assertThat(storage.existe(huerfana)).isFalse();
+        assertThat(recolector.estadisticas().revisadas()).isEqualTo(4);
+        assertThat(recolector.estadisticas().eliminadas()).isEqualTo(1);
+        assertThat(recolector.estadisticas().pasadasCompletas()).isEqualTo(1);
+    }
+
+    @Test
+    void elBarridoSeReanudaDesdeElCursor() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) ids.add(objeto(ANTIGUA));
+        ids.sort(null);
+        // Una de cada dos sigue en uso
+        for (int i = 0; i < ids.size(); i += 2) fila(ids.get(i));
+
+        recolector.ejecutar();
+
+        // 2 páginas de 3: se revisaron las 6 primeras y el cursor quedó en la sexta
+        assertThat(storage.cursores()).containsExactly("null", ids.get(2));
+        assertThat(recolector.estadisticas().barridoEnCurso()).isTrue();
+        assertThat(storage.ids()).containsAll(ids.subList(6, 10));
+        assertThat(storage.ids()).doesNotContain(ids.get(1), ids.get(3), ids.get(5));
+
+        recolector.ejecutar();
+
+        assertThat(storage.cursores()).containsExactly("null", ids.get(2), ids.get(5), ids.get(8));
+        assertThat(recolector.estadisticas().barridoEnCurso()).isFalse();
+        assertThat(recolector.estadisticas().pasadasCompletas()).isEqualTo(1);
+        assertThat(recolector.estadisticas().revisadas()).isEqualTo(10);
+        assertThat(storage.ids()).containsExactlyInAnyOrder(ids.get(0), ids.get(2), ids.get(4), ids.get(6), ids.get(8));
+
+        // Terminada la pasada, la siguiente empieza otra vez desde el principio
+        recolector.ejecutar();
+        assertThat(storage.cursores()).element(4).isEqualTo("null");
+    }
+
+    @Test
+    void unBorradoPendienteSeReintentaEnLaSiguientePasada() {
+        String a = objeto(ANTIGUA);
+        String b = objeto(ANTIGUA);
+        storage.fallarAlBorrar(b);
+
+        recolector.ejecutar();
+
+        assertThat(storage.ids()).containsExactly(b);
+        assertThat(recolector.estadisticas().eliminadas()).isEqualTo(1);
+        assertThat(recolector.estadisticas().errores()).isZero();
+
+        storage.dejarDeFallar();
+        recolector.ejecutar();
+
+        assertThat(storage.existe(a)).isFalse();
+        assertThat(storage.ids()).isEmpty();
+        assertThat(recolector.estadisticas().eliminadas()).isEqualTo(2);
+    }
+
+    private String objeto(Duration antiguedad) {
+        String id = UUID.randomUUID().toString();
+        storage.agregar(id, Instant.now().minus(antiguedad));
+        return id;
+    }
+
+    private void staging(String id, Duration antiguedad, boolean asociado) {
+        repositorioStagingSubida.save(StagingSubida.builder()
+                .uuid(id)
+                .tipo(StagingSubidas.TIPO_PERRO)
+                .asociado(asociado)
+                .createdAt(Instant.now().minus(antiguedad))
+                .build());
+    }
+
+    private void fila(String id) {
+        repositorioImagenPerro.save(ImagenPerro.builder().id(id).perro(perro).principal(false).build());
+    }
+}
@@ -0,0 +1,162 @@
+package com.cut.cardona.service.imagenes;
+
+import com.cut.cardona.modelo.perros.ImagenPerro;
+import com.cut.cardona.service.infra.storage.ImageStorageService;
+import com.cut.cardona.service.infra.storage.TipoImagen;
+import com.cut.cardona.service.infra.storage.UploadResult;
+import com.cut.cardona.service.perros.PerroService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Subidas en segundo plano con 1 trabajador y 1 hueco de cola: la tercera subida simultánea se rechaza sin tocar
+ * el spool, el cupo vuelve al terminar (bien o mal), un fallo al asociar borra lo ya subido y el estado solo lo ve
+ * quien subió o un revisor.
+ */
+class SubidaAsincronaServiceTest {
+
+    @TempDir
+    Path spool;
+
+    private final PerroService perroService = mock(PerroService.class);
+    private final ImageStorageService storage = mock(ImageStorageService.class);
+    private final DespachadorBorrados despachadorBorrados = mock(DespachadorBorrados.class);
+    private final CountDownLatch soltarStorage = new CountDownLatch(1);
+    private SubidaAsincronaService servicio;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("ana", null, List.of()));
+        when(storage.uploadDogImage(any())).thenAnswer(inv -> {
+            soltarStorage.await(10, TimeUnit.SECONDS);
+            return UploadResult.builder().id("blob-" + System.nanoTime()).build();
+        });
+        when(perroService.asociarImagenSubida(eq("perro"), anyString(), any(), any())).thenAnswer(inv -> {
+            ImagenPerro img = new ImagenPerro();
+            img.setId(inv.getArgument(1));
+            return img;
+        });
+        servicio = new SubidaAsincronaService(perroService, storage, mock(StagingSubidas.class), despachadorBorrados,
+                1, 1, spool.toString(), 30);
+    }
+
+    @AfterEach
+    void limpiar() throws InterruptedException {
+        soltarStorage.countDown();
+        servicio.detener();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void conLaColaLlenaSeRechazaSinEscribirEnElSpool() throws Exception {
+        SubidaAsincronaService.EstadoSubida primera = servicio.encolar("perro", archivo(), null, false);
+        SubidaAsincronaService.EstadoSubida segunda = servicio.encolar("perro", archivo(), null, false);
+        long enSpool = archivosEnSpool();
+
+        assertThatThrownBy(() -> servicio.encolar("perro", archivo(), null, false))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(archivosEnSpool()).isEqualTo(enSpool);
+
+        soltarStorage.countDown();
+        esperar(() -> terminada(primera.uploadId()) && terminada(segunda.uploadId()));
+        assertThat(servicio.estado(primera.uploadId())).get()
+                .extracting(SubidaAsincronaService.EstadoSubida::estado).isEqualTo(SubidaAsincronaService.Estado.COMPLETADA);
+        assertThat(archivosEnSpool()).isZero();
+
+        // Los cupos volvieron: se aceptan otras dos
+        servicio.encolar("perro", archivo(), null, false);
+        servicio.encolar("perro", archivo(), null, false);
+    }
+
+    @Test
+    void unaValidacionFallidaNoConsumeCupo() throws Exception {
+        doThrow(new IllegalArgumentException("Máximo de imágenes alcanzado"))
+                .when(perroService).validarNuevaImagen(eq("lleno"), any());
+
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> servicio.encolar("lleno", archivo(), null, false))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+        servicio.encolar("perro", archivo(), null, false);
+        servicio.encolar("perro", archivo(), null, false);
+    }
+
+    @Test
+    void siFallaLaAsociacionSeBorraLoSubidoYSeLiberaElCupo() throws Exception {
+        soltarStorage.countDown();
+        when(perroService.asociarImagenSubida(eq("perro"), anyString(), any(), any()))
+                .thenThrow(new IllegalStateException("perro eliminado"));
+
+        SubidaAsincronaService.EstadoSubida subida = servicio.encolar("perro", archivo(), null, false);
+        esperar(() -> terminada(subida.uploadId()));
+
+        SubidaAsincronaService.EstadoSubida estado = servicio.estado(subida.uploadId()).orElseThrow();
+        assertThat(estado.estado()).isEqualTo(SubidaAsincronaService.Estado.FALLIDA);
+        assertThat(estado.error()).isEqualTo("perro eliminado");
+        verify(despachadorBorrados).enviar(eq(TipoImagen.PERRO), any());
+        assertThat(archivosEnSpool()).isZero();
+        servicio.encolar("perro", archivo(), null, false);
+        servicio.encolar("perro", archivo(), null, false);
+    }
+
+    @Test
+    void elEstadoSoloLoVeQuienSubioOUnRevisor() throws Exception {
+        SubidaAsincronaService.EstadoSubida subida = servicio.encolar("perro", archivo(), null, false);
+
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("bea", null, List.of()));
+        assertThat(servicio.estado(subida.uploadId())).isEmpty();
+
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("rev", null,
+                List.of(new SimpleGrantedAuthority("ROLE_REVIEWER"))));
+        assertThat(servicio.estado(subida.uploadId())).isPresent();
+        assertThat(servicio.estado("otra")).isEmpty();
+    }
+
+    private static MockMultipartFile archivo() {
+        return new MockMultipartFile("file", "perro.jpg", "image/jpeg", new byte[]{1, 2, 3});
+    }
+
+    private long archivosEnSpool() throws Exception {
+        try (Stream<Path> s = Files.list(spool)) {
+            return s.count();
+        }
+    }
+
+    private boolean terminada(String uploadId) {
+        return servicio.estado(uploadId).map(e -> e.estado() == SubidaAsincronaService.Estado.COMPLETADA
+                || e.estado() == SubidaAsincronaService.Estado.FALLIDA).orElse(false);
+    }
+
+    private static void esperar(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (!condicion.getAsBoolean()) {
+            if (System.currentTimeMillis() > limite) throw new AssertionError("La condición no se cumplió a tiempo");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.cut.cardona.service.imagenes;
+
+import com.cut.cardona.errores.UnprocessableEntityException;
+import com.cut.cardona.modelo.perros.ImagenPerro;
+import com.cut.cardona.service.infra.storage.ImageStorageService;
+import com.cut.cardona.service.infra.storage.TipoImagen;
+import com.cut.cardona.service.infra.storage.UploadResult;
+import com.cut.cardona.service.perros.PerroService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Todo o nada en la subida por lote: si falla un archivo o la asociación, no queda ninguna imagen asociada y todo
+ * lo ya subido se manda a borrar; si todo va bien no se borra nada.
+ */
+class SubidaLoteServiceTest {
+
+    private final PerroService perroService = mock(PerroService.class);
+    private final ImageStorageService imageStorageService = mock(ImageStorageService.class);
+    private final StagingSubidas stagingSubidas = mock(StagingSubidas.class);
+    private final DespachadorBorrados despachadorBorrados = mock(DespachadorBorrados.class);
+    private final SubidaLoteService service = new SubidaLoteService(perroService, imageStorageService, stagingSubidas,
+            despachadorBorrados, 2, 4);
+    private final AtomicInteger secuencia = new AtomicInteger();
+
+    @AfterEach
+    void detener() throws InterruptedException {
+        service.detener();
+    }
+
+    @Test
+    void todoBienAsociaElLoteSinBorrar() throws Exception {
+        when(imageStorageService.uploadDogImage(any())).thenAnswer(inv -> subida());
+        when(perroService.asociarImagenesSubidas(eq("p1"), anyList(), isNull(), eq(1)))
+                .thenAnswer(inv -> List.<ImagenPerro>of());
+
+        service.subir("p1", archivos("a", "b", "c"), null, 1);
+
+        verify(perroService).asociarImagenesSubidas(eq("p1"), argThat(ids -> ids.size() == 3), isNull(), eq(1));
+        verify(stagingSubidas, times(3)).registrar(anyString(), eq(StagingSubidas.TIPO_PERRO));
+        verify(despachadorBorrados, never()).enviar(any(), any());
+    }
+
+    @Test
+    void unArchivoFallidoBorraLosSubidosYNoAsocia() throws Exception {
+        List<String> subidos = Collections.synchronizedList(new ArrayList<>());
+        when(imageStorageService.uploadDogImage(any())).thenAnswer(inv -> {
+            MultipartFile f = inv.getArgument(0);
+            if (f.getOriginalFilename().equals("roto.jpg")) throw new IOException("formato no soportado");
+            UploadResult r = subida();
+            subidos.add(r.getId());
+            return r;
+        });
+
+        assertThatThrownBy(() -> service.subir("p1", archivos("a", "roto", "c"), null, null))
+                .isInstanceOf(UnprocessableEntityException.class)
+                .hasMessageContaining("formato no soportado");
+
+        verify(perroService, never()).asociarImagenesSubidas(any(), any(), any(), any());
+        verify(despachadorBorrados).enviar(eq(TipoImagen.PERRO),
+                argThat(ids -> ids.size() == 2 && ids.containsAll(subidos)));
+    }
+
+    @Test
+    void unFalloAlAsociarBorraTodoLoSubido() throws Exception {
+        when(imageStorageService.uploadDogImage(any())).thenAnswer(inv -> subida());
+        when(perroService.asociarImagenesSubidas(any(), anyList(), any(), any()))
+                .thenThrow(new UnprocessableEntityException("Máximo 3 imágenes por perro"));
+
+        assertThatThrownBy(() -> service.subir("p1", archivos("a", "b"), null, null))
+                .isInstanceOf(UnprocessableEntityException.class)
+                .hasMessageContaining("Máximo");
+
+        verify(despachadorBorrados).enviar(eq(TipoImagen.PERRO), argThat(ids -> ids.size() == 2));
+    }
+
+    @Test
+    void indicePrincipalFueraDeRangoNoSubeNada() throws Exception {
+        assertThatThrownBy(() -> service.subir("p1", archivos("a", "b"), null, 2))
+                .isInstanceOf(UnprocessableEntityException.class);
+
+        verify(imageStorageService, never()).uploadDogImage(any());
+        verify(despachadorBorrados, never()).enviar(any(), any());
+    }
+
+    private UploadResult subida() {
+        return UploadResult.builder().id("img-" + secuencia.incrementAndGet()).build();
+    }
+
+    private static List<MultipartFile> archivos(String... nombres) {
+        List<MultipartFile> out = new ArrayList<>();
+        for (String n : nombres) out.add(new MockMultipartFile("files", n + ".jpg", "image/jpeg", new byte[]{1, 2, 3}));
+        return out;
+    }
+}
@@ -0,0 +1,301 @@
+package com.cut.cardona.service.imagenes;
+
+import com.cut.cardona.errores.DomainConflictException;
+import com.cut.cardona.modelo.imagenes.RepositorioStagingSubida;
+import com.cut.cardona.modelo.imagenes.StagingSubida;
+import com.cut.cardona.service.imagenes.SubidaPorPartesService.Estado;
+import com.cut.cardona.service.imagenes.SubidaPorPartesService.EstadoSubidaPartes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Subidas por partes sobre staging_subidas real y un directorio temporal: desplazamiento incorrecto, conexión
+ * cortada que conserva lo recibido, parte que excede la longitud, la guarda COMPLETA→EN_USO y que cancelar o purgar
+ * no pisan una parte en curso.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:partes;MODE=MySQL;DATABASE_TO_LOWER=TRUE"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SubidaPorPartesServiceTest {
+
+    private static final byte[] CONTENIDO = bytes(1000);
+
+    @TempDir
+    Path dir;
+
+    @Autowired
+    private RepositorioStagingSubida repositorio;
+
+    private SubidaPorPartesService service;
+    private ExecutorService hilos;
+
+    @BeforeEach
+    void preparar() {
+        repositorio.deleteAllInBatch();
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("ana", null));
+        // Limpieza 0: sin purga programada, solo la que pide la prueba
+        service = new SubidaPorPartesService(repositorio, dir.toString(), 10_000, 24, 5, 0);
+        hilos = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void detener() {
+        hilos.shutdownNow();
+        service.detener();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void desplazamientoIncorrectoEsConflicto() throws IOException {
+        String id = crear();
+        service.anexar(id, 0, parte(0, 400));
+
+        assertThatThrownBy(() -> service.anexar(id, 300, parte(300, 700)))
+                .isInstanceOf(DomainConflictException.class)
+                .hasMessageContaining("400");
+
+        assertThat(service.estado(id)).get().extracting(EstadoSubidaPartes::recibidos).isEqualTo(400L);
+    }
+
+    @Test
+    void unaConexionCortadaConservaLoRecibido() throws IOException {
+        String id = crear();
+
+        assertThatThrownBy(() -> service.anexar(id, 0, cortadaTras(parte(0, 1000), 250)))
+                .isInstanceOf(IOException.class);
+
+        EstadoSubidaPartes estado = service.estado(id).orElseThrow();
+        assertThat(estado.recibidos()).isEqualTo(250);
+        assertThat(estado.estado()).isEqualTo(Estado.RECIBIENDO);
+        assertThat(Files.size(spool(id))).isEqualTo(250);
+
+        // El cliente reanuda desde lo que llegó
+        EstadoSubidaPartes fin = service.anexar(id, 250, parte(250, 1000)).orElseThrow();
+        assertThat(fin.estado()).isEqualTo(Estado.COMPLETA);
+        assertThat(Files.readAllBytes(spool(id))).isEqualTo(CONTENIDO);
+    }
+
+    @Test
+    void unaParteQueExcedeLaLongitudSeDescarta() throws IOException {
+        String id = crear();
+        service.anexar(id, 0, parte(0, 600));
+
+        byte[] excedida = Arrays.copyOf(Arrays.copyOfRange(CONTENIDO, 600, 1000), 450);
+        assertThatThrownBy(() -> service.anexar(id, 600, new ByteArrayInputStream(excedida)))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(service.estado(id)).get().extracting(EstadoSubidaPartes::recibidos).isEqualTo(600L);
+        assertThat(Files.size(spool(id))).isEqualTo(600);
+    }
+
+    @Test
+    void soloUnaPeticionPasaDeCompletaAEnUso() throws Exception {
+        String id = crear();
+        assertThatThrownBy(() -> service.usar(id, f -> "x"))
+                .isInstanceOf(DomainConflictException.class);
+        service.anexar(id, 0, parte(0, 1000));
+
+        CountDownLatch usando = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        Future<?> primero = conUsuario(() -> service.usar(id, f -> {
+            usando.countDown();
+            soltar.await();
+            return f.getSize();
+        }));
+        assertThat(usando.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> service.usar(id, f -> "otro")).isInstanceOf(DomainConflictException.class);
+        assertThatThrownBy(() -> service.cancelar(id)).isInstanceOf(DomainConflictException.class);
+        soltar.countDown();
+        primero.get(5, TimeUnit.SECONDS);
+
+        assertThat(repositorio.findById(id)).isEmpty();
+        assertThat(spool(id)).doesNotExist();
+    }
+
+    @Test
+    void otroNodoUsandoLaSubidaEsConflicto() throws Exception {
+        String id = crear();
+        service.anexar(id, 0, parte(0, 1000));
+        // Sin pasar por este nodo: solo la fila indica que otro la está usando
+        repositorio.cambiarEstado(id, Estado.COMPLETA.name(), Estado.EN_USO.name(), Instant.now());
+
+        assertThatThrownBy(() -> service.usar(id, f -> "x")).isInstanceOf(DomainConflictException.class);
+        assertThatThrownBy(() -> service.cancelar(id)).isInstanceOf(DomainConflictException.class);
+        assertThat(spool(id)).exists();
+    }
+
+    @Test
+    void unUsoFallidoDejaLaSubidaDisponible() throws Exception {
+        String id = crear();
+        service.anexar(id, 0, parte(0, 1000));
+
+        assertThatThrownBy(() -> service.usar(id, f -> {
+            throw new IllegalStateException("storage caído");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(service.estado(id)).get().extracting(EstadoSubidaPartes::estado).isEqualTo(Estado.COMPLETA);
+        assertThat(service.usar(id, f -> f.getBytes().length)).contains(1000);
+    }
+
+    @Test
+    void cancelarNoPisaUnaParteEnCurso() throws Exception {
+        String id = crear();
+        CountDownLatch leyendo = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        Future<EstadoSubidaPartes> parte = conUsuario(() ->
+                service.anexar(id, 0, pausadaTras(parte(0, 1000), 300, leyendo, soltar)).orElseThrow());
+        assertThat(leyendo.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> service.cancelar(id)).isInstanceOf(DomainConflictException.class);
+        soltar.countDown();
+
+        assertThat(parte.get(5, TimeUnit.SECONDS).estado()).isEqualTo(Estado.COMPLETA);
+        assertThat(service.cancelar(id)).isTrue();
+        assertThat(repositorio.findById(id)).isEmpty();
+        assertThat(spool(id)).doesNotExist();
+    }
+
+    @Test
+    void laPurgaSeSaltaLasQueTienenUnaParteEnCurso() throws Exception {
+        String ocupada = crear();
+        String abandonada = crear();
+        envejecer(ocupada);
+        envejecer(abandonada);
+        CountDownLatch leyendo = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        Future<EstadoSubidaPartes> parte = conUsuario(() ->
+                service.anexar(ocupada, 0, pausadaTras(parte(0, 500), 200, leyendo, soltar)).orElseThrow());
+        assertThat(leyendo.await(5, TimeUnit.SECONDS)).isTrue();
+
+        service.purgarExpiradas();
+
+        assertThat(repositorio.findById(abandonada)).isEmpty();
+        assertThat(spool(abandonada)).doesNotExist();
+        assertThat(repositorio.findById(ocupada)).isPresent();
+        soltar.countDown();
+        assertThat(parte.get(5, TimeUnit.SECONDS).recibidos()).isEqualTo(500);
+
+        // La parte renovó su actividad: la siguiente purga tampoco la toca
+        service.purgarExpiradas();
+        assertThat(service.estado(ocupada)).get().extracting(EstadoSubidaPartes::recibidos).isEqualTo(500L);
+        assertThat(spool(ocupada)).hasSize(500);
+    }
+
+    private String crear() throws IOException {
+        return service.crear(CONTENIDO.length, "foto.jpg", "image/jpeg").id();
+    }
+
+    private void envejecer(String id) {
+        StagingSubida s = repositorio.findById(id).orElseThrow();
+        s.setActualizadoEn(Instant.now().minus(Duration.ofDays(2)));
+        repositorio.save(s);
+    }
+
+    private Path spool(String id) {
+        return dir.resolve(id + ".part");
+    }
+
+    // Las peticiones concurrentes vienen del mismo usuario, cada una en su hilo
+    private <T> Future<T> conUsuario(Callable<T> tarea) {
+        var auth = SecurityContextHolder.getContext().getAuthentication();
+        return hilos.submit(() -> {
+            SecurityContextHolder.getContext().setAuthentication(auth);
+            try {
+                return tarea.call();
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        });
+    }
+
+    private static InputStream parte(int desde, int hasta) {
+        return new ByteArrayInputStream(Arrays.copyOfRange(CONTENIDO, desde, hasta));
+    }
+
+    // Entrega `n` bytes y luego falla como un socket cerrado por el cliente
+    private static InputStream cortadaTras(InputStream in, int n) {
+        return new InputStream() {
+            private int leidos;
+
+            @Override
+            public int read() throws IOException {
+                if (leidos >= n) throw new IOException("Connection reset");
+                leidos++;
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (leidos >= n) throw new IOException("Connection reset");
+                int r = in.read(b, off, Math.min(len, n - leidos));
+                if (r > 0) leidos += r;
+                return r;
+            }
+        };
+    }
+
+    // Entrega `n` bytes, avisa y espera a que la prueba la suelte antes de seguir
+    private static InputStream pausadaTras(InputStream in, int n, CountDownLatch leyendo, CountDownLatch soltar) {
+        return new InputStream() {
+            private int leidos;
+
+            @Override
+            public int read() throws IOException {
+                byte[] uno = new byte[1];
+                return read(uno, 0, 1) == -1 ? -1 : uno[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (leidos == n) {
+                    leyendo.countDown();
+                    try {
+                        soltar.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                int r = in.read(b, off, leidos < n ? Math.min(len, n - leidos) : len);
+                if (r > 0) leidos += r;
+                return r;
+            }
+        };
+    }
+
+    private static byte[] bytes(int n) {
+        byte[] b = new byte[n];
+        for (int i = 0; i < n; i++) b[i] = (byte) (i * 31 + 7);
+        return b;
+    }
+}
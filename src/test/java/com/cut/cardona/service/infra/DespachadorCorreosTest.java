@@ -0,0 +1,210 @@
+package com.cut.cardona.service.infra;
+
+import com.cut.cardona.modelo.correo.CorreoSalida;
+import com.cut.cardona.modelo.correo.EstadoCorreo;
+import com.cut.cardona.modelo.correo.RepositorioCorreoSalida;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.user.MessageDeliveryHandler;
+import com.icegreen.greenmail.user.UserException;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bandeja de salida y despachador contra un SMTP local (GreenMail): un lote viaja por una sola conexión, un fallo
+ * parcial del servidor solo reprograma los correos rechazados con espera exponencial hasta agotar los intentos, y
+ * un correo encolado en una transacción revertida no existe. Los rechazos se provocan en la entrega de GreenMail,
+ * que responde 451 a ese destinatario como haría un servidor real.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:correos;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "app.mail.outbox.max-intentos=3",
+        "app.mail.outbox.espera-base-segundos=30"
+})
+@Import(BandejaSalidaCorreos.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DespachadorCorreosTest {
+
+    private static final int LOTE = 10;
+    private static final String RECHAZADO = "@rechazado.test";
+
+    @RegisterExtension
+    static GreenMailExtension smtp = new GreenMailExtension(ServerSetupTest.SMTP.dynamicPort());
+
+    @Autowired
+    private BandejaSalidaCorreos bandeja;
+
+    @Autowired
+    private RepositorioCorreoSalida repositorio;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicInteger conexiones = new AtomicInteger();
+    private DespachadorCorreos despachador;
+
+    @BeforeEach
+    void preparar() {
+        repositorio.deleteAllInBatch();
+        MessageDeliveryHandler entrega = smtp.getUserManager().getMessageDeliveryHandler();
+        smtp.getUserManager().setMessageDeliveryHandler((mensaje, direccion) -> {
+            if (direccion.getEmail().endsWith(RECHAZADO)) throw new UserException("buzón no disponible");
+            return entrega.handle(mensaje, direccion);
+        });
+
+        JavaMailSenderImpl sender = new JavaMailSenderImpl() {
+            @Override
+            protected Transport connectTransport() throws MessagingException {
+                conexiones.incrementAndGet();
+                return super.connectTransport();
+            }
+        };
+        sender.setHost("127.0.0.1");
+        sender.setPort(smtp.getSmtp().getPort());
+        // Sin iniciar(): los ciclos se lanzan a mano con despachar()
+        despachador = new DespachadorCorreos(bandeja, sender, true, "no-reply@perritoscut.test", LOTE, 1000);
+    }
+
+    @AfterEach
+    void detener() throws InterruptedException {
+        despachador.detener();
+    }
+
+    @Test
+    void unaConexionPorLote() {
+        for (int i = 0; i < 25; i++) bandeja.encolar("u" + i + "@example.com", "Asunto " + i, "Cuerpo", "PRUEBA");
+
+        despachador.despachar();
+
+        // 25 correos en lotes de 10: 3 conexiones SMTP
+        assertThat(conexiones).hasValue(3);
+        assertThat(smtp.getReceivedMessages()).hasSize(25);
+        assertThat(repositorio.findAll()).allSatisfy(c -> {
+            assertThat(c.getEstado()).isEqualTo(EstadoCorreo.ENVIADO);
+            assertThat(c.getEnviadoEn()).isNotNull();
+            assertThat(c.getIntentos()).isEqualTo(1);
+        });
+        assertThat(bandeja.pendientes()).isZero();
+    }
+
+    @Test
+    void unFalloParcialSoloReprogramaLosRechazados() {
+        bandeja.encolar("a@example.com", "A", "Cuerpo", "PRUEBA");
+        bandeja.encolar("b" + RECHAZADO, "B", "Cuerpo", "PRUEBA");
+        bandeja.encolar("c@example.com", "C", "Cuerpo", "PRUEBA");
+        Instant antes = Instant.now();
+
+        despachador.despachar();
+
+        assertThat(conexiones).hasValue(1);
+        assertThat(smtp.getReceivedMessages()).hasSize(2);
+        CorreoSalida rechazado = porDestinatario("b" + RECHAZADO);
+        assertThat(rechazado.getEstado()).isEqualTo(EstadoCorreo.PENDIENTE);
+        assertThat(rechazado.getIntentos()).isEqualTo(1);
+        assertThat(rechazado.getUltimoError()).contains("451");
+        assertThat(esperaDesde(antes, rechazado)).isBetween(Duration.ofSeconds(29), Duration.ofSeconds(31));
+        assertThat(porDestinatario("a@example.com").getEstado()).isEqualTo(EstadoCorreo.ENVIADO);
+        assertThat(porDestinatario("c@example.com").getEstado()).isEqualTo(EstadoCorreo.ENVIADO);
+
+        // Antes de vencer la espera no se vuelve a intentar ni se abre conexión
+        despachador.despachar();
+        assertThat(conexiones).hasValue(1);
+        assertThat(porDestinatario("b" + RECHAZADO).getIntentos()).isEqualTo(1);
+    }
+
+    @Test
+    void esperaExponencialYFallidoAlAgotarIntentos() {
+        bandeja.encolar("x" + RECHAZADO, "X", "Cuerpo", "PRUEBA");
+        List<Duration> esperas = new ArrayList<>();
+
+        for (int intento = 1; intento <= 3; intento++) {
+            vencerEspera();
+            Instant antes = Instant.now();
+            despachador.despachar();
+            CorreoSalida c = porDestinatario("x" + RECHAZADO);
+            assertThat(c.getIntentos()).isEqualTo(intento);
+            if (intento < 3) {
+                assertThat(c.getEstado()).isEqualTo(EstadoCorreo.PENDIENTE);
+                esperas.add(esperaDesde(antes, c));
+            } else {
+                assertThat(c.getEstado()).isEqualTo(EstadoCorreo.FALLIDO);
+            }
+        }
+
+        // 30 s y luego 60 s
+        assertThat(esperas.get(0)).isBetween(Duration.ofSeconds(29), Duration.ofSeconds(31));
+        assertThat(esperas.get(1)).isBetween(Duration.ofSeconds(59), Duration.ofSeconds(61));
+        // Un FALLIDO ya no se reclama
+        vencerEspera();
+        despachador.despachar();
+        assertThat(conexiones).hasValue(3);
+    }
+
+    @Test
+    void unaDireccionMalFormadaNoBloqueaElLote() {
+        bandeja.encolar("a@example.com", "A", "Cuerpo", "PRUEBA");
+        bandeja.encolar("esto no es un correo", "B", "Cuerpo", "PRUEBA");
+
+        despachador.despachar();
+
+        assertThat(smtp.getReceivedMessages()).hasSize(1);
+        assertThat(porDestinatario("a@example.com").getEstado()).isEqualTo(EstadoCorreo.ENVIADO);
+        CorreoSalida invalido = porDestinatario("esto no es un correo");
+        assertThat(invalido.getEstado()).isEqualTo(EstadoCorreo.PENDIENTE);
+        assertThat(invalido.getUltimoError()).startsWith("Mensaje inválido");
+    }
+
+    @Test
+    void nadaSeEncolaSiLaTransaccionSeRevierte() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            bandeja.encolar("a@example.com", "A", "Cuerpo", "PRUEBA");
+            status.setRollbackOnly();
+        });
+
+        despachador.despachar();
+
+        assertThat(repositorio.count()).isZero();
+        assertThat(conexiones).hasValue(0);
+        assertThat(smtp.getReceivedMessages()).isEmpty();
+    }
+
+    private CorreoSalida porDestinatario(String destinatario) {
+        return repositorio.findAll().stream().filter(c -> c.getDestinatario().equals(destinatario)).findFirst().orElseThrow();
+    }
+
+    // Simula el paso del tiempo: todo lo pendiente queda listo para reintentarse ya
+    private void vencerEspera() {
+        List<CorreoSalida> todos = repositorio.findAll();
+        todos.forEach(c -> c.setProximoIntento(Timestamp.from(Instant.now().minusSeconds(1))));
+        repositorio.saveAll(todos);
+    }
+
+    private static Duration esperaDesde(Instant antes, CorreoSalida c) {
+        return Duration.between(antes, c.getProximoIntento().toInstant());
+    }
+}
@@ -0,0 +1,132 @@
+package com.cut.cardona.service.infra.storage;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Proveedor de storage en memoria para pruebas: guarda id y fecha de creación de cada imagen de perro, lista en
+ * orden de id con cursor como los proveedores reales y registra cada subida, borrado y página pedida. Los ids
+ * marcados con {@link #fallarAlBorrar} no se borran y salen como pendientes de {@link BorradoIncompletoException}.
+ */
+public class AlmacenamientoMemoria implements ImageStorageService {
+
+    private final ConcurrentSkipListMap<String, Instant> objetos = new ConcurrentSkipListMap<>();
+    private final Set<String> fallan = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subidas = new AtomicInteger();
+    private final List<List<String>> borrados = new CopyOnWriteArrayList<>();
+    private final List<String> cursores = new CopyOnWriteArrayList<>();
+
+    @Override
+    public UploadResult uploadDogImage(MultipartFile file) {
+        String id = UUID.randomUUID().toString();
+        objetos.put(id, Instant.now());
+        subidas.incrementAndGet();
+        return UploadResult.builder()
+                .id(id)
+                .filename(id + ".jpg")
+                .url(resolveDogImagePublicUrl(id))
+                .contentType(file.getContentType())
+                .size(file.getSize())
+                .build();
+    }
+
+    @Override
+    public UploadResult uploadProfileImage(MultipartFile file) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isCloudProvider() {
+        return true;
+    }
+
+    @Override
+    public String resolveDogImagePublicUrl(String id) {
+        return "https://cdn.test/perritos/" + id;
+    }
+
+    @Override
+    public String resolveProfileImagePublicUrl(String id) {
+        return "https://cdn.test/perfiles/" + id;
+    }
+
+    @Override
+    public List<String> deleteMany(TipoImagen tipo, Collection<String> ids) throws BorradoIncompletoException {
+        borrados.add(List.copyOf(ids));
+        List<String> eliminados = new ArrayList<>();
+        List<String> pendientes = new ArrayList<>();
+        for (String id : ids) {
+            if (fallan.contains(id)) pendientes.add(id);
+            else if (objetos.remove(id) != null) eliminados.add(id);
+        }
+        if (!pendientes.isEmpty()) {
+            throw new BorradoIncompletoException("No se pudieron borrar " + pendientes.size(), pendientes, eliminados, null);
+        }
+        return eliminados;
+    }
+
+    @Override
+    public PaginaAlmacenamiento listDogImages(String cursor, int limite) {
+        cursores.add(String.valueOf(cursor));
+        Map<String, Instant> resto = cursor == null ? objetos : objetos.tailMap(cursor, false);
+        List<PaginaAlmacenamiento.Objeto> pagina = new ArrayList<>();
+        for (Map.Entry<String, Instant> e : resto.entrySet()) {
+            if (pagina.size() == limite) break;
+            pagina.add(new PaginaAlmacenamiento.Objeto(e.getKey(), e.getValue()));
+        }
+        boolean hayMas = pagina.size() == limite && objetos.higherKey(pagina.get(pagina.size() - 1).id()) != null;
+        return new PaginaAlmacenamiento(pagina, hayMas ? pagina.get(pagina.size() - 1).id() : null);
+    }
+
+    /** Objeto subido fuera de la aplicación (o antes de que existiera la deduplicación). */
+    public void agregar(String id, Instant creado) {
+        objetos.put(id, creado);
+    }
+
+    /** Hace pasar el tiempo: todo lo guardado pasa a ser `d` más antiguo. */
+    public void envejecer(Duration d) {
+        objetos.replaceAll((id, creado) -> creado.minus(d));
+    }
+
+    public void fallarAlBorrar(String... ids) {
+        fallan.addAll(List.of(ids));
+    }
+
+    public void dejarDeFallar() {
+        fallan.clear();
+    }
+
+    public boolean existe(String id) {
+        return objetos.containsKey(id);
+    }
+
+    public Set<String> ids() {
+        return Set.copyOf(objetos.keySet());
+    }
+
+    public int subidas() {
+        return subidas.get();
+    }
+
+    /** Cada llamada a deleteMany con sus ids, en orden. */
+    public List<List<String>> borrados() {
+        return List.copyOf(borrados);
+    }
+
+    /** Cursor de cada página pedida ("null" para la primera). */
+    public List<String> cursores() {
+        return List.copyOf(cursores);
+    }
+}
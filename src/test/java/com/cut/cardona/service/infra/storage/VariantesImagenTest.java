@@ -0,0 +1,133 @@
+package com.cut.cardona.service.infra.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Variantes responsivas en disco: un archivo por ancho y formato local, proporciones conservadas, sin ampliar
+ * originales pequeños, transparencia sobre blanco, sin temporales a medio escribir y borrado de todas a la vez.
+ */
+class VariantesImagenTest {
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest(name = "{0} -> {1}")
+    @CsvSource({"1,160", "160,160", "161,480", "480,480", "481,1024", "1024,1024", "5000,1024"})
+    void anchoMasCercano(int pedido, int esperado) {
+        assertThat(VariantesImagen.anchoMasCercano(pedido)).isEqualTo(esperado);
+    }
+
+    @Test
+    void normalizarFormato() {
+        assertThat(VariantesImagen.normalizarFormato(null)).isEqualTo(VariantesImagen.JPG);
+        assertThat(VariantesImagen.normalizarFormato(" JPEG ")).isEqualTo(VariantesImagen.JPG);
+        assertThat(VariantesImagen.normalizarFormato("WebP")).isEqualTo(VariantesImagen.WEBP);
+        assertThat(VariantesImagen.normalizarFormato("gif")).isNull();
+    }
+
+    @Test
+    void generaTodasLasVariantesConSuAnchoYProporcion() throws IOException {
+        Path original = imagen("png", 2000, 1000, false);
+
+        VariantesImagen.generarTodas(original, dir, "perro");
+
+        for (int ancho : VariantesImagen.ANCHOS) {
+            for (String formato : VariantesImagen.FORMATOS) {
+                Path variante = dir.resolve(VariantesImagen.nombreArchivo("perro", ancho, VariantesImagen.formatoLocal(formato)));
+                assertThat(variante).exists();
+                BufferedImage img = ImageIO.read(variante.toFile());
+                if (img == null) continue; // WebP sin lector instalado
+                assertThat(img.getWidth()).isEqualTo(ancho);
+                assertThat(img.getHeight()).isEqualTo(ancho / 2);
+            }
+        }
+        try (Stream<Path> archivos = Files.list(dir)) {
+            assertThat(archivos.map(p -> p.getFileName().toString())).noneMatch(n -> n.contains(".tmp-"));
+        }
+    }
+
+    @Test
+    void unOriginalPequenoNoSeAmplia() throws IOException {
+        Path original = imagen("png", 300, 200, false);
+
+        VariantesImagen.generarTodas(original, dir, "mini");
+
+        assertThat(ancho(VariantesImagen.nombreArchivo("mini", 160, VariantesImagen.JPG))).isEqualTo(160);
+        assertThat(ancho(VariantesImagen.nombreArchivo("mini", 480, VariantesImagen.JPG))).isEqualTo(300);
+        assertThat(ancho(VariantesImagen.nombreArchivo("mini", 1024, VariantesImagen.JPG))).isEqualTo(300);
+    }
+
+    @Test
+    void laTransparenciaQuedaSobreBlanco() throws IOException {
+        Path original = imagen("png", 400, 400, true);
+        Path destino = dir.resolve("t.jpg");
+
+        VariantesImagen.generar(original, destino, 160, VariantesImagen.JPG);
+
+        BufferedImage img = ImageIO.read(destino.toFile());
+        Color esquina = new Color(img.getRGB(0, 0));
+        assertThat(esquina.getRed()).isGreaterThan(240);
+        assertThat(esquina.getGreen()).isGreaterThan(240);
+        assertThat(esquina.getBlue()).isGreaterThan(240);
+    }
+
+    @Test
+    void unArchivoQueNoEsImagenNoGeneraNada() throws IOException {
+        Path basura = dir.resolve("basura.jpg");
+        Files.writeString(basura, "no soy una imagen");
+
+        VariantesImagen.generarTodas(basura, dir, "basura");
+        assertThatThrownBy(() -> VariantesImagen.generar(basura, dir.resolve("x.jpg"), 160, VariantesImagen.JPG))
+                .isInstanceOf(IOException.class);
+
+        try (Stream<Path> archivos = Files.list(dir)) {
+            assertThat(archivos).containsExactly(basura);
+        }
+    }
+
+    @Test
+    void eliminarBorraTodasLasVariantes() throws IOException {
+        Path original = imagen("png", 1200, 800, false);
+        VariantesImagen.generarTodas(original, dir, "perro");
+
+        VariantesImagen.eliminar(dir, "perro");
+
+        try (Stream<Path> archivos = Files.list(dir)) {
+            assertThat(archivos).containsExactly(original);
+        }
+    }
+
+    private Path imagen(String formato, int ancho, int alto, boolean transparente) throws IOException {
+        BufferedImage img = new BufferedImage(ancho, alto, transparente ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        if (!transparente) {
+            g.setColor(new Color(90, 60, 30));
+            g.fillRect(0, 0, ancho, alto);
+        }
+        g.setColor(Color.BLACK);
+        g.fillOval(ancho / 4, alto / 4, ancho / 2, alto / 2);
+        g.dispose();
+        Path p = dir.resolve("original." + formato);
+        ImageIO.write(img, formato, p.toFile());
+        return p;
+    }
+
+    private int ancho(String nombre) throws IOException {
+        return ImageIO.read(dir.resolve(nombre).toFile()).getWidth();
+    }
+}
@@ -0,0 +1,130 @@
+package com.cut.cardona.service.infra.storage.cloudinary;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ajuste a 9 MB de fotos de 24 MP (10-15 MB a calidad 0.95): {@link AjusteTamanoJpeg} frente al bucle anterior de
+ * prepareForUpload (bajar calidad de 0.1 en 0.1 y luego escala al 85 %, codificando la imagen completa cada vez).
+ * El contador "completas" se reinicia en cada invocación y JMH suma su valor final de cada iteración medida:
+ * dividido entre Cnt da las codificaciones completas por operación (son deterministas para una misma foto).
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main AjusteTamanoJpegBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g", "-Djava.awt.headless=true"})
+@State(Scope.Benchmark)
+public class AjusteTamanoJpegBenchmark {
+
+    private static final long OBJETIVO = 9L * 1024 * 1024;
+
+    @Param({"16", "19"})
+    public double ruido;
+
+    private BufferedImage foto;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Codificaciones {
+        public long completas;
+
+        @Setup(Level.Invocation)
+        public void reiniciar() {
+            completas = 0;
+        }
+    }
+
+    @Setup
+    public void preparar() {
+        foto = ImagenesSinteticas.foto(ImagenesSinteticas.ANCHO, ImagenesSinteticas.ALTO, ruido, (long) ruido);
+    }
+
+    @Benchmark
+    public byte[] ajusteConMuestra(Codificaciones c) throws IOException {
+        try (AjusteTamanoJpeg ajuste = new AjusteTamanoJpeg()) {
+            byte[] jpeg = ajuste.ajustar(foto, OBJETIVO);
+            c.completas += ajuste.codificacionesCompletas();
+            return jpeg;
+        }
+    }
+
+    @Benchmark
+    public byte[] bucleAnterior(Codificaciones c) throws IOException {
+        double escala = 1.0;
+        float calidad = 0.85f;
+        byte[] mejor = null;
+        for (int i = 0; i < 12; i++) {
+            BufferedImage escalada = escalar(foto, escala);
+            byte[] jpeg = jpeg(escalada, calidad);
+            c.completas++;
+            if (mejor == null || jpeg.length < mejor.length) mejor = jpeg;
+            if (jpeg.length <= OBJETIVO) return jpeg;
+            if (calidad > 0.5f) {
+                calidad -= 0.1f;
+            } else {
+                escala *= 0.85;
+                if (escalada.getWidth() < 800 || escalada.getHeight() < 800) break;
+            }
+        }
+        return mejor;
+    }
+
+    // Como el bucle anterior: imagen, buffer y ImageWriter nuevos en cada intento
+    private static BufferedImage escalar(BufferedImage src, double escala) {
+        if (escala >= 0.999) return src;
+        int w = Math.max(1, (int) Math.round(src.getWidth() * escala));
+        int h = Math.max(1, (int) Math.round(src.getHeight() * escala));
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.drawImage(src, 0, 0, w, h, null);
+        g.dispose();
+        return out;
+    }
+
+    private static byte[] jpeg(BufferedImage img, float calidad) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(1024 * 1024);
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(Math.max(0.1f, Math.min(calidad, 1.0f)));
+        param.setProgressiveMode(ImageWriteParam.MODE_DISABLED);
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(baos)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,68 @@
+package com.cut.cardona.service.infra.storage.cloudinary;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AjusteTamanoJpegTest {
+
+    private static final long OBJETIVO = 9L * 1024 * 1024;
+
+    @ParameterizedTest(name = "ruido {0}")
+    @ValueSource(doubles = {16, 19})
+    void fotoGrandeCabeEnElObjetivoConComoMucho2CodificacionesCompletas(double ruido) throws IOException {
+        BufferedImage src = ImagenesSinteticas.foto(ImagenesSinteticas.ANCHO, ImagenesSinteticas.ALTO, ruido, (long) ruido);
+        // Fixture en el rango que motiva el ajuste: 10-15 MB tal como llegaría del cliente
+        assertThat(ImagenesSinteticas.bytesJpeg(src, 0.95f)).isBetween(10 * 1024 * 1024, 15 * 1024 * 1024);
+
+        byte[] jpeg;
+        int codificaciones;
+        try (AjusteTamanoJpeg ajuste = new AjusteTamanoJpeg()) {
+            jpeg = ajuste.ajustar(src, OBJETIVO);
+            codificaciones = ajuste.codificacionesCompletas();
+        }
+
+        assertThat((long) jpeg.length).isLessThanOrEqualTo(OBJETIVO);
+        assertThat(codificaciones).isBetween(1, 2);
+        BufferedImage leida = ImageIO.read(new ByteArrayInputStream(jpeg));
+        assertThat(leida.getWidth()).isEqualTo(src.getWidth());
+        assertThat(leida.getHeight()).isEqualTo(src.getHeight());
+    }
+
+    @Test
+    void reduceEscalaCuandoNiLaCalidadMinimaCabe() throws IOException {
+        BufferedImage src = ImagenesSinteticas.foto(4000, 3000, 60, 7);
+        long objetivo = 1024 * 1024;
+
+        byte[] jpeg;
+        int codificaciones;
+        try (AjusteTamanoJpeg ajuste = new AjusteTamanoJpeg()) {
+            jpeg = ajuste.ajustar(src, objetivo);
+            codificaciones = ajuste.codificacionesCompletas();
+        }
+
+        assertThat(codificaciones).isBetween(1, 2);
+        BufferedImage leida = ImageIO.read(new ByteArrayInputStream(jpeg));
+        assertThat(leida.getWidth()).isLessThan(src.getWidth());
+        // Nunca por debajo del lado mínimo: si ahí aún no cabe, se devuelve lo más pequeño conseguido
+        assertThat(Math.min(leida.getWidth(), leida.getHeight())).isGreaterThanOrEqualTo(800);
+        if (Math.min(leida.getWidth(), leida.getHeight()) > 800) assertThat((long) jpeg.length).isLessThanOrEqualTo(objetivo);
+    }
+
+    @Test
+    void imagenQueYaCabeSeCodificaUnaSolaVez() throws IOException {
+        BufferedImage src = ImagenesSinteticas.foto(1600, 1200, 10, 3);
+        try (AjusteTamanoJpeg ajuste = new AjusteTamanoJpeg()) {
+            byte[] jpeg = ajuste.ajustar(src, OBJETIVO);
+            assertThat((long) jpeg.length).isLessThanOrEqualTo(OBJETIVO);
+            assertThat(ajuste.codificacionesCompletas()).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.cut.cardona.service.infra.storage.cloudinary;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Fotos sintéticas para probar el ajuste de tamaño: ondas suaves más ruido gaussiano, que a calidad 0.95 pesan
+ * como una foto de móvil: con 24 MP, un ruido entre 16 y 19 da de 10 a 15 MB. Mismo ruido y semilla, misma imagen.
+ */
+final class ImagenesSinteticas {
+
+    static final int ANCHO = 6000;
+    static final int ALTO = 4000;
+
+    private ImagenesSinteticas() {
+    }
+
+    static BufferedImage foto(int ancho, int alto, double ruido, long semilla) {
+        BufferedImage img = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        int[] px = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+        Random r = new Random(semilla);
+        double periodo = 40.0 + semilla;
+        for (int y = 0; y < alto; y++) {
+            double cy = Math.cos(y / 57.0);
+            for (int x = 0; x < ancho; x++) {
+                int base = (int) (128 + 100 * Math.sin(x / periodo) * cy);
+                int n = (int) (r.nextGaussian() * ruido);
+                px[y * ancho + x] = (limitar(base + n) << 16) | (limitar(base / 2 + 60 + n) << 8) | limitar(255 - base + n);
+            }
+        }
+        return img;
+    }
+
+    /** Tamaño del JPEG a la calidad dada, como lo subiría el cliente. */
+    static int bytesJpeg(BufferedImage img, float calidad) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(1 << 20);
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(calidad);
+        try (MemoryCacheImageOutputStream ios = new MemoryCacheImageOutputStream(salida)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return salida.size();
+    }
+
+    private static int limitar(int v) {
+        return v < 0 ? 0 : Math.min(v, 255);
+    }
+}
@@ -0,0 +1,193 @@
+package com.cut.cardona.service.infra.storage.dedup;
+
+import com.cut.cardona.modelo.imagenes.AliasImagen;
+import com.cut.cardona.modelo.imagenes.BlobImagen;
+import com.cut.cardona.modelo.imagenes.RepositorioAliasImagen;
+import com.cut.cardona.modelo.imagenes.RepositorioBlobImagen;
+import com.cut.cardona.modelo.imagenes.RepositorioStagingSubida;
+import com.cut.cardona.modelo.perros.RepositorioImagenPerro;
+import com.cut.cardona.service.imagenes.CacheImagenesPerro;
+import com.cut.cardona.service.imagenes.RecolectorImagenesHuerfanas;
+import com.cut.cardona.service.infra.storage.AlmacenamientoMemoria;
+import com.cut.cardona.service.infra.storage.TipoImagen;
+import com.cut.cardona.service.infra.storage.UploadResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Ciclo de vida de un blob deduplicado sobre las tablas reales de alias y blobs: el mismo contenido subido dos
+ * veces da dos ids que comparten un objeto, borrar una de ellas no toca el objeto (ni el recolector de huérfanas lo
+ * toma por huérfano), borrar la última sí, y los ids de antes de la deduplicación se siguen borrando del proveedor.
+ * Sin transacción de prueba envolvente: el servicio abre las suyas como en producción.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:dedup;MODE=MySQL;DATABASE_TO_LOWER=TRUE"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DeduplicacionImageStorageServiceTest {
+
+    private static final byte[] FOTO = {(byte) 0xFF, (byte) 0xD8, 1, 2, 3, 4, 5};
+
+    @Autowired
+    private RepositorioBlobImagen repositorioBlobImagen;
+
+    @Autowired
+    private RepositorioAliasImagen repositorioAliasImagen;
+
+    @Autowired
+    private RepositorioImagenPerro repositorioImagenPerro;
+
+    @Autowired
+    private RepositorioStagingSubida repositorioStagingSubida;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private AlmacenamientoMemoria proveedor;
+    private RepositorioBlobImagen blobs;
+    private DeduplicacionImageStorageService dedup;
+
+    @BeforeEach
+    void preparar() {
+        repositorioAliasImagen.deleteAllInBatch();
+        repositorioBlobImagen.deleteAllInBatch();
+        // H2 no entiende INSERT IGNORE: solo esa sentencia se sustituye por su equivalente, el resto va a la base
+        blobs = mock(RepositorioBlobImagen.class, delegatesTo(repositorioBlobImagen));
+        doAnswer(inv -> {
+            if (repositorioBlobImagen.existsById(inv.getArgument(0))) return 0;
+            repositorioBlobImagen.save(new BlobImagen(inv.getArgument(0), inv.getArgument(1), 1, inv.getArgument(2)));
+            return 1;
+        }).when(blobs).insertarSiNoExiste(anyString(), anyString(), any());
+        proveedor = new AlmacenamientoMemoria();
+        dedup = nuevo();
+    }
+
+    @Test
+    void unDuplicadoEsUnAliasDelMismoBlob() throws Exception {
+        UploadResult primera = dedup.uploadDogImage(foto());
+        UploadResult segunda = dedup.uploadDogImage(foto());
+
+        assertThat(segunda.getId()).isNotEqualTo(primera.getId());
+        assertThat(proveedor.subidas()).isEqualTo(1);
+        assertThat(proveedor.ids()).containsExactly(primera.getId());
+        assertThat(repositorioBlobImagen.findAll()).singleElement().satisfies(b -> {
+            assertThat(b.getBlobId()).isEqualTo(primera.getId());
+            assertThat(b.getReferencias()).isEqualTo(2);
+        });
+        assertThat(repositorioAliasImagen.findAll()).extracting(AliasImagen::getBlobId).containsOnly(primera.getId()).hasSize(2);
+        assertThat(segunda.getUrl()).isEqualTo(proveedor.resolveDogImagePublicUrl(primera.getId()));
+        // Sin la caché en memoria (otro nodo, reinicio) también resuelve al blob
+        assertThat(nuevo().resolveDogImageStorageId(segunda.getId())).isEqualTo(primera.getId());
+    }
+
+    @Test
+    void borrarLaPrimeraConservaElBlobAunqueElRecolectorLoVeaSinFila() throws Exception {
+        UploadResult primera = dedup.uploadDogImage(foto());
+        UploadResult segunda = dedup.uploadDogImage(foto());
+
+        List<String> eliminados = dedup.deleteMany(TipoImagen.PERRO, List.of(primera.getId()));
+
+        assertThat(eliminados).isEmpty();
+        assertThat(proveedor.existe(primera.getId())).isTrue();
+        assertThat(repositorioBlobImagen.findAll()).singleElement().extracting(b -> b.getReferencias()).isEqualTo(1);
+
+        // El objeto se llama como la imagen borrada y ya no tiene fila en imagenes_perros: el recolector lo revisa
+        proveedor.envejecer(Duration.ofDays(2));
+        RecolectorImagenesHuerfanas recolector = recolector();
+        ejecutar(recolector);
+
+        assertThat(recolector.estadisticas().revisadas()).isEqualTo(1);
+        assertThat(recolector.estadisticas().eliminadas()).isZero();
+        assertThat(proveedor.existe(primera.getId())).isTrue();
+        assertThat(dedup.resolveDogImageStorageId(segunda.getId())).isEqualTo(primera.getId());
+    }
+
+    @Test
+    void laUltimaReferenciaBorraElObjeto() throws Exception {
+        UploadResult primera = dedup.uploadDogImage(foto());
+        UploadResult segunda = dedup.uploadDogImage(foto());
+
+        assertThat(dedup.deleteMany(TipoImagen.PERRO, List.of(primera.getId()))).isEmpty();
+        assertThat(dedup.deleteMany(TipoImagen.PERRO, List.of(segunda.getId()))).containsExactly(primera.getId());
+
+        assertThat(proveedor.ids()).isEmpty();
+        assertThat(repositorioBlobImagen.count()).isZero();
+        assertThat(repositorioAliasImagen.count()).isZero();
+
+        // El mismo contenido después vuelve a subirse como objeto nuevo
+        UploadResult otra = dedup.uploadDogImage(foto());
+        assertThat(proveedor.subidas()).isEqualTo(2);
+        assertThat(proveedor.ids()).containsExactly(otra.getId());
+    }
+
+    @Test
+    void ambasEnUnMismoBorradoEliminanElObjetoUnaVez() throws Exception {
+        UploadResult primera = dedup.uploadDogImage(foto());
+        UploadResult segunda = dedup.uploadDogImage(foto());
+
+        List<String> eliminados = dedup.deleteMany(TipoImagen.PERRO, List.of(primera.getId(), segunda.getId()));
+
+        assertThat(eliminados).containsExactly(primera.getId());
+        assertThat(proveedor.borrados()).containsExactly(List.of(primera.getId()));
+        assertThat(repositorioBlobImagen.count()).isZero();
+    }
+
+    @Test
+    void unIdSinAliasSeBorraDelProveedor() throws Exception {
+        // Imagen subida antes de la deduplicación: existe en el proveedor pero no en alias_imagenes
+        String previa = UUID.randomUUID().toString();
+        proveedor.agregar(previa, Instant.now().minus(Duration.ofDays(30)));
+        UploadResult nueva = dedup.uploadDogImage(foto());
+
+        assertThat(dedup.resolveDogImageStorageId(previa)).isEqualTo(previa);
+        assertThat(dedup.deleteMany(TipoImagen.PERRO, List.of(previa))).containsExactly(previa);
+
+        assertThat(proveedor.ids()).containsExactly(nueva.getId());
+        assertThat(repositorioBlobImagen.findAll()).singleElement().extracting(b -> b.getReferencias()).isEqualTo(1);
+    }
+
+    private DeduplicacionImageStorageService nuevo() {
+        return new DeduplicacionImageStorageService(proveedor, blobs, repositorioAliasImagen,
+                new TransactionTemplate(transactionManager), 100);
+    }
+
+    private RecolectorImagenesHuerfanas recolector() {
+        // Intervalo 0: sin ejecuciones programadas, solo la que pide la prueba
+        return new RecolectorImagenesHuerfanas(dedup, repositorioImagenPerro, repositorioStagingSubida,
+                new CacheImagenesPerro(0, 0, false), 0, 24, 100, 10);
+    }
+
+    private static void ejecutar(RecolectorImagenesHuerfanas recolector) throws InterruptedException {
+        recolector.solicitarEjecucion();
+        long limite = System.currentTimeMillis() + 10_000;
+        while (recolector.estadisticas().ejecuciones() == 0 && System.currentTimeMillis() < limite) Thread.sleep(10);
+        assertThat(recolector.estadisticas().ejecuciones()).isEqualTo(1);
+        assertThat(recolector.estadisticas().errores()).isZero();
+    }
+
+    private static MockMultipartFile foto() {
+        return new MockMultipartFile("file", "foto.jpg", "image/jpeg", FOTO);
+    }
+}
@@ -0,0 +1,169 @@
+package com.cut.cardona.service.infra.storage.local;
+
+import com.cut.cardona.service.infra.storage.VariantesImagen;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DirectorioFragmentadoTest {
+
+    @TempDir
+    Path base;
+
+    @Test
+    void migraElEsquemaPlanoEIndexa() throws IOException {
+        String a = uuid();
+        String b = uuid();
+        escribir(base.resolve(a + ".jpg"));
+        escribir(base.resolve(b + ".png"));
+        escribir(base.resolve(VariantesImagen.nombreArchivo(a, 160, "webp")));
+
+        DirectorioFragmentado dir = directorio(true);
+
+        assertThat(dir.archivo(a)).isEqualTo(base.resolve(a.substring(0, 2)).resolve(a.substring(2, 4)).resolve(a + ".jpg"));
+        assertThat(dir.archivo(a)).exists();
+        assertThat(dir.archivo(b)).exists().hasFileName(b + ".png");
+        assertThat(dir.archivo(a).resolveSibling(VariantesImagen.nombreArchivo(a, 160, "webp"))).exists();
+        try (Stream<Path> raiz = Files.list(base)) {
+            assertThat(raiz).allMatch(Files::isDirectory);
+        }
+    }
+
+    @Test
+    void reconstruirEsIdempotente() throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String id = uuid();
+            ids.add(id);
+            escribir(base.resolve(id + ".jpg"));
+        }
+        DirectorioFragmentado primero = directorio(false);
+        List<Path> rutas = ids.stream().map(primero::archivo).toList();
+
+        DirectorioFragmentado segundo = directorio(false);
+
+        assertThat(ids.stream().map(segundo::archivo).toList()).isEqualTo(rutas);
+        assertThat(segundo.desde(null)).hasSize(ids.size());
+    }
+
+    @Test
+    void ignoraTemporalesYNombresSinUuid() throws IOException {
+        escribir(base.resolve("readme.txt"));
+        escribir(base.resolve(uuid() + ".tmp-123"));
+        escribir(base.resolve("no-es-un-uuid-pero-tiene-36-caracteres.jpg"));
+
+        DirectorioFragmentado dir = directorio(true);
+
+        assertThat(dir.desde(null)).isEmpty();
+        assertThat(base.resolve("readme.txt")).exists();
+    }
+
+    @Test
+    void soloVariantesQuedanListadasSinOriginal() throws IOException {
+        String id = uuid();
+        escribir(base.resolve(VariantesImagen.nombreArchivo(id, 480, "jpg")));
+
+        DirectorioFragmentado dir = directorio(true);
+
+        assertThat(dir.archivo(id)).isNull();
+        assertThat(dir.desde(null)).containsEntry(id, DirectorioFragmentado.SIN_ORIGINAL);
+        assertThat(dir.eliminar(id)).isTrue();
+        assertThat(dir.desde(null)).isEmpty();
+        try (Stream<Path> archivos = Files.walk(base)) {
+            assertThat(archivos.filter(Files::isRegularFile)).isEmpty();
+        }
+    }
+
+    @Test
+    void nuevoRegistrarYEliminar() throws IOException {
+        DirectorioFragmentado dir = directorio(true);
+        String id = uuid();
+
+        Path destino = dir.nuevo(id, "jpeg");
+        escribir(destino);
+        // Hasta registrarlo, un archivo a medio escribir no es visible
+        assertThat(dir.archivo(id)).isNull();
+        dir.registrar(id, "jpeg");
+        escribir(destino.resolveSibling(VariantesImagen.nombreArchivo(id, 1024, "webp")));
+
+        assertThat(dir.archivo(id)).isEqualTo(destino);
+        assertThat(dir.eliminar(id)).isTrue();
+        assertThat(dir.archivo(id)).isNull();
+        assertThat(destino).doesNotExist();
+        assertThat(destino.resolveSibling(VariantesImagen.nombreArchivo(id, 1024, "webp"))).doesNotExist();
+        assertThat(dir.eliminar(id)).isFalse();
+    }
+
+    @Test
+    void idsInvalidosNoTocanElDisco() throws IOException {
+        DirectorioFragmentado dir = directorio(false);
+
+        assertThat(dir.archivo(null)).isNull();
+        assertThat(dir.archivo("../../etc/passwd")).isNull();
+        assertThat(dir.eliminar("../../etc/passwd")).isFalse();
+        assertThat(dir.eliminar(uuid())).isFalse();
+    }
+
+    @Test
+    void paginaEnOrdenDeIdDesdeElCursor() throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            String id = uuid();
+            ids.add(id);
+            escribir(base.resolve(id + ".jpg"));
+        }
+        ids.sort(null);
+        DirectorioFragmentado dir = directorio(false);
+
+        List<String> recorridos = new ArrayList<>();
+        String cursor = null;
+        while (true) {
+            List<String> pagina = dir.desde(cursor).keySet().stream().limit(7).toList();
+            if (pagina.isEmpty()) break;
+            recorridos.addAll(pagina);
+            cursor = pagina.get(pagina.size() - 1);
+        }
+
+        assertThat(recorridos).containsExactlyElementsOf(ids);
+    }
+
+    @Test
+    void noMigraSiElDestinoYaExiste() throws IOException {
+        String id = uuid();
+        DirectorioFragmentado previo = directorio(false);
+        Path fragmentado = previo.nuevo(id, "jpg");
+        Files.writeString(fragmentado, "fragmentado");
+        Files.writeString(base.resolve(id + ".jpg"), "plano");
+
+        DirectorioFragmentado dir = directorio(false);
+
+        // Se conserva el ya migrado y el plano queda donde estaba para revisarlo a mano
+        assertThat(dir.archivo(id)).isEqualTo(fragmentado);
+        assertThat(Files.readString(fragmentado)).isEqualTo("fragmentado");
+        assertThat(base.resolve(id + ".jpg")).exists();
+    }
+
+    private DirectorioFragmentado directorio(boolean conVariantes) {
+        DirectorioFragmentado dir = new DirectorioFragmentado(base.toString(), conVariantes);
+        dir.reconstruir();
+        return dir;
+    }
+
+    private static void escribir(Path p) throws IOException {
+        Files.createDirectories(p.getParent());
+        Files.write(p, new byte[]{1, 2, 3});
+    }
+
+    private static String uuid() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,93 @@
+package com.cut.cardona.service.perfil;
+
+import com.cut.cardona.modelo.dto.perfil.DtoActualizarPerfilRequest;
+import com.cut.cardona.modelo.dto.perfil.DtoPerfilCompleto;
+import com.cut.cardona.modelo.perfil.PerfilUsuario;
+import com.cut.cardona.modelo.usuarios.Roles;
+import com.cut.cardona.modelo.usuarios.Usuario;
+import com.cut.cardona.security.UsuarioModificadoEvent;
+import com.cut.cardona.service.imagenes.DespachadorBorrados;
+import com.cut.cardona.service.infra.storage.ImageStorageService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Actualizar el perfil publica {@link UsuarioModificadoEvent} para que la caché de principales suelte al usuario,
+ * tanto si se llega desde PerfilService como desde el controlador de registro; una actualización rechazada no
+ * publica nada.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:perfil;MODE=MySQL;DATABASE_TO_LOWER=TRUE"
+})
+@Import({PerfilUsuarioService.class, PerfilService.class})
+@RecordApplicationEvents
+class PerfilUsuarioServiceTest {
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private PerfilService perfilService;
+
+    @Autowired
+    private ApplicationEvents eventos;
+
+    @MockitoBean
+    private PasswordEncoder passwordEncoder;
+
+    @MockitoBean
+    private ImageStorageService imageStorageService;
+
+    @MockitoBean
+    private DespachadorBorrados despachadorBorrados;
+
+    @Test
+    void actualizarElPerfilPublicaElEventoDelUsuario() {
+        Usuario ana = usuario("ana", null);
+
+        DtoPerfilCompleto dto = perfilService.actualizarPerfilCampos(ana.getId(),
+                new DtoActualizarPerfilRequest("Ana López", null, null, null, null));
+
+        assertThat(dto.nombreReal()).isEqualTo("Ana López");
+        assertThat(eventos.stream(UsuarioModificadoEvent.class)).containsExactly(new UsuarioModificadoEvent(ana.getId()));
+    }
+
+    @Test
+    void unaActualizacionRechazadaNoPublicaNada() {
+        usuario("bea", "5551234567");
+        Usuario ana = usuario("ana", null);
+
+        assertThatThrownBy(() -> perfilService.actualizarPerfilCampos(ana.getId(),
+                new DtoActualizarPerfilRequest(null, "555 123 4567", null, null, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(eventos.stream(UsuarioModificadoEvent.class)).isEmpty();
+    }
+
+    private Usuario usuario(String userName, String telefono) {
+        Usuario u = new Usuario();
+        u.setUserName(userName);
+        u.setEmail(userName + "@example.com");
+        u.setPassword("x");
+        u.setRol(Roles.ROLE_USER);
+        em.persist(u);
+        PerfilUsuario perfil = new PerfilUsuario();
+        perfil.setUsuario(u);
+        perfil.setTelefono(telefono);
+        em.persist(perfil);
+        return u;
+    }
+}
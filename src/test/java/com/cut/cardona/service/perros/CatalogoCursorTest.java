@@ -0,0 +1,46 @@
+package com.cut.cardona.service.perros;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CatalogoCursorTest {
+
+    @Test
+    void idaYVuelta() {
+        CatalogoCursor cursor = new CatalogoCursor(1_760_000_000_123L, UUID.randomUUID().toString());
+
+        String codificado = cursor.encode();
+
+        assertThat(codificado).doesNotContain("=", "+", "/");
+        assertThat(CatalogoCursor.decode(codificado)).isEqualTo(cursor);
+    }
+
+    @Test
+    void sinFechaDePublicacionSeCodificaComoCero() {
+        CatalogoCursor cursor = new CatalogoCursor(0, UUID.randomUUID().toString());
+
+        assertThat(CatalogoCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "no-es-base64!", "MTIz", "abc:def", "123:no-es-uuid", ":3f1c2a9e-0000-4000-8000-000000000000"})
+    void cursorInvalidoEsIllegalArgument(String crudo) {
+        String cursor = crudo.contains(":") ? base64(crudo) : crudo;
+
+        assertThatThrownBy(() -> CatalogoCursor.decode(cursor))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Cursor inválido");
+    }
+
+    private static String base64(String s) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,143 @@
+package com.cut.cardona.service.perros;
+
+import com.cut.cardona.modelo.dto.perros.DtoPerro;
+import com.cut.cardona.modelo.perros.Perro;
+import com.cut.cardona.modelo.perros.RepositorioImagenPerro;
+import com.cut.cardona.modelo.perros.RepositorioPerro;
+import com.cut.cardona.modelo.perros.enums.PerroEstadoAdopcion;
+import com.cut.cardona.modelo.perros.enums.PerroEstadoRevision;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Paginación por cursor sobre la instantánea del catálogo (búsqueda binaria de posicionTras): recorrer todas las
+ * páginas devuelve cada perro una sola vez y en el orden del catálogo, también con fechas repetidas y aunque el
+ * perro del cursor desaparezca entre páginas.
+ */
+class CatalogoPerrosCacheCursorTest {
+
+    private static final long BASE = 1_760_000_000_000L;
+
+    private final RepositorioPerro repositorioPerro = mock(RepositorioPerro.class);
+    private final RepositorioImagenPerro repositorioImagenPerro = mock(RepositorioImagenPerro.class);
+    private CatalogoPerrosCache cache;
+    private List<Perro> perros;
+
+    @BeforeEach
+    void preparar() {
+        // Muchas fechas repetidas para que el desempate por id decida la posición; también perros sin fecha
+        Random r = new Random(42);
+        perros = new ArrayList<>();
+        for (int i = 0; i < 157; i++) {
+            perros.add(perro(r.nextInt(10) == 0 ? null : new Timestamp(BASE - r.nextInt(20) * 1000L),
+                    i % 3 == 0 ? "Hembra" : "Macho"));
+        }
+        when(repositorioPerro.findCatalogoPublico()).thenReturn(perros);
+        when(repositorioImagenPerro.findByPerroIdIn(anyCollection())).thenReturn(List.of());
+        cache = new CatalogoPerrosCache(repositorioPerro, repositorioImagenPerro, TransactionOperations.withoutTransaction(), 0);
+        cache.recargar();
+    }
+
+    @ParameterizedTest(name = "páginas de {0}")
+    @ValueSource(ints = {1, 7, 20, 156, 157, 500})
+    void recorrerTodasLasPaginasDevuelveCadaPerroUnaVezEnOrden(int tamano) {
+        assertThat(recorrer(null, tamano)).containsExactlyElementsOf(esperados(null));
+    }
+
+    @ParameterizedTest(name = "páginas de {0}")
+    @ValueSource(ints = {1, 5, 33})
+    void conFiltroTambienEsExacto(int tamano) {
+        assertThat(recorrer("Hembra", tamano)).containsExactlyElementsOf(esperados("Hembra"));
+    }
+
+    @Test
+    void coincideConLaPaginacionPorDesplazamiento() {
+        List<String> porDesplazamiento = new ArrayList<>();
+        for (int pagina = 0; ; pagina++) {
+            List<DtoPerro> items = cache.buscar(null, null, null, pagina, 10);
+            if (items.isEmpty()) break;
+            items.forEach(d -> porDesplazamiento.add(d.id()));
+        }
+
+        assertThat(recorrer(null, 10)).containsExactlyElementsOf(porDesplazamiento);
+    }
+
+    @Test
+    void elCursorSigueValiendoSiSuPerroDesaparece() {
+        CatalogoPerrosCache.PaginaCursor primera = cache.buscarDesde(null, null, null, null, 25);
+        String ultimoId = primera.items().get(primera.items().size() - 1).id();
+        // El último perro de la página deja de ser público antes de pedir la siguiente
+        when(repositorioPerro.findAllById(List.of(ultimoId))).thenReturn(List.of());
+        cache.onPerroCambiado(new PerroCatalogoEvent(ultimoId));
+        cache.aplicarPendientes();
+
+        List<String> vistos = new ArrayList<>(primera.items().stream().map(DtoPerro::id).toList());
+        String cursor = primera.nextCursor();
+        while (cursor != null) {
+            CatalogoPerrosCache.PaginaCursor pagina = cache.buscarDesde(null, null, null, cursor, 25);
+            pagina.items().forEach(d -> vistos.add(d.id()));
+            cursor = pagina.nextCursor();
+        }
+
+        assertThat(vistos).containsExactlyElementsOf(esperados(null));
+    }
+
+    @Test
+    void ultimaPaginaNoTieneCursor() {
+        CatalogoPerrosCache.PaginaCursor todo = cache.buscarDesde(null, null, null, null, perros.size());
+
+        assertThat(todo.items()).hasSize(perros.size());
+        assertThat(todo.nextCursor()).isNull();
+    }
+
+    private List<String> recorrer(String sexo, int tamano) {
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            CatalogoPerrosCache.PaginaCursor pagina = cache.buscarDesde(sexo, null, null, cursor, tamano);
+            assertThat(pagina.items()).hasSizeLessThanOrEqualTo(tamano);
+            pagina.items().forEach(d -> ids.add(d.id()));
+            cursor = pagina.nextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    // Orden del catálogo (idx_perro_catalogo_keyset): fecha_publicacion DESC, id DESC; sin fecha cuenta como 0
+    private List<String> esperados(String sexo) {
+        return perros.stream()
+                .filter(p -> sexo == null || sexo.equals(p.getSexo()))
+                .sorted(Comparator.comparingLong((Perro p) -> p.getFechaPublicacion() == null ? 0L : p.getFechaPublicacion().getTime())
+                        .thenComparing(Perro::getId)
+                        .reversed())
+                .map(Perro::getId)
+                .toList();
+    }
+
+    private static Perro perro(Timestamp fecha, String sexo) {
+        return Perro.builder()
+                .id(UUID.randomUUID().toString())
+                .nombre("Perro")
+                .sexo(sexo)
+                .tamano("Mediano")
+                .ubicacion("Zapopan")
+                .fechaPublicacion(fecha)
+                .estadoRevision(PerroEstadoRevision.APROBADO)
+                .estadoAdopcion(PerroEstadoAdopcion.DISPONIBLE)
+                .build();
+    }
+}
@@ -0,0 +1,210 @@
+package com.cut.cardona.service.perros;
+
+import com.cut.cardona.modelo.dto.perros.DtoPerro;
+import com.cut.cardona.modelo.perros.ImagenPerro;
+import com.cut.cardona.modelo.perros.Perro;
+import com.cut.cardona.modelo.perros.RepositorioImagenPerro;
+import com.cut.cardona.modelo.perros.RepositorioPerro;
+import com.cut.cardona.modelo.perros.enums.PerroEstadoAdopcion;
+import com.cut.cardona.modelo.perros.enums.PerroEstadoRevision;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Aplicación incremental de cambios: tras cualquier secuencia de altas, bajas y cambios de fecha, la instantánea
+ * y su índice quedan igual que con una recarga completa, y los eventos repetidos se aplican una sola vez.
+ * Los repositorios simulados leen de una "base de datos" en memoria que la prueba modifica.
+ */
+class CatalogoPerrosCacheIncrementalTest {
+
+    private static final long BASE = 1_760_000_000_000L;
+
+    private final RepositorioPerro repositorioPerro = mock(RepositorioPerro.class);
+    private final RepositorioImagenPerro repositorioImagenPerro = mock(RepositorioImagenPerro.class);
+    private final Map<String, Perro> bd = new LinkedHashMap<>();
+    private final Random random = new Random(7);
+    private final List<CatalogoPerrosCache> caches = new ArrayList<>();
+    private CatalogoPerrosCache cache;
+
+    @BeforeEach
+    void preparar() {
+        when(repositorioPerro.findCatalogoPublico()).thenAnswer(inv -> bd.values().stream().filter(this::publico).toList());
+        when(repositorioPerro.findAllById(any())).thenAnswer(inv -> {
+            List<Perro> out = new ArrayList<>();
+            for (Object id : (Iterable<?>) inv.getArgument(0)) {
+                if (bd.containsKey(id)) out.add(bd.get(id));
+            }
+            return out;
+        });
+        when(repositorioImagenPerro.findByPerroIdIn(anyCollection())).thenAnswer(inv -> {
+            Collection<?> ids = inv.getArgument(0);
+            return ids.stream().filter(bd::containsKey).map(id -> imagen(bd.get(id))).toList();
+        });
+        for (int i = 0; i < 200; i++) guardar(perro());
+        cache = nuevaCache();
+        cache.recargar();
+    }
+
+    @AfterEach
+    void detener() {
+        caches.forEach(CatalogoPerrosCache::detener);
+    }
+
+    @Test
+    void cambiosAleatoriosDejanLaMismaInstantaneaQueUnaRecarga() {
+        for (int ronda = 0; ronda < 30; ronda++) {
+            List<String> tocados = new ArrayList<>();
+            for (int k = 0; k < 1 + random.nextInt(8); k++) tocados.add(cambioAleatorio());
+            tocados.forEach(id -> cache.onPerroCambiado(new PerroCatalogoEvent(id)));
+            cache.aplicarPendientes();
+
+            CatalogoPerrosCache referencia = nuevaCache();
+            referencia.recargar();
+            assertThat(ids(cache.todos())).as("ronda %d", ronda).containsExactlyElementsOf(ids(referencia.todos()));
+            assertThat(ids(cache.buscarTexto("firulais", 0, 500)))
+                    .containsExactlyElementsOf(ids(referencia.buscarTexto("firulais", 0, 500)));
+        }
+    }
+
+    @Test
+    void losEventosRepetidosSeLeenUnaSolaVez() {
+        Perro p = bd.values().iterator().next();
+        p.setNombre("Firulais");
+        clearInvocations(repositorioPerro, repositorioImagenPerro);
+
+        // Con el monitor de la caché tomado, el hilo del catálogo no puede aplicar a mitad de la ráfaga
+        synchronized (cache) {
+            for (int i = 0; i < 10; i++) cache.onPerroCambiado(new PerroCatalogoEvent(p.getId()));
+        }
+        cache.aplicarPendientes();
+
+        verify(repositorioPerro, times(1)).findAllById(List.of(p.getId()));
+        verify(repositorioPerro, never()).findCatalogoPublico();
+        assertThat(cache.todos()).filteredOn(d -> d.id().equals(p.getId())).extracting(DtoPerro::nombre).containsExactly("Firulais");
+    }
+
+    @Test
+    void unPerroNuevoQuedaEnSuPosicion() {
+        Perro nuevo = perro();
+        nuevo.setFechaPublicacion(new Timestamp(BASE + 1));
+        guardar(nuevo);
+        Perro sinFecha = perro();
+        sinFecha.setFechaPublicacion(null);
+        guardar(sinFecha);
+
+        cache.onPerroCambiado(new PerroCatalogoEvent(nuevo.getId()));
+        cache.onPerroCambiado(new PerroCatalogoEvent(sinFecha.getId()));
+        cache.aplicarPendientes();
+
+        List<DtoPerro> todos = cache.todos();
+        assertThat(todos.get(0).id()).isEqualTo(nuevo.getId());
+        assertThat(ids(todos)).contains(sinFecha.getId());
+        CatalogoPerrosCache referencia = nuevaCache();
+        referencia.recargar();
+        assertThat(ids(todos)).containsExactlyElementsOf(ids(referencia.todos()));
+    }
+
+    @Test
+    void seAplicaFueraDelHiloQuePublica() throws InterruptedException {
+        Perro p = bd.values().stream().filter(this::publico).findFirst().orElseThrow();
+        p.setEstadoAdopcion(PerroEstadoAdopcion.ADOPTADO);
+
+        cache.onPerroCambiado(new PerroCatalogoEvent(p.getId()));
+
+        long limite = System.currentTimeMillis() + 5_000;
+        while (ids(cache.todos()).contains(p.getId()) && System.currentTimeMillis() < limite) Thread.sleep(10);
+        assertThat(ids(cache.todos())).doesNotContain(p.getId());
+    }
+
+    @Test
+    void unFalloAlLeerRecargaCompleto() {
+        Perro p = bd.values().iterator().next();
+        bd.remove(p.getId());
+        doThrow(new IllegalStateException("bd caída")).when(repositorioPerro).findAllById(any());
+
+        cache.onPerroCambiado(new PerroCatalogoEvent(p.getId()));
+        cache.aplicarPendientes();
+
+        assertThat(ids(cache.todos())).doesNotContain(p.getId());
+    }
+
+    // Da de alta, retira, cambia de fecha o de datos un perro al azar; devuelve su id
+    private String cambioAleatorio() {
+        List<Perro> existentes = new ArrayList<>(bd.values());
+        Perro p = existentes.get(random.nextInt(existentes.size()));
+        switch (random.nextInt(5)) {
+            case 0 -> {
+                Perro nuevo = perro();
+                guardar(nuevo);
+                return nuevo.getId();
+            }
+            case 1 -> bd.remove(p.getId());
+            case 2 -> p.setEstadoAdopcion(p.getEstadoAdopcion() == PerroEstadoAdopcion.DISPONIBLE
+                    ? PerroEstadoAdopcion.ADOPTADO : PerroEstadoAdopcion.DISPONIBLE);
+            case 3 -> p.setFechaPublicacion(fecha());
+            default -> p.setNombre(random.nextBoolean() ? "Firulais" : "Perro");
+        }
+        return p.getId();
+    }
+
+    private CatalogoPerrosCache nuevaCache() {
+        CatalogoPerrosCache c = new CatalogoPerrosCache(repositorioPerro, repositorioImagenPerro,
+                TransactionOperations.withoutTransaction(), 0);
+        caches.add(c);
+        return c;
+    }
+
+    private boolean publico(Perro p) {
+        return p.getEstadoRevision() == PerroEstadoRevision.APROBADO && p.getEstadoAdopcion() == PerroEstadoAdopcion.DISPONIBLE;
+    }
+
+    private void guardar(Perro p) {
+        bd.put(p.getId(), p);
+    }
+
+    private Perro perro() {
+        return Perro.builder()
+                .id(UUID.randomUUID().toString())
+                .nombre(random.nextInt(4) == 0 ? "Firulais" : "Perro")
+                .ubicacion("Zapopan")
+                .fechaPublicacion(fecha())
+                .estadoRevision(random.nextInt(5) == 0 ? PerroEstadoRevision.PENDIENTE : PerroEstadoRevision.APROBADO)
+                .estadoAdopcion(PerroEstadoAdopcion.DISPONIBLE)
+                .build();
+    }
+
+    // Pocas fechas distintas para que haya empates que decide el id; algunas sin fecha
+    private Timestamp fecha() {
+        return random.nextInt(10) == 0 ? null : new Timestamp(BASE - random.nextInt(30) * 1000L);
+    }
+
+    private static ImagenPerro imagen(Perro p) {
+        return ImagenPerro.builder().id(p.getId().replace('-', 'f')).perro(p).principal(true).build();
+    }
+
+    private static List<String> ids(List<DtoPerro> dtos) {
+        return dtos.stream().map(DtoPerro::id).toList();
+    }
+}
@@ -0,0 +1,185 @@
+package com.cut.cardona.service.perros;
+
+import com.cut.cardona.modelo.dto.perros.DtoPerro;
+import com.cut.cardona.modelo.perros.ImagenPerro;
+import com.cut.cardona.modelo.perros.Perro;
+import com.cut.cardona.modelo.perros.RepositorioImagenPerro;
+import com.cut.cardona.modelo.perros.RepositorioPerro;
+import com.cut.cardona.modelo.perros.enums.PerroEstadoAdopcion;
+import com.cut.cardona.modelo.perros.enums.PerroEstadoRevision;
+import com.cut.cardona.modelo.usuarios.Roles;
+import com.cut.cardona.modelo.usuarios.Usuario;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * La instantánea del catálogo se lee en su propia transacción: sin transacción de prueba envolvente, los datos
+ * se confirman como en producción y el evento llega tras el commit con el contexto de persistencia del
+ * publicador aún abierto.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.datasource.url=jdbc:h2:mem:catalogo;MODE=MySQL;DATABASE_TO_LOWER=TRUE"
+})
+@Import(CatalogoPerrosCache.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CatalogoPerrosCacheLecturaTest {
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private RepositorioImagenPerro repositorioImagenPerro;
+
+    @Autowired
+    private RepositorioPerro repositorioPerro;
+
+    @Autowired
+    private CatalogoPerrosCache catalogoPerrosCache;
+
+    private TransactionTemplate tx;
+    private Statistics estadisticas;
+    private Usuario usuario;
+
+    @BeforeEach
+    void preparar() {
+        tx = new TransactionTemplate(transactionManager);
+        estadisticas = emf.unwrap(SessionFactory.class).getStatistics();
+        tx.executeWithoutResult(s -> {
+            repositorioImagenPerro.deleteAllInBatch();
+            repositorioPerro.deleteAllInBatch();
+            em.createQuery("DELETE FROM Usuario").executeUpdate();
+            usuario = new Usuario();
+            usuario.setUserName("dueno");
+            usuario.setEmail("dueno@example.com");
+            usuario.setPassword("x");
+            usuario.setRol(Roles.ROLE_USER);
+            em.persist(usuario);
+        });
+    }
+
+    @ParameterizedTest(name = "{0} perros x {1} imágenes")
+    @CsvSource({"1, 1", "6, 3", "25, 4"})
+    void cargaDelCatalogoUsaDosSentencias(int perros, int imagenes) {
+        for (int i = 0; i < perros; i++) sembrar(PerroEstadoRevision.APROBADO, imagenes);
+        for (int i = 0; i < perros; i++) sembrar(PerroEstadoRevision.PENDIENTE, imagenes);
+
+        // Perros publicados + sus imágenes en lote
+        estadisticas.clear();
+        catalogoPerrosCache.recargar();
+        assertThat(estadisticas.getPrepareStatementCount()).as("sentencias SQL").isEqualTo(2);
+
+        List<DtoPerro> catalogo = catalogoPerrosCache.todos();
+        assertThat(catalogo).hasSize(perros);
+        assertThat(catalogo).allSatisfy(d -> {
+            assertThat(d.imagenIds()).hasSize(imagenes);
+            assertThat(d.imagenPrincipalId()).isNotNull();
+        });
+    }
+
+    @Test
+    void cambiarLaPrincipalSeVeEnLaInstantanea() {
+        List<String> imagenes = sembrar(PerroEstadoRevision.APROBADO, 3);
+        String perroId = tx.execute(s -> repositorioImagenPerro.findById(imagenes.get(0)).orElseThrow().getPerro().getId());
+        catalogoPerrosCache.recargar();
+        assertThat(dto(perroId).imagenPrincipalId()).isEqualTo(imagenes.get(0));
+
+        // Lo mismo que PerroService.actualizarPerro: las imágenes ya están en el contexto cuando el UPDATE masivo
+        // desmarca la principal, y el evento sale de esa misma transacción
+        String nueva = imagenes.get(2);
+        tx.executeWithoutResult(s -> {
+            repositorioImagenPerro.findByPerro_Id(perroId);
+            repositorioImagenPerro.clearPrincipal(perroId);
+            repositorioImagenPerro.findById(nueva).ifPresent(img -> img.setPrincipal(true));
+            eventPublisher.publishEvent(new PerroCatalogoEvent(perroId));
+        });
+        catalogoPerrosCache.aplicarPendientes();
+
+        assertThat(dto(perroId).imagenPrincipalId()).isEqualTo(nueva);
+    }
+
+    @Test
+    void unPerroQueDejaDeSerPublicoSaleDeLaInstantanea() {
+        String imagen = sembrar(PerroEstadoRevision.APROBADO, 1).get(0);
+        String perroId = tx.execute(s -> repositorioImagenPerro.findById(imagen).orElseThrow().getPerro().getId());
+        catalogoPerrosCache.recargar();
+        assertThat(catalogoPerrosCache.todos()).extracting(DtoPerro::id).containsExactly(perroId);
+
+        tx.executeWithoutResult(s -> {
+            Perro perro = repositorioPerro.findById(perroId).orElseThrow();
+            em.createQuery("UPDATE Perro p SET p.estadoAdopcion = :estado WHERE p.id = :id")
+                    .setParameter("estado", PerroEstadoAdopcion.ADOPTADO)
+                    .setParameter("id", perro.getId())
+                    .executeUpdate();
+            eventPublisher.publishEvent(new PerroCatalogoEvent(perroId));
+        });
+        catalogoPerrosCache.aplicarPendientes();
+
+        assertThat(catalogoPerrosCache.todos()).isEmpty();
+    }
+
+    private DtoPerro dto(String perroId) {
+        return catalogoPerrosCache.todos().stream().filter(d -> d.id().equals(perroId)).findFirst().orElseThrow();
+    }
+
+    // Un perro disponible con `imagenes` imágenes, la primera como principal; devuelve los ids de las imágenes
+    private List<String> sembrar(PerroEstadoRevision estado, int imagenes) {
+        return tx.execute(s -> {
+            Perro perro = Perro.builder()
+                    .id(UUID.randomUUID().toString())
+                    .nombre("Perro")
+                    .ubicacion("Guadalajara")
+                    .fechaPublicacion(new Timestamp(System.currentTimeMillis()))
+                    .estadoRevision(estado)
+                    .estadoAdopcion(PerroEstadoAdopcion.DISPONIBLE)
+                    .usuario(em.merge(usuario))
+                    .build();
+            em.persist(perro);
+            List<String> ids = new ArrayList<>();
+            for (int j = 0; j < imagenes; j++) {
+                ImagenPerro img = ImagenPerro.builder()
+                        .id(UUID.randomUUID().toString())
+                        .perro(perro)
+                        .principal(j == 0)
+                        .fechaSubida(new Timestamp(System.currentTimeMillis()))
+                        .build();
+                em.persist(img);
+                ids.add(img.getId());
+            }
+            return ids;
+        });
+    }
+}
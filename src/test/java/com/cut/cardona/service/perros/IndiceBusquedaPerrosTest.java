@@ -0,0 +1,132 @@
+package com.cut.cardona.service.perros;
+
+import com.cut.cardona.modelo.dto.perros.DtoPerro;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Consultas sobre el índice invertido del catálogo: ranking por campo, frecuencia y coincidencia exacta frente a
+ * prefijo, plegado de acentos y mayúsculas, prefijo solo en el último término (o con '*') y stopwords que se
+ * ignoran como palabra completa pero no mientras se escriben.
+ */
+class IndiceBusquedaPerrosTest {
+
+    private final List<CatalogoPerrosCache.Entrada> entradas = new ArrayList<>();
+
+    @Test
+    void elCampoDecideElRanking() {
+        perro("desc", "Toby", null, "Vive con Luna", null);
+        perro("ubic", "Max", null, null, "Parque Luna");
+        perro("raza", "Rocky", "Luna", null, null);
+        perro("nombre", "Luna", null, null, null);
+
+        assertThat(buscar("luna")).containsExactly("nombre", "raza", "ubic", "desc");
+    }
+
+    @Test
+    void masApariciones() {
+        perro("una", "Toby", null, "Juguetón", null);
+        perro("tres", "Max", null, "Juguetón, muy juguetón y siempre juguetón", null);
+
+        assertThat(buscar("jugueton")).containsExactly("tres", "una");
+    }
+
+    @Test
+    void laCoincidenciaExactaVaAntesQueElPrefijo() {
+        perro("prefijo", "Rexona", null, null, null);
+        perro("exacta", "Rex", null, null, null);
+
+        assertThat(buscar("rex")).containsExactly("exacta", "prefijo");
+    }
+
+    @Test
+    void losEmpatesConservanElOrdenDelCatalogo() {
+        perro("primero", "Kira", null, null, null);
+        perro("segundo", "Kira", null, null, null);
+
+        assertThat(buscar("kira")).containsExactly("primero", "segundo");
+    }
+
+    @ParameterizedTest(name = "\"{0}\"")
+    @ValueSource(strings = {"pequena", "PEQUEÑA", "Pequeña", "pequeña leon", "Pequena LEÓN"})
+    void acentosYMayusculasNoImportan(String consulta) {
+        perro("p", "León", null, "Pequeña y tranquila", null);
+        perro("otro", "Max", null, "Grande", null);
+
+        assertThat(buscar(consulta)).containsExactly("p");
+    }
+
+    @Test
+    void soloElUltimoTerminoEsPrefijo() {
+        perro("lab", "Toby", "Labrador", "Juguetón", null);
+
+        assertThat(buscar("labr")).containsExactly("lab");
+        assertThat(buscar("jugueton labr")).containsExactly("lab");
+        assertThat(buscar("labr jugueton")).isEmpty();
+        assertThat(buscar("labr* jugueton")).containsExactly("lab");
+    }
+
+    @Test
+    void todosLosTerminosDebenAparecer() {
+        perro("ambos", "Toby", "Beagle", "Tranquilo", null);
+        perro("uno", "Max", "Beagle", "Inquieto", null);
+
+        assertThat(buscar("beagle tranquilo")).containsExactly("ambos");
+        assertThat(buscar("beagle dalmata")).isEmpty();
+    }
+
+    @Test
+    void unaStopwordAlFinalSeBuscaComoPrefijo() {
+        perro("lobo", "Lobo", null, null, null);
+        perro("laika", "Laika", null, null, null);
+        perro("max", "Max", null, null, null);
+
+        // Mientras se escribe "lobo" o "laika" los prefijos coinciden con stopwords
+        assertThat(buscar("lo")).containsExactly("lobo");
+        assertThat(buscar("la")).containsExactly("laika");
+        assertThat(buscar("lo*")).containsExactly("lobo");
+    }
+
+    @Test
+    void unaStopwordCompletaSeIgnora() {
+        perro("lobo", "Lobo", null, "Perro de campo", null);
+        perro("max", "Max", null, "Perro tranquilo", null);
+
+        assertThat(buscar("el lobo")).containsExactly("lobo");
+        assertThat(buscar("perro de campo")).containsExactly("lobo");
+        // Como prefijo final "de" no extiende ningún término: se ignora y no deja la búsqueda vacía
+        assertThat(buscar("perro de")).containsExactlyInAnyOrder("lobo", "max");
+    }
+
+    @Test
+    void unaStopwordFinalQueExtiendeTerminosFiltra() {
+        perro("delgado", "Toby", null, "Perro delgado", null);
+        perro("max", "Max", null, "Perro tranquilo", null);
+
+        assertThat(buscar("perro de")).containsExactly("delgado");
+    }
+
+    @ParameterizedTest(name = "\"{0}\"")
+    @ValueSource(strings = {"", "   ", "de la", "*"})
+    void consultasSinTerminosNoDevuelvenNada(String consulta) {
+        perro("lobo", "Lobo", null, null, null);
+
+        assertThat(buscar(consulta)).isEmpty();
+    }
+
+    private void perro(String id, String nombre, String raza, String descripcion, String ubicacion) {
+        DtoPerro dto = new DtoPerro(id, nombre, null, null, null, raza, descripcion, ubicacion,
+                null, null, null, null, List.of());
+        entradas.add(new CatalogoPerrosCache.Entrada(dto, null, null));
+    }
+
+    private List<String> buscar(String consulta) {
+        return IndiceBusquedaPerros.construir(entradas).buscar(consulta).stream().map(e -> e.dto().id()).toList();
+    }
+}
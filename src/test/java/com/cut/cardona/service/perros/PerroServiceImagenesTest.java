@@ -0,0 +1,245 @@
+package com.cut.cardona.service.perros;
+
+import com.cut.cardona.errores.UnprocessableEntityException;
+import com.cut.cardona.modelo.perros.ImagenPerro;
+import com.cut.cardona.modelo.perros.Perro;
+import com.cut.cardona.modelo.perros.RepositorioImagenPerro;
+import com.cut.cardona.modelo.perros.RepositorioPerro;
+import com.cut.cardona.modelo.perros.enums.PerroEstadoAdopcion;
+import com.cut.cardona.modelo.perros.enums.PerroEstadoRevision;
+import com.cut.cardona.modelo.usuarios.Roles;
+import com.cut.cardona.modelo.usuarios.Usuario;
+import com.cut.cardona.service.imagenes.DespachadorBorrados;
+import com.cut.cardona.service.imagenes.StagingSubidas;
+import com.cut.cardona.service.infra.storage.ImageStorageService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Asociación de imágenes subidas a un perro sobre H2: el lote se inserta con un único INSERT en lote (sin SELECT
+ * por fila), la principal se resuelve con y sin índice, y dos lotes simultáneos no superan el máximo de imágenes
+ * porque el conteo se hace con la fila del perro bloqueada. Sin transacción de prueba envolvente: cada llamada
+ * confirma como en producción.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.datasource.url=jdbc:h2:mem:imagenes;MODE=MySQL;DATABASE_TO_LOWER=TRUE"
+})
+@Import(PerroService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PerroServiceImagenesTest {
+
+    @Autowired
+    private PerroService perroService;
+
+    @Autowired
+    private RepositorioPerro repositorioPerro;
+
+    @Autowired
+    private RepositorioImagenPerro repositorioImagenPerro;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private ImageStorageService imageStorageService;
+
+    @MockitoBean
+    private CatalogoPerrosCache catalogoPerrosCache;
+
+    @MockitoBean
+    private DespachadorBorrados despachadorBorrados;
+
+    @MockitoBean
+    private StagingSubidas stagingSubidas;
+
+    private TransactionTemplate tx;
+    private Statistics estadisticas;
+    private Usuario usuario;
+
+    @BeforeEach
+    void preparar() {
+        tx = new TransactionTemplate(transactionManager);
+        estadisticas = emf.unwrap(SessionFactory.class).getStatistics();
+        when(imageStorageService.resolveDogImagePublicUrl(anyString())).thenAnswer(inv -> "/api/imagenes/perritos/" + inv.getArgument(0));
+        tx.executeWithoutResult(s -> {
+            repositorioImagenPerro.deleteAllInBatch();
+            repositorioPerro.deleteAllInBatch();
+            em.createQuery("DELETE FROM Usuario").executeUpdate();
+            usuario = new Usuario();
+            usuario.setUserName("dueno");
+            usuario.setEmail("dueno@example.com");
+            usuario.setPassword("x");
+            usuario.setRol(Roles.ROLE_USER);
+            em.persist(usuario);
+        });
+    }
+
+    @ParameterizedTest(name = "{0} imágenes")
+    @ValueSource(ints = {1, 3, 5})
+    void elLoteSeInsertaConUnSoloInsert(int n) {
+        String perroId = perro(0);
+
+        estadisticas.clear();
+        perroService.asociarImagenesSubidas(perroId, ids(n), null, null);
+
+        // Perro bloqueado + conteo + ¿tiene principal? + un INSERT en lote, sin SELECT previo por fila
+        assertThat(estadisticas.getPrepareStatementCount()).as("sentencias SQL").isEqualTo(4);
+        assertThat(estadisticas.getEntityInsertCount()).isEqualTo(n);
+        assertThat(repositorioImagenPerro.countByPerro_Id(perroId)).isEqualTo(n);
+    }
+
+    @Test
+    void sinIndiceLaPrimeraEsPrincipalSiElPerroNoTiene() {
+        String perroId = perro(0);
+        List<String> ids = ids(3);
+
+        perroService.asociarImagenesSubidas(perroId, ids, List.of("a", "b", "c"), null);
+
+        assertThat(principales(perroId)).containsExactly(ids.get(0));
+        assertThat(repositorioImagenPerro.findById(ids.get(1)).orElseThrow().getDescripcion()).isEqualTo("b");
+    }
+
+    @Test
+    void sinIndiceSeConservaLaPrincipalActual() {
+        String perroId = perro(2);
+        List<String> previas = principales(perroId);
+
+        perroService.asociarImagenesSubidas(perroId, ids(2), null, null);
+
+        assertThat(principales(perroId)).isEqualTo(previas).hasSize(1);
+    }
+
+    @Test
+    void conIndiceLaNuevaReemplazaALaPrincipal() {
+        String perroId = perro(2);
+        List<String> ids = ids(3);
+
+        perroService.asociarImagenesSubidas(perroId, ids, null, 1);
+
+        assertThat(principales(perroId)).containsExactly(ids.get(1));
+        assertThat(repositorioImagenPerro.countByPerro_Id(perroId)).isEqualTo(5);
+    }
+
+    @Test
+    void superarElMaximoNoAsociaNinguna() {
+        String perroId = perro(3);
+
+        assertThatThrownBy(() -> perroService.asociarImagenesSubidas(perroId, ids(3), null, 0))
+                .isInstanceOf(UnprocessableEntityException.class);
+
+        assertThat(repositorioImagenPerro.countByPerro_Id(perroId)).isEqualTo(3);
+        assertThat(principales(perroId)).hasSize(1);
+    }
+
+    @Test
+    void dosLotesSimultaneosNoSuperanElMaximo() throws Exception {
+        String perroId = perro(0);
+        // El primero en resolver URLs se detiene ya pasado el conteo: sin bloqueo, el otro contaría 0 y entraría también
+        AtomicBoolean primero = new AtomicBoolean(true);
+        when(imageStorageService.resolveDogImagePublicUrl(anyString())).thenAnswer(inv -> {
+            if (primero.getAndSet(false)) Thread.sleep(300);
+            return "/api/imagenes/perritos/" + inv.getArgument(0);
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CountDownLatch salida = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> lotes = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                lotes.add(pool.submit(() -> {
+                    salida.await();
+                    try {
+                        perroService.asociarImagenesSubidas(perroId, ids(3), null, null);
+                        return true;
+                    } catch (UnprocessableEntityException ex) {
+                        return false;
+                    }
+                }));
+            }
+            salida.countDown();
+            int aceptados = 0;
+            for (Future<Boolean> lote : lotes) if (lote.get(30, TimeUnit.SECONDS)) aceptados++;
+
+            assertThat(aceptados).isEqualTo(1);
+            assertThat(repositorioImagenPerro.countByPerro_Id(perroId)).isEqualTo(3);
+            assertThat(principales(perroId)).hasSize(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Perro con `imagenes` imágenes ya asociadas, la primera como principal
+    private String perro(int imagenes) {
+        return tx.execute(s -> {
+            Perro perro = Perro.builder()
+                    .id(UUID.randomUUID().toString())
+                    .nombre("Perro")
+                    .estadoRevision(PerroEstadoRevision.APROBADO)
+                    .estadoAdopcion(PerroEstadoAdopcion.DISPONIBLE)
+                    .usuario(em.merge(usuario))
+                    .build();
+            em.persist(perro);
+            for (int i = 0; i < imagenes; i++) {
+                em.persist(ImagenPerro.builder()
+                        .id(UUID.randomUUID().toString())
+                        .perro(perro)
+                        .principal(i == 0)
+                        .fechaSubida(new Timestamp(System.currentTimeMillis()))
+                        .build());
+            }
+            return perro.getId();
+        });
+    }
+
+    private List<String> principales(String perroId) {
+        return repositorioImagenPerro.findByPerro_Id(perroId).stream()
+                .filter(i -> Boolean.TRUE.equals(i.getPrincipal()))
+                .map(ImagenPerro::getId)
+                .toList();
+    }
+
+    private static List<String> ids(int n) {
+        List<String> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(UUID.randomUUID().toString());
+        return out;
+    }
+}